@@ -6,6 +6,12 @@ package main.net.finmath.antonsporrer.masterthesis.function;
 
 public class KahanSummation {
 
+	// The number of independent Kahan summations of the dot product. Four lanes hide the latency of the floating point additions.
+	static final int NUMBER_OF_LANES = 4;
+
+	// Below this number of summands the dot product is computed by the plain Kahan summation.
+	static final int MINIMAL_NUMBER_OF_SUMMANDS_FOR_LANES = 4 * NUMBER_OF_LANES;
+
 	/**
 	 * This function provides the Kahan summation of the summands.
 	 * 
@@ -32,6 +38,111 @@ public class KahanSummation {
 		return sum;
 	}
 
+
+	/**
+	 * This function provides the Kahan summation of the products of two sequences of factors.
+	 * <br> In the plain Kahan summation each step depends on the running sum and the lost digits of the previous step. This chain of four dependent
+	 * floating point operations per summand, not the number of operations, limits the speed. Sequences of at least {@link #MINIMAL_NUMBER_OF_SUMMANDS_FOR_LANES}
+	 * summands are therefore split into {@link #NUMBER_OF_LANES} interleaved lanes, each summed up by its own Kahan summation, and the lanes are added together
+	 * by Kahan summation at the end. The error bound is the one of the Kahan summation, the result may differ from the one of the plain Kahan summation in the last digits.
+	 * 
+	 * @param firstFactors The array of the first factors.
+	 * @param firstOffset The index of the first factor of the first summand.
+	 * @param secondFactors The array of the second factors.
+	 * @param secondOffset The index of the second factor of the first summand.
+	 * @param length The number of summands.
+	 * @return The sum of firstFactors[firstOffset + k] * secondFactors[secondOffset + k] over k = 0, ... , length - 1.
+	 */
+	public static double getDotProduct(double[] firstFactors, int firstOffset, double[] secondFactors, int secondOffset, int length) {
+
+		if( length < MINIMAL_NUMBER_OF_SUMMANDS_FOR_LANES ) {
+
+			double runningSum = 0.0;
+			double helperNextSum = 0.0;
+			double nextToAdd = 0.0;
+			double negativLostDigitsStorage = 0.0;
+
+			for(int index = 0; index < length; index++) {
+				nextToAdd = firstFactors[firstOffset + index] * secondFactors[secondOffset + index] - negativLostDigitsStorage;
+				helperNextSum = runningSum + nextToAdd;
+				negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+				runningSum = helperNextSum;
+			}
+
+			return runningSum;
+
+		}
+
+		// The running sums and the lost digits of the lanes.
+		double runningSum0 = 0.0, runningSum1 = 0.0, runningSum2 = 0.0, runningSum3 = 0.0;
+		double negativLostDigitsStorage0 = 0.0, negativLostDigitsStorage1 = 0.0, negativLostDigitsStorage2 = 0.0, negativLostDigitsStorage3 = 0.0;
+
+		int index = 0;
+		for(; index + NUMBER_OF_LANES <= length; index += NUMBER_OF_LANES) {
+
+			double nextToAdd0 = firstFactors[firstOffset + index] * secondFactors[secondOffset + index] - negativLostDigitsStorage0;
+			double nextToAdd1 = firstFactors[firstOffset + index + 1] * secondFactors[secondOffset + index + 1] - negativLostDigitsStorage1;
+			double nextToAdd2 = firstFactors[firstOffset + index + 2] * secondFactors[secondOffset + index + 2] - negativLostDigitsStorage2;
+			double nextToAdd3 = firstFactors[firstOffset + index + 3] * secondFactors[secondOffset + index + 3] - negativLostDigitsStorage3;
+
+			double helperNextSum0 = runningSum0 + nextToAdd0;
+			double helperNextSum1 = runningSum1 + nextToAdd1;
+			double helperNextSum2 = runningSum2 + nextToAdd2;
+			double helperNextSum3 = runningSum3 + nextToAdd3;
+
+			negativLostDigitsStorage0 = ( helperNextSum0 - runningSum0 ) - nextToAdd0;
+			negativLostDigitsStorage1 = ( helperNextSum1 - runningSum1 ) - nextToAdd1;
+			negativLostDigitsStorage2 = ( helperNextSum2 - runningSum2 ) - nextToAdd2;
+			negativLostDigitsStorage3 = ( helperNextSum3 - runningSum3 ) - nextToAdd3;
+
+			runningSum0 = helperNextSum0;
+			runningSum1 = helperNextSum1;
+			runningSum2 = helperNextSum2;
+			runningSum3 = helperNextSum3;
+
+		}
+
+		// The remaining summands are added to the first lane.
+		for(; index < length; index++) {
+			double nextToAdd = firstFactors[firstOffset + index] * secondFactors[secondOffset + index] - negativLostDigitsStorage0;
+			double helperNextSum = runningSum0 + nextToAdd;
+			negativLostDigitsStorage0 = ( helperNextSum - runningSum0 ) - nextToAdd;
+			runningSum0 = helperNextSum;
+		}
+
+		return getSumOfLanes(runningSum0, negativLostDigitsStorage0, runningSum1, negativLostDigitsStorage1, runningSum2, negativLostDigitsStorage2, runningSum3, negativLostDigitsStorage3);
+
+	}
+
+
+	/**
+	 * Adds the lanes together by Kahan summation. The lost digits of each lane are subtracted from its running sum first.
+	 */
+	private static double getSumOfLanes(double runningSum0, double negativLostDigitsStorage0, double runningSum1, double negativLostDigitsStorage1,
+			double runningSum2, double negativLostDigitsStorage2, double runningSum3, double negativLostDigitsStorage3) {
+
+		double runningSum = runningSum0;
+		double negativLostDigitsStorage = negativLostDigitsStorage0;
+
+		double nextToAdd = ( runningSum1 - negativLostDigitsStorage1 ) - negativLostDigitsStorage;
+		double helperNextSum = runningSum + nextToAdd;
+		negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+		runningSum = helperNextSum;
+
+		nextToAdd = ( runningSum2 - negativLostDigitsStorage2 ) - negativLostDigitsStorage;
+		helperNextSum = runningSum + nextToAdd;
+		negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+		runningSum = helperNextSum;
+
+		nextToAdd = ( runningSum3 - negativLostDigitsStorage3 ) - negativLostDigitsStorage;
+		helperNextSum = runningSum + nextToAdd;
+		negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+		runningSum = helperNextSum;
+
+		return runningSum - negativLostDigitsStorage;
+
+	}
+
 	
 	
 }
@@ -0,0 +1,277 @@
+/* 
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.integration;
+
+import main.net.finmath.antonsporrer.masterthesis.integration.Integration.IntegrationMethod;
+import net.finmath.montecarlo.RandomVariable;
+import net.finmath.stochastic.RandomVariableInterface;
+
+/**
+ * 
+ * This class approximates the integrals of the paths of a function whose values are provided 
+ * one time point after the other [ e.g. t_0, ( f(t_0) ), t_1, ( f(t_1) ), ... ], i.e. the function values 
+ * do not have to be stored for all time points. The integration methods are the ones of {@link Integration}
+ * and the result is the same as the one of {@link Integration#getIntegral(RandomVariableInterface[], net.finmath.time.TimeDiscretizationInterface, IntegrationMethod)}.
+ * <br> For each path only the running integral, the lost digits of its Kahan summation and 
+ * (for the left points and the trapezoidal rule) the function value at the previous time point are stored. 
+ * For Simpson and GaussLobatto the function values at the last three or four time points are stored and the integral of a panel is added 
+ * when its last function value is added. The integral of the remaining intervals is added by {@link #getIntegral(int)}. 
+ * <br> The function values of a time point are added by {@link #addFunctionValue(int, double)} path by path 
+ * or by {@link #addFunctionValues(RandomVariableInterface)} after the time point has been added by {@link #addTimePoint(double)}.
+ * Each path has to be added once per time point.
+ * 
+ * @author Anton Sporrer
+ *
+ */
+public class IncrementalIntegrator {
+	
+	private final IntegrationMethod integrationMethod;
+	
+	private final int numberOfPaths;
+	
+	// The integral of each path and the lost digits of its Kahan summation.
+	private final double[] integral;
+	private final double[] negativLostDigitsStorage;
+	
+	// The function value of each path at the previous time point. Not required for the right points.
+	private final double[] previousFunctionValues;
+	
+	// The number of intervals of a panel of Simpson and GaussLobatto, zero for the other integration methods.
+	private final int numberOfIntervalsPerPanel;
+	
+	// Simpson and GaussLobatto: The function values of each path at the last time points (cyclic in the time points) and the last time points (the current time point is the last one).
+	private final double[][] recentFunctionValues;
+	private final double[] recentTimes;
+	
+	// Simpson and GaussLobatto: The weights of the panel ending at the current time point and of the remaining intervals ending at the current time point. Null if there are none.
+	private double[] panelWeights;
+	private double[] remainingIntervalsWeights;
+	
+	// The current time point and the length of the interval ending at the current time point.
+	private double time = Double.NaN;
+	private double intervalLength = 0.0;
+	
+	// The number of time points added so far.
+	private int numberOfTimePoints = 0;
+	
+	
+	/**
+	 * @param integrationMethod The integration method used to approximate the integral (e.g. Trapezoidal, ... ).
+	 * @param numberOfPaths The number of paths, i.e. the number of integrals.
+	 */
+	public IncrementalIntegrator(IntegrationMethod integrationMethod, int numberOfPaths) {
+		
+		if(numberOfPaths < 1) {
+			throw new IllegalArgumentException("At least one path is required.");
+		}
+		
+		this.integrationMethod = integrationMethod;
+		this.numberOfPaths = numberOfPaths;
+		
+		this.integral = new double[numberOfPaths];
+		this.negativLostDigitsStorage = new double[numberOfPaths];
+		this.numberOfIntervalsPerPanel = InterpolatoryQuadrature.getNumberOfIntervalsPerPanel(integrationMethod);
+		
+		if( numberOfIntervalsPerPanel > 0 ) {
+			this.previousFunctionValues = null;
+			this.recentFunctionValues = new double[numberOfIntervalsPerPanel + 1][numberOfPaths];
+			this.recentTimes = new double[numberOfIntervalsPerPanel + 1];
+		}
+		else {
+			this.previousFunctionValues = integrationMethod != IntegrationMethod.RightPoints ? new double[numberOfPaths] : null;
+			this.recentFunctionValues = null;
+			this.recentTimes = null;
+		}
+		
+	}
+	
+	
+	/**
+	 * Adds the next time point. The function values of the previous time point have to be added before.
+	 * 
+	 * @param time The time point. It has to be larger than the previous time point.
+	 */
+	public void addTimePoint(double time) {
+		
+		if( numberOfTimePoints > 0 && !( time > this.time ) ) {
+			throw new IllegalArgumentException("The time points have to be increasing.");
+		}
+		
+		intervalLength = numberOfTimePoints > 0 ? time - this.time : 0.0;
+		
+		this.time = time;
+		numberOfTimePoints++;
+		
+		if( numberOfIntervalsPerPanel > 0 ) {
+			
+			System.arraycopy(recentTimes, 1, recentTimes, 0, numberOfIntervalsPerPanel);
+			recentTimes[numberOfIntervalsPerPanel] = time;
+			
+			// The weights are the ones of Integration, see InterpolatoryQuadrature.
+			int numberOfIntervals = numberOfTimePoints - 1;
+			int numberOfRemainingIntervals = numberOfIntervals % numberOfIntervalsPerPanel;
+			
+			if( numberOfIntervals > 0 && numberOfRemainingIntervals == 0 ) {
+				panelWeights = InterpolatoryQuadrature.getWeights(recentTimes, 0, numberOfIntervalsPerPanel + 1, recentTimes[0], time);
+			}
+			else {
+				panelWeights = null;
+			}
+			
+			if( numberOfRemainingIntervals > 0 ) {
+				int numberOfNodes = Math.min( numberOfIntervalsPerPanel, numberOfIntervals ) + 1;
+				remainingIntervalsWeights = InterpolatoryQuadrature.getWeights(recentTimes, numberOfIntervalsPerPanel + 1 - numberOfNodes, numberOfNodes, 
+						recentTimes[numberOfIntervalsPerPanel - numberOfRemainingIntervals], time);
+			}
+			else {
+				remainingIntervalsWeights = null;
+			}
+			
+		}
+		
+	}
+	
+	
+	/**
+	 * Adds the function value of a path at the current time point. If it is not the first time point, 
+	 * the approximation of the function on the interval ending at the current time point times the interval length is added to the integral by Kahan summation.
+	 * 
+	 * @param pathIndex The index of the path.
+	 * @param functionValue The function value of the path at the current time point.
+	 */
+	public void addFunctionValue(int pathIndex, double functionValue) {
+		
+		if( numberOfIntervalsPerPanel > 0 ) {
+			
+			recentFunctionValues[ ( numberOfTimePoints - 1 ) % ( numberOfIntervalsPerPanel + 1 ) ][pathIndex] = functionValue;
+			
+			if( panelWeights != null ) {
+				
+				double nextToAdd = getWeightedSumOfRecentFunctionValues(pathIndex, panelWeights) - negativLostDigitsStorage[pathIndex];
+				double helperNextSum = integral[pathIndex] + nextToAdd;
+				negativLostDigitsStorage[pathIndex] = ( helperNextSum - integral[pathIndex] ) - nextToAdd;
+				integral[pathIndex] = helperNextSum;
+				
+			}
+			
+			return;
+			
+		}
+		
+		if(numberOfTimePoints > 1) {
+			
+			double functionApproximation;
+			switch( integrationMethod ) {
+			case LeftPoints: 
+				functionApproximation = previousFunctionValues[pathIndex];
+				break;
+			case RightPoints:
+				functionApproximation = functionValue;
+				break;
+			default:
+				functionApproximation = ( previousFunctionValues[pathIndex] + functionValue ) * 0.5;
+				break;
+			}
+			
+			double nextToAdd = functionApproximation * intervalLength - negativLostDigitsStorage[pathIndex];
+			double helperNextSum = integral[pathIndex] + nextToAdd;
+			negativLostDigitsStorage[pathIndex] = ( helperNextSum - integral[pathIndex] ) - nextToAdd;
+			integral[pathIndex] = helperNextSum;
+			
+		}
+		
+		if(previousFunctionValues != null) {
+			previousFunctionValues[pathIndex] = functionValue;
+		}
+		
+	}
+	
+	
+	/**
+	 * Adds the function values of all paths at the current time point, see {@link #addFunctionValue(int, double)}.
+	 * 
+	 * @param functionValues The function values at the current time point. A deterministic random variable is the same value for each path.
+	 */
+	public void addFunctionValues(RandomVariableInterface functionValues) {
+		
+		if( ! functionValues.isDeterministic() && functionValues.size() != numberOfPaths ) {
+			throw new IllegalArgumentException("The number of function values has to be equal to the number of paths.");
+		}
+		
+		for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+			addFunctionValue(pathIndex, functionValues.get(pathIndex));
+		}
+		
+	}
+	
+	
+	/**
+	 * @param pathIndex The index of the path.
+	 * @return The approximation of the integral of the path from the first to the current time point.
+	 */
+	public double getIntegral(int pathIndex) {
+		
+		if( remainingIntervalsWeights != null ) {
+			// The integral of the remaining intervals is the last summand of the Kahan summation.
+			return integral[pathIndex] + ( getWeightedSumOfRecentFunctionValues(pathIndex, remainingIntervalsWeights) - negativLostDigitsStorage[pathIndex] );
+		}
+		
+		return integral[pathIndex];
+		
+	}
+	
+	
+	/**
+	 * @return The approximation of the integrals from the first to the current time point. The filtration time is the current time point.
+	 */
+	public RandomVariableInterface getIntegral() {
+		
+		if( remainingIntervalsWeights != null ) {
+			double[] integralWithRemainingIntervals = new double[numberOfPaths];
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				integralWithRemainingIntervals[pathIndex] = getIntegral(pathIndex);
+			}
+			return new RandomVariable(time, integralWithRemainingIntervals);
+		}
+		
+		return new RandomVariable(numberOfTimePoints > 0 ? time : 0.0, integral.clone());
+		
+	}
+	
+	
+	/**
+	 * @return The sum of the weights times the function values of the path at the last time points, the last weight belonging to the current time point.
+	 */
+	private double getWeightedSumOfRecentFunctionValues(int pathIndex, double[] weights) {
+		
+		int numberOfRecentTimePoints = numberOfIntervalsPerPanel + 1;
+		int firstTimePointIndex = numberOfTimePoints - weights.length;
+		
+		double weightedSum = weights[0] * recentFunctionValues[ firstTimePointIndex % numberOfRecentTimePoints ][pathIndex];
+		for(int nodeIndex = 1; nodeIndex < weights.length; nodeIndex++) {
+			weightedSum += weights[nodeIndex] * recentFunctionValues[ ( firstTimePointIndex + nodeIndex ) % numberOfRecentTimePoints ][pathIndex];
+		}
+		
+		return weightedSum;
+		
+	}
+	
+	
+	/**
+	 * @return The number of paths, i.e. the number of integrals.
+	 */
+	public int getNumberOfPaths() {
+		return numberOfPaths;
+	}
+	
+	
+	/**
+	 * @return The number of time points added so far.
+	 */
+	public int getNumberOfTimePoints() {
+		return numberOfTimePoints;
+	}
+	
+}
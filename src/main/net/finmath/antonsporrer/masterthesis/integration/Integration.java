@@ -30,9 +30,17 @@ public class Integration {
 	 * Trapezoidal means on each interval the function is assumed to have 
 	 * the following constant value. The average of the function values at 
 	 * the two interval bounds.
+	 * Simpson means on each pair of consecutive intervals the function is approximated 
+	 * by the quadratic polynomial interpolating the three function values. 
+	 * GaussLobatto means on each triple of consecutive intervals the function is approximated 
+	 * by the cubic polynomial interpolating the four function values. On the time discretization 
+	 * of {@link Integration#getGaussLobattoTimeDiscretization(double[])} this is the four point Gauss-Lobatto rule, 
+	 * which is exact for polynomials of degree five. 
+	 * For Simpson and GaussLobatto the weights are calculated from the time points, i.e. the time discretization 
+	 * does not have to be uniform. Remaining intervals at the end are integrated by the polynomial interpolating the last function values.
 	 *
 	 */
-	public enum IntegrationMethod {LeftPoints, RightPoints, Trapezoidal }
+	public enum IntegrationMethod {LeftPoints, RightPoints, Trapezoidal, Simpson, GaussLobatto }
 	
 	
 	/**
@@ -75,29 +83,23 @@ public class Integration {
 		
 		
 		////
-		// Allocating the array holding the function approximation. 
-		// This is done according to the IntegrationMethod Enum. 
+		// Determining the summands according to the IntegrationMethod Enum. 
+		// Each summand is created in the summation loop, i.e. only one summand is held at a time.
 		////
 		
-		RandomVariableInterface[] functionApproximations = new RandomVariableInterface[numberOfDiscretizationPoints - 1];		
+		int numberOfSummands;
+		int[] firstNodeIndices = null;
+		double[][] weights = null;
 		
-		switch( integrationMethod ) {
-		case LeftPoints: 
-			for(int index = 0; index < numberOfDiscretizationPoints - 1; index++) {
-				functionApproximations[index] = functionValues[index];
-			}
-			break;
-		case RightPoints:
-			for(int index = 0; index < numberOfDiscretizationPoints - 1; index++) {
-				functionApproximations[index] = functionValues[index + 1];
-			}
-			break;
-		case Trapezoidal:
-			// TODO: Trapezoidal formula could be used here.
-			for(int index = 0; index < numberOfDiscretizationPoints - 1; index++) {
-				functionApproximations[index] = ( functionValues[index].add( functionValues[index + 1] ) ).mult(0.5);
-			}
-			break;
+		int numberOfIntervalsPerPanel = InterpolatoryQuadrature.getNumberOfIntervalsPerPanel(integrationMethod);
+		if( numberOfIntervalsPerPanel > 0 ) {
+			// The summands are the integrals of the panels and of the remaining intervals.
+			firstNodeIndices = getFirstNodeIndicesOfPanels(numberOfDiscretizationPoints, numberOfIntervalsPerPanel);
+			weights = getWeightsOfPanels(timeDiscretization.getAsDoubleArray(), numberOfIntervalsPerPanel);
+			numberOfSummands = weights.length;
+		}
+		else {
+			numberOfSummands = numberOfDiscretizationPoints - 1;
 		}
 		
 		
@@ -110,11 +112,31 @@ public class Integration {
 		RandomVariableInterface negativErrorContainer = new RandomVariable(0.0);
 		RandomVariableInterface summand = new RandomVariable(0.0);
 		
-		for(int summationIndex = 0; summationIndex < functionApproximations.length; summationIndex++ ) {
+		for(int summationIndex = 0; summationIndex < numberOfSummands; summationIndex++ ) {
+			
+			RandomVariableInterface nextSummand;
+			if( weights != null ) {
+				nextSummand = functionValues[ firstNodeIndices[summationIndex] ].mult( weights[summationIndex][0] );
+				for(int nodeIndex = 1; nodeIndex < weights[summationIndex].length; nodeIndex++) {
+					nextSummand = nextSummand.addProduct( functionValues[ firstNodeIndices[summationIndex] + nodeIndex ], weights[summationIndex][nodeIndex] );
+				}
+			}
+			else {
+				double intervalLength = timeDiscretization.getTime(summationIndex + 1) - timeDiscretization.getTime( summationIndex );
+				switch( integrationMethod ) {
+				case LeftPoints: 
+					nextSummand = functionValues[summationIndex].mult( intervalLength );
+					break;
+				case RightPoints:
+					nextSummand = functionValues[summationIndex + 1].mult( intervalLength );
+					break;
+				default:
+					nextSummand = ( functionValues[summationIndex].add( functionValues[summationIndex + 1] ) ).mult(0.5).mult( intervalLength );
+					break;
+				}
+			}
 			
-			summand = functionApproximations[summationIndex]
-					.mult( ( timeDiscretization.getTime(summationIndex + 1) - timeDiscretization.getTime( summationIndex ) ) )
-					.addProduct( negativErrorContainer, -1.0);
+			summand = nextSummand.addProduct( negativErrorContainer, -1.0);
 			auxiliaryNextIntegral = auxiliaryNextIntegral.add( summand );
 			negativErrorContainer = auxiliaryNextIntegral
 					.addProduct( integral, -1.0 ).addProduct( summand, -1.0 );
@@ -146,24 +168,51 @@ public class Integration {
 		// This is done according to the IntegrationMethod Enum. 
 		////
 		
-		double[] functionApproximations = new double[numberOfDiscretizationPoints - 1];		
+		double[] summands;
 		
-		switch( integrationMethod ) {
-		case LeftPoints: 
-			for(int index = 0; index < numberOfDiscretizationPoints - 1; index++) {
-			functionApproximations[index] = functionValues[index];
+		int numberOfIntervalsPerPanel = InterpolatoryQuadrature.getNumberOfIntervalsPerPanel(integrationMethod);
+		if( numberOfIntervalsPerPanel > 0 ) {
+			
+			// The summands are the integrals of the panels and of the remaining intervals.
+			int[] firstNodeIndices = getFirstNodeIndicesOfPanels(numberOfDiscretizationPoints, numberOfIntervalsPerPanel);
+			double[][] weights = getWeightsOfPanels(timeDiscretization.getAsDoubleArray(), numberOfIntervalsPerPanel);
+			
+			summands = new double[weights.length];
+			for(int panelIndex = 0; panelIndex < weights.length; panelIndex++) {
+				summands[panelIndex] = weights[panelIndex][0] * functionValues[ firstNodeIndices[panelIndex] ];
+				for(int nodeIndex = 1; nodeIndex < weights[panelIndex].length; nodeIndex++) {
+					summands[panelIndex] += weights[panelIndex][nodeIndex] * functionValues[ firstNodeIndices[panelIndex] + nodeIndex ];
+				}
 			}
-			break;
-		case RightPoints:
-			for(int index = 0; index < numberOfDiscretizationPoints - 1; index++) {
-				functionApproximations[index] = functionValues[index + 1];
+			
+		}
+		else {
+			
+			double[] functionApproximations = new double[numberOfDiscretizationPoints - 1];		
+			
+			switch( integrationMethod ) {
+			case LeftPoints: 
+				for(int index = 0; index < numberOfDiscretizationPoints - 1; index++) {
+				functionApproximations[index] = functionValues[index];
+				}
+				break;
+			case RightPoints:
+				for(int index = 0; index < numberOfDiscretizationPoints - 1; index++) {
+					functionApproximations[index] = functionValues[index + 1];
+				}
+				break;
+			default:
+				for(int index = 0; index < numberOfDiscretizationPoints - 1; index++) {
+					functionApproximations[index] = 0.5 * ( functionValues[index] + functionValues[index + 1] );
+				}
+				break;
 			}
-			break;
-		case Trapezoidal:
-			for(int index = 0; index < numberOfDiscretizationPoints - 1; index++) {
-				functionApproximations[index] = 0.5 * ( functionValues[index] + functionValues[index + 1] );
+			
+			summands = new double[functionApproximations.length];
+			for(int index = 0; index < functionApproximations.length; index++) {
+				summands[index] = functionApproximations[index] * ( timeDiscretization.getTime(index + 1) - timeDiscretization.getTime( index ) );
 			}
-			break;
+			
 		}
 		
 		
@@ -176,10 +225,9 @@ public class Integration {
 		double negativErrorContainer = 0.0;
 		double summand = 0.0;
 		
-		for(int summationIndex = 0; summationIndex < functionApproximations.length; summationIndex++ ) {
+		for(int summationIndex = 0; summationIndex < summands.length; summationIndex++ ) {
 			
-			summand = functionApproximations[summationIndex] * ( timeDiscretization.getTime(summationIndex + 1) - timeDiscretization.getTime( summationIndex ) )
-					- negativErrorContainer;
+			summand = summands[summationIndex] - negativErrorContainer;
 			auxiliaryNextIntegral += summand;
 			negativErrorContainer = (auxiliaryNextIntegral - integral) - summand;
 			integral += summand;
@@ -190,4 +238,207 @@ public class Integration {
 		
 	}
 	
+	
+	/**
+	 * This function gets a time discretization and corresponding function values 
+	 * [ E.g.  (t_0, t_1, ... , t_n), ( f(t_0), f(t_1), ... , f(t_n) ) ] and a integration 
+	 * approximation method of choice. The approximations of the integrals from t_0 to each time point t_i 
+	 * are calculated in one pass over the time points by an {@link IncrementalIntegrator}, i.e. the integral of each path is accumulated 
+	 * by Kahan summation and each result is created once from the accumulated sums. 
+	 * The approximation at index i is the same as the one of the getIntegral method applied to the time points t_0, ... , t_i.
+	 * <br> E.g. the exponential of the integrated intensity is the exponential of the cumulative integral of the intensity, 
+	 * i.e. the integral is accumulated in log space and the exponential is applied once per time point.
+	 * 
+	 * @param functionValues The discrete function values corresponding to the time discretization [ e.g. ( f(t_0), f(t_1), ... , f(t_n) ) ].
+	 * @param timeDiscretization Holding the time discretization points (t_0, t_1, ... , t_n).
+	 * @param integrationMethod The integration method used to approximate the integral (e.g. Trapezoidal, ... ).
+	 * @return At index i the approximation of the integral from t_0 to t_i. The filtration time is t_i. The results are deterministic if all function values are deterministic.
+	 */
+	public static RandomVariableInterface[] getCumulativeIntegral(RandomVariableInterface[] functionValues, TimeDiscretizationInterface timeDiscretization, IntegrationMethod integrationMethod) {
+		
+		if(functionValues.length != timeDiscretization.getNumberOfTimes()) {
+			throw new IllegalArgumentException("The number of function values has to be equal to the number of time discretization points");
+		}
+		
+		// The number of paths is the one of the stochastic function values.
+		int numberOfPaths = 0;
+		for(RandomVariableInterface functionValue : functionValues) {
+			if( ! functionValue.isDeterministic() ) {
+				numberOfPaths = Math.max( numberOfPaths, functionValue.size() );
+			}
+		}
+		
+		IncrementalIntegrator integrator = new IncrementalIntegrator(integrationMethod, Math.max( numberOfPaths, 1 ));
+		RandomVariableInterface[] cumulativeIntegral = new RandomVariableInterface[functionValues.length];
+		
+		for(int timeIndex = 0; timeIndex < functionValues.length; timeIndex++) {
+			
+			integrator.addTimePoint( timeDiscretization.getTime(timeIndex) );
+			integrator.addFunctionValues( functionValues[timeIndex] );
+			
+			cumulativeIntegral[timeIndex] = numberOfPaths > 0 ? integrator.getIntegral() : new RandomVariable( timeDiscretization.getTime(timeIndex), integrator.getIntegral(0) );
+			
+		}
+		
+		return cumulativeIntegral;
+		
+	}
+	
+	
+	/**
+	 * Analogous to the getCumulativeIntegral method with different signature.
+	 */
+	public static double[] getCumulativeIntegral(double[] functionValues, TimeDiscretizationInterface timeDiscretization, IntegrationMethod integrationMethod) {
+		
+		if(functionValues.length != timeDiscretization.getNumberOfTimes()) {
+			throw new IllegalArgumentException("The number of function values has to be equal to the number of time points");
+		}
+		
+		IncrementalIntegrator integrator = new IncrementalIntegrator(integrationMethod, 1);
+		double[] cumulativeIntegral = new double[functionValues.length];
+		
+		for(int timeIndex = 0; timeIndex < functionValues.length; timeIndex++) {
+			
+			integrator.addTimePoint( timeDiscretization.getTime(timeIndex) );
+			integrator.addFunctionValue( 0, functionValues[timeIndex] );
+			
+			cumulativeIntegral[timeIndex] = integrator.getIntegral(0);
+			
+		}
+		
+		return cumulativeIntegral;
+		
+	}
+	
+	
+	/**
+	 * Estimates the error of the approximation of the integral by the distance to the approximation of the next more accurate integration method. 
+	 * The next more accurate integration method of LeftPoints and RightPoints is Trapezoidal, the one of Trapezoidal is Simpson and the one of Simpson is GaussLobatto. 
+	 * For GaussLobatto the distance to Simpson is returned, which overestimates the error.
+	 * <br> E.g. if the estimate of the chosen integration method is too large, the time discretization has to be refined.
+	 * 
+	 * @param functionValues The discrete function values corresponding to the time discretization [ e.g. ( f(t_0), f(t_1), ... , f(t_n) ) ].
+	 * @param timeDiscretization Holding the time discretization points (t_0, t_1, ... , t_n).
+	 * @param integrationMethod The integration method used to approximate the integral (e.g. Trapezoidal, ... ).
+	 * @return The estimate of the absolute error of the approximation of the integral of each path.
+	 */
+	public static RandomVariableInterface getIntegralErrorEstimate(RandomVariableInterface[] functionValues, TimeDiscretizationInterface timeDiscretization, IntegrationMethod integrationMethod) {
+		
+		return getIntegral(functionValues, timeDiscretization, integrationMethod)
+				.sub( getIntegral(functionValues, timeDiscretization, getReferenceIntegrationMethod(integrationMethod)) ).abs();
+		
+	}
+	
+	
+	/**
+	 * Analogous to the getIntegralErrorEstimate method with different signature.
+	 */
+	public static double getIntegralErrorEstimate(double[] functionValues, TimeDiscretizationInterface timeDiscretization, IntegrationMethod integrationMethod) {
+		
+		return Math.abs( getIntegral(functionValues, timeDiscretization, integrationMethod) 
+				- getIntegral(functionValues, timeDiscretization, getReferenceIntegrationMethod(integrationMethod)) );
+		
+	}
+	
+	
+	/**
+	 * This function provides a time discretization on which the integration method GaussLobatto is the four point Gauss-Lobatto rule. 
+	 * Each panel [ b_i, b_{i+1} ] is discretized by its bounds and the two interior Gauss-Lobatto points 
+	 * b_i + ( 1 -/+ 1 / sqrt(5) ) / 2 * ( b_{i+1} - b_i ). The bounds are time points, hence e.g. exposure dates can be used as bounds. 
+	 * 
+	 * @param panelBounds The increasing bounds of the panels [ e.g. (b_0, b_1, ... , b_m) ].
+	 * @return The time discretization consisting of 3 * m + 1 time points.
+	 */
+	public static TimeDiscretizationInterface getGaussLobattoTimeDiscretization(double[] panelBounds) {
+		
+		if(panelBounds.length < 2) {
+			throw new IllegalArgumentException("At least two panel bounds are required.");
+		}
+		
+		double[] times = new double[ 3 * ( panelBounds.length - 1 ) + 1 ];
+		for(int panelIndex = 0; panelIndex < panelBounds.length - 1; panelIndex++) {
+			
+			double panelLength = panelBounds[panelIndex + 1] - panelBounds[panelIndex];
+			if( !( panelLength > 0.0 ) ) {
+				throw new IllegalArgumentException("The panel bounds have to be increasing.");
+			}
+			
+			times[3 * panelIndex] = panelBounds[panelIndex];
+			times[3 * panelIndex + 1] = panelBounds[panelIndex] + InterpolatoryQuadrature.LOWER_GAUSS_LOBATTO_NODE * panelLength;
+			times[3 * panelIndex + 2] = panelBounds[panelIndex] + InterpolatoryQuadrature.UPPER_GAUSS_LOBATTO_NODE * panelLength;
+			
+		}
+		times[times.length - 1] = panelBounds[panelBounds.length - 1];
+		
+		return new TimeDiscretization(times);
+		
+	}
+	
+	
+	/**
+	 * @return The integration method whose approximation is used as reference for the error estimate of the integration method.
+	 */
+	private static IntegrationMethod getReferenceIntegrationMethod(IntegrationMethod integrationMethod) {
+		
+		switch( integrationMethod ) {
+		case LeftPoints:
+		case RightPoints:
+			return IntegrationMethod.Trapezoidal;
+		case Trapezoidal:
+			return IntegrationMethod.Simpson;
+		case Simpson:
+			return IntegrationMethod.GaussLobatto;
+		default:
+			return IntegrationMethod.Simpson;
+		}
+		
+	}
+	
+	
+	/**
+	 * @return The index of the first time point of the interpolation of each panel, the last one is the one of the remaining intervals (if any).
+	 */
+	private static int[] getFirstNodeIndicesOfPanels(int numberOfDiscretizationPoints, int numberOfIntervalsPerPanel) {
+		
+		int numberOfIntervals = Math.max( numberOfDiscretizationPoints - 1, 0 );
+		int numberOfCompletePanels = numberOfIntervals / numberOfIntervalsPerPanel;
+		int numberOfRemainingIntervals = numberOfIntervals % numberOfIntervalsPerPanel;
+		
+		int[] firstNodeIndices = new int[ numberOfCompletePanels + ( numberOfRemainingIntervals > 0 ? 1 : 0 ) ];
+		for(int panelIndex = 0; panelIndex < numberOfCompletePanels; panelIndex++) {
+			firstNodeIndices[panelIndex] = panelIndex * numberOfIntervalsPerPanel;
+		}
+		if( numberOfRemainingIntervals > 0 ) {
+			firstNodeIndices[numberOfCompletePanels] = numberOfIntervals - Math.min( numberOfIntervalsPerPanel, numberOfIntervals );
+		}
+		
+		return firstNodeIndices;
+		
+	}
+	
+	
+	/**
+	 * @return The weights of each panel, the last one are the ones of the remaining intervals (if any), see {@link InterpolatoryQuadrature}.
+	 */
+	private static double[][] getWeightsOfPanels(double[] times, int numberOfIntervalsPerPanel) {
+		
+		int numberOfIntervals = Math.max( times.length - 1, 0 );
+		int numberOfCompletePanels = numberOfIntervals / numberOfIntervalsPerPanel;
+		int numberOfRemainingIntervals = numberOfIntervals % numberOfIntervalsPerPanel;
+		
+		double[][] weights = new double[ numberOfCompletePanels + ( numberOfRemainingIntervals > 0 ? 1 : 0 ) ][];
+		for(int panelIndex = 0; panelIndex < numberOfCompletePanels; panelIndex++) {
+			int firstNodeIndex = panelIndex * numberOfIntervalsPerPanel;
+			weights[panelIndex] = InterpolatoryQuadrature.getWeights(times, firstNodeIndex, numberOfIntervalsPerPanel + 1, times[firstNodeIndex], times[firstNodeIndex + numberOfIntervalsPerPanel]);
+		}
+		if( numberOfRemainingIntervals > 0 ) {
+			int numberOfNodes = Math.min( numberOfIntervalsPerPanel, numberOfIntervals ) + 1;
+			weights[numberOfCompletePanels] = InterpolatoryQuadrature.getWeights(times, numberOfIntervals + 1 - numberOfNodes, numberOfNodes, 
+					times[numberOfIntervals - numberOfRemainingIntervals], times[numberOfIntervals]);
+		}
+		
+		return weights;
+		
+	}
+	
 }
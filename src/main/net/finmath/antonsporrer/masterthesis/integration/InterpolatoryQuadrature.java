@@ -0,0 +1,111 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.integration;
+
+import java.util.Arrays;
+
+import main.net.finmath.antonsporrer.masterthesis.integration.Integration.IntegrationMethod;
+
+/**
+ * The weights of the interpolatory integration methods of {@link Integration}, i.e. Simpson and GaussLobatto.
+ * <br> The time points are split into panels of {@link #getNumberOfIntervalsPerPanel(IntegrationMethod)} consecutive intervals starting at the first time point.
+ * On each panel the function is approximated by the polynomial interpolating the function values at the time points of the panel.
+ * If the number of intervals is not a multiple of the panel size, the remaining intervals at the end are integrated by the polynomial
+ * interpolating the function values at the last time points (as many as a panel has, if available).
+ * The weights depend only on the time points, hence they are valid for non-uniform time discretizations.
+ *
+ * @author Anton Sporrer
+ *
+ */
+final class InterpolatoryQuadrature {
+
+	// The interior nodes of the four point Gauss-Lobatto rule on [0,1].
+	static final double LOWER_GAUSS_LOBATTO_NODE = 0.5 * ( 1.0 - 1.0 / Math.sqrt(5.0) );
+	static final double UPPER_GAUSS_LOBATTO_NODE = 0.5 * ( 1.0 + 1.0 / Math.sqrt(5.0) );
+
+
+	private InterpolatoryQuadrature() {
+	}
+
+
+	/**
+	 * @param integrationMethod The integration method.
+	 * @return The number of intervals of a panel of the interpolatory integration method, zero if it is not an interpolatory integration method.
+	 */
+	static int getNumberOfIntervalsPerPanel(IntegrationMethod integrationMethod) {
+
+		switch( integrationMethod ) {
+		case Simpson:
+			return 2;
+		case GaussLobatto:
+			return 3;
+		default:
+			return 0;
+		}
+
+	}
+
+
+	/**
+	 * @param nodes The increasing time points.
+	 * @param firstNodeIndex The index of the first time point of the interpolation.
+	 * @param numberOfNodes The number of time points of the interpolation.
+	 * @param lowerBound The lower bound of the integral.
+	 * @param upperBound The upper bound of the integral.
+	 * @return The weights w_0, ... , w_{numberOfNodes - 1} such that w_0 * f(x_0) + ... + w_{numberOfNodes - 1} * f(x_{numberOfNodes - 1}) is the integral from the lower to the upper bound
+	 * of the polynomial interpolating f at the time points x_k = nodes[firstNodeIndex + k].
+	 */
+	static double[] getWeights(double[] nodes, int firstNodeIndex, int numberOfNodes, double lowerBound, double upperBound) {
+
+		// The time points and the bounds are shifted by the first time point to reduce the cancellation.
+		double origin = nodes[firstNodeIndex];
+		double shiftedLowerBound = lowerBound - origin;
+		double shiftedUpperBound = upperBound - origin;
+
+		double[] weights = new double[numberOfNodes];
+		double[] coefficients = new double[numberOfNodes];
+
+		for(int nodeIndex = 0; nodeIndex < numberOfNodes; nodeIndex++) {
+
+			double node = nodes[firstNodeIndex + nodeIndex] - origin;
+
+			// The coefficients of the product of ( x - x_j ) over j != nodeIndex and its value at x_nodeIndex.
+			Arrays.fill(coefficients, 0.0);
+			coefficients[0] = 1.0;
+			int degree = 0;
+			double denominator = 1.0;
+
+			for(int otherNodeIndex = 0; otherNodeIndex < numberOfNodes; otherNodeIndex++) {
+				if(otherNodeIndex == nodeIndex) {
+					continue;
+				}
+				double otherNode = nodes[firstNodeIndex + otherNodeIndex] - origin;
+				degree++;
+				for(int coefficientIndex = degree; coefficientIndex > 0; coefficientIndex--) {
+					coefficients[coefficientIndex] = coefficients[coefficientIndex - 1] - otherNode * coefficients[coefficientIndex];
+				}
+				coefficients[0] = - otherNode * coefficients[0];
+				denominator *= node - otherNode;
+			}
+
+			// The integral of the Lagrange polynomial of the time point.
+			double integral = 0.0;
+			double upperPower = shiftedUpperBound;
+			double lowerPower = shiftedLowerBound;
+			for(int coefficientIndex = 0; coefficientIndex <= degree; coefficientIndex++) {
+				integral += coefficients[coefficientIndex] * ( upperPower - lowerPower ) / ( coefficientIndex + 1 );
+				upperPower *= shiftedUpperBound;
+				lowerPower *= shiftedLowerBound;
+			}
+
+			weights[nodeIndex] = integral / denominator;
+
+		}
+
+		return weights;
+
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva;
+
+/**
+ * The result of the constrained worst case CVA calculated on quantized paths, see
+ * {@link ConstrainedWorstCaseCVA#getApproximateWorstCaseCVANotToFarFromIndependence(double, net.finmath.stochastic.RandomVariableInterface[], int, double[], double, double, double)}.
+ * Besides the approximate CVA it stores an a-posteriori lower and upper bound of the constrained worst case CVA of the original paths.
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class ApproximateWorstCaseCVA {
+
+	private final double cva;
+	private final double lowerBound;
+	private final double upperBound;
+
+	// The maximal absolute deviation of the NPV of a path from the NPV of its quantized row.
+	private final double maximalDeviation;
+
+	private final int numberOfRows;
+	private final int numberOfPaths;
+
+
+	/**
+	 * @param cva The constrained worst case CVA of the quantized paths.
+	 * @param lowerBound A lower bound of the constrained worst case CVA of the original paths.
+	 * @param upperBound An upper bound of the constrained worst case CVA of the original paths.
+	 * @param maximalDeviation The maximal absolute deviation of the NPV of a path from the NPV of its quantized row.
+	 * @param numberOfRows The number of rows of the IPFP after the quantization.
+	 * @param numberOfPaths The number of original paths.
+	 */
+	public ApproximateWorstCaseCVA(double cva, double lowerBound, double upperBound, double maximalDeviation, int numberOfRows, int numberOfPaths) {
+		this.cva = cva;
+		this.lowerBound = lowerBound;
+		this.upperBound = upperBound;
+		this.maximalDeviation = maximalDeviation;
+		this.numberOfRows = numberOfRows;
+		this.numberOfPaths = numberOfPaths;
+	}
+
+
+	/**
+	 * @param lossGivenDefault The loss given default.
+	 * @return The result with the CVA and its bounds multiplied by the loss given default.
+	 */
+	public ApproximateWorstCaseCVA getScaled(double lossGivenDefault) {
+		return new ApproximateWorstCaseCVA(lossGivenDefault * cva, lossGivenDefault * lowerBound, lossGivenDefault * upperBound, maximalDeviation, numberOfRows, numberOfPaths);
+	}
+
+	/**
+	 * @return The constrained worst case CVA of the quantized paths.
+	 */
+	public double getCVA() {
+		return cva;
+	}
+
+	/**
+	 * @return A lower bound of the constrained worst case CVA of the original paths.
+	 */
+	public double getLowerBound() {
+		return lowerBound;
+	}
+
+	/**
+	 * @return An upper bound of the constrained worst case CVA of the original paths.
+	 */
+	public double getUpperBound() {
+		return upperBound;
+	}
+
+	/**
+	 * @return An upper bound of the absolute error of {@link #getCVA()}, i.e. the maximal distance to the bounds.
+	 */
+	public double getErrorBound() {
+		return Math.max( upperBound - cva, cva - lowerBound );
+	}
+
+	/**
+	 * @return The maximal absolute deviation of the NPV of a path from the NPV of its quantized row.
+	 */
+	public double getMaximalDeviation() {
+		return maximalDeviation;
+	}
+
+	/**
+	 * @return The number of rows of the IPFP after the quantization.
+	 */
+	public int getNumberOfRows() {
+		return numberOfRows;
+	}
+
+	/**
+	 * @return The number of original paths.
+	 */
+	public int getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+}
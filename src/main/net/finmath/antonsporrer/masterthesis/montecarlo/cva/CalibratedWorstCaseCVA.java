@@ -0,0 +1,97 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva;
+
+/**
+ * The result of the constrained worst case CVA whose penalty factor is calibrated to a relative entropy budget, see
+ * {@link ConstrainedWorstCaseCVA#getCalibratedWorstCaseCVANotToFarFromIndependence(double, net.finmath.stochastic.RandomVariableInterface[], int, double[], double, double, double)}.
+ * Besides the CVA it stores the calibrated penalty factor and the relative entropy KL( P | F ) of the worst case distribution P
+ * with respect to the independent distribution F which has been achieved.
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class CalibratedWorstCaseCVA {
+
+	private final double cva;
+	private final double penaltyFactor;
+
+	private final double relativeEntropy;
+	private final double relativeEntropyBudget;
+
+	// The number of solves of the IPFP and the total number of iterations of the IPFP of the calibration.
+	private final int numberOfSolves;
+	private final int numberOfIterations;
+
+
+	/**
+	 * @param cva The constrained worst case CVA for the calibrated penalty factor.
+	 * @param penaltyFactor The calibrated penalty factor.
+	 * @param relativeEntropy The relative entropy of the worst case distribution with respect to the independent distribution.
+	 * @param relativeEntropyBudget The target of the relative entropy.
+	 * @param numberOfSolves The number of solves of the IPFP of the calibration.
+	 * @param numberOfIterations The total number of iterations of the IPFP of the calibration.
+	 */
+	public CalibratedWorstCaseCVA(double cva, double penaltyFactor, double relativeEntropy, double relativeEntropyBudget, int numberOfSolves, int numberOfIterations) {
+		this.cva = cva;
+		this.penaltyFactor = penaltyFactor;
+		this.relativeEntropy = relativeEntropy;
+		this.relativeEntropyBudget = relativeEntropyBudget;
+		this.numberOfSolves = numberOfSolves;
+		this.numberOfIterations = numberOfIterations;
+	}
+
+
+	/**
+	 * @param lossGivenDefault The loss given default.
+	 * @return The result with the CVA multiplied by the loss given default.
+	 */
+	public CalibratedWorstCaseCVA getScaled(double lossGivenDefault) {
+		return new CalibratedWorstCaseCVA(lossGivenDefault * cva, penaltyFactor, relativeEntropy, relativeEntropyBudget, numberOfSolves, numberOfIterations);
+	}
+
+	/**
+	 * @return The constrained worst case CVA for the calibrated penalty factor.
+	 */
+	public double getCVA() {
+		return cva;
+	}
+
+	/**
+	 * @return The calibrated penalty factor.
+	 */
+	public double getPenaltyFactor() {
+		return penaltyFactor;
+	}
+
+	/**
+	 * @return The relative entropy KL( P | F ) of the worst case distribution P with respect to the independent distribution F.
+	 */
+	public double getRelativeEntropy() {
+		return relativeEntropy;
+	}
+
+	/**
+	 * @return The target of the relative entropy.
+	 */
+	public double getRelativeEntropyBudget() {
+		return relativeEntropyBudget;
+	}
+
+	/**
+	 * @return The number of solves of the IPFP of the calibration.
+	 */
+	public int getNumberOfSolves() {
+		return numberOfSolves;
+	}
+
+	/**
+	 * @return The total number of iterations of the IPFP of the calibration.
+	 */
+	public int getNumberOfIterations() {
+		return numberOfIterations;
+	}
+
+}
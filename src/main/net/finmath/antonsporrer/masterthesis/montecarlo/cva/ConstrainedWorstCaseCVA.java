@@ -4,19 +4,29 @@
 
 package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import main.net.finmath.antonsporrer.masterthesis.montecarlo.ProductConditionalFairValue_ModelInterface;
 import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.NPVAndDefaultsimulation.NPVAndDefaultSimulationInterface;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.BoundingScalingVectorIPFP;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.DistributedScalingVectorIPFP;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.FullMatrixIPFP;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.IPFPWorker;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.ScalingVectorIPFP;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.WeightedPaths;
 import net.finmath.exception.CalculationException;
-import net.finmath.optimizer.SolverException;
 import net.finmath.stochastic.RandomVariableInterface;
 
 /**
@@ -31,11 +41,73 @@ import net.finmath.stochastic.RandomVariableInterface;
  */
 public class ConstrainedWorstCaseCVA extends AbstractCVA {
 
+	/**
+	 * The names refer to the storage used by the IPFP. 
+	 * FullMatrix means the whole matrix of the IPFP (number of paths times number of default intervals) is stored and rewritten in each iteration.
+	 * ScalingVectors means only a row scaling vector and a column scaling vector are stored and the matrix entries 
+	 * are recomputed from the discounted and floored NPV whenever they are needed, see {@link ScalingVectorIPFP}.
+	 * Distributed means the rows of the scaling vector form are distributed on the workers set by {@link ConstrainedWorstCaseCVA#setWorkerAddresses(List)}, 
+	 * see {@link DistributedScalingVectorIPFP}.
+	 *
+	 */
+	public enum IPFPMode { FullMatrix, ScalingVectors, Distributed }
+	
 	// The error bounds used in the calculation of the constrained worst case CVA.
 	double terminationCriterionRows;
 	double terminationCriterionColumns;
 	double terminationCriterionColumnsAbsolut; 
 	
+	// The storage used by the IPFP.
+	private IPFPMode ipfpMode = IPFPMode.FullMatrix;
+	
+	// The maximal number of iterations of the IPFP.
+	private int maximalNumberOfIterations = 100;
+	
+	// If true the IPFP is over-relaxed with an adaptive relaxation parameter.
+	private boolean accelerated = false;
+	
+	// If true the matrix of the IPFP mode FullMatrix is stored in single precision.
+	private boolean singlePrecision = false;
+	
+	// If not null the matrix of the IPFP mode FullMatrix is stored in a memory mapped file in this directory if it does not fit into the heap.
+	private File outOfCoreDirectory = null;
+	
+	// If true identical paths are merged into one weighted row before the IPFP is performed.
+	private boolean deduplicatingPaths = false;
+	
+	// If positive the paths are quantized with this step before the IPFP is performed.
+	private double pathQuantizationStep = 0.0;
+	
+	// If true the worst case distribution is stored in the profile of the constrained worst case CVA.
+	private boolean exportingJointDistribution = false;
+	
+	// The addresses of the workers of the distributed IPFP.
+	private List<InetSocketAddress> workerAddresses = new ArrayList<InetSocketAddress>();
+	
+	// The minimal number of matrix entries treated by one task. Smaller tasks do not pay off the scheduling overhead.
+	private static final int MINIMAL_NUMBER_OF_ENTRIES_PER_TASK = 1 << 15;
+	// The number of tasks per thread of the executor. Having more tasks than threads balances the load.
+	private static final int NUMBER_OF_TASKS_PER_THREAD = 4;
+	
+	// The relative accuracy of the relative entropy of the calibration of the penalty factor and the maximal numbers of its bracketing and root finding steps.
+	private static final double RELATIVE_ENTROPY_ACCURACY = 1.0E-6;
+	private static final int MAXIMAL_NUMBER_OF_BRACKETING_STEPS = 64;
+	private static final int MAXIMAL_NUMBER_OF_CALIBRATION_STEPS = 100;
+	
+	// The bound of the maximal exponent |penaltyFactor| * NPV + log(numberOfPaths) up to which the matrix is stored in single precision.
+	// The float numbers range from about exp(-87) to exp(88), the remaining margin accounts for the default probabilities.
+	private static final double MAXIMAL_SINGLE_PRECISION_EXPONENT = 60.0;
+	
+	// The maximal fraction of the free heap the matrix of the IPFP mode FullMatrix may occupy before it is stored out of core.
+	private static final double MAXIMAL_HEAP_FRACTION_OF_MATRIX = 0.5;
+	
+	// The executor shared by all instances which are not given an executor.
+	private static ExecutorService defaultExecutor;
+	
+	// The executor performing the tasks of the IPFP. It is never shut down by this class.
+	private ExecutorService executor;
+	private int parallelism;
+	
 	/**
 	 * The standard values are assumed for the error bounds used in the CVA calculation. 
 	 * 
@@ -44,6 +116,17 @@ public class ConstrainedWorstCaseCVA extends AbstractCVA {
 	public ConstrainedWorstCaseCVA(double lossGivenDefault) {
 		this(lossGivenDefault, 0.0000001, 0.0000001, 0.00000000001);
 	}
+	
+	/**
+	 * The standard values are assumed for the error bounds used in the CVA calculation. 
+	 * 
+	 * @param lossGivenDefault The loss given default.
+	 * @param ipfpMode The storage used by the IPFP.
+	 */
+	public ConstrainedWorstCaseCVA(double lossGivenDefault, IPFPMode ipfpMode) {
+		this(lossGivenDefault);
+		this.ipfpMode = ipfpMode;
+	}
 
 	/**
 	 * @param lossGivenDefault
@@ -56,6 +139,269 @@ public class ConstrainedWorstCaseCVA extends AbstractCVA {
 		this.terminationCriterionRows = terminationCriterionRows;
 		this.terminationCriterionColumns = terminationCriterionColumns;
 		this.terminationCriterionColumnsAbsolut = terminationCriterionColumnsAbsolut;
+		this.setExecutor( getDefaultExecutor() );
+	}
+	
+	/**
+	 * @param lossGivenDefault
+	 * @param terminationCriterionRows The error bound for the relative distance of the path probability and the sum of each row.
+	 * @param terminationCriterionColumns The error bound for the relative distance of the default probability and the sum of each column.
+	 * @param terminationCriterionColumnsAbsolut The error bound for the absolute distance of the default probability and the sum of each column.
+	 * @param ipfpMode The storage used by the IPFP.
+	 */
+	public ConstrainedWorstCaseCVA( double lossGivenDefault, double terminationCriterionRows, double terminationCriterionColumns, double terminationCriterionColumnsAbsolut, IPFPMode ipfpMode ) {
+		this(lossGivenDefault, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+		this.ipfpMode = ipfpMode;
+	}
+	
+	/**
+	 * @param lossGivenDefault
+	 * @param terminationCriterionRows The error bound for the relative distance of the path probability and the sum of each row.
+	 * @param terminationCriterionColumns The error bound for the relative distance of the default probability and the sum of each column.
+	 * @param terminationCriterionColumnsAbsolut The error bound for the absolute distance of the default probability and the sum of each column.
+	 * @param ipfpMode The storage used by the IPFP.
+	 * @param executor The executor performing the tasks of the IPFP, e.g. a {@link java.util.concurrent.ForkJoinPool}. It is not shut down by this class.
+	 */
+	public ConstrainedWorstCaseCVA( double lossGivenDefault, double terminationCriterionRows, double terminationCriterionColumns, double terminationCriterionColumnsAbsolut, IPFPMode ipfpMode, ExecutorService executor ) {
+		this(lossGivenDefault, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, ipfpMode);
+		this.setExecutor(executor);
+	}
+	
+	
+	/**
+	 * The default executor is created once and shared by all instances of this class which are not given an executor. 
+	 * It has one thread per available processor. Its threads are daemon threads, hence it does not need to be shut down.
+	 * 
+	 * @return The shared default executor.
+	 */
+	public static synchronized ExecutorService getDefaultExecutor() {
+		
+		if(defaultExecutor == null) {
+			defaultExecutor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				
+				private final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+				
+				public Thread newThread(Runnable runnable) {
+					Thread thread = threadFactory.newThread(runnable);
+					thread.setDaemon(true);
+					return thread;
+				}
+				
+			});
+		}
+		
+		return defaultExecutor;
+		
+	}
+	
+	
+	/**
+	 * @param executor The executor performing the tasks of the IPFP, e.g. a {@link java.util.concurrent.ForkJoinPool}. It is not shut down by this class.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		
+		if(executor == null) {
+			throw new IllegalArgumentException("The executor is not allowed to be null.");
+		}
+		
+		this.executor = executor;
+		
+		// The number of threads of the executor determines the number of tasks.
+		if( executor instanceof ForkJoinPool ) {
+			this.parallelism = ( (ForkJoinPool) executor ).getParallelism();
+		}
+		else if( executor instanceof ThreadPoolExecutor ) {
+			// The maximum pool size of unbounded pools (e.g. Executors.newCachedThreadPool()) is Integer.MAX_VALUE and their core pool size may be zero.
+			int corePoolSize = ( (ThreadPoolExecutor) executor ).getCorePoolSize();
+			this.parallelism = corePoolSize > 0 && corePoolSize < Integer.MAX_VALUE ? corePoolSize : Runtime.getRuntime().availableProcessors();
+		}
+		else {
+			this.parallelism = Runtime.getRuntime().availableProcessors();
+		}
+		
+	}
+	
+	
+	/**
+	 * @return The executor performing the tasks of the IPFP.
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+	
+	
+	/**
+	 * @return The maximal number of iterations of the IPFP.
+	 */
+	public int getMaximalNumberOfIterations() {
+		return maximalNumberOfIterations;
+	}
+	
+	
+	/**
+	 * @param maximalNumberOfIterations The maximal number of iterations of the IPFP. The default is 100.
+	 */
+	public void setMaximalNumberOfIterations(int maximalNumberOfIterations) {
+		
+		if(maximalNumberOfIterations < 1) {
+			throw new IllegalArgumentException("At least one iteration has to be performed.");
+		}
+		
+		this.maximalNumberOfIterations = maximalNumberOfIterations;
+		
+	}
+	
+	
+	/**
+	 * @return True if the IPFP is over-relaxed with an adaptive relaxation parameter.
+	 */
+	public boolean isAccelerated() {
+		return accelerated;
+	}
+	
+	
+	/**
+	 * If the IPFP is accelerated the over-relaxed IPFP with an adaptive relaxation parameter is used. It reaches the termination criteria
+	 * in considerably less iterations if the plain IPFP converges slowly, e.g. for large penalty factors. If the over-relaxed IPFP stalls
+	 * it falls back to the plain IPFP. See {@link ScalingVectorIPFP}.
+	 * 
+	 * @param accelerated If true the IPFP is over-relaxed with an adaptive relaxation parameter. The default is false.
+	 */
+	public void setAccelerated(boolean accelerated) {
+		this.accelerated = accelerated;
+	}
+	
+	
+	/**
+	 * @return True if the matrix of the IPFP mode {@link IPFPMode#FullMatrix} or the NPV columns of the IPFP mode {@link IPFPMode#ScalingVectors} are stored in single precision.
+	 */
+	public boolean isSinglePrecision() {
+		return singlePrecision;
+	}
+	
+	
+	/**
+	 * If single precision is used the matrix of the IPFP mode {@link IPFPMode#FullMatrix} is stored as float, which halves the memory 
+	 * and the memory traffic of each iteration. The sums and the renormalizing factors are still calculated in double precision, see {@link FullMatrixIPFP}. 
+	 * The CVA differs from the one in double precision by about the termination criteria. 
+	 * If exp( penaltyFactor * NPV ) is not in the range of the float numbers, double precision is used. 
+	 * <br> In the IPFP mode {@link IPFPMode#ScalingVectors} the NPV columns are stored as float and the kernel exp( penaltyFactor * NPV ) 
+	 * is recomputed in double precision in each pass, see {@link ScalingVectorIPFP}. This mode requires the least memory per path at the cost of the exponentials. 
+	 * The float columns are copies, the realizations of the simulation itself are still held in double precision by the simulation. 
+	 * The other calculations of this class are not affected.
+	 * 
+	 * @param singlePrecision If true the matrix of the full matrix IPFP or the NPV columns of the scaling vector IPFP are stored in single precision. The default is false.
+	 */
+	public void setSinglePrecision(boolean singlePrecision) {
+		this.singlePrecision = singlePrecision;
+	}
+	
+	
+	/**
+	 * @return The directory of the memory mapped file of the out of core matrix of the IPFP mode {@link IPFPMode#FullMatrix} or null if the matrix is always stored on the heap.
+	 */
+	public File getOutOfCoreDirectory() {
+		return outOfCoreDirectory;
+	}
+	
+	
+	/**
+	 * If an out of core directory is set the matrix of the IPFP mode {@link IPFPMode#FullMatrix} is stored in a memory mapped temporary file 
+	 * in this directory whenever it would occupy more than half of the free heap. The IPFP then streams the matrix block by block, see {@link FullMatrixIPFP}.
+	 * If the matrix exceeds the physical memory the calculation is limited by the speed of the disk instead of failing with an {@link OutOfMemoryError}. 
+	 * The result is the same as the one of the matrix stored on the heap. If the file cannot be created the calculation fails with an {@link ExecutionException}.
+	 * The file and its mapping are released at the end of each calculation.
+	 * 
+	 * @param outOfCoreDirectory The directory of the temporary files or null if the matrix is always stored on the heap. The default is null.
+	 */
+	public void setOutOfCoreDirectory(File outOfCoreDirectory) {
+		this.outOfCoreDirectory = outOfCoreDirectory;
+	}
+	
+	
+	/**
+	 * @return True if identical paths are merged into one weighted row before the IPFP is performed.
+	 */
+	public boolean isDeduplicatingPaths() {
+		return deduplicatingPaths;
+	}
+	
+	
+	/**
+	 * If the paths are deduplicated the paths with identical discounted and floored NPV at all exposure dates are merged 
+	 * into one row of the IPFP whose path probability is the multiplicity of the row divided by the number of paths, 
+	 * see {@link WeightedPaths#getDeduplicatedPaths(double[][])}. The constrained worst case CVA is the same 
+	 * but e.g. for out of the money products the number of rows of the IPFP may be reduced considerably.
+	 * The deduplication hashes all paths once, which costs about one pass over the NPV columns. Hence it is not done by default,
+	 * since it does not pay off if (almost) all paths are distinct.
+	 * 
+	 * @param deduplicatingPaths If true identical paths are merged before the IPFP is performed. The default is false.
+	 */
+	public void setDeduplicatingPaths(boolean deduplicatingPaths) {
+		this.deduplicatingPaths = deduplicatingPaths;
+	}
+	
+	
+	/**
+	 * @return The quantization step of the paths. Zero if the paths are not quantized.
+	 */
+	public double getPathQuantizationStep() {
+		return pathQuantizationStep;
+	}
+	
+	
+	/**
+	 * If the quantization step is positive the discounted and floored NPV is rounded to the nearest multiple of the step and the paths 
+	 * with identical rounded NPV are merged into one row of the IPFP, see {@link WeightedPaths#getQuantizedPaths(double[][], double)}. 
+	 * The IPFP then runs on the (possibly much smaller) number of merged rows. The resulting constrained worst case CVA is an approximation. 
+	 * An a-posteriori error bound is provided by {@link #getApproximateWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)}.
+	 * 
+	 * @param pathQuantizationStep The quantization step of the paths. Zero switches the quantization off. The default is zero.
+	 */
+	public void setPathQuantizationStep(double pathQuantizationStep) {
+		
+		if( ! ( pathQuantizationStep >= 0.0 ) ) {
+			throw new IllegalArgumentException("The quantization step must not be negative.");
+		}
+		
+		this.pathQuantizationStep = pathQuantizationStep;
+		
+	}
+	
+	
+	/**
+	 * @return True if the worst case distribution is stored in the {@link WorstCaseCVAProfile}.
+	 */
+	public boolean isExportingJointDistribution() {
+		return exportingJointDistribution;
+	}
+	
+	
+	/**
+	 * @param exportingJointDistribution If true the worst case distribution (numberOfRows * (d+1) doubles) is stored in the {@link WorstCaseCVAProfile}
+	 * returned by {@link #getWorstCaseCVAProfileNotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)}. The default is false.
+	 */
+	public void setExportingJointDistribution(boolean exportingJointDistribution) {
+		this.exportingJointDistribution = exportingJointDistribution;
+	}
+	
+	
+	/**
+	 * @return The addresses of the workers of the distributed IPFP.
+	 */
+	public List<InetSocketAddress> getWorkerAddresses() {
+		return workerAddresses;
+	}
+	
+	
+	/**
+	 * The workers are used by {@link #getWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)} 
+	 * in the IPFP mode {@link IPFPMode#Distributed}. The other calculations of this class use the scaling vector form locally in this mode.
+	 * 
+	 * @param workerAddresses The addresses of the running {@link IPFPWorker}. The rows are split equally on the workers.
+	 */
+	public void setWorkerAddresses(List<InetSocketAddress> workerAddresses) {
+		this.workerAddresses = new ArrayList<InetSocketAddress>(workerAddresses);
 	}
 	
 
@@ -79,541 +425,1210 @@ public class ConstrainedWorstCaseCVA extends AbstractCVA {
 	 */
 	public double getConstrainedWorstCaseCVA( NPVAndDefaultSimulationInterface< ? extends ProductConditionalFairValue_ModelInterface> npvAndDefaultSimulation, double penaltyFactor ) throws InterruptedException, ExecutionException, CalculationException {
 		
-		// The number of intervals into which the positive time line is divided. 
-		// Including the interval from the last time discretization point to infinity.
-		int numberOfTimeDiscretizationIntervalls = npvAndDefaultSimulation.getTimeDiscretization().getNumberOfTimeSteps() + 1;
+		// Calling the method actually calculating the constrained worst case CVA (assumed LGD is one) and multiplying the actual LGD.
+		return this.getLGD() * getWorstCaseCVANotToFarFromIndependence( penaltyFactor, getDiscountedFlooredNPV(npvAndDefaultSimulation), npvAndDefaultSimulation.getNumberOfPaths(), getDefaultProbabilities(npvAndDefaultSimulation), terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut );
 		
-		// At array index i this array stores the discounted and floored net present value at discretization time t_{i + 1}.
-		RandomVariableInterface[] discountedFlooredNPV = new RandomVariableInterface[ numberOfTimeDiscretizationIntervalls - 1 ];
+	}
+	
+	
+	/**
+	 * The constrained worst case CVA of {@link #getConstrainedWorstCaseCVA(NPVAndDefaultSimulationInterface, double)} for several penalty factors,
+	 * e.g. to obtain the curve of the constrained worst case CVA as a function of the penalty factor.
+	 * The discounted and floored NPV and the default probabilities are extracted only once and the IPFP of each penalty factor 
+	 * starts from the solution of the previous penalty factor, see {@link #getWorstCaseCVAsNotToFarFromIndependence(double[], RandomVariableInterface[], int, double[], double, double, double)}.
+	 * 
+	 * @param npvAndDefaultSimulation
+	 * @param penaltyFactors The penalty factors. Neighboring penalty factors should be close, e.g. sorted.
+	 * @return At array index k the constraint worst case CVA for the penalty factor penaltyFactors[k].
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws CalculationException
+	 */
+	public double[] getConstrainedWorstCaseCVA( NPVAndDefaultSimulationInterface< ? extends ProductConditionalFairValue_ModelInterface> npvAndDefaultSimulation, double[] penaltyFactors ) throws InterruptedException, ExecutionException, CalculationException {
 		
-		// At array index i this array stores the probability of default occurring in the interval (t_{ i }, t_{ i + 1 }].
-		double[] defaultProbabilities = new double[numberOfTimeDiscretizationIntervalls];
+		double[] constrainedWorstCaseCVAs = getWorstCaseCVAsNotToFarFromIndependence( penaltyFactors, getDiscountedFlooredNPV(npvAndDefaultSimulation), npvAndDefaultSimulation.getNumberOfPaths(), getDefaultProbabilities(npvAndDefaultSimulation), terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut );
 		
+		// Multiplying the actual LGD.
+		for(int penaltyFactorIndex = 0; penaltyFactorIndex < constrainedWorstCaseCVAs.length; penaltyFactorIndex++) {
+			constrainedWorstCaseCVAs[penaltyFactorIndex] *= this.getLGD();
+		}
 		
-		////
-		// Assigning the discounted and floored net present values.
-		////
+		return constrainedWorstCaseCVAs;
 		
-		for( int timeIndex = 0; timeIndex < numberOfTimeDiscretizationIntervalls - 1 ; timeIndex++ ) {
-			discountedFlooredNPV[timeIndex] = npvAndDefaultSimulation.getDiscountedNPV( timeIndex + 1, 0 ).floor(0.0); 
-		}
+	}
+	
+	
+	/**
+	 * The constrained worst case CVA of {@link #getConstrainedWorstCaseCVA(NPVAndDefaultSimulationInterface, double)} calculated on quantized paths
+	 * together with an a-posteriori error bound, 
+	 * see {@link #getApproximateWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)}.
+	 * 
+	 * @param npvAndDefaultSimulation
+	 * @param penaltyFactor
+	 * @return The approximate constraint worst case CVA and its bounds.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws CalculationException
+	 */
+	public ApproximateWorstCaseCVA getApproximateConstrainedWorstCaseCVA( NPVAndDefaultSimulationInterface< ? extends ProductConditionalFairValue_ModelInterface> npvAndDefaultSimulation, double penaltyFactor ) throws InterruptedException, ExecutionException, CalculationException {
 		
-
-		////
-		// Assigning the Default Probabilities
-		////
+		return getApproximateWorstCaseCVANotToFarFromIndependence( penaltyFactor, getDiscountedFlooredNPV(npvAndDefaultSimulation), npvAndDefaultSimulation.getNumberOfPaths(), getDefaultProbabilities(npvAndDefaultSimulation), terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut ).getScaled( this.getLGD() );
 		
-		defaultProbabilities[0] = npvAndDefaultSimulation.getDefaultProbability(1);
+	}
+	
+	
+	/**
+	 * The constrained worst case CVA of {@link #getConstrainedWorstCaseCVA(NPVAndDefaultSimulationInterface, double)} decomposed by default intervals, 
+	 * see {@link #getWorstCaseCVAProfileNotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)}.
+	 * 
+	 * @param npvAndDefaultSimulation
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution. 
+	 * @return The contributions of the default intervals (multiplied by the LGD) and the conditional expected exposures under the worst case distribution.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws CalculationException
+	 */
+	public WorstCaseCVAProfile getConstrainedWorstCaseCVAProfile( NPVAndDefaultSimulationInterface< ? extends ProductConditionalFairValue_ModelInterface> npvAndDefaultSimulation, double penaltyFactor ) throws InterruptedException, ExecutionException, CalculationException {
 		
-		for(int timeIndex = 1; timeIndex < numberOfTimeDiscretizationIntervalls - 1 ; timeIndex++) {
-			defaultProbabilities[timeIndex] = npvAndDefaultSimulation.getDefaultProbability( timeIndex + 1 ) - npvAndDefaultSimulation.getDefaultProbability( timeIndex ); 	
-		}
+		return getWorstCaseCVAProfileNotToFarFromIndependence( penaltyFactor, getDiscountedFlooredNPV(npvAndDefaultSimulation), npvAndDefaultSimulation.getNumberOfPaths(), getDefaultProbabilities(npvAndDefaultSimulation), terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut ).getScaled( this.getLGD() );
 		
-		// Calculating the probability that default occurrs after the last time discretization point.
-		defaultProbabilities[numberOfTimeDiscretizationIntervalls - 1] = 1.0 - npvAndDefaultSimulation.getDefaultProbability( numberOfTimeDiscretizationIntervalls - 1 );
+	}
+	
+	
+	/**
+	 * The constrained best case and worst case CVA, i.e. the CVA of {@link #getConstrainedWorstCaseCVA(NPVAndDefaultSimulationInterface, double)}
+	 * for the penalty factors -|penaltyFactor| and |penaltyFactor|, calculated together, 
+	 * see {@link #getWorstCaseCVABoundsNotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)}.
+	 * 
+	 * @param npvAndDefaultSimulation
+	 * @param penaltyFactor This factor determines how much the best case and the worst case distribution are allowed to differ from the independent distribution. 
+	 * @return The interval [lower, upper] of the constrained CVA, i.e. the best case CVA at index 0 and the worst case CVA at index 1.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws CalculationException
+	 */
+	public double[] getConstrainedWorstCaseCVABounds( NPVAndDefaultSimulationInterface< ? extends ProductConditionalFairValue_ModelInterface> npvAndDefaultSimulation, double penaltyFactor ) throws InterruptedException, ExecutionException, CalculationException {
 		
+		double[] constrainedCVABounds = getWorstCaseCVABoundsNotToFarFromIndependence( penaltyFactor, getDiscountedFlooredNPV(npvAndDefaultSimulation), npvAndDefaultSimulation.getNumberOfPaths(), getDefaultProbabilities(npvAndDefaultSimulation), terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut );
 		
-		// Calling the method actually calculating the constrained worst case CVA (assumed LGD is one) and multiplying the actual LGD.
-		return this.getLGD() * getWorstCaseCVANotToFarFromIndependence( penaltyFactor, discountedFlooredNPV, npvAndDefaultSimulation.getNumberOfPaths(), defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut );
+		// Multiplying the actual LGD.
+		return new double[] { this.getLGD() * constrainedCVABounds[0], this.getLGD() * constrainedCVABounds[1] };
 		
 	}
 	
-
+	
 	/**
+	 * The constrained worst case CVA of {@link #getConstrainedWorstCaseCVA(NPVAndDefaultSimulationInterface, double)} as a handle which recalculates it 
+	 * for new default probabilities of the same paths starting from the current worst case distribution, 
+	 * see {@link #getIncrementalWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)}.
 	 * 
-	 * This method uses the iterative proportional fitting procedure (IPFP) to calculate the worst case CVA under a constraint.
-	 * The constraint is that the eligible distributions used for the CVA calculation must not differ too much from the following target distribution. The target
-	 * distribution is the independent distribution of following marginals. The first marginal is the distribution on the set {1, ... , d, d+1},
-	 * which is the distribution of default on the set of time intervals { ( t<sub>0</sub>, t<sub>1</sub> ], ... , ( t<sub>d-1</sub>, t<sub>d</sub> ]  , ( t<sub>d</sub>, infinity ) } .
-	 * The uniform distribution on the discrete set of simulated paths stored in discountedFlooredNPV is the second marginal distribution.
-	 * 
+	 * @param npvAndDefaultSimulation
 	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution. 
-	 * @param discountedFlooredNPV (Numeraire(0)/Numeraire(t_i) * (NPV(t_i))<sup> + </sup>)<sub> i = 1, ... , d </sub>
-	 * @param numberOfSimulationPaths The number of simulated paths.
-	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
-	 * @return Worst Case CVA under constraint
-	 * @throws ExecutionException 
-	 * @throws InterruptedException 
+	 * @return The handle of the constraint worst case CVA (multiplied by the LGD).
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws CalculationException
 	 */
-	public double getWorstCaseCVANotToFarFromIndependence(final double penaltyFactor, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
+	public IncrementalWorstCaseCVA getIncrementalConstrainedWorstCaseCVA( NPVAndDefaultSimulationInterface< ? extends ProductConditionalFairValue_ModelInterface> npvAndDefaultSimulation, double penaltyFactor ) throws InterruptedException, ExecutionException, CalculationException {
+		
+		return getIncrementalWorstCaseCVA( penaltyFactor, getDiscountedFlooredNPV(npvAndDefaultSimulation), npvAndDefaultSimulation.getNumberOfPaths(), getDefaultProbabilities(npvAndDefaultSimulation), this.getLGD(), terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut );
+		
+	}
+	
+	
+	/**
+	 * The constrained worst case CVA of {@link #getConstrainedWorstCaseCVA(NPVAndDefaultSimulationInterface, double)} whose penalty factor 
+	 * is calibrated to a budget of the relative entropy of the worst case distribution, 
+	 * see {@link #getCalibratedWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)}.
+	 * 
+	 * @param npvAndDefaultSimulation
+	 * @param relativeEntropyBudget The relative entropy KL( P | F ) the worst case distribution P is allowed to have with respect to the independent distribution F.
+	 * @return The constraint worst case CVA (multiplied by the LGD), the calibrated penalty factor and the achieved relative entropy.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws CalculationException
+	 */
+	public CalibratedWorstCaseCVA getCalibratedConstrainedWorstCaseCVA( NPVAndDefaultSimulationInterface< ? extends ProductConditionalFairValue_ModelInterface> npvAndDefaultSimulation, double relativeEntropyBudget ) throws InterruptedException, ExecutionException, CalculationException {
+		
+		return getCalibratedWorstCaseCVANotToFarFromIndependence( relativeEntropyBudget, getDiscountedFlooredNPV(npvAndDefaultSimulation), npvAndDefaultSimulation.getNumberOfPaths(), getDefaultProbabilities(npvAndDefaultSimulation), terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut ).getScaled( this.getLGD() );
+		
+	}
+	
+	
+	/**
+	 * The constrained worst case CVA of {@link #getConstrainedWorstCaseCVA(NPVAndDefaultSimulationInterface, double)} together with its sensitivities 
+	 * with respect to the default probabilities, calculated from one solve of the IPFP, 
+	 * see {@link #getWorstCaseCVASensitivitiesNotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)}.
+	 * 
+	 * @param npvAndDefaultSimulation
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution. 
+	 * @return The constraint worst case CVA and its sensitivities (multiplied by the LGD).
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws CalculationException
+	 */
+	public WorstCaseCVASensitivities getConstrainedWorstCaseCVASensitivities( NPVAndDefaultSimulationInterface< ? extends ProductConditionalFairValue_ModelInterface> npvAndDefaultSimulation, double penaltyFactor ) throws InterruptedException, ExecutionException, CalculationException {
+		
+		return getWorstCaseCVASensitivitiesNotToFarFromIndependence( penaltyFactor, getDiscountedFlooredNPV(npvAndDefaultSimulation), npvAndDefaultSimulation.getNumberOfPaths(), getDefaultProbabilities(npvAndDefaultSimulation), terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut ).getScaled( this.getLGD() );
+		
+	}
+	
+	
+	/**
+	 * @param npvAndDefaultSimulation
+	 * @return At array index i the discounted and floored net present value at discretization time t_{i + 1}.
+	 * @throws CalculationException
+	 */
+	static RandomVariableInterface[] getDiscountedFlooredNPV( NPVAndDefaultSimulationInterface< ? extends ProductConditionalFairValue_ModelInterface> npvAndDefaultSimulation ) throws CalculationException {
+		
+		// The number of intervals into which the positive time line is divided. 
+		// Including the interval from the last time discretization point to infinity.
+		int numberOfTimeDiscretizationIntervalls = npvAndDefaultSimulation.getTimeDiscretization().getNumberOfTimeSteps() + 1;
+		
+		// At array index i this array stores the discounted and floored net present value at discretization time t_{i + 1}.
+		RandomVariableInterface[] discountedFlooredNPV = new RandomVariableInterface[ numberOfTimeDiscretizationIntervalls - 1 ];
+		
+		
+		////
+		// Assigning the discounted and floored net present values.
+		////
+		
+		for( int timeIndex = 0; timeIndex < numberOfTimeDiscretizationIntervalls - 1 ; timeIndex++ ) {
+			discountedFlooredNPV[timeIndex] = npvAndDefaultSimulation.getDiscountedNPV( timeIndex + 1, 0 ).floor(0.0); 
+		}
+		
+		return discountedFlooredNPV;
+		
+	}
+	
+	
+	/**
+	 * @param npvAndDefaultSimulation
+	 * @return At array index i the probability of default occurring in the interval (t_{ i }, t_{ i + 1 }]. The last entry is the probability of default after the last time discretization point.
+	 * @throws CalculationException
+	 */
+	static double[] getDefaultProbabilities( NPVAndDefaultSimulationInterface< ? extends ProductConditionalFairValue_ModelInterface> npvAndDefaultSimulation ) throws CalculationException {
+		
+		// The number of intervals into which the positive time line is divided. 
+		// Including the interval from the last time discretization point to infinity.
+		int numberOfTimeDiscretizationIntervalls = npvAndDefaultSimulation.getTimeDiscretization().getNumberOfTimeSteps() + 1;
+		
+		// At array index i this array stores the probability of default occurring in the interval (t_{ i }, t_{ i + 1 }].
+		double[] defaultProbabilities = new double[numberOfTimeDiscretizationIntervalls];
+		
+		
+		////
+		// Assigning the Default Probabilities
+		////
+		
+		defaultProbabilities[0] = npvAndDefaultSimulation.getDefaultProbability(1);
+		
+		for(int timeIndex = 1; timeIndex < numberOfTimeDiscretizationIntervalls - 1 ; timeIndex++) {
+			defaultProbabilities[timeIndex] = npvAndDefaultSimulation.getDefaultProbability( timeIndex + 1 ) - npvAndDefaultSimulation.getDefaultProbability( timeIndex ); 	
+		}
+		
+		// Calculating the probability that default occurrs after the last time discretization point.
+		defaultProbabilities[numberOfTimeDiscretizationIntervalls - 1] = 1.0 - npvAndDefaultSimulation.getDefaultProbability( numberOfTimeDiscretizationIntervalls - 1 );
+		
+		return defaultProbabilities;
+		
+	}
+	
+
+	/**
+	 * 
+	 * This method uses the iterative proportional fitting procedure (IPFP) to calculate the worst case CVA under a constraint.
+	 * The constraint is that the eligible distributions used for the CVA calculation must not differ too much from the following target distribution. The target
+	 * distribution is the independent distribution of following marginals. The first marginal is the distribution on the set {1, ... , d, d+1},
+	 * which is the distribution of default on the set of time intervals { ( t<sub>0</sub>, t<sub>1</sub> ], ... , ( t<sub>d-1</sub>, t<sub>d</sub> ]  , ( t<sub>d</sub>, infinity ) } .
+	 * The uniform distribution on the discrete set of simulated paths stored in discountedFlooredNPV is the second marginal distribution.
+	 * 
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution. 
+	 * @param discountedFlooredNPV (Numeraire(0)/Numeraire(t_i) * (NPV(t_i))<sup> + </sup>)<sub> i = 1, ... , d </sub>
+	 * @param numberOfSimulationPaths The number of simulated paths.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @return Worst Case CVA under constraint
+	 * @throws ExecutionException 
+	 * @throws InterruptedException 
+	 */
+	public double getWorstCaseCVANotToFarFromIndependence(final double penaltyFactor, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
+		
+		switch( ipfpMode ) {
+		case Distributed:
+			return getWorstCaseCVAWithDistributedIPFP(penaltyFactor, discountedFlooredNPV, numberOfSimulationPaths, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+		case ScalingVectors:
+			return getWorstCaseCVAWithScalingVectors(penaltyFactor, discountedFlooredNPV, numberOfSimulationPaths, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+		case FullMatrix:
+		default:
+			return getWorstCaseCVAWithFullMatrix(penaltyFactor, discountedFlooredNPV, numberOfSimulationPaths, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+		}
+		
+	}
+	
+	
+	/**
+	 * The worst case CVA under constraint of {@link #getWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)} 
+	 * for several penalty factors. The realizations of the NPV are fetched once. The IPFP of each penalty factor starts from the 
+	 * solution of the previous penalty factor (warm start) instead of the independent distribution. I.e. the matrix (or the scaling vectors) 
+	 * of the previous solution is multiplied by exp( ( penaltyFactor - previousPenaltyFactor ) * NPV ). 
+	 * If the penalty factors are close this requires considerably less iterations than starting each IPFP from the initial matrix.
+	 * 
+	 * @param penaltyFactors The penalty factors. Neighboring penalty factors should be close, e.g. sorted.
+	 * @param discountedFlooredNPV (Numeraire(0)/Numeraire(t_i) * (NPV(t_i))<sup> + </sup>)<sub> i = 1, ... , d </sub>
+	 * @param numberOfSimulationPaths The number of simulated paths.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @return At array index k the worst case CVA under constraint for the penalty factor penaltyFactors[k].
+	 * @throws ExecutionException 
+	 * @throws InterruptedException 
+	 */
+	public double[] getWorstCaseCVAsNotToFarFromIndependence(final double[] penaltyFactors, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
+		
+		double[] worstCaseCVAs = new double[penaltyFactors.length];
+		
+		// The realizations of the NPV columns are fetched (and deduplicated) once for all penalty factors.
+		WeightedPaths weightedPaths = getWeightedPaths(discountedFlooredNPV, numberOfSimulationPaths);
+		
+		double maximalDiscountedFlooredNPV = getMaximalDiscountedFlooredNPV(discountedFlooredNPV, executor);
+		
+		int numberOfRowBlocks = getNumberOfRowBlocks(weightedPaths.getNumberOfPaths(), defaultProbabilities.length);
+		
+		// The full matrix is warm started for all penalty factors, hence its precision has to suit the largest one.
+		double maximalAbsolutePenaltyFactor = 0.0;
+		for(double penaltyFactor : penaltyFactors) {
+			maximalAbsolutePenaltyFactor = Math.max( maximalAbsolutePenaltyFactor, Math.abs( penaltyFactor ) );
+		}
+		boolean usingSinglePrecision = isUsingSinglePrecision(maximalDiscountedFlooredNPV, weightedPaths.getNumberOfPaths(), maximalAbsolutePenaltyFactor);
+		
+		// The IPFPs are created when they are needed first. Afterwards they are warm started.
+		FullMatrixIPFP fullMatrixIPFP = null;
+		ScalingVectorIPFP scalingVectorIPFP = null;
+		
+		try {
+			
+			for(int penaltyFactorIndex = 0; penaltyFactorIndex < penaltyFactors.length; penaltyFactorIndex++) {
+				
+				double penaltyFactor = penaltyFactors[penaltyFactorIndex];
+				
+				// The log-domain variant of the scaling vector form is used if exp( penaltyFactor * NPV ) overflows.
+				boolean logDomain = getScalingParameter(maximalDiscountedFlooredNPV, numberOfSimulationPaths, penaltyFactor) > 0.0;
+				
+				if( ipfpMode == IPFPMode.FullMatrix && ! logDomain ) {
+					
+					if(fullMatrixIPFP == null) {
+						fullMatrixIPFP = getFullMatrixIPFP(weightedPaths, defaultProbabilities, penaltyFactor, numberOfRowBlocks, usingSinglePrecision);
+						fullMatrixIPFP.reset(executor);
+						fullMatrixIPFP.setAdaptiveRelaxation(accelerated);
+					}
+					else {
+						fullMatrixIPFP.setPenaltyFactor(penaltyFactor, executor);
+					}
+					
+					fullMatrixIPFP.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+					
+					worstCaseCVAs[penaltyFactorIndex] = fullMatrixIPFP.getCVA(executor);
+					
+				}
+				else {
+					
+					if(scalingVectorIPFP == null) {
+						scalingVectorIPFP = getScalingVectorIPFP(weightedPaths, defaultProbabilities, penaltyFactor, logDomain, numberOfRowBlocks);
+						scalingVectorIPFP.setAdaptiveRelaxation(accelerated);
+					}
+					else {
+						scalingVectorIPFP.setPenaltyFactor(penaltyFactor, logDomain);
+					}
+					
+					scalingVectorIPFP.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+					
+					worstCaseCVAs[penaltyFactorIndex] = scalingVectorIPFP.getCVA(executor);
+					
+				}
+				
+			}
+			
+		}
+		finally {
+			// An out of core matrix releases its file.
+			if(fullMatrixIPFP != null) {
+				fullMatrixIPFP.close();
+			}
+		}
+		
+		return worstCaseCVAs;
+		
+	}
+	
+	
+	/**
+	 * The worst case CVA under constraint of {@link #getWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)} 
+	 * decomposed by default intervals. The final pass over the solution of the IPFP calculates the contribution sum<sub>i</sub> V<sub>i,j</sub> * P<sub>i,j</sub> 
+	 * and the probability sum<sub>i</sub> P<sub>i,j</sub> of each default interval j, and stores the worst case distribution P 
+	 * if {@link #isExportingJointDistribution()}. The conditional expected exposure profile under the worst case distribution is their quotient.
+	 * 
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution. 
+	 * @param discountedFlooredNPV (Numeraire(0)/Numeraire(t_i) * (NPV(t_i))<sup> + </sup>)<sub> i = 1, ... , d </sub>
+	 * @param numberOfSimulationPaths The number of simulated paths.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @return The contributions of the default intervals and the conditional expected exposures under the worst case distribution.
+	 * @throws ExecutionException 
+	 * @throws InterruptedException 
+	 */
+	public WorstCaseCVAProfile getWorstCaseCVAProfileNotToFarFromIndependence(final double penaltyFactor, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
+		
+		WeightedPaths weightedPaths = getWeightedPaths(discountedFlooredNPV, numberOfSimulationPaths);
+		
+		int numberOfRowBlocks = getNumberOfRowBlocks(weightedPaths.getNumberOfPaths(), defaultProbabilities.length);
+		
+		double[][] jointDistribution = exportingJointDistribution ? new double[defaultProbabilities.length][weightedPaths.getNumberOfPaths()] : null;
+		
+		double[][] columnContributionsAndMasses;
+		
+		double maximalDiscountedFlooredNPV = getMaximalDiscountedFlooredNPV(discountedFlooredNPV, executor);
+		
+		boolean logDomain = getScalingParameter(maximalDiscountedFlooredNPV, numberOfSimulationPaths, penaltyFactor) > 0.0;
+		
+		if( ipfpMode == IPFPMode.FullMatrix && ! logDomain ) {
+			
+			FullMatrixIPFP ipfp = getFullMatrixIPFP(weightedPaths, defaultProbabilities, penaltyFactor, numberOfRowBlocks, 
+					isUsingSinglePrecision(maximalDiscountedFlooredNPV, weightedPaths.getNumberOfPaths(), penaltyFactor));
+			
+			try {
+				ipfp.reset(executor);
+				ipfp.setAdaptiveRelaxation(accelerated);
+				ipfp.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+				
+				columnContributionsAndMasses = ipfp.getColumnContributionsAndMasses(jointDistribution, executor);
+			}
+			finally {
+				ipfp.close();
+			}
+			
+		}
+		else {
+			
+			ScalingVectorIPFP ipfp = getScalingVectorIPFP(weightedPaths, defaultProbabilities, penaltyFactor, logDomain, numberOfRowBlocks);
+			ipfp.setAdaptiveRelaxation(accelerated);
+			ipfp.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+			
+			columnContributionsAndMasses = ipfp.getColumnContributionsAndMasses(jointDistribution, executor);
+			
+		}
+		
+		return new WorstCaseCVAProfile(penaltyFactor, columnContributionsAndMasses[0], columnContributionsAndMasses[1], jointDistribution, 
+				weightedPaths.getPathProbabilities(), weightedPaths.getRowIndexOfPath(), weightedPaths.getNumberOfOriginalPaths());
+		
+	}
+	
+	
+	/**
+	 * The best case and the worst case CVA under constraint, i.e. the CVA of {@link #getWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)} 
+	 * for the penalty factors -|penaltyFactor| and |penaltyFactor|. The realizations of the NPV are fetched (and merged) once. 
+	 * Both IPFPs are performed simultaneously in scaling vector form by {@link BoundingScalingVectorIPFP} such that each pass over the NPV columns 
+	 * calculates the kernel exp( |penaltyFactor| * NPV ) once for both of them (the best case uses its reciprocal).
+	 * If the kernel overflows the two IPFPs are performed one after the other in the log-domain variant of {@link ScalingVectorIPFP}.
+	 * The IPFP mode is ignored.
+	 * 
+	 * @param penaltyFactor This factor determines how much the best case and the worst case distribution are allowed to differ from the independent distribution. 
+	 * @param discountedFlooredNPV (Numeraire(0)/Numeraire(t_i) * (NPV(t_i))<sup> + </sup>)<sub> i = 1, ... , d </sub>
+	 * @param numberOfSimulationPaths The number of simulated paths.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @return The interval [lower, upper] of the CVA under constraint, i.e. the best case CVA at index 0 and the worst case CVA at index 1.
+	 * @throws ExecutionException 
+	 * @throws InterruptedException 
+	 */
+	public double[] getWorstCaseCVABoundsNotToFarFromIndependence(final double penaltyFactor, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
+		
+		WeightedPaths weightedPaths = getWeightedPaths(discountedFlooredNPV, numberOfSimulationPaths);
+		
+		int numberOfRowBlocks = getNumberOfRowBlocks(weightedPaths.getNumberOfPaths(), defaultProbabilities.length);
+		
+		if( getScalingParameter(discountedFlooredNPV, numberOfSimulationPaths, executor, penaltyFactor) > 0.0 ) {
+			
+			double[] worstCaseCVABounds = new double[2];
+			
+			for(int boundIndex = 0; boundIndex < 2; boundIndex++) {
+				
+				ScalingVectorIPFP ipfp = new ScalingVectorIPFP(weightedPaths.getDiscountedFlooredNPV(), weightedPaths.getPathProbabilities(), defaultProbabilities, 
+						boundIndex == 0 ? - Math.abs( penaltyFactor ) : Math.abs( penaltyFactor ), true, numberOfRowBlocks);
+				ipfp.setAdaptiveRelaxation(accelerated);
+				ipfp.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+				
+				worstCaseCVABounds[boundIndex] = ipfp.getCVA(executor);
+				
+			}
+			
+			return worstCaseCVABounds;
+			
+		}
+		
+		BoundingScalingVectorIPFP ipfp = new BoundingScalingVectorIPFP(weightedPaths.getDiscountedFlooredNPV(), weightedPaths.getPathProbabilities(), defaultProbabilities, penaltyFactor, numberOfRowBlocks);
+		
+		ipfp.setAdaptiveRelaxation(accelerated);
+		
+		ipfp.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+		
+		return ipfp.getCVAs(executor);
+		
+	}
+	
+	
+	/**
+	 * The worst case CVA under constraint of {@link #getWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)} 
+	 * as a handle keeping the rows and the scaling vectors of the solved IPFP, see {@link IncrementalWorstCaseCVA}. The handle recalculates the worst case CVA 
+	 * for new default probabilities starting from the current scaling vectors. The scaling vector form of the IPFP is used independently of the {@link IPFPMode}.
+	 * The current settings (iterations, acceleration, merging of paths, executor) are used by the handle.
+	 * 
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution. 
+	 * @param discountedFlooredNPV The discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param numberOfSimulationPaths The number of simulated paths.
+	 * @param defaultProbabilities The initial probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @param terminationCriterionRows The error bound for the relative distance of the path probability and the sum of each row.
+	 * @param terminationCriterionColumns The error bound for the absolute distance of the default probability and the sum of each column (used for zero default probabilities).
+	 * @param terminationCriterionColumnsAbsolut The error bound for the relative distance of the default probability and the sum of each column.
+	 * @return The handle of the worst case CVA under constraint.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public IncrementalWorstCaseCVA getIncrementalWorstCaseCVANotToFarFromIndependence(final double penaltyFactor, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
+		return getIncrementalWorstCaseCVA(penaltyFactor, discountedFlooredNPV, numberOfSimulationPaths, defaultProbabilities, 1.0, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+	}
+	
+	
+	private IncrementalWorstCaseCVA getIncrementalWorstCaseCVA(final double penaltyFactor, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double lossGivenDefault, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
+		
+		WeightedPaths weightedPaths = getWeightedPaths(discountedFlooredNPV, numberOfSimulationPaths);
+		
+		boolean logDomain = getScalingParameter(discountedFlooredNPV, numberOfSimulationPaths, executor, penaltyFactor) > 0.0;
+		
+		ScalingVectorIPFP ipfp = new ScalingVectorIPFP(weightedPaths.getDiscountedFlooredNPV(), weightedPaths.getPathProbabilities(), defaultProbabilities, penaltyFactor, logDomain, getNumberOfRowBlocks(weightedPaths.getNumberOfPaths(), defaultProbabilities.length));
+		
+		ipfp.setAdaptiveRelaxation(accelerated);
+		
+		return new IncrementalWorstCaseCVA(ipfp, defaultProbabilities, lossGivenDefault, maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+		
+	}
+	
+	
+	/**
+	 * The worst case CVA under constraint of {@link #getWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)} 
+	 * for the non-negative penalty factor x whose worst case distribution P<sub>x</sub> has the given relative entropy KL( P<sub>x</sub> | F ) with respect to 
+	 * the independent distribution F. For the solution of the IPFP the relative entropy is
+	 * <br> KL( P<sub>x</sub> | F ) = x * CVA( x ) - G( x )
+	 * <br> with the value G of the penalized problem, see {@link ScalingVectorIPFP#getPenalizedValue()}. It is zero for x = 0 and increasing in x.
+	 * The penalty factor is bracketed by doubling and then determined by the regula falsi (Illinois variant) up to a relative accuracy of the relative entropy of 10<sup>-6</sup>.
+	 * Each IPFP of the calibration starts from the scaling vectors of the previous one, 
+	 * see {@link ScalingVectorIPFP#setPenaltyFactor(double, boolean)}, hence most of them require only a few iterations. 
+	 * The scaling vector form of the IPFP is used independently of the {@link IPFPMode}.
+	 * <br> Since every entry of P<sub>x</sub> is bounded by its path probability and by its default probability, the relative entropy is smaller than 
+	 * min( max<sub>i</sub> - log( p<sub>i</sub> ), max<sub>j</sub> - log( q<sub>j</sub> ) ). The budget has to be smaller than this bound 
+	 * and smaller than the relative entropy of the worst case distribution for x to infinity.
+	 * 
+	 * @param relativeEntropyBudget The relative entropy KL( P | F ) the worst case distribution P is allowed to have with respect to the independent distribution F.
+	 * @param discountedFlooredNPV The discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param numberOfSimulationPaths The number of simulated paths.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @param terminationCriterionRows The error bound for the relative distance of the path probability and the sum of each row.
+	 * @param terminationCriterionColumns The error bound for the absolute distance of the default probability and the sum of each column (used for zero default probabilities).
+	 * @param terminationCriterionColumnsAbsolut The error bound for the relative distance of the default probability and the sum of each column.
+	 * @return The worst case CVA under constraint, the calibrated penalty factor and the achieved relative entropy.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public CalibratedWorstCaseCVA getCalibratedWorstCaseCVANotToFarFromIndependence(final double relativeEntropyBudget, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
+		
+		if( !( relativeEntropyBudget >= 0.0 ) ) {
+			throw new IllegalArgumentException("The relative entropy budget has to be non-negative.");
+		}
+		
+		WeightedPaths weightedPaths = getWeightedPaths(discountedFlooredNPV, numberOfSimulationPaths);
+		
+		double maximalRelativeEntropy = getMaximalRelativeEntropy(weightedPaths.getPathProbabilities(), defaultProbabilities);
+		if( relativeEntropyBudget > 0.0 && !( relativeEntropyBudget < maximalRelativeEntropy ) ) {
+			throw new IllegalArgumentException("The relative entropy budget has to be smaller than " + maximalRelativeEntropy + ".");
+		}
+		
+		double maximalDiscountedFlooredNPV = getMaximalDiscountedFlooredNPV(discountedFlooredNPV, executor);
+		
+		ScalingVectorIPFP ipfp = new ScalingVectorIPFP(weightedPaths.getDiscountedFlooredNPV(), weightedPaths.getPathProbabilities(), defaultProbabilities, 0.0, false, getNumberOfRowBlocks(weightedPaths.getNumberOfPaths(), defaultProbabilities.length));
+		ipfp.setAdaptiveRelaxation(accelerated);
+		
+		double penaltyFactor = 0.0;
+		double worstCaseCVA = getWorstCaseCVAOfWarmStartedIPFP(ipfp, penaltyFactor, maximalDiscountedFlooredNPV, numberOfSimulationPaths, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+		double relativeEntropy = 0.0;
+		
+		int numberOfSolves = 1;
+		int numberOfIterations = ipfp.getNumberOfIterations();
+		
+		if( relativeEntropyBudget == 0.0 ) {
+			return new CalibratedWorstCaseCVA(worstCaseCVA, penaltyFactor, relativeEntropy, relativeEntropyBudget, numberOfSolves, numberOfIterations);
+		}
+		
+		if( maximalDiscountedFlooredNPV == 0.0 ) {
+			throw new IllegalArgumentException("The worst case distribution of a zero NPV is the independent distribution. The relative entropy budget has to be zero.");
+		}
+		
+		double accuracy = RELATIVE_ENTROPY_ACCURACY * relativeEntropyBudget;
+		
+		
+		////
+		// Bracketing the penalty factor by doubling. Initially the exponents penaltyFactor * NPV are at most one.
+		////
+		
+		double lowerPenaltyFactor = 0.0;
+		double lowerRelativeEntropy = 0.0;
+		double upperPenaltyFactor = 1.0 / maximalDiscountedFlooredNPV;
+		
+		for(int bracketingStep = 0; ; bracketingStep++) {
+			
+			if( bracketingStep == MAXIMAL_NUMBER_OF_BRACKETING_STEPS ) {
+				throw new IllegalArgumentException("The relative entropy budget cannot be attained for penalty factors up to " + lowerPenaltyFactor + ".");
+			}
+			
+			penaltyFactor = upperPenaltyFactor;
+			worstCaseCVA = getWorstCaseCVAOfWarmStartedIPFP(ipfp, penaltyFactor, maximalDiscountedFlooredNPV, numberOfSimulationPaths, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+			relativeEntropy = getRelativeEntropy(ipfp, worstCaseCVA);
+			numberOfSolves++;
+			numberOfIterations += ipfp.getNumberOfIterations();
+			
+			if( relativeEntropy >= relativeEntropyBudget ) {
+				break;
+			}
+			
+			// For small penalty factors the relative entropy grows quadratically. If it saturates the budget is beyond the relative entropy for infinite penalty factors.
+			if( relativeEntropy - lowerRelativeEntropy <= accuracy && relativeEntropy < 2.0 * lowerRelativeEntropy ) {
+				throw new IllegalArgumentException("The relative entropy budget exceeds the relative entropy " + relativeEntropy + " of the worst case distribution for large penalty factors.");
+			}
+			
+			lowerPenaltyFactor = upperPenaltyFactor;
+			lowerRelativeEntropy = relativeEntropy;
+			upperPenaltyFactor *= 2.0;
+			
+		}
+		
+		
+		////
+		// Regula falsi (Illinois) on relativeEntropy( penaltyFactor ) - relativeEntropyBudget. The function value of the end point 
+		// which is kept twice in a row is halved. Each IPFP starts from the solution of the previous penalty factor.
+		////
+		
+		double lowerDeviation = lowerRelativeEntropy - relativeEntropyBudget;
+		double upperDeviation = relativeEntropy - relativeEntropyBudget;
+		
+		// The side of the bracket replaced by the previous step (-1 lower, +1 upper).
+		int previousSide = 0;
+		
+		for(int calibrationStep = 0; calibrationStep < MAXIMAL_NUMBER_OF_CALIBRATION_STEPS; calibrationStep++) {
+			
+			if( Math.abs( relativeEntropy - relativeEntropyBudget ) <= accuracy || upperPenaltyFactor - lowerPenaltyFactor <= 1.0E-14 * upperPenaltyFactor ) {
+				break;
+			}
+			
+			penaltyFactor = ( lowerPenaltyFactor * upperDeviation - upperPenaltyFactor * lowerDeviation ) / ( upperDeviation - lowerDeviation );
+			worstCaseCVA = getWorstCaseCVAOfWarmStartedIPFP(ipfp, penaltyFactor, maximalDiscountedFlooredNPV, numberOfSimulationPaths, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+			relativeEntropy = getRelativeEntropy(ipfp, worstCaseCVA);
+			numberOfSolves++;
+			numberOfIterations += ipfp.getNumberOfIterations();
+			
+			double deviation = relativeEntropy - relativeEntropyBudget;
+			
+			if( deviation < 0.0 ) {
+				if( previousSide == -1 ) {
+					upperDeviation /= 2.0;
+				}
+				lowerPenaltyFactor = penaltyFactor;
+				lowerDeviation = deviation;
+				previousSide = -1;
+			}
+			else {
+				if( previousSide == 1 ) {
+					lowerDeviation /= 2.0;
+				}
+				upperPenaltyFactor = penaltyFactor;
+				upperDeviation = deviation;
+				previousSide = 1;
+			}
+			
+		}
+		
+		return new CalibratedWorstCaseCVA(worstCaseCVA, penaltyFactor, relativeEntropy, relativeEntropyBudget, numberOfSolves, numberOfIterations);
+		
+	}
+	
+	
+	/**
+	 * The worst case CVA under constraint of {@link #getWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)} 
+	 * together with its sensitivities with respect to the default probabilities. The sensitivity of the default interval j is the derivative with respect to 
+	 * a shift of probability from the reference interval (the last interval with positive probability) to the interval j.
+	 * Instead of solving one bumped IPFP per default interval the sensitivities are derived from the solution of one IPFP: 
+	 * The column scaling vector is the dual variable of the default marginal and yields the sensitivities of the value of the penalized problem. 
+	 * The sensitivities of the CVA are their derivatives with respect to the penalty factor, which require one further pass over the rows, 
+	 * see {@link ScalingVectorIPFP#getDefaultProbabilitySensitivities(ExecutorService)}. 
+	 * The scaling vector form of the IPFP is used independently of the {@link IPFPMode}. The sensitivities are only accurate if the IPFP has converged.
+	 * 
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution. 
+	 * @param discountedFlooredNPV The discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param numberOfSimulationPaths The number of simulated paths.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @param terminationCriterionRows The error bound for the relative distance of the path probability and the sum of each row.
+	 * @param terminationCriterionColumns The error bound for the absolute distance of the default probability and the sum of each column (used for zero default probabilities).
+	 * @param terminationCriterionColumnsAbsolut The error bound for the relative distance of the default probability and the sum of each column.
+	 * @return The worst case CVA under constraint and its sensitivities.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public WorstCaseCVASensitivities getWorstCaseCVASensitivitiesNotToFarFromIndependence(final double penaltyFactor, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
+		
+		WeightedPaths weightedPaths = getWeightedPaths(discountedFlooredNPV, numberOfSimulationPaths);
+		
+		boolean logDomain = getScalingParameter(discountedFlooredNPV, numberOfSimulationPaths, executor, penaltyFactor) > 0.0;
+		
+		ScalingVectorIPFP ipfp = new ScalingVectorIPFP(weightedPaths.getDiscountedFlooredNPV(), weightedPaths.getPathProbabilities(), defaultProbabilities, penaltyFactor, logDomain, getNumberOfRowBlocks(weightedPaths.getNumberOfPaths(), defaultProbabilities.length));
+		
+		ipfp.setAdaptiveRelaxation(accelerated);
+		
+		ipfp.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+		
+		double[][] sensitivities = ipfp.getDefaultProbabilitySensitivities(executor);
+		
+		return new WorstCaseCVASensitivities(penaltyFactor, ipfp.getCVA(executor), sensitivities[1], sensitivities[0]);
+		
+	}
+	
+	
+	/**
+	 * @param ipfp The solved IPFP.
+	 * @param worstCaseCVA The CVA of the solution of the IPFP.
+	 * @return The relative entropy KL( P | F ) = penaltyFactor * CVA - G of the solution P of the IPFP with respect to the independent distribution F. 
+	 * Negative values are rounding errors.
+	 */
+	private static double getRelativeEntropy(ScalingVectorIPFP ipfp, double worstCaseCVA) {
+		return Math.max( ipfp.getPenaltyFactor() * worstCaseCVA - ipfp.getPenalizedValue(), 0.0 );
+	}
+	
+	
+	/**
+	 * @param pathProbabilities The probabilities of the rows.
+	 * @param defaultProbabilities The probabilities of the columns.
+	 * @return The upper bound min( max<sub>i</sub> - log( p<sub>i</sub> ), max<sub>j</sub> - log( q<sub>j</sub> ) ) of the relative entropy of a distribution 
+	 * with these marginals with respect to the independent distribution (zero probabilities are ignored).
+	 */
+	private static double getMaximalRelativeEntropy(double[] pathProbabilities, double[] defaultProbabilities) {
+		
+		double minimalPathProbability = 1.0;
+		for(double pathProbability : pathProbabilities) {
+			if( pathProbability > 0.0 ) {
+				minimalPathProbability = Math.min( minimalPathProbability, pathProbability );
+			}
+		}
+		
+		double minimalDefaultProbability = 1.0;
+		for(double defaultProbability : defaultProbabilities) {
+			if( defaultProbability > 0.0 ) {
+				minimalDefaultProbability = Math.min( minimalDefaultProbability, defaultProbability );
+			}
+		}
+		
+		return - Math.log( Math.max( minimalPathProbability, minimalDefaultProbability ) );
+		
+	}
+	
+	
+	/**
+	 * The worst case CVA under constraint of {@link #getWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)} 
+	 * calculated on the quantized paths (see {@link #setPathQuantizationStep(double)}) together with an a-posteriori lower and upper bound 
+	 * of the worst case CVA under constraint of the original paths.
+	 * <br> The bounds are derived from the value G(x) = max<sub>P</sub> x * E<sub>P</sub>[ V ] - KL( P | F ) of the penalized problem with penalty factor x,
+	 * see {@link ScalingVectorIPFP#getPenalizedValue()}. G is convex and its derivative is the worst case CVA under constraint. 
+	 * Since each quantized row is the mean of its paths, the solution of the quantized paths distributed uniformly on the paths of each row 
+	 * is eligible for the original problem and has the same value G<sub>Q</sub>(x). Its scaling vectors are eligible for the dual problem 
+	 * of the original problem. The dual value exceeds G<sub>Q</sub>(x) by the gap
+	 * <br> E( x ) = sum<sub>i,j</sub> P<sub>Q; k(i),j</sub> / m<sub>k(i)</sub> * ( exp( x * ( V<sub>i,j</sub> - V<sub>Q; k(i),j</sub> ) ) - 1 ) &ge; 0,
+	 * <br> where k(i) is the row of path i and m<sub>k</sub> the number of paths of row k. Hence G<sub>Q</sub>( x ) &le; G( x ) &le; G<sub>Q</sub>( x ) + E( x ).
+	 * Since the quantized row is the mean of its paths the gap is of second order in the deviation of the paths from their rows.
+	 * <br> By convexity ( G( x ) - G( x - h ) ) / h &le; G'( x ) &le; ( G( x + h ) - G( x ) ) / h for h &gt; 0. Hence the bounds require two further IPFPs 
+	 * of the quantized paths (at x - h and x + h) and the gaps at x - h and x + h, each requiring one pass over the original paths. 
+	 * The step h balances the curvature of G<sub>Q</sub> against the gap. The bounds neglect the error of the termination criteria of the IPFP.
+	 * 
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution. 
+	 * @param discountedFlooredNPV (Numeraire(0)/Numeraire(t_i) * (NPV(t_i))<sup> + </sup>)<sub> i = 1, ... , d </sub>
+	 * @param numberOfSimulationPaths The number of simulated paths.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @return The approximate worst case CVA under constraint and its bounds.
+	 * @throws ExecutionException 
+	 * @throws InterruptedException 
+	 */
+	public ApproximateWorstCaseCVA getApproximateWorstCaseCVANotToFarFromIndependence(final double penaltyFactor, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
+		
+		double[][] discountedFlooredNPVRealizations = getRealizations(discountedFlooredNPV, numberOfSimulationPaths);
+		
+		WeightedPaths weightedPaths = getWeightedPaths(discountedFlooredNPVRealizations, numberOfSimulationPaths);
+		
+		double maximalDiscountedFlooredNPV = getMaximalDiscountedFlooredNPV(discountedFlooredNPV, executor);
+		
+		ScalingVectorIPFP ipfp = new ScalingVectorIPFP(weightedPaths.getDiscountedFlooredNPV(), weightedPaths.getPathProbabilities(), defaultProbabilities, penaltyFactor, 
+				getScalingParameter(maximalDiscountedFlooredNPV, numberOfSimulationPaths, penaltyFactor) > 0.0, getNumberOfRowBlocks(weightedPaths.getNumberOfPaths(), defaultProbabilities.length));
+		ipfp.setAdaptiveRelaxation(accelerated);
+		
+		ipfp.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+		
+		double worstCaseCVA = ipfp.getCVA(executor);
+		
+		// Without quantization error the worst case CVA is exact.
+		if( weightedPaths.getMaximalDeviation() == 0.0 ) {
+			return new ApproximateWorstCaseCVA(worstCaseCVA, worstCaseCVA, worstCaseCVA, 0.0, weightedPaths.getNumberOfPaths(), numberOfSimulationPaths);
+		}
+		
+		double penalizedValue = ipfp.getPenalizedValue();
+		double gap = getQuantizationGap(ipfp, weightedPaths, discountedFlooredNPVRealizations);
 		
 		////
-		// Calculating the Initial Matrix for the IPFP.
+		// The curvature of G is estimated by a difference quotient of the worst case CVA. The step h minimizes 
+		// the width curvature * h + 2 * E( penaltyFactor ) / h of the bounds.
 		////
 		
-		// The number of columns and the number of rows are fetched.
-		final int numberOfColumns = defaultProbabilities.length;
-		final int numberOfRows = numberOfSimulationPaths;
+		double minimalStep = 1.0E-3 * Math.max( Math.abs( penaltyFactor ), 1.0 );
 		
-		// The initial matrix is allocated.
-		final double[][] matrixA = new double[numberOfRows][numberOfColumns];
-		// The matrix used as next step in the iteration is allocated.
-		final double[][] matrixB = new double[numberOfRows][numberOfColumns];
+		double curvature = ( getWorstCaseCVAOfWarmStartedIPFP(ipfp, penaltyFactor + minimalStep, maximalDiscountedFlooredNPV, numberOfSimulationPaths, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut) - worstCaseCVA ) / minimalStep;
 		
-		// The probability of the occurrence of a particular path.
-		// A uniform distribution is assumed.
-		final double pathProbability = 1.0 / numberOfRows;
+		double step = Math.max( Math.sqrt( 2.0 * gap / Math.max( curvature, Double.MIN_NORMAL ) ), minimalStep );
 		
-		// These variables are used to terminate the IPFP in case the marginal 
-		// distributions are close enough to the target marginals.
-		Boolean rowsAreEligibleForTermination  = false;
-		Boolean columnsAreEligibleForTermination  = false;
+		getWorstCaseCVAOfWarmStartedIPFP(ipfp, penaltyFactor + step, maximalDiscountedFlooredNPV, numberOfSimulationPaths, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+		double upperBound = ( ipfp.getPenalizedValue() + getQuantizationGap(ipfp, weightedPaths, discountedFlooredNPVRealizations) - penalizedValue ) / step;
 		
+		getWorstCaseCVAOfWarmStartedIPFP(ipfp, penaltyFactor - step, maximalDiscountedFlooredNPV, numberOfSimulationPaths, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+		double lowerBound = ( penalizedValue - ipfp.getPenalizedValue() - getQuantizationGap(ipfp, weightedPaths, discountedFlooredNPVRealizations) ) / step;
 		
-		////
-		// Multi-Threading Preparations
-		////
+		// The worst case CVA lies in [ 0, maximal NPV ] since the NPV is floored at zero.
+		return new ApproximateWorstCaseCVA(worstCaseCVA, Math.max( lowerBound, 0.0 ), Math.min( upperBound, maximalDiscountedFlooredNPV ), weightedPaths.getMaximalDeviation(), weightedPaths.getNumberOfPaths(), numberOfSimulationPaths);
+		
+	}
+	
+	
+	/**
+	 * Solves the IPFP for the penalty factor starting from the current scaling vectors of the IPFP.
+	 * 
+	 * @return The worst case CVA under constraint for the penalty factor.
+	 */
+	private double getWorstCaseCVAOfWarmStartedIPFP(ScalingVectorIPFP ipfp, double penaltyFactor, double maximalDiscountedFlooredNPV, int numberOfSimulationPaths, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut) throws InterruptedException, ExecutionException {
 		
-		// We do not allocate more threads then twice the number of processors.
-		int numberOfThreads = Math.min(Math.max(2 * Runtime.getRuntime().availableProcessors(),1),defaultProbabilities.length);
+		ipfp.setPenaltyFactor(penaltyFactor, getScalingParameter(maximalDiscountedFlooredNPV, numberOfSimulationPaths, penaltyFactor) > 0.0);
 		
-		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		ipfp.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
 		
-		// Not used at the moment. 
-		final double rescalingParameter = false ? getScalingParameter(discountedFlooredNPV, numberOfSimulationPaths, executor, penaltyFactor) : 0.0;		
+		return ipfp.getCVA(executor);
 		
+	}
+	
+	
+	/**
+	 * The gap E( x ) of {@link #getApproximateWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)}
+	 * between the value of the quantized paths and the dual value of the original paths, i.e.
+	 * sum<sub>i,j</sub> P<sub>Q; k(i),j</sub> / m<sub>k(i)</sub> * expm1( x * ( V<sub>i,j</sub> - V<sub>Q; k(i),j</sub> ) ). 
+	 * The paths are split into blocks and the block results are added in the order of the blocks.
+	 * 
+	 * @param ipfp The IPFP of the quantized paths.
+	 * @param weightedPaths The quantized paths.
+	 * @param discountedFlooredNPV The realizations of the original paths.
+	 * @return The gap.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	private double getQuantizationGap(ScalingVectorIPFP ipfp, WeightedPaths weightedPaths, final double[][] discountedFlooredNPV) throws InterruptedException, ExecutionException {
 		
-		// Using Callable instead of runnable such that invokeAll can be invoked.
-		Set<Callable<Double>> callablesInitialMatrix = new HashSet<Callable<Double>>();
+		final double penaltyFactor = ipfp.getPenaltyFactor();
+		final boolean logDomain = ipfp.isLogDomain();
+		final double[] rowScaling = ipfp.getRowScaling();
+		final double[] columnScaling = ipfp.getColumnScaling();
 		
+		final double[][] quantizedDiscountedFlooredNPV = weightedPaths.getDiscountedFlooredNPV();
+		final double[] quantizedPathProbabilities = weightedPaths.getPathProbabilities();
+		final int[] rowIndexOfPath = weightedPaths.getRowIndexOfPath();
 		
-		////
-		// First, the initial matrix is assigned as follows. 
-		// Where F_{i,j} := q_{j} * (1 / numberOfRows).
-		// Where F_{i,j} is the independent joint distribution of the following marginal distributions. 
-		// The default probabilities on the different interval indices and the uniform distribution on path set.
-		// matrix[i][j] = exp( penaltyFactor * discountedFlooredNPV[i][j] ) * F_{i,j}.
-		////
+		final int numberOfPaths = weightedPaths.getNumberOfOriginalPaths();
+		final int numberOfColumns = quantizedDiscountedFlooredNPV.length + 1;
 		
-		// The last column is assigned.
-		callablesInitialMatrix.add( new Callable<Double>() { 
-			
-			public Double call() {
-				
-				// This is the value that would be lost if the default occurred at this time index.
-				// The last time index encodes that no default occurs in the observed time horizon.
-				// Therefore no loss occurs.
-				double currentEntry = 0.0;
-				
-				double currentIndependentCommonDistributionWeight = 0.0;
-				
-				// Iterating over each row in the current column.
-				for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
-					
-					// This is q_{numberOfColumns-1} * (1 / numberOfRows) =: F_{rowIndex, numberOfColumns-1}. 
-					// The probability of the occurrence of the numberOfColumns-1 and the rowIndex assuming 
-					// an independent distribution of the marginals.
-					currentIndependentCommonDistributionWeight = pathProbability * defaultProbabilities[ numberOfColumns - 1 ]; 
-					
-					// Multiply the current entry by the penalty factor and apply exp. Then multiply with F_{rowIndex, fixedColumnIndex}.
-					matrixA[rowIndex][ numberOfColumns - 1 ] = Math.exp( penaltyFactor * currentEntry - rescalingParameter ) * currentIndependentCommonDistributionWeight;
-					
-				}
-				
-				// Not used.
-				return 0.0;
-			} 
-			
-		});
+		int numberOfBlocks = getNumberOfRowBlocks(numberOfPaths, numberOfColumns);
 		
-		// Then all columns except the last one of the matrix are assigned.
-		for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+		List<Callable<Double>> callablesGap = new ArrayList<Callable<Double>>();
 		
-			final int fixedColumnIndex = columnIndex;
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+			
+			final int fixedIndexFirstPathOfBlock = (int) ( (long) blockIndex * numberOfPaths / numberOfBlocks );
+			final int fixedIndexLastPathOfBlockPlusOne = (int) ( (long) ( blockIndex + 1 ) * numberOfPaths / numberOfBlocks );
 			
-			callablesInitialMatrix.add( new Callable<Double>() { 
+			callablesGap.add( new Callable<Double>() {
+				
 				public Double call() {
 					
-					double currentEntry = 0.0;
-					
-					double currentIndependentCommonDistributionWeight = 0.0;
-					
-					// Speeds up performance significantly.
-					double[] currentColumn = discountedFlooredNPV[fixedColumnIndex].getRealizations();
+					double runningSum = 0.0;
+					double helperNextSum = 0.0;
+					double nextToAdd = 0.0;
+					double negativLostDigitsStorage = 0.0;
 					
-					// Iterating over each row in the current column.
-					for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+					for(int pathIndex = fixedIndexFirstPathOfBlock; pathIndex < fixedIndexLastPathOfBlockPlusOne; pathIndex++) {
 						
-						// First the value of the process at a given time index and realization is fetched.
-						// This is the value that would be lost if the default occurred at this time index on 
-						// this path with a loss given default of 1.
-						currentEntry = currentColumn[rowIndex];
+						int rowIndex = rowIndexOfPath[pathIndex];
 						
-						// This is q_{fixedColumnIndex} * (1 / numberOfRows) =: F_{rowIndex, fixedColumnINdex}. 
-						// The probability of the occurrence of the fixedColumnIndex and the rowIndex assuming 
-						// an independent distribution of the marginals.
-						currentIndependentCommonDistributionWeight = pathProbability * defaultProbabilities[fixedColumnIndex]; 
+						// The share of the path in the probability of its row is ( 1 / numberOfPaths ) / quantizedPathProbability.
+						double logPathShare = - Math.log( numberOfPaths * quantizedPathProbabilities[rowIndex] );
 						
-						// Multiply the current entry by the penalty factor and apply exp then multiply with F_{rowIndex, fixedColumnINdex}.
-						matrixA[rowIndex][fixedColumnIndex] = Math.exp( penaltyFactor * currentEntry - rescalingParameter ) * currentIndependentCommonDistributionWeight;
-					
-						// Debug code - Start
-						//  if(true) {
-						//		System.out.println("matrixA[rowIndex][columnIndex]: " + matrixA[rowIndex][fixedColumnIndex]);
-						//		System.out.println("NPV or C is: " + currentEntry);
-						//		System.out.println("Common Distribution Weight: " + currentIndependentCommonDistributionWeight);
-						//		System.out.println("Penalty Factor: " + penaltyFactor);
-						//		System.out.println("The row index, column index are: " + rowIndex+ "," + fixedColumnIndex);
-						//	}
-						// Debug code - End
+						// The last column has zero NPV. Hence it does not contribute.
+						for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+							
+							double quantizedEntry = quantizedDiscountedFlooredNPV[columnIndex][rowIndex];
+							
+							double quantizedWeight = logDomain ? Math.exp( rowScaling[rowIndex] + penaltyFactor * quantizedEntry + columnScaling[columnIndex] + logPathShare )
+									: rowScaling[rowIndex] * Math.exp( penaltyFactor * quantizedEntry + logPathShare ) * columnScaling[columnIndex];
+							
+							nextToAdd = quantizedWeight * Math.expm1( penaltyFactor * ( discountedFlooredNPV[columnIndex][pathIndex] - quantizedEntry ) ) - negativLostDigitsStorage;
+							helperNextSum = runningSum + nextToAdd;
+							negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+							runningSum = helperNextSum;
+							
+						}
 						
 					}
 					
-					return 0.0;
+					return runningSum;
+					
 				}
+				
 			});
+			
+		}
 		
+		// The futures are in the order of the blocks. Their results are added with Kahan summation.
+		double gap = 0.0;
+		double helperNextSum = 0.0;
+		double nextToAdd = 0.0;
+		double negativLostDigitsStorage = 0.0;
+		for(Future<Double> partialGap : executor.invokeAll(callablesGap)) {
+			nextToAdd = partialGap.get() - negativLostDigitsStorage;
+			helperNextSum = gap + nextToAdd;
+			negativLostDigitsStorage = ( helperNextSum - gap ) - nextToAdd;
+			gap = helperNextSum;
 		}
+		
+		// The gap is non-negative by Jensen's inequality. Negative values are rounding errors.
+		return Math.max( gap, 0.0 );
+		
+	}
 	
 	
-		// Waits until each thread executed the call code. 
-		executor.invokeAll(callablesInitialMatrix);
-
-		
-		////
-		// Setup for the row-wise iteration step.
-		////
+	/**
+	 * The IPFP of {@link #getWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)} 
+	 * storing only a row scaling vector and a column scaling vector, see {@link ScalingVectorIPFP}.
+	 */
+	private double getWorstCaseCVAWithScalingVectors(final double penaltyFactor, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
 		
+		// The realizations are not copied (unless paths are merged). The kernel of the IPFP is built from them when needed.
+		WeightedPaths weightedPaths = getWeightedPaths(discountedFlooredNPV, numberOfSimulationPaths);
 		
-		// The number of blocks into which the matrix is split. When each block has at most rowPerBlock rows.
-		// If the number of rows is not divisible by the number of threads one additional block is needed
-		// to cover the whole matrix.
-		final int numberOfMatrixBlocks = (numberOfRows % numberOfThreads) == 0 ? numberOfThreads : Math.min( numberOfThreads + 1, numberOfRows);
+		// The log-domain variant is only used if the kernel exp( penaltyFactor * NPV ) would overflow since it requires more exponentials.
+		boolean logDomain = getScalingParameter(discountedFlooredNPV, numberOfSimulationPaths, executor, penaltyFactor) > 0.0;
 		
-		// The number of rows each block has.
-		final int rowsPerBlock = numberOfRows / Math.min(numberOfRows, numberOfThreads);
+		ScalingVectorIPFP ipfp = getScalingVectorIPFP(weightedPaths, defaultProbabilities, penaltyFactor, logDomain, getNumberOfRowBlocks(weightedPaths.getNumberOfPaths(), defaultProbabilities.length));
 		
-
-		////
-		// Performing the Iteration Steps
-		////
-	
-		// Initializations for Multi-Threading
+		ipfp.setAdaptiveRelaxation(accelerated);
 		
-		Set<Callable<Boolean>> callablesForRowSum = new HashSet<Callable<Boolean>>();
-		List<Future<Boolean>> partialRowTests = new ArrayList<Future<Boolean>>();
+		ipfp.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
 		
-		Set<Callable<Double>> callablesForColumnSums = new HashSet<Callable<Double>>();
-		List<Future<Double>> partialColumnTests = new ArrayList<Future<Double>>();
+		return ipfp.getCVA(executor);
 		
+	}
+	
+	
+	/**
+	 * @param weightedPaths The rows of the IPFP.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @param penaltyFactor
+	 * @param numberOfRowBlocks The number of row blocks of the IPFP.
+	 * @param usingSinglePrecision If true the matrix is stored in single precision.
+	 * @return The full matrix IPFP of the rows. If an out of core directory is set and the matrix would occupy more than 
+	 * {@link #MAXIMAL_HEAP_FRACTION_OF_MATRIX} of the free heap the matrix is stored in a memory mapped file.
+	 * @throws ExecutionException If the memory mapped file cannot be created.
+	 */
+	private FullMatrixIPFP getFullMatrixIPFP( WeightedPaths weightedPaths, double[] defaultProbabilities, double penaltyFactor, int numberOfRowBlocks, boolean usingSinglePrecision ) throws ExecutionException {
 		
-		for(int iterationIndex = 0; iterationIndex < 100; iterationIndex++) {
-			
-			////
-			// Row-wise Renormalization Step
-			////
-			
-			// Calculating the row operations block-wise.
-			// Each block is treated by a thread.
-			
-			callablesForRowSum = new HashSet<Callable<Boolean>>();
-			
-			// Iterating over all blocks. 
-			for(int blockIndex = 0; blockIndex < numberOfMatrixBlocks; blockIndex++) {
+		if( outOfCoreDirectory != null ) {
 			
-				// The matrix-index of the first row in the current block.
-				final int fixedIndexFirstRowOfBlock = blockIndex * rowsPerBlock;
-				// If we are in the last block the rows only iterate to the final row of the
-				// whole matrix.
-				final int fixedIndexLastRowOfBlockPlusOne = ( blockIndex != (numberOfMatrixBlocks - 1) ) ? (blockIndex+1) * rowsPerBlock : numberOfRows;
-				
-				// Debugging Code - Start:
-				// final int iterationIndexDebug = iterationIndex;
-				// Debugging Code - End:
-				
-				callablesForRowSum.add(new Callable<Boolean>() {
-					
-					public Boolean call() {
-						
-						////
-						// In the first step all rows are summed. 
-						// And each entry of the current row is divided by the sum of the current row.
-						////
-						
-						// Variables for Kahan summation
-						double currentRowSum = 0.0;
-						double helperNextSum = 0.0;
-						
-						double nextToAdd = 0.0;
-						double negativLostDigitsStorage = 0.0;
-						
-						// At the end of the iteration over each row this variable shows the following.
-						// It shows if all row sums satisfy that their relative distance to the desired path
-						// probability is smaller than the termination criterion value.
-						Boolean allRowsSatisfyTerminationCriterion = true;
-						
-						// Iterating over each row in the current block
-						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++ ) {
-							
-							// Resetting the variables after the previous row has been summed.
-							currentRowSum = 0.0;
-							
-							nextToAdd = 0.0;
-							negativLostDigitsStorage = 0.0;
-							helperNextSum = 0.0;
-							
-							// Kahan summation for summing the current row.
-							for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
-								
-								nextToAdd = matrixA[rowIndex][columnIndex] - negativLostDigitsStorage;
-								helperNextSum += nextToAdd;
-								negativLostDigitsStorage = (helperNextSum - currentRowSum) - nextToAdd;
-								currentRowSum = helperNextSum;
-								
-							}
-							
-							// Testing current row if the termination criterion is satisfied.
-							if( Math.abs( currentRowSum - pathProbability ) / pathProbability > terminationCriterionRows ) {
-								allRowsSatisfyTerminationCriterion = false;
-							}
-					
-							// Debug Code - Start:
-							//  if(rowIndex == 0) {
-							//		System.out.println(" Row : " + rowIndex + "has running weight sum: " + currentRowSum);
-							//	}
-							// Debug Code - End.
-							
-							// Renormalizing the current row.
-							for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
-								matrixB[rowIndex][columnIndex] = matrixA[rowIndex][columnIndex] / currentRowSum * pathProbability;
-								
-							// Debug Code - Start:
-							//if( iterationIndexDebug == 2 && rowIndex == 22  ) {
-							//		System.out.println("matrixB[rowIndex][columnIndex]: " + matrixB[rowIndex][columnIndex]);
-							//		System.out.println("matrixA[rowIndex][columnIndex]: " + matrixA[rowIndex][columnIndex]);
-							//		System.out.println("Sum in Denominator is: " + currentRowSum);
-							//		System.out.println("The row index, column index are: " + rowIndex+ "," + columnIndex);
-							//		System.out.println("The iteration index is: " + iterationIndexDebug);
-							//	}
-							// Debug Code - End.
-
-							}
-									
-						}
-						
-						// Returning true if all rows of the current block satisfy the termination criterion. Otherwise false.
-						return allRowsSatisfyTerminationCriterion;
-					}
-				});
+			Runtime runtime = Runtime.getRuntime();
+			double freeHeap = runtime.maxMemory() - ( runtime.totalMemory() - runtime.freeMemory() );
+			double sizeOfMatrix = (double) weightedPaths.getNumberOfPaths() * defaultProbabilities.length * ( usingSinglePrecision ? 4 : 8 );
 			
+			if( sizeOfMatrix > MAXIMAL_HEAP_FRACTION_OF_MATRIX * freeHeap ) {
+				try {
+					return new FullMatrixIPFP(weightedPaths.getDiscountedFlooredNPV(), weightedPaths.getPathProbabilities(), defaultProbabilities, penaltyFactor, numberOfRowBlocks, usingSinglePrecision, outOfCoreDirectory);
+				}
+				catch(IOException e) {
+					throw new ExecutionException("The out of core matrix of the IPFP could not be created.", e);
+				}
 			}
 			
-			// Waits until each thread executed the call code. 
-			// The partial sums are initialized and fetched. 
-			partialRowTests = new ArrayList<Future<Boolean>>();
-			partialRowTests = executor.invokeAll(callablesForRowSum);
-			
-			// Setting variable to true before the iteration.
-			rowsAreEligibleForTermination = true;
+		}
+		
+		return new FullMatrixIPFP(weightedPaths.getDiscountedFlooredNPV(), weightedPaths.getPathProbabilities(), defaultProbabilities, penaltyFactor, numberOfRowBlocks, usingSinglePrecision);
+		
+	}
+	
+	
+	/**
+	 * @param weightedPaths The rows of the IPFP.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @param penaltyFactor
+	 * @param logDomain If true the log-domain variant of the IPFP is used.
+	 * @param numberOfRowBlocks The number of row blocks of the IPFP.
+	 * @return The scaling vector IPFP of the rows. In the IPFP mode {@link IPFPMode#ScalingVectors} in single precision its NPV columns are stored as float.
+	 */
+	private ScalingVectorIPFP getScalingVectorIPFP( WeightedPaths weightedPaths, double[] defaultProbabilities, double penaltyFactor, boolean logDomain, int numberOfRowBlocks ) {
+		
+		if( singlePrecision && ipfpMode == IPFPMode.ScalingVectors ) {
+			return new ScalingVectorIPFP(weightedPaths.getSinglePrecisionDiscountedFlooredNPV(), weightedPaths.getPathProbabilities(), defaultProbabilities, penaltyFactor, logDomain, numberOfRowBlocks);
+		}
+		
+		return new ScalingVectorIPFP(weightedPaths.getDiscountedFlooredNPV(), weightedPaths.getPathProbabilities(), defaultProbabilities, penaltyFactor, logDomain, numberOfRowBlocks);
+		
+	}
+	
+	
+	/**
+	 * The IPFP of {@link #getWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)} 
+	 * whose rows are distributed on the workers, see {@link DistributedScalingVectorIPFP}. Only the plain IPFP is performed.
+	 * A failure of the communication with a worker is reported as {@link ExecutionException}.
+	 */
+	private double getWorstCaseCVAWithDistributedIPFP(final double penaltyFactor, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
+		
+		if( workerAddresses.isEmpty() ) {
+			throw new IllegalStateException("The distributed IPFP requires at least one worker.");
+		}
+		
+		WeightedPaths weightedPaths = getWeightedPaths(discountedFlooredNPV, numberOfSimulationPaths);
+		
+		boolean logDomain = getScalingParameter(discountedFlooredNPV, numberOfSimulationPaths, executor, penaltyFactor) > 0.0;
+		
+		DistributedScalingVectorIPFP ipfp = null;
+		
+		try {
 			
-			// Only if all rows satisfy the termination criterion the termination variable stays true.
-			for(int indexRowsBlock = 0; indexRowsBlock < numberOfMatrixBlocks; indexRowsBlock++) {
-				if(  ! ( partialRowTests.get(indexRowsBlock).get() )  ) {
-					rowsAreEligibleForTermination = false;
-				}  
-			}
+			ipfp = new DistributedScalingVectorIPFP(workerAddresses, defaultProbabilities, penaltyFactor, logDomain);
 			
+			ipfp.loadRows(weightedPaths.getDiscountedFlooredNPV(), weightedPaths.getPathProbabilities());
 			
-			////
-			// Column-wise Renormalization Step
-			// All columns are summed.
-			// Each column entry is divided by the summed current column.
-			// The resulting value is then multiplied by the default probability 
-			// associated with the current column.
-			////
+			ipfp.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
 			
-			// The set of Callables is reset.
-			callablesForColumnSums = new HashSet<Callable<Double>>();
+			return ipfp.getCVA();
 			
-			for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
-				
-				final double currentDefaultProbability = defaultProbabilities[columnIndex];
-				
-				final double[][] fixedMatrix = matrixB;
-				
-				final int fixedColumnIndex = columnIndex;
-				
-				callablesForColumnSums.add( new Callable<Double>() {
-						public Double call() throws SolverException {
-							
-							double runningColumnSum = 0;
-							double helperNextSum = 0.0;
-							
-							double negativLostDigitsStorage = 0.0;
-							double nextToAdd = 0.0;
-						
-							for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
-
-								nextToAdd = fixedMatrix[rowIndex][fixedColumnIndex] - negativLostDigitsStorage;
-								helperNextSum += nextToAdd;
-								negativLostDigitsStorage = ( helperNextSum - runningColumnSum ) - nextToAdd;
-								runningColumnSum = helperNextSum;
-								
-							}
-							
-							for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
-							
-								matrixA[rowIndex][fixedColumnIndex] = matrixB[rowIndex][fixedColumnIndex] / runningColumnSum * currentDefaultProbability;
-								
-							}
-							// Debug Code - Start:
- 							// System.out.println("Columnindex" + fixedColumnIndex + ", running probability weight sum: " + runningColumnSum);
-							// Debug Code - End.
-						
-							return Math.abs( runningColumnSum - currentDefaultProbability );
-						}
-					}); 
-
+		}
+		catch(IOException e) {
+			throw new ExecutionException("The communication with a worker of the distributed IPFP failed.", e);
+		}
+		finally {
+			if(ipfp != null) {
+				ipfp.close();
 			}
-					
-			// Waits until each thread executed the call code. 
-			// The partial sums are initialized and fetched. 
-			partialColumnTests = new ArrayList<Future<Double>>();
-			partialColumnTests = executor.invokeAll(callablesForColumnSums);
+		}
 		
-			// Setting variable to true before the iteration.
-			columnsAreEligibleForTermination = true;
-			
-			// Only if all columns satisfy the termination criterion the termination variable stays true.
-			for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
-				
-				if(defaultProbabilities[columnIndex] > 0) {
-					if( (partialColumnTests.get(columnIndex).get() / defaultProbabilities[columnIndex]) > terminationCriterionColumnsAbsolut  ) {
-						columnsAreEligibleForTermination = false;
-					}
-				}
-				else {
-					if(  partialColumnTests.get(columnIndex).get() > terminationCriterionColumns ) {
-						columnsAreEligibleForTermination = false;
-					}
-				}
-			}
-			
+	}
+	
+	
+	/**
+	 * The number of row blocks is chosen such that each block has at least {@link #MINIMAL_NUMBER_OF_ENTRIES_PER_TASK} 
+	 * matrix entries and such that there are at most {@link #NUMBER_OF_TASKS_PER_THREAD} blocks per thread of the executor.
+	 * 
+	 * @param numberOfRows The number of rows of the matrix of the IPFP.
+	 * @param numberOfColumns The number of columns of the matrix of the IPFP.
+	 * @return The number of blocks into which the rows are split.
+	 */
+	public int getNumberOfRowBlocks(int numberOfRows, int numberOfColumns) {
 		
-			// Testing if both termination criterion are satisfied in this case the iteration is exited.
-			if( rowsAreEligibleForTermination && columnsAreEligibleForTermination ) { 
-				break; 
-			}
-			
+		long numberOfBlocksBySize = Math.max( (long) numberOfRows * numberOfColumns / MINIMAL_NUMBER_OF_ENTRIES_PER_TASK, 1 );
+		
+		return (int) Math.max( Math.min( Math.min( numberOfBlocksBySize, (long) NUMBER_OF_TASKS_PER_THREAD * parallelism ), numberOfRows ), 1 );
+		
+	}
+	
+	
+	/**
+	 * @param discountedFlooredNPV The discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param numberOfSimulationPaths The number of simulated paths.
+	 * @return The rows of the IPFP. If the quantization step is positive the quantized paths are merged, else if {@link #isDeduplicatingPaths()} 
+	 * identical paths are merged, otherwise the paths are equally likely.
+	 */
+	private WeightedPaths getWeightedPaths(RandomVariableInterface[] discountedFlooredNPV, int numberOfSimulationPaths) {
+		return getWeightedPaths(getRealizations(discountedFlooredNPV, numberOfSimulationPaths), numberOfSimulationPaths);
+	}
+	
+	
+	private WeightedPaths getWeightedPaths(double[][] discountedFlooredNPVRealizations, int numberOfSimulationPaths) {
+		
+		// Without NPV columns there is nothing to merge.
+		boolean hasColumns = discountedFlooredNPVRealizations.length > 0;
+		
+		if( pathQuantizationStep > 0.0 && hasColumns ) {
+			return WeightedPaths.getQuantizedPaths(discountedFlooredNPVRealizations, pathQuantizationStep);
 		}
 		
+		if( deduplicatingPaths && hasColumns ) {
+			return WeightedPaths.getDeduplicatedPaths(discountedFlooredNPVRealizations);
+		}
 		
-		////
-		// Calculating the CVA with respect to the calculated worst case distribution under constraint.
-		////
+		double[] pathProbabilities = new double[numberOfSimulationPaths];
+		Arrays.fill(pathProbabilities, 1.0 / numberOfSimulationPaths);
 		
-		// The set of Callables is reset.
-		Set<Callable<Double>> callablesFinalSum = new HashSet<Callable<Double>>();
+		return new WeightedPaths(discountedFlooredNPVRealizations, pathProbabilities, numberOfSimulationPaths);
 		
-		for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+	}
+	
+	
+	private static double[][] getRealizations(RandomVariableInterface[] discountedFlooredNPV, int numberOfSimulationPaths) {
 		
-			final int fixedColumnIndex = columnIndex;
-			
-			callablesFinalSum.add(new Callable<Double>() {
-				public Double call() {
-				
-					double runningSum = 0.0;
-					double helperNextSum = 0.0;
-					
-					double nextToAdd = 0.0;
-					double negativLostDigitsStorage = 0.0;
-					
-					double[] currentColumn = discountedFlooredNPV[fixedColumnIndex].getRealizations();
-					
-					for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
-				
-						nextToAdd = currentColumn[rowIndex] * matrixA[rowIndex][fixedColumnIndex] 
-								- negativLostDigitsStorage;
-						helperNextSum = runningSum + nextToAdd;
-						negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
-						runningSum = helperNextSum;
-						
-					}
-					
-					// Debug Code - Start:
-					// System.out.println("Column " + fixedColumnIndex + " has running cva sum: " + runningSum); 
-					// Debug Code - End.
-					
-					return runningSum;
-					
-				}
-			});
-
+		double[][] discountedFlooredNPVRealizations = new double[discountedFlooredNPV.length][];
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			discountedFlooredNPVRealizations[columnIndex] = getRealizations(discountedFlooredNPV[columnIndex], numberOfSimulationPaths);
 		}
 		
-		// The partial sums are initialized and fetched. 
-		List<Future<Double>> partialSums = new ArrayList<Future<Double>>();
-		partialSums = executor.invokeAll(callablesFinalSum);
+		return discountedFlooredNPVRealizations;
+		
+	}
+	
+	
+	/**
+	 * @param randomVariable A random variable.
+	 * @param numberOfSimulationPaths The number of simulated paths.
+	 * @return The realizations of the random variable. A deterministic random variable is expanded to numberOfSimulationPaths realizations.
+	 */
+	private static double[] getRealizations(RandomVariableInterface randomVariable, int numberOfSimulationPaths) {
+		
+		if( randomVariable.isDeterministic() ) {
+			double[] realizations = new double[numberOfSimulationPaths];
+			Arrays.fill(realizations, randomVariable.get(0));
+			return realizations;
+		}
 		
+		return randomVariable.getRealizations();
 		
-		////
-		// The partial sums are added together.
-		////
+	}
 	
-		double worstCaseCVAUnderConstraint = 0.0;
 	
-		for(int columnIndex = 0; columnIndex < numberOfColumns - 1 /* The last column is the zero column */; columnIndex++) {
-			
-			worstCaseCVAUnderConstraint += partialSums.get(columnIndex).get();
-			
+	/**
+	 * The IPFP of {@link #getWorstCaseCVANotToFarFromIndependence(double, RandomVariableInterface[], int, double[], double, double, double)} 
+	 * storing the whole matrix in contiguous row blocks, see {@link FullMatrixIPFP}.
+	 */
+	private double getWorstCaseCVAWithFullMatrix(final double penaltyFactor, final RandomVariableInterface[] discountedFlooredNPV, final int numberOfSimulationPaths, final double[] defaultProbabilities, final double terminationCriterionRows, final double terminationCriterionColumns, final double terminationCriterionColumnsAbsolut ) throws InterruptedException, ExecutionException {
+		
+		double maximalDiscountedFlooredNPV = getMaximalDiscountedFlooredNPV(discountedFlooredNPV, executor);
+		
+		// In case exp( penaltyFactor * NPV ) overflows (or underflows) the matrix cannot be represented.
+		// Then the log-domain IPFP of the scaling vector form is used.
+		if( getScalingParameter(maximalDiscountedFlooredNPV, numberOfSimulationPaths, penaltyFactor) > 0.0 ) {
+			return getWorstCaseCVAWithScalingVectors(penaltyFactor, discountedFlooredNPV, numberOfSimulationPaths, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
 		}
 		
+		// The realizations of the NPV columns. Speeds up performance significantly.
+		WeightedPaths weightedPaths = getWeightedPaths(discountedFlooredNPV, numberOfSimulationPaths);
 		
-		////
-		// The executor has to be shutdown before leaving the method.
-		// Otherwise the threads will continue to run.
-		////
+		// The matrix is stored in contiguous row blocks. Each block is treated by one task.
+		FullMatrixIPFP ipfp = getFullMatrixIPFP(weightedPaths, defaultProbabilities, penaltyFactor, getNumberOfRowBlocks(weightedPaths.getNumberOfPaths(), defaultProbabilities.length), 
+				isUsingSinglePrecision(maximalDiscountedFlooredNPV, weightedPaths.getNumberOfPaths(), penaltyFactor));
 		
 		try {
-			executor.shutdown();
+			
+			ipfp.reset(executor);
+			
+			ipfp.setAdaptiveRelaxation(accelerated);
+			
+			ipfp.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+			
+			return ipfp.getCVA(executor);
+			
 		}
-		catch(SecurityException e) {
-			// TODO: Improve exception handling here
+		finally {
+			// An out of core matrix releases its file.
+			ipfp.close();
 		}
 		
-		return worstCaseCVAUnderConstraint;
-	
 	}
 
 	
 	/**
 	 * 
-	 * Not used at the moment.
+	 * The rescaling parameter is positive if and only if exp( penaltyFactor * NPV ) overflows (or underflows for negative penalty factors)
+	 * for some discounted and floored NPV. In this case the IPFP is performed in the log-domain, 
+	 * see {@link ScalingVectorIPFP}.
 	 * 
 	 * @param discountedFlooredNPV
 	 * @param numberOfSimulationPaths
 	 * @param executor
 	 * @param penaltyFactor
-	 * @return
+	 * @return The rescaling parameter.
 	 * @throws InterruptedException
 	 * @throws ExecutionException
 	 */
 	private double getScalingParameter( RandomVariableInterface[] discountedFlooredNPV, int numberOfSimulationPaths, ExecutorService executor, double penaltyFactor) throws InterruptedException, ExecutionException {
 		
+		return getScalingParameter( getMaximalDiscountedFlooredNPV(discountedFlooredNPV, executor), numberOfSimulationPaths, penaltyFactor );
+		
+	}
+	
+	
+	/**
+	 * @param maximalDiscountedFlooredNPV The maximum of the discounted and floored NPV, see {@link #getMaximalDiscountedFlooredNPV(RandomVariableInterface[], ExecutorService)}.
+	 * @param numberOfSimulationPaths
+	 * @param penaltyFactor
+	 * @return The rescaling parameter of {@link #getScalingParameter(RandomVariableInterface[], int, ExecutorService, double)}.
+	 */
+	private static double getScalingParameter( double maximalDiscountedFlooredNPV, int numberOfSimulationPaths, double penaltyFactor ) {
+		
+		// The maximum value of the discounted and floored NPV is used to test whether overflow occurs 
+		// when applying the exponential function in the calculation of the initial matrix.
+		// Basically exp(-rescalingParameter) would have to be multiplied to the numerator and denominator  exp(penaltyFactor * NPV_i)/sum_j exp(penaltyFactor * NPV_j) 
+		// such that overflow is avoided. Since a constant shift does not prevent underflow of the remaining entries the log-domain is used instead.
+		double maximalExponent = maximalDiscountedFlooredNPV * Math.abs( penaltyFactor );
+		double rescalingParameter = maximalExponent > 700 - Math.log(numberOfSimulationPaths) ? maximalExponent - ( 700 - Math.log(numberOfSimulationPaths) ) : 0.0;
+		
+		return rescalingParameter;
+		
+	}
+	
+	
+	/**
+	 * @param maximalDiscountedFlooredNPV The maximum of the discounted and floored NPV, see {@link #getMaximalDiscountedFlooredNPV(RandomVariableInterface[], ExecutorService)}.
+	 * @param numberOfPaths The number of rows of the IPFP.
+	 * @param penaltyFactor
+	 * @return True if single precision is set and the entries exp( penaltyFactor * NPV ) * F<sub>i,j</sub> of the full matrix are in the range of the float numbers.
+	 */
+	private boolean isUsingSinglePrecision( double maximalDiscountedFlooredNPV, int numberOfPaths, double penaltyFactor ) {
+		
+		return singlePrecision && maximalDiscountedFlooredNPV * Math.abs( penaltyFactor ) <= MAXIMAL_SINGLE_PRECISION_EXPONENT - Math.log(numberOfPaths);
+		
+	}
+	
+	
+	/**
+	 * @param discountedFlooredNPV
+	 * @param executor
+	 * @return The maximum of the discounted and floored (at zero) NPV over all paths and times.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	private static double getMaximalDiscountedFlooredNPV( RandomVariableInterface[] discountedFlooredNPV, ExecutorService executor ) throws InterruptedException, ExecutionException {
+		
 		////
 		// The maximum value of the discounted and floored (at zero) NPV paths is calculated.
 		// One use-case is the rescaling of the exponents in the iterative proportional fitting procedure.
 		////
 		
-		Set<Callable<Double>> callablesMaxDiscountedFlooredNPV = new HashSet<Callable<Double>>();
+		List<Callable<Double>> callablesMaxDiscountedFlooredNPV = new ArrayList<Callable<Double>>();
 		
 		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
 		
-			final double[] currentColumn = discountedFlooredNPV[columnIndex].getRealizations();
+			final RandomVariableInterface currentColumn = discountedFlooredNPV[columnIndex];
 			
 			callablesMaxDiscountedFlooredNPV.add( new Callable<Double>() {
 				
 				public Double call() {
 					
-					double currentMax = 0.0;
-					
-					for(int rowIndex = 0; rowIndex< currentColumn.length; rowIndex++) {
-					
-						if(currentColumn[rowIndex]>currentMax) {currentMax = currentColumn[rowIndex];}
-						
-					}	
-					
-					return currentMax;
+					return Math.max( currentColumn.getMax(), 0.0 );
 					
 				}
 				
@@ -638,13 +1653,7 @@ public class ConstrainedWorstCaseCVA extends AbstractCVA {
 		
 		}	
 		
-		// The maximum value of the discounted and floored NPV is used to for rescaling in the calculation 
-		// of the initial matrix such that overflow does not occur when applying the exponential function.
-		// Basically exp(-rescalingParameter) will be multiplied to following the numerator and denominator  exp(penaltyFactor * NPV_i)/sum_j exp(penaltyFactor * NPV_j) 
-		// such that overflow is avoided.
-		double rescalingParameter = currentMaximumDiscountedFlooredNPV * penaltyFactor > 700 ? currentMaximumDiscountedFlooredNPV * penaltyFactor - ( 700 - Math.log(numberOfSimulationPaths) ) : 0.0;
-		
-		return rescalingParameter;
+		return currentMaximumDiscountedFlooredNPV;
 		
 	}
 	
@@ -0,0 +1,165 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.ProductConditionalFairValue_ModelInterface;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.NPVAndDefaultsimulation.NPVAndDefaultSimulationInterface;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.ScalingVectorIPFP;
+import net.finmath.exception.CalculationException;
+
+/**
+ * The constrained worst case CVA of a fixed set of simulated paths whose default probabilities may change, see
+ * {@link ConstrainedWorstCaseCVA#getIncrementalWorstCaseCVANotToFarFromIndependence(double, net.finmath.stochastic.RandomVariableInterface[], int, double[], double, double, double)}.
+ * <br> The handle keeps the rows and the scaling vectors of the solved IPFP. If only the default curve of the counterparty moves, e.g. intraday,
+ * {@link #update(double[])} changes the column marginal of the IPFP and solves the IPFP starting from the previous solution,
+ * see {@link ScalingVectorIPFP#setDefaultProbabilities(double[])}. Neither the NPV is extracted again nor the IPFP restarted from the independent distribution.
+ * Typically a few iterations suffice. The result is the same as the one of a full recalculation up to the termination criteria of the IPFP.
+ * <br> The handle is not thread safe.
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class IncrementalWorstCaseCVA {
+
+	private final ScalingVectorIPFP ipfp;
+
+	private final ExecutorService executor;
+
+	private final int maximalNumberOfIterations;
+
+	// The error bounds of the IPFP, see ConstrainedWorstCaseCVA.
+	private final double terminationCriterionRows;
+	private final double terminationCriterionColumns;
+	private final double terminationCriterionColumnsAbsolut;
+
+	private final double lossGivenDefault;
+
+	// The default probabilities of the current worst case CVA.
+	private double[] defaultProbabilities;
+
+	// The current worst case CVA (multiplied by the loss given default) and the state of its IPFP.
+	private double cva;
+	private boolean converged;
+
+
+	/**
+	 * Solves the IPFP for the current default probabilities of the IPFP.
+	 *
+	 * @param ipfp The IPFP of the paths. It is owned by the handle.
+	 * @param defaultProbabilities The default probabilities of the IPFP.
+	 * @param lossGivenDefault The loss given default.
+	 * @param maximalNumberOfIterations The maximal number of iterations of each solve of the IPFP.
+	 * @param terminationCriterionRows The error bound for the relative distance of the path probability and the sum of each row.
+	 * @param terminationCriterionColumns The error bound for the absolute distance of the default probability and the sum of each column (used for zero default probabilities).
+	 * @param terminationCriterionColumnsAbsolut The error bound for the relative distance of the default probability and the sum of each column.
+	 * @param executor The executor service performing the block tasks of the IPFP.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	IncrementalWorstCaseCVA(ScalingVectorIPFP ipfp, double[] defaultProbabilities, double lossGivenDefault, int maximalNumberOfIterations, double terminationCriterionRows, double terminationCriterionColumns, double terminationCriterionColumnsAbsolut, ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		this.ipfp = ipfp;
+		this.defaultProbabilities = defaultProbabilities.clone();
+		this.lossGivenDefault = lossGivenDefault;
+		this.maximalNumberOfIterations = maximalNumberOfIterations;
+		this.terminationCriterionRows = terminationCriterionRows;
+		this.terminationCriterionColumns = terminationCriterionColumns;
+		this.terminationCriterionColumnsAbsolut = terminationCriterionColumnsAbsolut;
+		this.executor = executor;
+
+		solve();
+
+	}
+
+
+	/**
+	 * Recalculates the constrained worst case CVA for new default probabilities starting from the current worst case distribution.
+	 *
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @return The constrained worst case CVA (multiplied by the loss given default) for the new default probabilities.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public double update(double[] defaultProbabilities) throws InterruptedException, ExecutionException {
+
+		ipfp.setDefaultProbabilities(defaultProbabilities);
+		this.defaultProbabilities = defaultProbabilities.clone();
+
+		solve();
+
+		return cva;
+
+	}
+
+
+	/**
+	 * Recalculates the constrained worst case CVA for the default probabilities of the simulation. Only the default probabilities are taken from the simulation,
+	 * the paths are the ones the handle has been created with.
+	 *
+	 * @param npvAndDefaultSimulation The simulation providing the new default probabilities.
+	 * @return The constrained worst case CVA (multiplied by the loss given default) for the new default probabilities.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws CalculationException
+	 */
+	public double update(NPVAndDefaultSimulationInterface< ? extends ProductConditionalFairValue_ModelInterface> npvAndDefaultSimulation) throws InterruptedException, ExecutionException, CalculationException {
+		return update( ConstrainedWorstCaseCVA.getDefaultProbabilities(npvAndDefaultSimulation) );
+	}
+
+
+	private void solve() throws InterruptedException, ExecutionException {
+
+		converged = ipfp.solve(maximalNumberOfIterations, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+
+		cva = lossGivenDefault * ipfp.getCVA(executor);
+
+	}
+
+
+	/**
+	 * @return The constrained worst case CVA (multiplied by the loss given default) for the current default probabilities.
+	 */
+	public double getCVA() {
+		return cva;
+	}
+
+	/**
+	 * @return True if the last solve of the IPFP satisfied the termination criteria.
+	 */
+	public boolean isConverged() {
+		return converged;
+	}
+
+	/**
+	 * @return The number of iterations of the last solve of the IPFP.
+	 */
+	public int getNumberOfIterations() {
+		return ipfp.getNumberOfIterations();
+	}
+
+	/**
+	 * @return The default probabilities of the current constrained worst case CVA.
+	 */
+	public double[] getDefaultProbabilities() {
+		return defaultProbabilities.clone();
+	}
+
+	/**
+	 * @return The penalty factor of the worst case distribution.
+	 */
+	public double getPenaltyFactor() {
+		return ipfp.getPenaltyFactor();
+	}
+
+	/**
+	 * @return The loss given default.
+	 */
+	public double getLossGivenDefault() {
+		return lossGivenDefault;
+	}
+
+}
@@ -4,11 +4,21 @@
 
 package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import main.net.finmath.antonsporrer.masterthesis.integration.IncrementalIntegrator;
 import main.net.finmath.antonsporrer.masterthesis.integration.Integration;
 import main.net.finmath.antonsporrer.masterthesis.integration.Integration.IntegrationMethod;
 import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.NPVAndDefaultsimulation.NPVAndDefaultIntensitySimulationInterface;
 import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.RandomVariable;
 import net.finmath.stochastic.RandomVariableInterface;
+import net.finmath.time.TimeDiscretizationInterface;
 
 /**
  * 
@@ -27,6 +37,13 @@ import net.finmath.stochastic.RandomVariableInterface;
  */
 public class IntensityBasedCVA extends AbstractCVA{
 
+	// The partition of the time points of the parallel calculation. It depends only on the number of time points, not on the number of threads.
+	private static final int MINIMAL_NUMBER_OF_INTERVALS_PER_TASK = 16;
+	private static final int MAXIMAL_NUMBER_OF_TASKS = 256;
+	
+	// The bounds of the parts are multiples of six intervals, such that the panels of Simpson and GaussLobatto are not split.
+	private static final int NUMBER_OF_INTERVALS_PER_PART_UNIT = 6;
+	
 	public IntensityBasedCVA(double lossGivenDefault) {
 		super(lossGivenDefault);
 	}
@@ -37,6 +54,13 @@ public class IntensityBasedCVA extends AbstractCVA{
 	 * <br> CVA = LGD * E[ int_0^T ( N<sub>0</sub> * NPV(u) / N(u) )<sup>+</sup> * &lambda;(u) * exp( - int_0^u &lambda;(s) ds ) du ]
 	 * <br >Where LGD is the loss given default N is the numraire provided by the underlying model NPV is the net present value provided by the underlying model
 	 * and &lambda; is the default intensity.
+	 * <br> The integrand and the integral are calculated in one pass over the time points. At each time point the realizations of the simulation are read path by path 
+	 * and the integrand is added to the integral of the path by an {@link IncrementalIntegrator}. 
+	 * Thus apart from the random variables of the simulation only the integrals, the lost digits of their Kahan summation and 
+	 * the integrand at the previous time point are stored, i.e. the memory does not grow with the number of time points. 
+	 * The result is the same as the one of 
+	 * {@link Integration#getIntegral(RandomVariableInterface[], TimeDiscretizationInterface, IntegrationMethod)} 
+	 * applied to the random variables of the integrand.
 	 * 
 	 * 
 	 * @param npvAndDefaultIntensitySimulation The commen simulation of the fair product value and the default intensity.
@@ -47,20 +71,198 @@ public class IntensityBasedCVA extends AbstractCVA{
 	@SuppressWarnings("rawtypes")
 	public RandomVariableInterface getCVA(NPVAndDefaultIntensitySimulationInterface npvAndDefaultIntensitySimulation, IntegrationMethod integrationMethod) throws CalculationException {
 		
-		int numberOfFunctionValues = npvAndDefaultIntensitySimulation.getProductProcess().getTimeDiscretization().getNumberOfTimes();
+		TimeDiscretizationInterface timeDiscretization = npvAndDefaultIntensitySimulation.getProductProcess().getTimeDiscretization();
 		
-		RandomVariableInterface[] functionValues = new RandomVariableInterface[numberOfFunctionValues];
+		int numberOfFunctionValues = timeDiscretization.getNumberOfTimes();
+		int numberOfPaths = npvAndDefaultIntensitySimulation.getNumberOfPaths();
+		
+		IncrementalIntegrator integrator = new IncrementalIntegrator(integrationMethod, numberOfPaths);
 		
+		for(int timeIndex = 0; timeIndex < numberOfFunctionValues ; timeIndex++) {
+			
+			integrator.addTimePoint( timeDiscretization.getTime(timeIndex) );
+			
+			addIntegrand(integrator, npvAndDefaultIntensitySimulation, timeIndex);
+			
+		}
+		
+		return integrator.getIntegral().mult(this.getLGD());
 
+	}
+	
+	
+	/**
+	 * The CVA is calculated according to {@link #getCVA(NPVAndDefaultIntensitySimulationInterface, IntegrationMethod)} where the time points are processed in parallel.
+	 * <br> The time points are split into consecutive parts, adjacent parts sharing their boundary time point. The integral over the intervals of each part is calculated by a task of the executor. 
+	 * The parts consist of multiples of six intervals (apart from the last one), hence the panels of Simpson and GaussLobatto are not split. 
+	 * The integrals of the parts are added path by path in the order of the parts by Kahan summation. The partition depends only on the number of time points, 
+	 * hence the result is the same for each executor and each number of threads. It may differ from the one of the serial calculation in the last digits.
+	 * <br> The lazily initialized state of the simulation (e.g. the exponential of the integrated intensity) is initialized by the calling thread 
+	 * before the tasks are started. The simulation has to allow concurrent read access afterwards.
+	 * 
+	 * @param npvAndDefaultIntensitySimulation The commen simulation of the fair product value and the default intensity.
+	 * @param integrationMethod The integration method used to approximate the integral.
+	 * @param executor The executor performing the tasks, e.g. a {@link java.util.concurrent.ForkJoinPool}. It is not shut down by this method.
+	 * @return CVA The credit value adjustment based on the input parameters.
+	 * @throws CalculationException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	@SuppressWarnings("rawtypes")
+	public RandomVariableInterface getCVA(final NPVAndDefaultIntensitySimulationInterface npvAndDefaultIntensitySimulation, final IntegrationMethod integrationMethod, ExecutorService executor) throws CalculationException, InterruptedException, ExecutionException {
+		
+		final TimeDiscretizationInterface timeDiscretization = npvAndDefaultIntensitySimulation.getProductProcess().getTimeDiscretization();
+		
+		int numberOfFunctionValues = timeDiscretization.getNumberOfTimes();
+		final int numberOfPaths = npvAndDefaultIntensitySimulation.getNumberOfPaths();
+		
+		// Initializing the lazily calculated random variables of the simulation by the calling thread.
+		npvAndDefaultIntensitySimulation.getDiscountedNPV(0, 0);
+		npvAndDefaultIntensitySimulation.getIntensity(0);
+		npvAndDefaultIntensitySimulation.getExpOfIntegratedIntensity(0);
+		
+		int numberOfIntervals = Math.max( numberOfFunctionValues - 1, 1 );
+		int numberOfTasks = Math.max( Math.min( numberOfIntervals / MINIMAL_NUMBER_OF_INTERVALS_PER_TASK, MAXIMAL_NUMBER_OF_TASKS ), 1 );
+		
+		List<Callable<double[]>> callablesPartialIntegrals = new ArrayList<Callable<double[]>>();
+		
+		for(int taskIndex = 0; taskIndex < numberOfTasks; taskIndex++) {
+			
+			// The part of the task consists of the time indices firstTimeIndex, ... , lastTimeIndex. The last time index is the first one of the next part.
+			final int firstTimeIndex = getFirstTimeIndexOfPart(numberOfIntervals, numberOfTasks, taskIndex);
+			final int lastTimeIndex = Math.min( getFirstTimeIndexOfPart(numberOfIntervals, numberOfTasks, taskIndex + 1), numberOfFunctionValues - 1 );
+			
+			callablesPartialIntegrals.add( new Callable<double[]>() {
+				
+				public double[] call() throws CalculationException {
+					
+					IncrementalIntegrator integrator = new IncrementalIntegrator(integrationMethod, numberOfPaths);
+					
+					for(int timeIndex = firstTimeIndex; timeIndex <= lastTimeIndex; timeIndex++) {
+						
+						integrator.addTimePoint( timeDiscretization.getTime(timeIndex) );
+						
+						addIntegrand(integrator, npvAndDefaultIntensitySimulation, timeIndex);
+						
+					}
+					
+					double[] partialIntegrals = new double[numberOfPaths];
+					for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+						partialIntegrals[pathIndex] = integrator.getIntegral(pathIndex);
+					}
+					
+					return partialIntegrals;
+					
+				}
+				
+			});
+			
+		}
+		
+		List<Future<double[]>> partialIntegralsFutures = executor.invokeAll(callablesPartialIntegrals);
+		
+		// Adding the integrals of the parts in the order of the parts by Kahan summation.
+		double[] integral = new double[numberOfPaths];
+		double[] negativLostDigitsStorage = new double[numberOfPaths];
+		
+		for(Future<double[]> partialIntegralsFuture : partialIntegralsFutures) {
+			
+			double[] partialIntegrals = partialIntegralsFuture.get();
+			
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				double nextToAdd = partialIntegrals[pathIndex] - negativLostDigitsStorage[pathIndex];
+				double helperNextSum = integral[pathIndex] + nextToAdd;
+				negativLostDigitsStorage[pathIndex] = ( helperNextSum - integral[pathIndex] ) - nextToAdd;
+				integral[pathIndex] = helperNextSum;
+			}
+			
+		}
+		
+		return new RandomVariable( timeDiscretization.getTime( numberOfFunctionValues - 1 ), integral ).mult(this.getLGD());
+		
+	}
+	
+	
+	/**
+	 * The CVA term structure, i.e. the CVA of {@link #getCVA(NPVAndDefaultIntensitySimulationInterface, IntegrationMethod)} where the integral ends at each time point 
+	 * [ CVA(t_i) = LGD * E[ int_0^t_i ... du ] ]. The integrals up to all time points are calculated in one pass by 
+	 * {@link Integration#getCumulativeIntegral(RandomVariableInterface[], TimeDiscretizationInterface, IntegrationMethod)}. 
+	 * The last element is the same as the result of getCVA.
+	 * 
+	 * @param npvAndDefaultIntensitySimulation The commen simulation of the fair product value and the default intensity.
+	 * @param integrationMethod The integration method used to approximate the integral.
+	 * @return At index i the credit value adjustment of the defaults up to the time point t_i of the time discretization of the product.
+	 * @throws CalculationException
+	 */
+	@SuppressWarnings("rawtypes")
+	public RandomVariableInterface[] getCVATermStructure(NPVAndDefaultIntensitySimulationInterface npvAndDefaultIntensitySimulation, IntegrationMethod integrationMethod) throws CalculationException {
 		
+		TimeDiscretizationInterface timeDiscretization = npvAndDefaultIntensitySimulation.getProductProcess().getTimeDiscretization();
+		
+		int numberOfFunctionValues = timeDiscretization.getNumberOfTimes();
+		int numberOfPaths = npvAndDefaultIntensitySimulation.getNumberOfPaths();
+		
+		RandomVariableInterface[] functionValues = new RandomVariableInterface[numberOfFunctionValues];
 		for(int timeIndex = 0; timeIndex < numberOfFunctionValues ; timeIndex++) {
-			functionValues[timeIndex] = (npvAndDefaultIntensitySimulation.getDiscountedNPV(timeIndex, 0).floor(0.0))
-					.mult( npvAndDefaultIntensitySimulation.getIntensity(timeIndex) )
-					.div( npvAndDefaultIntensitySimulation.getExpOfIntegratedIntensity(timeIndex) ); 
+			
+			RandomVariableInterface discountedNPV = npvAndDefaultIntensitySimulation.getDiscountedNPV(timeIndex, 0);
+			RandomVariableInterface intensity = npvAndDefaultIntensitySimulation.getIntensity(timeIndex);
+			RandomVariableInterface expOfIntegratedIntensity = npvAndDefaultIntensitySimulation.getExpOfIntegratedIntensity(timeIndex);
+			
+			double[] realizations = new double[numberOfPaths];
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				realizations[pathIndex] = getIntegrand( discountedNPV.get(pathIndex), intensity.get(pathIndex), expOfIntegratedIntensity.get(pathIndex) );
+			}
+			functionValues[timeIndex] = new RandomVariable(timeDiscretization.getTime(timeIndex), realizations);
+			
 		}
+		
+		RandomVariableInterface[] cvaTermStructure = Integration.getCumulativeIntegral(functionValues, timeDiscretization, integrationMethod);
+		for(int timeIndex = 0; timeIndex < numberOfFunctionValues ; timeIndex++) {
+			cvaTermStructure[timeIndex] = cvaTermStructure[timeIndex].mult(this.getLGD());
+		}
+		
+		return cvaTermStructure;
+		
+	}
 	
-		return Integration.getIntegral(functionValues, npvAndDefaultIntensitySimulation.getProductProcess().getTimeDiscretization(), integrationMethod).mult(this.getLGD());
-
+	
+	/**
+	 * @return The first time index of the part, a multiple of {@link #NUMBER_OF_INTERVALS_PER_PART_UNIT}. For the part index numberOfTasks the number of intervals is returned.
+	 */
+	private static int getFirstTimeIndexOfPart(int numberOfIntervals, int numberOfTasks, int taskIndex) {
+		
+		if( taskIndex == numberOfTasks ) {
+			return numberOfIntervals;
+		}
+		
+		return (int) ( (long) numberOfIntervals * taskIndex / numberOfTasks ) / NUMBER_OF_INTERVALS_PER_PART_UNIT * NUMBER_OF_INTERVALS_PER_PART_UNIT;
+		
+	}
+	
+	
+	/**
+	 * Adds the integrand ( N<sub>0</sub> * NPV(u) / N(u) )<sup>+</sup> * &lambda;(u) * exp( - int_0^u &lambda;(s) ds ) of all paths at the time index to the integrator.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static void addIntegrand(IncrementalIntegrator integrator, NPVAndDefaultIntensitySimulationInterface npvAndDefaultIntensitySimulation, int timeIndex) throws CalculationException {
+		
+		RandomVariableInterface discountedNPV = npvAndDefaultIntensitySimulation.getDiscountedNPV(timeIndex, 0);
+		RandomVariableInterface intensity = npvAndDefaultIntensitySimulation.getIntensity(timeIndex);
+		RandomVariableInterface expOfIntegratedIntensity = npvAndDefaultIntensitySimulation.getExpOfIntegratedIntensity(timeIndex);
+		
+		for(int pathIndex = 0; pathIndex < integrator.getNumberOfPaths(); pathIndex++) {
+			integrator.addFunctionValue( pathIndex, getIntegrand( discountedNPV.get(pathIndex), intensity.get(pathIndex), expOfIntegratedIntensity.get(pathIndex) ) );
+		}
+		
+	}
+	
+	
+	/**
+	 * @return The integrand ( N<sub>0</sub> * NPV(u) / N(u) )<sup>+</sup> * &lambda;(u) * exp( - int_0^u &lambda;(s) ds ) of a path.
+	 */
+	private static double getIntegrand(double discountedNPV, double intensity, double expOfIntegratedIntensity) {
+		return Math.max( discountedNPV, 0.0 ) * intensity / expOfIntegratedIntensity;
 	}
 	
 }
@@ -4,6 +4,8 @@
 
 package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.NPVAndDefaultsimulation;
 
+import main.net.finmath.antonsporrer.masterthesis.integration.Integration;
+import main.net.finmath.antonsporrer.masterthesis.integration.Integration.IntegrationMethod;
 import main.net.finmath.antonsporrer.masterthesis.montecarlo.ProductConditionalFairValue_ModelInterface;
 import main.net.finmath.antonsporrer.masterthesis.montecarlo.product.ProductConditionalFairValueProcessInterface;
 import net.finmath.exception.CalculationException;
@@ -80,11 +82,11 @@ public abstract class AbstractNPVAndDefaultIntensitySimulation<T extends Product
 	 * 
 	 * exp(int_0^t_{timeIndex} intensity(s) ds) is approximated as follows.
 	 * In each time step the average of the intensity at the interval bounds is used as
-	 * an approximation for the intensity in this interval. These interval-wise approximation 
-	 * are multiplied with their respective interval length then the exp-function is applied 
-	 * to the result. The results are calculated successively each new step is multiplied to 
-	 * the products of the previous steps. This is an approximation
-	 * exp(int_0^t_{timeIndex} intensity(s) ds).
+	 * an approximation for the intensity in this interval, i.e. the integral is approximated by the trapezoidal rule. 
+	 * The integrals up to all time points are calculated in one pass by 
+	 * {@link Integration#getCumulativeIntegral(RandomVariableInterface[], net.finmath.time.TimeDiscretizationInterface, IntegrationMethod)}, 
+	 * i.e. path-wise by Kahan summation in log space, and the exp-function is applied once per time point. 
+	 * This is an approximation exp(int_0^t_{timeIndex} intensity(s) ds).
 	 * 
 	 * @throws CalculationException
 	 */
@@ -93,46 +95,22 @@ public abstract class AbstractNPVAndDefaultIntensitySimulation<T extends Product
 		// The number of time discretization points of the underlying model with respect to the product.
 		int numberOfTimes = this.getTimeDiscretization().getNumberOfTimes();
 		
-		// The dimension of the exponential of integrated intensity array is set. 
-		expOfIntegratedIntensity = new RandomVariableInterface[numberOfTimes];
-				
-		expOfIntegratedIntensity[0] = new RandomVariable(1.0);
-		
-		// t.
-		double currentTime = 0.0;
-		
-		// t_(i+1) - t_(i).
-		RandomVariableInterface currentDeltaT = null;
-		
-		// Default intensity at current time
-		RandomVariableInterface currentIntensity = null;
-		
-		// Default intensity at the next time 
-		RandomVariableInterface nextIntensity = null;
-		
-		// Approximation of exp(\int_0^tn intensity(s) ds ) by exp( sum_(i = 0)^n (t_(i+1) - t_(i)) (intensity(t_i) + intensity(t_(i+1))) * 0.5 ).
-		RandomVariableInterface currentExponentialFunctionOfIntensityIntegral = new RandomVariable(1.0);
+		// Default intensity at each time.
+		RandomVariableInterface[] intensities = new RandomVariableInterface[numberOfTimes];
+		for(int timeIndex = 0; timeIndex < numberOfTimes; timeIndex++) {
+			intensities[timeIndex] = this.getIntensity(timeIndex);
+		}
 		
+		// Approximation of \int_0^tn intensity(s) ds by sum_(i = 0)^(n-1) (t_(i+1) - t_(i)) (intensity(t_i) + intensity(t_(i+1))) * 0.5.
+		RandomVariableInterface[] exponentialFunctionOfIntensityIntegral = Integration.getCumulativeIntegral(intensities, this.getTimeDiscretization(), IntegrationMethod.Trapezoidal);
 		
-		for(int timeIndex = 0; timeIndex < numberOfTimes - 1; timeIndex++) {
-			
-			currentTime = this.getTimeDiscretization().getTime(timeIndex);
-			
-			currentDeltaT = new RandomVariable( this.getTimeDiscretization().getTime(timeIndex+1) - currentTime );
-			
-			// intensity(t_timeIndex)
-			currentIntensity = this.getIntensity(timeIndex);
-			
-			// intensity(t_{timeIndex + 1})
-			nextIntensity = this.getIntensity(timeIndex + 1);
-			
-			// Multiplying the new intensity step to the running exponential of the integral. Thereby adding the integral approximation summands.
-			// Calculating exp( sum_(k = 0)^(i-1) (t_(k+1) - t_(k)) (intensity(t_k) + intensity(t_(k+1))) * 0.5  ) *  exp(  (t_(i+1) - t_(i)) * (intensity(t_i) + intensity(t_(i+1))) * 0.5 ).
-			currentExponentialFunctionOfIntensityIntegral = currentExponentialFunctionOfIntensityIntegral.mult(  (currentIntensity.add(nextIntensity)).mult(0.5).mult(currentDeltaT).exp() );
-			
-			expOfIntegratedIntensity[timeIndex + 1] = currentExponentialFunctionOfIntensityIntegral; 
-			
+		exponentialFunctionOfIntensityIntegral[0] = new RandomVariable(1.0);
+		for(int timeIndex = 1; timeIndex < numberOfTimes; timeIndex++) {
+			exponentialFunctionOfIntensityIntegral[timeIndex] = exponentialFunctionOfIntensityIntegral[timeIndex].exp();
 		}
+		
+		// The array is published after it has been filled.
+		expOfIntegratedIntensity = exponentialFunctionOfIntensityIntegral;
 	
 	}
 
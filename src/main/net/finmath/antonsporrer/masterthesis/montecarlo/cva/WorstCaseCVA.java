@@ -0,0 +1,517 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva;
+
+import java.util.Arrays;
+
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.ProductConditionalFairValue_ModelInterface;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.NPVAndDefaultsimulation.NPVAndDefaultSimulationInterface;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.WeightedPaths;
+import net.finmath.exception.CalculationException;
+import net.finmath.stochastic.RandomVariableInterface;
+
+/**
+ * This class implements the calculation of the (unconstrained) worst case CVA as in
+ * Glasserman & Yang, Bounding Wrong-Way Risk in CVA Calculation, May 2015, i.e. the maximum of
+ * <br> sum<sub>i,j</sub> P<sub>i,j</sub> * V<sub>i,j</sub>
+ * <br> over all distributions P of the path and the default interval with the given marginals, where V<sub>i,j</sub> is the discounted and floored NPV
+ * of path i at the default interval j (zero for the last interval). It is the limit of the constrained worst case CVA of {@link ConstrainedWorstCaseCVA}
+ * for large penalty factors.
+ * <br> The maximization is a transportation problem with many sources (the paths) and few sinks (the default intervals). It is solved exactly
+ * by successive shortest paths on the graph of the default intervals:
+ * Initially each path is assigned to a default interval maximizing its NPV (greedy), which violates the default marginal.
+ * Then mass is moved from the overloaded to the underloaded default intervals along shortest paths with respect to the loss in CVA,
+ * where the edge from the interval a to the interval b is realized by the path of interval a with the smallest loss V<sub>i,a</sub> - V<sub>i,b</sub>.
+ * These paths are found by one heap per pair of intervals. Since the loss does not depend on the dual variables (potentials) of the intervals
+ * the heaps never have to be reordered. Paths may be split between intervals (at most a few per augmentation).
+ * <br> Identical paths are merged before the solve, see {@link WeightedPaths#getDeduplicatedPaths(double[][])}.
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class WorstCaseCVA extends AbstractCVA {
+
+	// Excesses and deficits of the default intervals below this value are considered to be zero.
+	private static final double MASS_TOLERANCE = 1.0E-14;
+
+
+	public WorstCaseCVA(double lossGivenDefault) {
+		super(lossGivenDefault);
+	}
+
+
+	/**
+	 * @param npvAndDefaultSimulation
+	 * @return The worst case CVA.
+	 * @throws CalculationException
+	 */
+	public double getWorstCaseCVA( NPVAndDefaultSimulationInterface< ? extends ProductConditionalFairValue_ModelInterface> npvAndDefaultSimulation ) throws CalculationException {
+
+		return this.getLGD() * getWorstCaseCVA( ConstrainedWorstCaseCVA.getDiscountedFlooredNPV(npvAndDefaultSimulation), npvAndDefaultSimulation.getNumberOfPaths(), ConstrainedWorstCaseCVA.getDefaultProbabilities(npvAndDefaultSimulation) );
+
+	}
+
+
+	/**
+	 * @param discountedFlooredNPV (Numeraire(0)/Numeraire(t_i) * (NPV(t_i))<sup> + </sup>)<sub> i = 1, ... , d </sub>
+	 * @param numberOfSimulationPaths The number of simulated paths.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @return The worst case CVA (loss given default equal to one).
+	 */
+	public double getWorstCaseCVA( RandomVariableInterface[] discountedFlooredNPV, int numberOfSimulationPaths, double[] defaultProbabilities ) {
+
+		double[][] discountedFlooredNPVRealizations = new double[discountedFlooredNPV.length][];
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			if( discountedFlooredNPV[columnIndex].isDeterministic() ) {
+				discountedFlooredNPVRealizations[columnIndex] = new double[numberOfSimulationPaths];
+				Arrays.fill(discountedFlooredNPVRealizations[columnIndex], discountedFlooredNPV[columnIndex].get(0));
+			}
+			else {
+				discountedFlooredNPVRealizations[columnIndex] = discountedFlooredNPV[columnIndex].getRealizations();
+			}
+		}
+
+		// Without NPV columns there is nothing to merge.
+		WeightedPaths weightedPaths;
+		if( discountedFlooredNPVRealizations.length > 0 ) {
+			weightedPaths = WeightedPaths.getDeduplicatedPaths(discountedFlooredNPVRealizations);
+		}
+		else {
+			double[] pathProbabilities = new double[numberOfSimulationPaths];
+			Arrays.fill(pathProbabilities, 1.0 / numberOfSimulationPaths);
+			weightedPaths = new WeightedPaths(discountedFlooredNPVRealizations, pathProbabilities, numberOfSimulationPaths);
+		}
+
+		return getWorstCaseCVA( weightedPaths.getDiscountedFlooredNPV(), weightedPaths.getPathProbabilities(), defaultProbabilities );
+
+	}
+
+
+	/**
+	 * Solves the transportation problem of the worst case CVA by successive shortest paths.
+	 *
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param pathProbabilities The probabilities of the paths.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @return The worst case CVA (loss given default equal to one).
+	 */
+	public static double getWorstCaseCVA( double[][] discountedFlooredNPV, double[] pathProbabilities, double[] defaultProbabilities ) {
+
+		if( discountedFlooredNPV.length != defaultProbabilities.length - 1 ) {
+			throw new IllegalArgumentException("The number of NPV columns has to be the number of default probabilities minus one.");
+		}
+
+		return new TransportationProblem(discountedFlooredNPV, pathProbabilities, defaultProbabilities).solve();
+
+	}
+
+
+	/**
+	 * The state of the successive shortest path algorithm. The mass of the paths is stored in pieces. Each piece is the mass of one path
+	 * assigned to one default interval. Initially there is one piece per path. A piece is split if only a part of it is moved.
+	 */
+	private static class TransportationProblem {
+
+		private final double[][] discountedFlooredNPV;
+		private final double[] defaultProbabilities;
+
+		private final int numberOfColumns;
+
+		// The pieces: The path, the default interval and the mass of each piece.
+		private int numberOfPieces;
+		private int[] pieceRow;
+		private int[] pieceColumn;
+		private double[] pieceMass;
+
+		// At index a * numberOfColumns + b the heap of the pieces of the interval a ordered by the loss V_{i,a} - V_{i,b}.
+		private final PieceHeap[] heaps;
+
+		// At index a * numberOfColumns + b the top of the heap and its loss (infinite if empty). Dijkstra's algorithm only reads these arrays.
+		private final int[] edgePieces;
+		private final double[] edgeLosses;
+
+		// The load of each interval minus its default probability.
+		private final double[] excess;
+
+		// The dual variables (potentials) of the intervals.
+		private final double[] potentials;
+
+
+		TransportationProblem(double[][] discountedFlooredNPV, double[] pathProbabilities, double[] defaultProbabilities) {
+
+			this.discountedFlooredNPV = discountedFlooredNPV;
+			this.defaultProbabilities = defaultProbabilities;
+			this.numberOfColumns = defaultProbabilities.length;
+
+			int numberOfRows = pathProbabilities.length;
+
+			pieceRow = new int[numberOfRows + numberOfColumns];
+			pieceColumn = new int[numberOfRows + numberOfColumns];
+			pieceMass = new double[numberOfRows + numberOfColumns];
+
+			excess = new double[numberOfColumns];
+			potentials = new double[numberOfColumns];
+
+			////
+			// The greedy start: Each path is assigned to an interval of maximal NPV.
+			// In case of ties the later interval is chosen, e.g. zero paths are assigned to the last interval.
+			////
+
+			int[] numberOfPiecesOfColumn = new int[numberOfColumns];
+
+			for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+
+				if( pathProbabilities[rowIndex] == 0.0 ) {
+					continue;
+				}
+
+				int maximizingColumn = numberOfColumns - 1;
+				double maximalValue = 0.0;
+				for(int columnIndex = numberOfColumns - 2; columnIndex >= 0; columnIndex--) {
+					if( discountedFlooredNPV[columnIndex][rowIndex] > maximalValue ) {
+						maximalValue = discountedFlooredNPV[columnIndex][rowIndex];
+						maximizingColumn = columnIndex;
+					}
+				}
+
+				pieceRow[numberOfPieces] = rowIndex;
+				pieceColumn[numberOfPieces] = maximizingColumn;
+				pieceMass[numberOfPieces] = pathProbabilities[rowIndex];
+				numberOfPieces++;
+
+				numberOfPiecesOfColumn[maximizingColumn]++;
+				excess[maximizingColumn] += pathProbabilities[rowIndex];
+
+			}
+
+			for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+				excess[columnIndex] -= defaultProbabilities[columnIndex];
+			}
+
+			heaps = new PieceHeap[numberOfColumns * numberOfColumns];
+			for(int fromColumn = 0; fromColumn < numberOfColumns; fromColumn++) {
+				for(int toColumn = 0; toColumn < numberOfColumns; toColumn++) {
+					if( fromColumn != toColumn ) {
+						heaps[fromColumn * numberOfColumns + toColumn] = new PieceHeap(fromColumn, toColumn, numberOfPiecesOfColumn[fromColumn]);
+					}
+				}
+			}
+
+			for(int pieceIndex = 0; pieceIndex < numberOfPieces; pieceIndex++) {
+				int fromColumn = pieceColumn[pieceIndex];
+				for(int toColumn = 0; toColumn < numberOfColumns; toColumn++) {
+					if( fromColumn != toColumn ) {
+						heaps[fromColumn * numberOfColumns + toColumn].append(pieceIndex);
+					}
+				}
+			}
+
+			edgePieces = new int[numberOfColumns * numberOfColumns];
+			edgeLosses = new double[numberOfColumns * numberOfColumns];
+			Arrays.fill(edgePieces, -1);
+			Arrays.fill(edgeLosses, Double.POSITIVE_INFINITY);
+
+			for(int edgeIndex = 0; edgeIndex < heaps.length; edgeIndex++) {
+				if( heaps[edgeIndex] != null ) {
+					heaps[edgeIndex].heapify();
+					updateEdge(edgeIndex);
+				}
+			}
+
+		}
+
+
+		/**
+		 * @return The maximal value of the transportation problem.
+		 */
+		double solve() {
+
+			double[] distance = new double[numberOfColumns];
+			int[] predecessor = new int[numberOfColumns];
+			int[] edgePiece = new int[numberOfColumns];
+			boolean[] isVisited = new boolean[numberOfColumns];
+
+			while( true ) {
+
+				////
+				// Dijkstra's algorithm on the intervals starting from all overloaded intervals.
+				// The reduced loss of moving a piece of path i from a to b is V_{i,a} - V_{i,b} - potential_a + potential_b >= 0.
+				////
+
+				boolean hasExcess = false;
+				for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+					isVisited[columnIndex] = false;
+					predecessor[columnIndex] = -1;
+					distance[columnIndex] = excess[columnIndex] > MASS_TOLERANCE ? 0.0 : Double.POSITIVE_INFINITY;
+					hasExcess |= excess[columnIndex] > MASS_TOLERANCE;
+				}
+
+				if( ! hasExcess ) {
+					break;
+				}
+
+				int sinkColumn = -1;
+
+				for(int step = 0; step < numberOfColumns; step++) {
+
+					int currentColumn = -1;
+					for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+						if( ! isVisited[columnIndex] && distance[columnIndex] < Double.POSITIVE_INFINITY && ( currentColumn < 0 || distance[columnIndex] < distance[currentColumn] ) ) {
+							currentColumn = columnIndex;
+						}
+					}
+
+					if( currentColumn < 0 ) {
+						break;
+					}
+
+					isVisited[currentColumn] = true;
+
+					if( excess[currentColumn] < - MASS_TOLERANCE ) {
+						sinkColumn = currentColumn;
+						break;
+					}
+
+					for(int toColumn = 0; toColumn < numberOfColumns; toColumn++) {
+
+						if( toColumn == currentColumn || isVisited[toColumn] ) {
+							continue;
+						}
+
+						int edgeIndex = currentColumn * numberOfColumns + toColumn;
+						if( edgePieces[edgeIndex] < 0 ) {
+							continue;
+						}
+
+						double reducedLoss = Math.max( edgeLosses[edgeIndex] - potentials[currentColumn] + potentials[toColumn], 0.0 );
+
+						if( distance[currentColumn] + reducedLoss < distance[toColumn] ) {
+							distance[toColumn] = distance[currentColumn] + reducedLoss;
+							predecessor[toColumn] = currentColumn;
+							edgePiece[toColumn] = edgePieces[edgeIndex];
+						}
+
+					}
+
+				}
+
+				// The remaining excess is a rounding error of the marginals.
+				if( sinkColumn < 0 ) {
+					break;
+				}
+
+				// Updating the potentials such that the reduced losses stay non-negative and vanish along the shortest path.
+				for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+					potentials[columnIndex] -= Math.min( distance[columnIndex], distance[sinkColumn] );
+				}
+
+				////
+				// Augmenting along the shortest path. The edges are processed from the sink to the source such that
+				// a piece entering an interval does not change the piece of the next edge.
+				////
+
+				int sourceColumn = sinkColumn;
+				double amount = - excess[sinkColumn];
+				while( predecessor[sourceColumn] >= 0 ) {
+					amount = Math.min( amount, pieceMass[edgePiece[sourceColumn]] );
+					sourceColumn = predecessor[sourceColumn];
+				}
+				amount = Math.min( amount, excess[sourceColumn] );
+
+				for(int toColumn = sinkColumn; predecessor[toColumn] >= 0; toColumn = predecessor[toColumn]) {
+					double movedAmount = movePiece(edgePiece[toColumn], toColumn, amount);
+					excess[predecessor[toColumn]] -= movedAmount;
+					excess[toColumn] += movedAmount;
+				}
+
+			}
+
+			////
+			// The CVA of the optimal distribution.
+			////
+
+			double runningSum = 0.0;
+			double helperNextSum = 0.0;
+			double nextToAdd = 0.0;
+			double negativLostDigitsStorage = 0.0;
+
+			for(int pieceIndex = 0; pieceIndex < numberOfPieces; pieceIndex++) {
+
+				nextToAdd = pieceMass[pieceIndex] * getValue(pieceRow[pieceIndex], pieceColumn[pieceIndex]) - negativLostDigitsStorage;
+				helperNextSum = runningSum + nextToAdd;
+				negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+				runningSum = helperNextSum;
+
+			}
+
+			return runningSum;
+
+		}
+
+
+		/**
+		 * Moves the amount of the piece to the interval. If the amount is less than the mass of the piece, the piece is split.
+		 * If the remaining mass would be a rounding error the whole piece is moved. Otherwise the rounding errors
+		 * of the marginals would create pieces of negligible mass which are moved around again and again.
+		 *
+		 * @return The moved mass.
+		 */
+		private double movePiece(int pieceIndex, int toColumn, double amount) {
+
+			int movedPieceIndex = pieceIndex;
+
+			if( pieceMass[pieceIndex] - amount > MASS_TOLERANCE ) {
+
+				pieceMass[pieceIndex] -= amount;
+
+				if( numberOfPieces == pieceRow.length ) {
+					int capacity = 2 * numberOfPieces;
+					pieceRow = Arrays.copyOf(pieceRow, capacity);
+					pieceColumn = Arrays.copyOf(pieceColumn, capacity);
+					pieceMass = Arrays.copyOf(pieceMass, capacity);
+				}
+
+				movedPieceIndex = numberOfPieces++;
+				pieceRow[movedPieceIndex] = pieceRow[pieceIndex];
+				pieceMass[movedPieceIndex] = amount;
+
+			}
+
+			// The entries of a moved piece in the heaps of its previous interval are removed lazily.
+			int fromColumn = pieceColumn[movedPieceIndex];
+			pieceColumn[movedPieceIndex] = toColumn;
+
+			for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+				if( movedPieceIndex == pieceIndex && columnIndex != fromColumn && edgePieces[fromColumn * numberOfColumns + columnIndex] == pieceIndex ) {
+					updateEdge(fromColumn * numberOfColumns + columnIndex);
+				}
+
+				if( columnIndex != toColumn ) {
+					int edgeIndex = toColumn * numberOfColumns + columnIndex;
+					heaps[edgeIndex].add(movedPieceIndex);
+					double loss = heaps[edgeIndex].getKey(movedPieceIndex);
+					if( loss < edgeLosses[edgeIndex] ) {
+						edgePieces[edgeIndex] = movedPieceIndex;
+						edgeLosses[edgeIndex] = loss;
+					}
+				}
+
+			}
+
+			return pieceMass[movedPieceIndex];
+
+		}
+
+
+		/**
+		 * Updates the top of the heap of the edge after the previous top left its interval.
+		 */
+		private void updateEdge(int edgeIndex) {
+			int pieceIndex = heaps[edgeIndex].peek();
+			edgePieces[edgeIndex] = pieceIndex;
+			edgeLosses[edgeIndex] = pieceIndex < 0 ? Double.POSITIVE_INFINITY : heaps[edgeIndex].getKey(pieceIndex);
+		}
+
+
+		private double getValue(int rowIndex, int columnIndex) {
+			return columnIndex < numberOfColumns - 1 ? discountedFlooredNPV[columnIndex][rowIndex] : 0.0;
+		}
+
+
+		/**
+		 * A binary min-heap of the pieces of the interval fromColumn ordered by the loss V_{i,fromColumn} - V_{i,toColumn} of moving them to toColumn.
+		 * Pieces which left the interval are removed when they reach the top.
+		 */
+		private class PieceHeap {
+
+			private final int fromColumn;
+			private final int toColumn;
+
+			private int[] pieces;
+			private int size = 0;
+
+			PieceHeap(int fromColumn, int toColumn, int initialCapacity) {
+				this.fromColumn = fromColumn;
+				this.toColumn = toColumn;
+				this.pieces = new int[Math.max( initialCapacity, 1 )];
+			}
+
+			double getKey(int pieceIndex) {
+				int rowIndex = pieceRow[pieceIndex];
+				return getValue(rowIndex, fromColumn) - getValue(rowIndex, toColumn);
+			}
+
+			void append(int pieceIndex) {
+				if( size == pieces.length ) {
+					pieces = Arrays.copyOf(pieces, 2 * size);
+				}
+				pieces[size++] = pieceIndex;
+			}
+
+			void heapify() {
+				for(int position = size / 2 - 1; position >= 0; position--) {
+					siftDown(position);
+				}
+			}
+
+			void add(int pieceIndex) {
+				append(pieceIndex);
+				siftUp(size - 1);
+			}
+
+			/**
+			 * @return The piece of the interval with the smallest loss or -1 if the interval has no pieces.
+			 */
+			int peek() {
+
+				while( size > 0 && pieceColumn[pieces[0]] != fromColumn ) {
+					pieces[0] = pieces[--size];
+					siftDown(0);
+				}
+
+				return size > 0 ? pieces[0] : -1;
+
+			}
+
+			private void siftUp(int position) {
+				int pieceIndex = pieces[position];
+				double key = getKey(pieceIndex);
+				while( position > 0 ) {
+					int parent = ( position - 1 ) / 2;
+					if( getKey(pieces[parent]) <= key ) {
+						break;
+					}
+					pieces[position] = pieces[parent];
+					position = parent;
+				}
+				pieces[position] = pieceIndex;
+			}
+
+			private void siftDown(int position) {
+				int pieceIndex = pieces[position];
+				double key = getKey(pieceIndex);
+				while( true ) {
+					int child = 2 * position + 1;
+					if( child >= size ) {
+						break;
+					}
+					if( child + 1 < size && getKey(pieces[child + 1]) < getKey(pieces[child]) ) {
+						child++;
+					}
+					if( getKey(pieces[child]) >= key ) {
+						break;
+					}
+					pieces[position] = pieces[child];
+					position = child;
+				}
+				pieces[position] = pieceIndex;
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva;
+
+/**
+ * The constrained worst case CVA decomposed by default intervals, see
+ * {@link ConstrainedWorstCaseCVA#getWorstCaseCVAProfileNotToFarFromIndependence(double, net.finmath.stochastic.RandomVariableInterface[], int, double[], double, double, double)}.
+ * <br> For the worst case distribution P of the paths i and the default intervals j the contribution of the default interval j is
+ * sum<sub>i</sub> V<sub>i,j</sub> * P<sub>i,j</sub> and the conditional expected exposure is E<sub>P</sub>[ V<sub>j</sub> | default in interval j ],
+ * i.e. the contribution divided by the probability sum<sub>i</sub> P<sub>i,j</sub> of the interval.
+ * Optionally the worst case distribution itself is stored.
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class WorstCaseCVAProfile {
+
+	private final double penaltyFactor;
+
+	private final double cva;
+
+	// At index j the contribution of the default interval j to the CVA.
+	private final double[] contributions;
+
+	// At index j the probability of the default interval j under the worst case distribution (including the last interval).
+	private final double[] defaultProbabilities;
+
+	// At index j the expected discounted and floored NPV conditional on default in the interval j under the worst case distribution.
+	private final double[] conditionalExpectedExposures;
+
+	// At index [j][k] the probability of row k and default interval j under the worst case distribution. May be null.
+	private final double[][] jointDistribution;
+
+	// The probabilities of the rows and the row of each path (null if the rows are the paths).
+	private final double[] rowProbabilities;
+	private final int[] rowIndexOfPath;
+	private final int numberOfPaths;
+
+
+	/**
+	 * @param penaltyFactor The penalty factor of the worst case distribution.
+	 * @param contributions At index j the contribution of the default interval j to the CVA.
+	 * @param defaultProbabilities At index j the probability of the default interval j under the worst case distribution.
+	 * @param jointDistribution At index [j][k] the probability of row k and default interval j under the worst case distribution. May be null.
+	 * @param rowProbabilities The probabilities of the rows.
+	 * @param rowIndexOfPath At index i the row of path i. Null if the rows are the paths.
+	 * @param numberOfPaths The number of equally likely paths.
+	 */
+	public WorstCaseCVAProfile(double penaltyFactor, double[] contributions, double[] defaultProbabilities, double[][] jointDistribution, double[] rowProbabilities, int[] rowIndexOfPath, int numberOfPaths) {
+
+		if( contributions.length != defaultProbabilities.length - 1 ) {
+			throw new IllegalArgumentException("The number of contributions has to be the number of default probabilities minus one.");
+		}
+
+		this.penaltyFactor = penaltyFactor;
+		this.contributions = contributions;
+		this.defaultProbabilities = defaultProbabilities;
+		this.jointDistribution = jointDistribution;
+		this.rowProbabilities = rowProbabilities;
+		this.rowIndexOfPath = rowIndexOfPath;
+		this.numberOfPaths = numberOfPaths;
+
+		double cva = 0.0;
+		this.conditionalExpectedExposures = new double[contributions.length];
+
+		for(int columnIndex = 0; columnIndex < contributions.length; columnIndex++) {
+			cva += contributions[columnIndex];
+			conditionalExpectedExposures[columnIndex] = defaultProbabilities[columnIndex] > 0.0 ? contributions[columnIndex] / defaultProbabilities[columnIndex] : 0.0;
+		}
+
+		this.cva = cva;
+
+	}
+
+
+	private WorstCaseCVAProfile(WorstCaseCVAProfile profile, double lossGivenDefault) {
+
+		this.penaltyFactor = profile.penaltyFactor;
+		this.cva = lossGivenDefault * profile.cva;
+		this.contributions = new double[profile.contributions.length];
+		for(int columnIndex = 0; columnIndex < contributions.length; columnIndex++) {
+			contributions[columnIndex] = lossGivenDefault * profile.contributions[columnIndex];
+		}
+		this.defaultProbabilities = profile.defaultProbabilities;
+		this.conditionalExpectedExposures = profile.conditionalExpectedExposures;
+		this.jointDistribution = profile.jointDistribution;
+		this.rowProbabilities = profile.rowProbabilities;
+		this.rowIndexOfPath = profile.rowIndexOfPath;
+		this.numberOfPaths = profile.numberOfPaths;
+
+	}
+
+
+	/**
+	 * @param lossGivenDefault The loss given default.
+	 * @return The profile with the CVA and the contributions multiplied by the loss given default. The exposures and the distribution are unchanged.
+	 */
+	public WorstCaseCVAProfile getScaled(double lossGivenDefault) {
+		return new WorstCaseCVAProfile(this, lossGivenDefault);
+	}
+
+	/**
+	 * @return The constrained worst case CVA, i.e. the sum of the contributions.
+	 */
+	public double getCVA() {
+		return cva;
+	}
+
+	/**
+	 * @return At index j the contribution of the default interval (t_j, t_{j+1}] to the CVA.
+	 */
+	public double[] getContributions() {
+		return contributions;
+	}
+
+	/**
+	 * @return At index j the probability of the default interval j under the worst case distribution. Up to the termination criteria of the IPFP
+	 * these are the given default probabilities.
+	 */
+	public double[] getDefaultProbabilities() {
+		return defaultProbabilities;
+	}
+
+	/**
+	 * @return At index j the expected discounted and floored NPV at t_{j+1} conditional on default in the interval (t_j, t_{j+1}] under the worst case distribution.
+	 * Zero if the interval has probability zero.
+	 */
+	public double[] getConditionalExpectedExposures() {
+		return conditionalExpectedExposures;
+	}
+
+	/**
+	 * @return At index [j][k] the probability of row k and default interval j under the worst case distribution,
+	 * null if the distribution has not been exported, see {@link ConstrainedWorstCaseCVA#setExportingJointDistribution(boolean)}.
+	 */
+	public double[][] getJointDistribution() {
+		return jointDistribution;
+	}
+
+	/**
+	 * @param pathIndex The index of the simulated path.
+	 * @param intervalIndex The index of the default interval.
+	 * @return The probability of the path and the default interval under the worst case distribution. The probability of a row is distributed
+	 * equally on its paths.
+	 */
+	public double getJointProbability(int pathIndex, int intervalIndex) {
+
+		if(jointDistribution == null) {
+			throw new IllegalStateException("The joint distribution has not been exported.");
+		}
+
+		int rowIndex = rowIndexOfPath != null ? rowIndexOfPath[pathIndex] : pathIndex;
+
+		if(rowIndexOfPath == null) {
+			return jointDistribution[intervalIndex][rowIndex];
+		}
+
+		return jointDistribution[intervalIndex][rowIndex] / ( rowProbabilities[rowIndex] * numberOfPaths );
+
+	}
+
+	/**
+	 * @return The penalty factor of the worst case distribution.
+	 */
+	public double getPenaltyFactor() {
+		return penaltyFactor;
+	}
+
+	/**
+	 * @return The number of simulated paths.
+	 */
+	public int getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva;
+
+/**
+ * The constrained worst case CVA together with its sensitivities with respect to the default probabilities, see
+ * {@link ConstrainedWorstCaseCVA#getWorstCaseCVASensitivitiesNotToFarFromIndependence(double, net.finmath.stochastic.RandomVariableInterface[], int, double[], double, double, double)}.
+ * <br> The sensitivity of the default interval j is the derivative with respect to a shift of probability from the reference interval
+ * (the last interval with positive probability, usually no default in the observed time horizon) to the interval j.
+ * Besides the sensitivities of the CVA the sensitivities of the value of the penalized problem are stored, which are the dual variables of the default marginal.
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class WorstCaseCVASensitivities {
+
+	private final double penaltyFactor;
+
+	private final double cva;
+
+	// At index j the derivative of the CVA with respect to the default probability of the interval j.
+	private final double[] sensitivities;
+
+	// At index j the derivative of the value of the penalized problem with respect to the default probability of the interval j.
+	private final double[] penalizedValueSensitivities;
+
+
+	/**
+	 * @param penaltyFactor The penalty factor of the worst case distribution.
+	 * @param cva The constrained worst case CVA.
+	 * @param sensitivities At index j the derivative of the CVA with respect to the default probability of the interval j.
+	 * @param penalizedValueSensitivities At index j the derivative of the value of the penalized problem with respect to the default probability of the interval j.
+	 */
+	public WorstCaseCVASensitivities(double penaltyFactor, double cva, double[] sensitivities, double[] penalizedValueSensitivities) {
+
+		if( sensitivities.length != penalizedValueSensitivities.length ) {
+			throw new IllegalArgumentException("The number of sensitivities of the CVA and of the value of the penalized problem have to be the same.");
+		}
+
+		this.penaltyFactor = penaltyFactor;
+		this.cva = cva;
+		this.sensitivities = sensitivities;
+		this.penalizedValueSensitivities = penalizedValueSensitivities;
+
+	}
+
+
+	/**
+	 * @param lossGivenDefault The loss given default.
+	 * @return The result with the CVA and its sensitivities multiplied by the loss given default. The sensitivities of the value of the penalized problem are unchanged.
+	 */
+	public WorstCaseCVASensitivities getScaled(double lossGivenDefault) {
+
+		double[] scaledSensitivities = new double[sensitivities.length];
+		for(int intervalIndex = 0; intervalIndex < sensitivities.length; intervalIndex++) {
+			scaledSensitivities[intervalIndex] = lossGivenDefault * sensitivities[intervalIndex];
+		}
+
+		return new WorstCaseCVASensitivities(penaltyFactor, lossGivenDefault * cva, scaledSensitivities, penalizedValueSensitivities);
+
+	}
+
+	/**
+	 * @return The constrained worst case CVA.
+	 */
+	public double getCVA() {
+		return cva;
+	}
+
+	/**
+	 * @return At index j the derivative of the CVA with respect to the default probability of the interval (t_j, t_{j+1}] (the last index is the interval (t_d, infinity)).
+	 * The probability is taken from the reference interval, whose sensitivity is zero.
+	 */
+	public double[] getSensitivities() {
+		return sensitivities;
+	}
+
+	/**
+	 * @return At index j the derivative of the value max<sub>P</sub> penaltyFactor * E<sub>P</sub>[ V ] - KL( P | F ) of the penalized problem
+	 * with respect to the default probability of the interval j. The probability is taken from the reference interval, whose sensitivity is zero.
+	 */
+	public double[] getPenalizedValueSensitivities() {
+		return penalizedValueSensitivities;
+	}
+
+	/**
+	 * @return The penalty factor of the worst case distribution.
+	 */
+	public double getPenaltyFactor() {
+		return penaltyFactor;
+	}
+
+}
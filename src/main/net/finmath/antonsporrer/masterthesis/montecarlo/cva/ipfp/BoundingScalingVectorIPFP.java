@@ -0,0 +1,582 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * This class performs the IPFP of {@link ScalingVectorIPFP} for the penalty factors -penaltyFactor (best case, lower bound of the CVA)
+ * and penaltyFactor (worst case, upper bound of the CVA) simultaneously.
+ * <br> The iterates of the two IPFPs have the form
+ * <br> P<sup>-</sup><sub>i,j</sub> = a<sup>-</sup><sub>i</sub> / exp( penaltyFactor * V<sub>i,j</sub> ) * b<sup>-</sup><sub>j</sub> and
+ * P<sup>+</sup><sub>i,j</sub> = a<sup>+</sup><sub>i</sub> * exp( penaltyFactor * V<sub>i,j</sub> ) * b<sup>+</sup><sub>j</sub>.
+ * <br> Hence both IPFPs share the kernel exp( penaltyFactor * V<sub>i,j</sub> ). Each iteration performs one pass over the NPV columns for the rows and
+ * one for the columns of both IPFPs, and each kernel entry is calculated once per pass. An IPFP whose termination criteria are satisfied is not iterated further.
+ * <br> Only the linear domain is supported, i.e. exp( penaltyFactor * V ) must not overflow. Then exp( - penaltyFactor * V ) does not underflow either.
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class BoundingScalingVectorIPFP {
+
+	// The index of the IPFP with the penalty factor -penaltyFactor (best case).
+	private static final int LOWER = 0;
+
+	// The index of the IPFP with the penalty factor penaltyFactor (worst case).
+	private static final int UPPER = 1;
+
+	// At array index j the realizations of the discounted and floored NPV associated with the default interval j are stored.
+	private final double[][] discountedFlooredNPV;
+
+	private final double[] pathProbabilities;
+	private final double[] defaultProbabilities;
+
+	// The absolute value of the penalty factors.
+	private final double penaltyFactor;
+
+	private final int numberOfRows;
+	private final int numberOfColumns;
+
+	// At index LOWER and UPPER the scaling vectors of the best case and the worst case IPFP.
+	private final double[][] rowScaling;
+	private final double[][] columnScaling;
+
+	// True if the termination criteria of the respective IPFP are satisfied.
+	private final boolean[] converged = new boolean[2];
+
+	private final int numberOfBlocks;
+	private final int[] blockStartRow;
+
+	private double relaxationParameter = 1.0;
+	private boolean adaptiveRelaxation = false;
+
+	// The relaxation parameters of the current iteration of the two IPFPs.
+	private final double[] currentRelaxationParameters = new double[] { 1.0, 1.0 };
+
+	// The maximal relative deviations of the row sums and the column sums of the last renormalization steps of the two IPFPs.
+	private final double[] maximalRowDeviations = new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+	private final double[] maximalColumnDeviations = new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+
+	// True if all column sums of the last column renormalization step of the respective IPFP satisfied the termination criteria.
+	private final boolean[] columnsAreEligibleForTermination = new boolean[2];
+
+	private int numberOfIterations = 0;
+
+
+	/**
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param pathProbabilities The probabilities of the rows, i.e. the path marginal.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @param penaltyFactor The penalty factor of the worst case. The best case uses its negative. Only the absolute value is used.
+	 * @param numberOfBlocks The number of row blocks into which the work of each pass is split.
+	 */
+	public BoundingScalingVectorIPFP(double[][] discountedFlooredNPV, double[] pathProbabilities, double[] defaultProbabilities, double penaltyFactor, int numberOfBlocks) {
+
+		if( discountedFlooredNPV.length != defaultProbabilities.length - 1 ) {
+			throw new IllegalArgumentException("The number of NPV columns has to be the number of default probabilities minus one.");
+		}
+
+		this.discountedFlooredNPV = discountedFlooredNPV;
+		this.pathProbabilities = pathProbabilities;
+		this.defaultProbabilities = defaultProbabilities;
+		this.penaltyFactor = Math.abs( penaltyFactor );
+
+		this.numberOfRows = pathProbabilities.length;
+		this.numberOfColumns = defaultProbabilities.length;
+
+		this.rowScaling = new double[2][numberOfRows];
+		this.columnScaling = new double[2][numberOfColumns];
+
+		this.numberOfBlocks = Math.max( Math.min( numberOfBlocks, numberOfRows ), 1 );
+		this.blockStartRow = new int[this.numberOfBlocks + 1];
+		for(int blockIndex = 0; blockIndex <= this.numberOfBlocks; blockIndex++) {
+			blockStartRow[blockIndex] = (int) ( (long) blockIndex * numberOfRows / this.numberOfBlocks );
+		}
+
+		reset(LOWER);
+		reset(UPPER);
+
+	}
+
+
+	/**
+	 * The scaling vectors of one IPFP are reset such that its iterate is the initial matrix.
+	 */
+	private void reset(int bound) {
+		System.arraycopy(pathProbabilities, 0, rowScaling[bound], 0, numberOfRows);
+		System.arraycopy(defaultProbabilities, 0, columnScaling[bound], 0, numberOfColumns);
+	}
+
+
+	/**
+	 * Both IPFPs are performed until their termination criteria are satisfied or maxNumberOfIterations is reached.
+	 * The termination criteria are the same as in {@link ScalingVectorIPFP#solve(int, double, double, double, ExecutorService)}.
+	 *
+	 * @param maxNumberOfIterations The maximal number of row and column renormalization steps.
+	 * @param terminationCriterionRows The error bound for the relative distance of the path probability and the sum of each row.
+	 * @param terminationCriterionColumns The error bound for the absolute distance of the default probability and the sum of each column (used for zero default probabilities).
+	 * @param terminationCriterionColumnsAbsolut The error bound for the relative distance of the default probability and the sum of each column.
+	 * @param executor The executor service performing the block tasks.
+	 * @return True if the termination criteria of both IPFPs have been satisfied.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public boolean solve(int maxNumberOfIterations, double terminationCriterionRows, double terminationCriterionColumns, double terminationCriterionColumnsAbsolut, ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		numberOfIterations = 0;
+		converged[LOWER] = false;
+		converged[UPPER] = false;
+
+		OverRelaxationControl[] overRelaxationControls = new OverRelaxationControl[] {
+				new OverRelaxationControl(relaxationParameter, adaptiveRelaxation), new OverRelaxationControl(relaxationParameter, adaptiveRelaxation) };
+
+		for(int iterationIndex = 0; iterationIndex < maxNumberOfIterations; iterationIndex++) {
+
+			numberOfIterations++;
+
+			for(int bound = LOWER; bound <= UPPER; bound++) {
+				currentRelaxationParameters[bound] = overRelaxationControls[bound].getRelaxationParameter();
+			}
+
+			doRowRenormalization(executor);
+
+			doColumnRenormalization(terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+
+			for(int bound = LOWER; bound <= UPPER; bound++) {
+
+				if( converged[bound] ) {
+					continue;
+				}
+
+				converged[bound] = maximalRowDeviations[bound] <= terminationCriterionRows && columnsAreEligibleForTermination[bound];
+
+				// The relaxation parameter is adapted. In case of an invalid iterate the plain IPFP is restarted.
+				if( ! converged[bound] && overRelaxationControls[bound].update( Math.max( maximalRowDeviations[bound], maximalColumnDeviations[bound] ) ) ) {
+					reset(bound);
+				}
+
+			}
+
+			if( converged[LOWER] && converged[UPPER] ) {
+				return true;
+			}
+
+		}
+
+		return false;
+
+	}
+
+
+	/**
+	 * The row renormalization step of both IPFPs. The rows sums of both IPFPs are calculated in one pass over the NPV columns.
+	 */
+	private void doRowRenormalization(ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		List<Callable<double[]>> callablesForRowSums = new ArrayList<Callable<double[]>>();
+
+		final boolean lowerIsActive = ! converged[LOWER];
+		final boolean upperIsActive = ! converged[UPPER];
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+
+			callablesForRowSums.add(new Callable<double[]>() {
+
+				/**
+				 * @return The maximal relative row deviations of the block of both IPFPs.
+				 */
+				public double[] call() {
+
+					int numberOfRowsOfBlock = fixedIndexLastRowOfBlockPlusOne - fixedIndexFirstRowOfBlock;
+
+					// The row sums of both IPFPs with Kahan summation.
+					double[][] rowSums = new double[2][numberOfRowsOfBlock];
+					double[][] negativLostDigitsStorage = new double[2][numberOfRowsOfBlock];
+
+					double nextToAdd = 0.0;
+					double helperNextSum = 0.0;
+
+					for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+
+						final double[] currentColumn = discountedFlooredNPV[columnIndex];
+						final double lowerColumnScaling = columnScaling[LOWER][columnIndex];
+						final double upperColumnScaling = columnScaling[UPPER][columnIndex];
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							int localIndex = rowIndex - fixedIndexFirstRowOfBlock;
+
+							// The kernel entry is shared by both IPFPs.
+							double kernelEntry = Math.exp( penaltyFactor * currentColumn[rowIndex] );
+
+							if(lowerIsActive) {
+								nextToAdd = lowerColumnScaling / kernelEntry - negativLostDigitsStorage[LOWER][localIndex];
+								helperNextSum = rowSums[LOWER][localIndex] + nextToAdd;
+								negativLostDigitsStorage[LOWER][localIndex] = ( helperNextSum - rowSums[LOWER][localIndex] ) - nextToAdd;
+								rowSums[LOWER][localIndex] = helperNextSum;
+							}
+
+							if(upperIsActive) {
+								nextToAdd = kernelEntry * upperColumnScaling - negativLostDigitsStorage[UPPER][localIndex];
+								helperNextSum = rowSums[UPPER][localIndex] + nextToAdd;
+								negativLostDigitsStorage[UPPER][localIndex] = ( helperNextSum - rowSums[UPPER][localIndex] ) - nextToAdd;
+								rowSums[UPPER][localIndex] = helperNextSum;
+							}
+
+						}
+					}
+
+					double[] maximalRowDeviationsOfBlock = new double[2];
+
+					for(int bound = LOWER; bound <= UPPER; bound++) {
+
+						if( converged[bound] ) {
+							continue;
+						}
+
+						// The last column has the kernel value exp(0) = 1.
+						final double lastColumnScaling = columnScaling[bound][numberOfColumns - 1];
+						final double[] currentRowScaling = rowScaling[bound];
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							int localIndex = rowIndex - fixedIndexFirstRowOfBlock;
+
+							double kernelRowSum = rowSums[bound][localIndex] + ( lastColumnScaling - negativLostDigitsStorage[bound][localIndex] );
+							double pathProbability = pathProbabilities[rowIndex];
+
+							maximalRowDeviationsOfBlock[bound] = Math.max( maximalRowDeviationsOfBlock[bound], Math.abs( currentRowScaling[rowIndex] * kernelRowSum - pathProbability ) / pathProbability );
+
+							currentRowScaling[rowIndex] = getRelaxedScaling( bound, currentRowScaling[rowIndex], pathProbability / kernelRowSum );
+
+						}
+
+					}
+
+					return maximalRowDeviationsOfBlock;
+				}
+			});
+
+		}
+
+		List<Future<double[]>> partialRowDeviations = executor.invokeAll(callablesForRowSums);
+
+		for(int bound = LOWER; bound <= UPPER; bound++) {
+			if( ! converged[bound] ) {
+				maximalRowDeviations[bound] = 0.0;
+			}
+		}
+		for(Future<double[]> partialRowDeviation : partialRowDeviations) {
+			for(int bound = LOWER; bound <= UPPER; bound++) {
+				if( ! converged[bound] ) {
+					maximalRowDeviations[bound] = Math.max( maximalRowDeviations[bound], partialRowDeviation.get()[bound] );
+				}
+			}
+		}
+
+	}
+
+
+	/**
+	 * The column renormalization step of both IPFPs. The column sums of both IPFPs are calculated in one pass over the NPV columns.
+	 */
+	private void doColumnRenormalization(double terminationCriterionColumns, double terminationCriterionColumnsAbsolut, ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		double[] kernelColumnSums = getKernelColumnSums(executor);
+
+		for(int bound = LOWER; bound <= UPPER; bound++) {
+
+			if( converged[bound] ) {
+				continue;
+			}
+
+			columnsAreEligibleForTermination[bound] = true;
+			maximalColumnDeviations[bound] = 0.0;
+
+			for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+				double kernelColumnSum = kernelColumnSums[bound * numberOfColumns + columnIndex];
+				double currentDefaultProbability = defaultProbabilities[columnIndex];
+				double columnSumDeviation = Math.abs( columnScaling[bound][columnIndex] * kernelColumnSum - currentDefaultProbability );
+
+				if(currentDefaultProbability > 0) {
+					maximalColumnDeviations[bound] = Math.max( maximalColumnDeviations[bound], columnSumDeviation / currentDefaultProbability );
+					if( !( columnSumDeviation / currentDefaultProbability <= terminationCriterionColumnsAbsolut ) ) {
+						columnsAreEligibleForTermination[bound] = false;
+					}
+
+					columnScaling[bound][columnIndex] = getRelaxedScaling( bound, columnScaling[bound][columnIndex], currentDefaultProbability / kernelColumnSum );
+				}
+				else {
+					if( columnSumDeviation > terminationCriterionColumns ) {
+						columnsAreEligibleForTermination[bound] = false;
+					}
+
+					columnScaling[bound][columnIndex] = 0.0;
+				}
+
+			}
+
+		}
+
+	}
+
+
+	/**
+	 * @return At index bound * numberOfColumns + j the sum over all rows i of the row scaling of the IPFP bound times its kernel entry of column j.
+	 */
+	private double[] getKernelColumnSums(ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		List<Callable<double[]>> callablesForColumnSums = new ArrayList<Callable<double[]>>();
+
+		final boolean lowerIsActive = ! converged[LOWER];
+		final boolean upperIsActive = ! converged[UPPER];
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+
+			callablesForColumnSums.add(new Callable<double[]>() {
+
+				public double[] call() {
+
+					double[] partialColumnSums = new double[2 * numberOfColumns];
+
+					final double[] lowerRowScaling = rowScaling[LOWER];
+					final double[] upperRowScaling = rowScaling[UPPER];
+
+					for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+						final double[] currentColumn = columnIndex < numberOfColumns - 1 ? discountedFlooredNPV[columnIndex] : null;
+
+						// Variables for Kahan summation of both IPFPs
+						double lowerColumnSum = 0.0;
+						double lowerNegativLostDigitsStorage = 0.0;
+						double upperColumnSum = 0.0;
+						double upperNegativLostDigitsStorage = 0.0;
+						double helperNextSum = 0.0;
+						double nextToAdd = 0.0;
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							// The last column has the kernel value exp(0) = 1.
+							double kernelEntry = currentColumn != null ? Math.exp( penaltyFactor * currentColumn[rowIndex] ) : 1.0;
+
+							if(lowerIsActive) {
+								nextToAdd = lowerRowScaling[rowIndex] / kernelEntry - lowerNegativLostDigitsStorage;
+								helperNextSum = lowerColumnSum + nextToAdd;
+								lowerNegativLostDigitsStorage = ( helperNextSum - lowerColumnSum ) - nextToAdd;
+								lowerColumnSum = helperNextSum;
+							}
+
+							if(upperIsActive) {
+								nextToAdd = upperRowScaling[rowIndex] * kernelEntry - upperNegativLostDigitsStorage;
+								helperNextSum = upperColumnSum + nextToAdd;
+								upperNegativLostDigitsStorage = ( helperNextSum - upperColumnSum ) - nextToAdd;
+								upperColumnSum = helperNextSum;
+							}
+
+						}
+
+						partialColumnSums[LOWER * numberOfColumns + columnIndex] = lowerColumnSum;
+						partialColumnSums[UPPER * numberOfColumns + columnIndex] = upperColumnSum;
+					}
+
+					return partialColumnSums;
+				}
+			});
+
+		}
+
+		return sumBlockResults( executor.invokeAll(callablesForColumnSums) );
+
+	}
+
+
+	/**
+	 * @param executor The executor service performing the block tasks.
+	 * @return The CVA (loss given default equal to one) of the best case at index 0 and of the worst case at index 1
+	 * with respect to the current iterates, calculated in one pass over the NPV columns.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public double[] getCVAs(ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		List<Callable<double[]>> callablesFinalSum = new ArrayList<Callable<double[]>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+
+			callablesFinalSum.add(new Callable<double[]>() {
+
+				public double[] call() {
+
+					// The last column is the zero column. Hence it does not contribute.
+					double[] partialSums = new double[2];
+					double[] negativLostDigitsStorage = new double[2];
+
+					final double[] lowerRowScaling = rowScaling[LOWER];
+					final double[] upperRowScaling = rowScaling[UPPER];
+
+					for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+
+						final double[] currentColumn = discountedFlooredNPV[columnIndex];
+
+						double lowerSum = 0.0;
+						double lowerNegativLostDigitsStorage = 0.0;
+						double upperSum = 0.0;
+						double upperNegativLostDigitsStorage = 0.0;
+						double helperNextSum = 0.0;
+						double nextToAdd = 0.0;
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							double currentEntry = currentColumn[rowIndex];
+							double kernelEntry = Math.exp( penaltyFactor * currentEntry );
+
+							nextToAdd = currentEntry * lowerRowScaling[rowIndex] / kernelEntry - lowerNegativLostDigitsStorage;
+							helperNextSum = lowerSum + nextToAdd;
+							lowerNegativLostDigitsStorage = ( helperNextSum - lowerSum ) - nextToAdd;
+							lowerSum = helperNextSum;
+
+							nextToAdd = currentEntry * upperRowScaling[rowIndex] * kernelEntry - upperNegativLostDigitsStorage;
+							helperNextSum = upperSum + nextToAdd;
+							upperNegativLostDigitsStorage = ( helperNextSum - upperSum ) - nextToAdd;
+							upperSum = helperNextSum;
+
+						}
+
+						for(int bound = LOWER; bound <= UPPER; bound++) {
+							nextToAdd = ( bound == LOWER ? lowerSum : upperSum ) * columnScaling[bound][columnIndex] - negativLostDigitsStorage[bound];
+							helperNextSum = partialSums[bound] + nextToAdd;
+							negativLostDigitsStorage[bound] = ( helperNextSum - partialSums[bound] ) - nextToAdd;
+							partialSums[bound] = helperNextSum;
+						}
+					}
+
+					return partialSums;
+				}
+			});
+
+		}
+
+		return sumBlockResults( executor.invokeAll(callablesFinalSum) );
+
+	}
+
+
+	/**
+	 * @return The entry of the scaling vector of the over-relaxed IPFP step of the IPFP bound, see {@link ScalingVectorIPFP}.
+	 */
+	private double getRelaxedScaling(int bound, double currentScaling, double renormalizingScaling) {
+
+		if(currentRelaxationParameters[bound] == 1.0) {
+			return renormalizingScaling;
+		}
+
+		return currentScaling * Math.pow( renormalizingScaling / currentScaling, currentRelaxationParameters[bound] );
+
+	}
+
+
+	/**
+	 * The block-wise partial results are added in the order of the blocks using Kahan summation.
+	 */
+	private static double[] sumBlockResults(List<Future<double[]>> partialResults) throws InterruptedException, ExecutionException {
+
+		double[] sums = null;
+		double[] negativLostDigitsStorage = null;
+
+		for(Future<double[]> partialResultFuture : partialResults) {
+
+			double[] partialResult = partialResultFuture.get();
+
+			if(sums == null) {
+				sums = new double[partialResult.length];
+				negativLostDigitsStorage = new double[partialResult.length];
+			}
+
+			for(int index = 0; index < partialResult.length; index++) {
+				double nextToAdd = partialResult[index] - negativLostDigitsStorage[index];
+				double helperNextSum = sums[index] + nextToAdd;
+				negativLostDigitsStorage[index] = ( helperNextSum - sums[index] ) - nextToAdd;
+				sums[index] = helperNextSum;
+			}
+
+		}
+
+		return sums;
+
+	}
+
+
+	/**
+	 * @return The row scaling vectors of the best case at index 0 and of the worst case at index 1.
+	 */
+	public double[][] getRowScaling() {
+		return rowScaling;
+	}
+
+	/**
+	 * @return The column scaling vectors of the best case at index 0 and of the worst case at index 1.
+	 */
+	public double[][] getColumnScaling() {
+		return columnScaling;
+	}
+
+	/**
+	 * @param relaxationParameter The relaxation parameter w in (0,2) of the over-relaxed IPFP. For w = 1 the plain IPFP is performed.
+	 */
+	public void setRelaxationParameter(double relaxationParameter) {
+		if( !( relaxationParameter > 0.0 && relaxationParameter < 2.0 ) ) {
+			throw new IllegalArgumentException("The relaxation parameter has to be in (0,2).");
+		}
+		this.relaxationParameter = relaxationParameter;
+	}
+
+	/**
+	 * @param adaptiveRelaxation If true the relaxation parameters of both IPFPs are estimated during each call of solve.
+	 */
+	public void setAdaptiveRelaxation(boolean adaptiveRelaxation) {
+		this.adaptiveRelaxation = adaptiveRelaxation;
+	}
+
+	/**
+	 * @return The number of iterations performed by the last call of {@link #solve(int, double, double, double, ExecutorService)}.
+	 */
+	public int getNumberOfIterations() {
+		return numberOfIterations;
+	}
+
+	/**
+	 * @return True if the best case IPFP satisfied its termination criteria in the last call of solve.
+	 */
+	public boolean isLowerBoundConverged() {
+		return converged[LOWER];
+	}
+
+	/**
+	 * @return True if the worst case IPFP satisfied its termination criteria in the last call of solve.
+	 */
+	public boolean isUpperBoundConverged() {
+		return converged[UPPER];
+	}
+
+	public double getPenaltyFactor() {
+		return penaltyFactor;
+	}
+
+}
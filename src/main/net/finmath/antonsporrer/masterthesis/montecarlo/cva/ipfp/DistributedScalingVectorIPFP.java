@@ -0,0 +1,493 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is the coordinator of the IPFP of {@link ScalingVectorIPFP} whose rows are distributed on several {@link IPFPWorker}, e.g. in separate JVMs.
+ * <br> Each worker owns a contiguous block of rows, i.e. the discounted and floored NPV of its paths and the corresponding entries of the row scaling vector a.
+ * The rows never leave their worker. The coordinator owns the column scaling vector b. One iteration of the IPFP requires one round trip to each worker:
+ * <br> 1. The coordinator sends b to all workers.
+ * <br> 2. Each worker renormalizes its rows and returns its maximal row deviation and its partial column sums sum<sub>i</sub> a<sub>i</sub> * exp( penaltyFactor * V<sub>i,j</sub> ).
+ * <br> 3. The coordinator adds the partial column sums in the order of the workers and renormalizes the columns.
+ * <br> Hence only 2 * (d+1) + 1 doubles per worker are exchanged per iteration. The IPFP is the same as the plain (not over-relaxed) IPFP of {@link ScalingVectorIPFP}
+ * including the termination criteria and the log-domain variant. Only the order of the summation of the column sums differs.
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class DistributedScalingVectorIPFP implements Closeable {
+
+	// The commands of the protocol between the coordinator and the workers.
+	static final int COMMAND_CLOSE = 0;
+	static final int COMMAND_LOAD = 1;
+	static final int COMMAND_ITERATE = 2;
+	static final int COMMAND_CVA = 3;
+
+	// The number of doubles converted at once when reading or writing arrays.
+	private static final int NUMBER_OF_DOUBLES_PER_CHUNK = 1 << 16;
+
+	private final double[] defaultProbabilities;
+	private final double penaltyFactor;
+	private final boolean logDomain;
+
+	private final int numberOfColumns;
+
+	// The column scaling vector b. In the log-domain variant log(b) is stored.
+	private final double[] columnScaling;
+
+	private final Socket[] sockets;
+	private final DataInputStream[] inputStreams;
+	private final DataOutputStream[] outputStreams;
+
+	// The number of rows loaded on each worker.
+	private final int[] numberOfRowsOfWorker;
+
+	private double maximalRowDeviation = Double.POSITIVE_INFINITY;
+	private double maximalColumnDeviation = Double.POSITIVE_INFINITY;
+
+	private int numberOfIterations = 0;
+
+
+	/**
+	 * Connects to the workers. The rows have to be loaded by {@link #loadRows(double[][], double[])} or {@link #loadRows(int, double[][], double[])}.
+	 *
+	 * @param workerAddresses The addresses of the running workers.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution.
+	 * @param logDomain If true the log-domain variant of the IPFP is used.
+	 * @throws IOException If a worker cannot be reached.
+	 */
+	public DistributedScalingVectorIPFP(List<InetSocketAddress> workerAddresses, double[] defaultProbabilities, double penaltyFactor, boolean logDomain) throws IOException {
+
+		if( workerAddresses.isEmpty() ) {
+			throw new IllegalArgumentException("At least one worker is required.");
+		}
+
+		this.defaultProbabilities = defaultProbabilities;
+		this.penaltyFactor = penaltyFactor;
+		this.logDomain = logDomain;
+		this.numberOfColumns = defaultProbabilities.length;
+
+		this.columnScaling = new double[numberOfColumns];
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+			columnScaling[columnIndex] = logDomain ? Math.log( defaultProbabilities[columnIndex] ) : defaultProbabilities[columnIndex];
+		}
+
+		int numberOfWorkers = workerAddresses.size();
+
+		this.sockets = new Socket[numberOfWorkers];
+		this.inputStreams = new DataInputStream[numberOfWorkers];
+		this.outputStreams = new DataOutputStream[numberOfWorkers];
+		this.numberOfRowsOfWorker = new int[numberOfWorkers];
+
+		try {
+			for(int workerIndex = 0; workerIndex < numberOfWorkers; workerIndex++) {
+				sockets[workerIndex] = new Socket();
+				sockets[workerIndex].setTcpNoDelay(true);
+				sockets[workerIndex].connect(workerAddresses.get(workerIndex));
+				inputStreams[workerIndex] = new DataInputStream( new BufferedInputStream( sockets[workerIndex].getInputStream() ) );
+				outputStreams[workerIndex] = new DataOutputStream( new BufferedOutputStream( sockets[workerIndex].getOutputStream() ) );
+			}
+		}
+		catch(IOException e) {
+			close();
+			throw e;
+		}
+
+	}
+
+
+	/**
+	 * The rows are split into contiguous blocks of (almost) equal size, one for each worker.
+	 *
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param pathProbabilities The probabilities of the rows, i.e. the path marginal.
+	 * @throws IOException
+	 */
+	public void loadRows(double[][] discountedFlooredNPV, double[] pathProbabilities) throws IOException {
+
+		int numberOfRows = pathProbabilities.length;
+		int numberOfWorkers = sockets.length;
+
+		for(int workerIndex = 0; workerIndex < numberOfWorkers; workerIndex++) {
+			loadRows(workerIndex, discountedFlooredNPV, pathProbabilities, (int) ( (long) workerIndex * numberOfRows / numberOfWorkers ), (int) ( (long) ( workerIndex + 1 ) * numberOfRows / numberOfWorkers ));
+		}
+
+	}
+
+
+	/**
+	 * Loads the rows of one worker. Thereby the coordinator only has to hold the rows of one worker at a time, e.g. if the rows are simulated block by block.
+	 *
+	 * @param workerIndex The index of the worker.
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV of the rows of the worker at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param pathProbabilities The probabilities of the rows of the worker (with respect to all paths).
+	 * @throws IOException
+	 */
+	public void loadRows(int workerIndex, double[][] discountedFlooredNPV, double[] pathProbabilities) throws IOException {
+		loadRows(workerIndex, discountedFlooredNPV, pathProbabilities, 0, pathProbabilities.length);
+	}
+
+
+	private void loadRows(int workerIndex, double[][] discountedFlooredNPV, double[] pathProbabilities, int firstRow, int lastRowPlusOne) throws IOException {
+
+		if( discountedFlooredNPV.length != numberOfColumns - 1 ) {
+			throw new IllegalArgumentException("The number of NPV columns has to be the number of default probabilities minus one.");
+		}
+
+		DataOutputStream outputStream = outputStreams[workerIndex];
+
+		outputStream.writeInt(COMMAND_LOAD);
+		outputStream.writeDouble(penaltyFactor);
+		outputStream.writeBoolean(logDomain);
+		outputStream.writeInt(lastRowPlusOne - firstRow);
+		outputStream.writeInt(numberOfColumns);
+		writeDoubles(outputStream, defaultProbabilities, 0, numberOfColumns);
+		writeDoubles(outputStream, pathProbabilities, firstRow, lastRowPlusOne);
+		for(double[] column : discountedFlooredNPV) {
+			writeDoubles(outputStream, column, firstRow, lastRowPlusOne);
+		}
+		outputStream.flush();
+
+		numberOfRowsOfWorker[workerIndex] = inputStreams[workerIndex].readInt();
+
+	}
+
+
+	/**
+	 * The IPFP is performed until both termination criteria are satisfied or maxNumberOfIterations is reached,
+	 * see {@link ScalingVectorIPFP#solve(int, double, double, double, java.util.concurrent.ExecutorService)}.
+	 *
+	 * @param maxNumberOfIterations The maximal number of row and column renormalization steps.
+	 * @param terminationCriterionRows The error bound for the relative distance of the path probability and the sum of each row.
+	 * @param terminationCriterionColumns The error bound for the absolute distance of the default probability and the sum of each column (used for zero default probabilities).
+	 * @param terminationCriterionColumnsAbsolut The error bound for the relative distance of the default probability and the sum of each column.
+	 * @return True if the termination criteria have been satisfied.
+	 * @throws IOException
+	 */
+	public boolean solve(int maxNumberOfIterations, double terminationCriterionRows, double terminationCriterionColumns, double terminationCriterionColumnsAbsolut) throws IOException {
+
+		numberOfIterations = 0;
+
+		for(int iterationIndex = 0; iterationIndex < maxNumberOfIterations; iterationIndex++) {
+
+			numberOfIterations++;
+
+			// All workers renormalize their rows in parallel.
+			for(DataOutputStream outputStream : outputStreams) {
+				outputStream.writeInt(COMMAND_ITERATE);
+				outputStream.writeDouble(terminationCriterionRows);
+				writeDoubles(outputStream, columnScaling, 0, numberOfColumns);
+				outputStream.flush();
+			}
+
+			double[][] partialColumnSums = new double[sockets.length][];
+
+			maximalRowDeviation = 0.0;
+			for(int workerIndex = 0; workerIndex < sockets.length; workerIndex++) {
+				maximalRowDeviation = Math.max( maximalRowDeviation, inputStreams[workerIndex].readDouble() );
+				partialColumnSums[workerIndex] = readDoubles(inputStreams[workerIndex], numberOfColumns);
+			}
+
+			boolean rowsAreEligibleForTermination = maximalRowDeviation <= terminationCriterionRows;
+
+			boolean columnsAreEligibleForTermination = logDomain ? doLogDomainColumnRenormalization(getLogSums(partialColumnSums), terminationCriterionColumns, terminationCriterionColumnsAbsolut)
+					: doColumnRenormalization(getSums(partialColumnSums), terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+
+			if( rowsAreEligibleForTermination && columnsAreEligibleForTermination ) {
+				return true;
+			}
+
+		}
+
+		return false;
+
+	}
+
+
+	/**
+	 * The column renormalization step of {@link ScalingVectorIPFP#doColumnRenormalization(double, double, java.util.concurrent.ExecutorService)}.
+	 */
+	private boolean doColumnRenormalization(double[] kernelColumnSums, double terminationCriterionColumns, double terminationCriterionColumnsAbsolut) {
+
+		boolean columnsAreEligibleForTermination = true;
+
+		maximalColumnDeviation = 0.0;
+
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+			double currentDefaultProbability = defaultProbabilities[columnIndex];
+			double columnSumDeviation = Math.abs( columnScaling[columnIndex] * kernelColumnSums[columnIndex] - currentDefaultProbability );
+
+			if(currentDefaultProbability > 0) {
+				maximalColumnDeviation = Math.max( maximalColumnDeviation, columnSumDeviation / currentDefaultProbability );
+				if( !( columnSumDeviation / currentDefaultProbability <= terminationCriterionColumnsAbsolut ) ) {
+					columnsAreEligibleForTermination = false;
+				}
+
+				columnScaling[columnIndex] = currentDefaultProbability / kernelColumnSums[columnIndex];
+			}
+			else {
+				if( columnSumDeviation > terminationCriterionColumns ) {
+					columnsAreEligibleForTermination = false;
+				}
+
+				columnScaling[columnIndex] = 0.0;
+			}
+
+		}
+
+		return columnsAreEligibleForTermination;
+
+	}
+
+
+	/**
+	 * The column renormalization step of the log-domain variant of {@link ScalingVectorIPFP}.
+	 */
+	private boolean doLogDomainColumnRenormalization(double[] logKernelColumnSums, double terminationCriterionColumns, double terminationCriterionColumnsAbsolut) {
+
+		boolean columnsAreEligibleForTermination = true;
+
+		maximalColumnDeviation = 0.0;
+
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+			double currentDefaultProbability = defaultProbabilities[columnIndex];
+
+			if(currentDefaultProbability > 0) {
+				double logDefaultProbability = Math.log( currentDefaultProbability );
+
+				double columnSumDeviation = Math.abs( Math.exp( columnScaling[columnIndex] + logKernelColumnSums[columnIndex] - logDefaultProbability ) - 1.0 );
+				maximalColumnDeviation = Math.max( maximalColumnDeviation, columnSumDeviation );
+				if( !( columnSumDeviation <= terminationCriterionColumnsAbsolut ) ) {
+					columnsAreEligibleForTermination = false;
+				}
+
+				columnScaling[columnIndex] = logDefaultProbability - logKernelColumnSums[columnIndex];
+			}
+			else {
+				double columnSum = columnScaling[columnIndex] == Double.NEGATIVE_INFINITY ? 0.0 : Math.exp( columnScaling[columnIndex] + logKernelColumnSums[columnIndex] );
+				if( columnSum > terminationCriterionColumns ) {
+					columnsAreEligibleForTermination = false;
+				}
+
+				columnScaling[columnIndex] = Double.NEGATIVE_INFINITY;
+			}
+
+		}
+
+		return columnsAreEligibleForTermination;
+
+	}
+
+
+	/**
+	 * @return The CVA (loss given default equal to one) with respect to the current iterate of the IPFP. The partial CVAs of the workers are added in the order of the workers.
+	 * @throws IOException
+	 */
+	public double getCVA() throws IOException {
+
+		for(DataOutputStream outputStream : outputStreams) {
+			outputStream.writeInt(COMMAND_CVA);
+			writeDoubles(outputStream, columnScaling, 0, numberOfColumns);
+			outputStream.flush();
+		}
+
+		double[][] partialCVAs = new double[sockets.length][1];
+		for(int workerIndex = 0; workerIndex < sockets.length; workerIndex++) {
+			partialCVAs[workerIndex][0] = inputStreams[workerIndex].readDouble();
+		}
+
+		return getSums(partialCVAs)[0];
+
+	}
+
+
+	/**
+	 * The workers are released. The rows are discarded by the workers.
+	 */
+	public void close() {
+
+		for(int workerIndex = 0; workerIndex < sockets.length; workerIndex++) {
+
+			if(sockets[workerIndex] == null) {
+				continue;
+			}
+
+			try {
+				if(outputStreams[workerIndex] != null) {
+					outputStreams[workerIndex].writeInt(COMMAND_CLOSE);
+					outputStreams[workerIndex].flush();
+				}
+			}
+			catch(IOException e) {
+				// The worker is not reachable anymore. There is nothing to release.
+			}
+
+			try {
+				sockets[workerIndex].close();
+			}
+			catch(IOException e) {
+				// Closing a broken connection has no consequences.
+			}
+
+			sockets[workerIndex] = null;
+
+		}
+
+	}
+
+
+	/**
+	 * @return The component-wise sum of the partial results in the order of the workers using Kahan summation.
+	 */
+	private static double[] getSums(double[][] partialResults) {
+
+		double[] sums = new double[partialResults[0].length];
+		double[] negativLostDigitsStorage = new double[sums.length];
+
+		for(double[] partialResult : partialResults) {
+			for(int index = 0; index < sums.length; index++) {
+				double nextToAdd = partialResult[index] - negativLostDigitsStorage[index];
+				double helperNextSum = sums[index] + nextToAdd;
+				negativLostDigitsStorage[index] = ( helperNextSum - sums[index] ) - nextToAdd;
+				sums[index] = helperNextSum;
+			}
+		}
+
+		return sums;
+
+	}
+
+
+	/**
+	 * @return The component-wise logarithm of the sum of the exponentials of the partial results (log-sum-exp trick).
+	 */
+	private static double[] getLogSums(double[][] partialLogResults) {
+
+		double[] maxima = new double[partialLogResults[0].length];
+		Arrays.fill(maxima, Double.NEGATIVE_INFINITY);
+		for(double[] partialLogResult : partialLogResults) {
+			for(int index = 0; index < maxima.length; index++) {
+				maxima[index] = Math.max( maxima[index], partialLogResult[index] );
+			}
+		}
+
+		double[][] partialResults = new double[partialLogResults.length][maxima.length];
+		for(int workerIndex = 0; workerIndex < partialLogResults.length; workerIndex++) {
+			for(int index = 0; index < maxima.length; index++) {
+				partialResults[workerIndex][index] = maxima[index] == Double.NEGATIVE_INFINITY ? 0.0 : Math.exp( partialLogResults[workerIndex][index] - maxima[index] );
+			}
+		}
+
+		double[] sums = getSums(partialResults);
+
+		double[] logSums = new double[maxima.length];
+		for(int index = 0; index < maxima.length; index++) {
+			logSums[index] = maxima[index] + Math.log( sums[index] );
+		}
+
+		return logSums;
+
+	}
+
+
+	/**
+	 * Writes the entries fromIndex, ... , toIndex - 1 of the array.
+	 */
+	static void writeDoubles(DataOutputStream outputStream, double[] values, int fromIndex, int toIndex) throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.allocate( 8 * Math.min( Math.max( toIndex - fromIndex, 0 ), NUMBER_OF_DOUBLES_PER_CHUNK ) );
+
+		for(int chunkStart = fromIndex; chunkStart < toIndex; chunkStart += NUMBER_OF_DOUBLES_PER_CHUNK) {
+			int chunkLength = Math.min( NUMBER_OF_DOUBLES_PER_CHUNK, toIndex - chunkStart );
+			buffer.clear();
+			buffer.asDoubleBuffer().put(values, chunkStart, chunkLength);
+			outputStream.write(buffer.array(), 0, 8 * chunkLength);
+		}
+
+	}
+
+
+	/**
+	 * Reads an array of the given length written by {@link #writeDoubles(DataOutputStream, double[], int, int)}.
+	 */
+	static double[] readDoubles(DataInputStream inputStream, int length) throws IOException {
+
+		double[] values = new double[length];
+		byte[] bytes = new byte[8 * Math.min( length, NUMBER_OF_DOUBLES_PER_CHUNK )];
+
+		for(int chunkStart = 0; chunkStart < length; chunkStart += NUMBER_OF_DOUBLES_PER_CHUNK) {
+			int chunkLength = Math.min( NUMBER_OF_DOUBLES_PER_CHUNK, length - chunkStart );
+			inputStream.readFully(bytes, 0, 8 * chunkLength);
+			ByteBuffer.wrap(bytes, 0, 8 * chunkLength).asDoubleBuffer().get(values, chunkStart, chunkLength);
+		}
+
+		return values;
+
+	}
+
+
+	/**
+	 * @return The column scaling vector b. In the log-domain variant log(b) is returned.
+	 */
+	public double[] getColumnScaling() {
+		return columnScaling;
+	}
+
+	/**
+	 * @return The number of iterations performed by the last call of {@link #solve(int, double, double, double)}.
+	 */
+	public int getNumberOfIterations() {
+		return numberOfIterations;
+	}
+
+	/**
+	 * @return The maximal relative deviation of the row sums of the last iteration.
+	 */
+	public double getMaximalRowDeviation() {
+		return maximalRowDeviation;
+	}
+
+	/**
+	 * @return The maximal relative deviation of the column sums (for positive default probabilities) of the last iteration.
+	 */
+	public double getMaximalColumnDeviation() {
+		return maximalColumnDeviation;
+	}
+
+	/**
+	 * @return At index k the number of rows loaded on worker k.
+	 */
+	public int[] getNumberOfRowsOfWorkers() {
+		return numberOfRowsOfWorker;
+	}
+
+	public int getNumberOfWorkers() {
+		return sockets.length;
+	}
+
+	public boolean isLogDomain() {
+		return logDomain;
+	}
+
+	public double getPenaltyFactor() {
+		return penaltyFactor;
+	}
+
+}
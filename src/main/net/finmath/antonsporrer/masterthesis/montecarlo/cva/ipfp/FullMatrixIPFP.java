@@ -0,0 +1,1022 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import main.net.finmath.antonsporrer.masterthesis.function.KahanSummation;
+
+/**
+ * This class implements the iterative proportional fitting procedure (IPFP) used in
+ * {@link main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ConstrainedWorstCaseCVA} storing the whole matrix.
+ * <br> The matrix is not stored as an array of rows. Instead the rows are split into blocks and each block is stored
+ * as one contiguous double array in row-major order, i.e. the entry (i,j) of a block is stored at index i * numberOfColumns + j.
+ * Each block is treated by one task.
+ * <br> The row and the column renormalization step are fused into one pass over the matrix. The column renormalization is
+ * not applied to the stored matrix directly. Instead the column factors are stored and applied lazily when the rows are read in the next pass.
+ * Each block renormalizes its rows and in the same pass adds the renormalized rows to its partial column sums.
+ * The partial column sums are then added in the order of the blocks which yields the new column factors.
+ * Thus each iteration reads and writes the matrix only once and requires only one {@link ExecutorService#invokeAll(java.util.Collection)}.
+ * <br> Optionally the IPFP is over-relaxed, i.e. each row (column) is multiplied by the renormalizing factor of the plain IPFP to the power w,
+ * where the relaxation parameter w is in (0,2), see {@link ScalingVectorIPFP} and {@link OverRelaxationControl}.
+ * <br> Optionally the matrix is stored in single precision (float), which halves the memory and the memory traffic of each pass.
+ * In this case the initial matrix exp( penaltyFactor * NPV<sub>i,j</sub> ) * F<sub>i,j</sub> is stored once and not rewritten by the iterations.
+ * Instead the row and the column renormalizations are accumulated in row factors and column factors, i.e. the current matrix is
+ * a<sub>i</sub> * matrix[i][j] * b<sub>j</sub>. The factors, the row sums, the column sums and the CVA are calculated in double precision.
+ * Thus the rounding to float is a fixed relative perturbation of the initial matrix of at most 2<sup>-24</sup>, the IPFP reaches
+ * the same termination criteria as in double precision and the CVA differs by about the rounding and the termination criteria.
+ * <br> Optionally the matrix is stored out of core, i.e. the blocks are stored in a memory mapped file instead of the heap, see {@link MappedMatrixBlocks}.
+ * Then the size of the matrix is limited by the disk instead of the heap. Each task copies its block into a buffer on the heap and writes it back
+ * after the pass, the next block is loaded into the page cache in the background. If the matrix fits into the physical memory the passes
+ * are only slowed down by the copies, otherwise the passes are limited by the speed of the disk. The file is released by {@link #close()}.
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class FullMatrixIPFP implements Closeable {
+
+	// The maximal number of entries of one block.
+	private static final long MAXIMAL_NUMBER_OF_ENTRIES_PER_BLOCK = 1 << 27;
+
+	// The maximal number of entries of one block stored out of core. Each task holds its block in a buffer on the heap.
+	private static final long MAXIMAL_NUMBER_OF_ENTRIES_PER_OUT_OF_CORE_BLOCK = 1 << 20;
+
+	// The bound of the exponent of exp( ( penaltyFactor - previousPenaltyFactor ) * NPV ) of a warm start minus the logarithm of the number of rows.
+	// It is the bound of the linear domain of ConstrainedWorstCaseCVA.
+	private static final double MAXIMAL_WARM_START_EXPONENT = 700;
+
+	// At array index j the realizations of the discounted and floored NPV associated with the default interval j are stored.
+	private final double[][] discountedFlooredNPV;
+
+	// The target marginals of the rows (path probabilities) and the columns (default probabilities).
+	private final double[] pathProbabilities;
+	private final double[] defaultProbabilities;
+
+	private double penaltyFactor;
+
+	// The maximum of the discounted and floored NPV. It is calculated by the first warm start.
+	private double maximalDiscountedFlooredNPV = Double.NaN;
+
+	private final int numberOfRows;
+	private final int numberOfColumns;
+
+	// The rows are split into blocks. Each block is treated by one task.
+	private final int numberOfBlocks;
+	private final int[] blockStartRow;
+
+	// If true the initial matrix is stored in single precision and the renormalizations are accumulated in the row and column factors.
+	private final boolean singlePrecision;
+
+	// The matrix of the IPFP without the pending column renormalization. One array per block.
+	// In single precision the float blocks store the initial matrix and the double blocks are not allocated.
+	private final double[][] matrixBlocks;
+	private final float[][] singlePrecisionMatrixBlocks;
+
+	// If not null the blocks are stored in a memory mapped file and the heap blocks are not allocated.
+	private final MappedMatrixBlocks mappedMatrixBlocks;
+
+	// The pending column renormalization. The current matrix of the IPFP is matrixBlocks with column j multiplied by columnFactors[j].
+	// In single precision the column factors and the row factors are accumulated over the iterations.
+	private final double[] columnFactors;
+	private final double[] rowFactors;
+
+	// The partial column sums of each block calculated in the fused pass.
+	private final double[][] partialColumnSums;
+
+	// The relaxation parameter w of the over-relaxed IPFP. For w = 1 the plain IPFP is performed.
+	private double relaxationParameter = 1.0;
+
+	// If true the relaxation parameter is estimated during each call of solve, see OverRelaxationControl.
+	private boolean adaptiveRelaxation = false;
+
+	// The relaxation parameter of the current iteration of solve. It is set to one in case of a fall back.
+	private double currentRelaxationParameter = 1.0;
+
+	// True if the last call of solve fell back from the over-relaxed IPFP to the plain IPFP.
+	private boolean relaxationAbandoned = false;
+
+	// The maximal relative deviations of the row sums and the column sums (for positive default probabilities) of the last iteration.
+	private double maximalRowDeviation = Double.POSITIVE_INFINITY;
+	private double maximalColumnDeviation = Double.POSITIVE_INFINITY;
+
+	// The number of performed iterations of the last call of solve.
+	private int numberOfIterations = 0;
+
+
+	/**
+	 * The path probabilities are assumed to be uniform.
+	 *
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution.
+	 * @param numberOfBlocks The number of row blocks into which the matrix is split. It is increased if a block would get too large.
+	 */
+	public FullMatrixIPFP(double[][] discountedFlooredNPV, double[] defaultProbabilities, double penaltyFactor, int numberOfBlocks) {
+		this(discountedFlooredNPV, getUniformPathProbabilities(discountedFlooredNPV), defaultProbabilities, penaltyFactor, numberOfBlocks);
+	}
+
+
+	/**
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param pathProbabilities The probabilities of the rows, i.e. the path marginal.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution.
+	 * @param numberOfBlocks The number of row blocks into which the matrix is split. It is increased if a block would get too large.
+	 */
+	public FullMatrixIPFP(double[][] discountedFlooredNPV, double[] pathProbabilities, double[] defaultProbabilities, double penaltyFactor, int numberOfBlocks) {
+		this(discountedFlooredNPV, pathProbabilities, defaultProbabilities, penaltyFactor, numberOfBlocks, false);
+	}
+
+
+	/**
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param pathProbabilities The probabilities of the rows, i.e. the path marginal.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution.
+	 * @param numberOfBlocks The number of row blocks into which the matrix is split. It is increased if a block would get too large.
+	 * @param singlePrecision If true the matrix is stored in single precision. The caller has to ensure that the entries
+	 * exp( penaltyFactor * discountedFlooredNPV[i][j] ) * F<sub>i,j</sub> of the initial matrix are in the range of the float numbers.
+	 */
+	public FullMatrixIPFP(double[][] discountedFlooredNPV, double[] pathProbabilities, double[] defaultProbabilities, double penaltyFactor, int numberOfBlocks, boolean singlePrecision) {
+		this(discountedFlooredNPV, pathProbabilities, defaultProbabilities, penaltyFactor, singlePrecision,
+				getBlockStartRow(pathProbabilities.length, defaultProbabilities.length, numberOfBlocks, MAXIMAL_NUMBER_OF_ENTRIES_PER_BLOCK), null);
+	}
+
+
+	/**
+	 * The matrix is stored out of core, i.e. in a memory mapped temporary file instead of the heap, see {@link MappedMatrixBlocks}.
+	 * The blocks have at most 2<sup>20</sup> entries and each task copies its block into a buffer on the heap.
+	 * If the matrix does not fit into the physical memory the iterations are limited by the speed of the disk.
+	 *
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param pathProbabilities The probabilities of the rows, i.e. the path marginal.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution.
+	 * @param numberOfBlocks The number of row blocks into which the matrix is split. It is increased if a block would get too large.
+	 * @param singlePrecision If true the matrix is stored in single precision, see {@link #FullMatrixIPFP(double[][], double[], double[], double, int, boolean)}.
+	 * @param outOfCoreDirectory The directory of the temporary file. If null the default temporary directory is used.
+	 * @throws IOException If the temporary file cannot be created or mapped.
+	 */
+	public FullMatrixIPFP(double[][] discountedFlooredNPV, double[] pathProbabilities, double[] defaultProbabilities, double penaltyFactor, int numberOfBlocks, boolean singlePrecision, File outOfCoreDirectory) throws IOException {
+		this(discountedFlooredNPV, pathProbabilities, defaultProbabilities, penaltyFactor, singlePrecision, null,
+				new MappedMatrixBlocks(getBlockStartRow(pathProbabilities.length, defaultProbabilities.length, numberOfBlocks, MAXIMAL_NUMBER_OF_ENTRIES_PER_OUT_OF_CORE_BLOCK),
+						defaultProbabilities.length, singlePrecision, outOfCoreDirectory));
+	}
+
+
+	/**
+	 * @param blockStartRow The index of the first row of each block followed by the number of rows. Not used if the matrix is stored out of core.
+	 * @param mappedMatrixBlocks The out of core storage of the blocks or null if the blocks are stored on the heap.
+	 */
+	private FullMatrixIPFP(double[][] discountedFlooredNPV, double[] pathProbabilities, double[] defaultProbabilities, double penaltyFactor, boolean singlePrecision, int[] blockStartRow, MappedMatrixBlocks mappedMatrixBlocks) {
+
+		if( discountedFlooredNPV.length != defaultProbabilities.length - 1 ) {
+			throw new IllegalArgumentException("The number of NPV columns has to be the number of default probabilities minus one.");
+		}
+
+		this.discountedFlooredNPV = discountedFlooredNPV;
+		this.pathProbabilities = pathProbabilities;
+		this.defaultProbabilities = defaultProbabilities;
+		this.penaltyFactor = penaltyFactor;
+		this.singlePrecision = singlePrecision;
+
+		this.numberOfRows = pathProbabilities.length;
+		this.numberOfColumns = defaultProbabilities.length;
+
+		this.mappedMatrixBlocks = mappedMatrixBlocks;
+		this.blockStartRow = mappedMatrixBlocks != null ? mappedMatrixBlocks.getBlockStartRow() : blockStartRow;
+		this.numberOfBlocks = this.blockStartRow.length - 1;
+
+		this.matrixBlocks = singlePrecision || mappedMatrixBlocks != null ? null : new double[this.numberOfBlocks][];
+		this.singlePrecisionMatrixBlocks = singlePrecision && mappedMatrixBlocks == null ? new float[this.numberOfBlocks][] : null;
+		this.partialColumnSums = new double[this.numberOfBlocks][numberOfColumns];
+		this.columnFactors = new double[numberOfColumns];
+		this.rowFactors = singlePrecision ? new double[numberOfRows] : null;
+
+		// Out of core the blocks are stored in the memory mapped file.
+		if(mappedMatrixBlocks == null) {
+			for(int blockIndex = 0; blockIndex < this.numberOfBlocks; blockIndex++) {
+				int numberOfRowsOfBlock = this.blockStartRow[blockIndex + 1] - this.blockStartRow[blockIndex];
+				if(singlePrecision) {
+					singlePrecisionMatrixBlocks[blockIndex] = new float[numberOfRowsOfBlock * numberOfColumns];
+				}
+				else {
+					matrixBlocks[blockIndex] = new double[numberOfRowsOfBlock * numberOfColumns];
+				}
+			}
+		}
+
+	}
+
+
+	/**
+	 * The initial matrix is assigned as follows.
+	 * <br> matrix[i][j] = exp( penaltyFactor * discountedFlooredNPV[i][j] ) * F<sub>i,j</sub>
+	 * <br> where F<sub>i,j</sub> := p<sub>i</sub> * q<sub>j</sub> is the independent joint distribution of the path probabilities and the default probabilities.
+	 *
+	 * @param executor The executor service performing the block tasks.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public void reset(ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		// No column renormalization is pending.
+		Arrays.fill(columnFactors, 1.0);
+		if(singlePrecision) {
+			Arrays.fill(rowFactors, 1.0);
+		}
+
+		List<Callable<Double>> callablesInitialMatrix = new ArrayList<Callable<Double>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+			final int fixedBlockIndex = blockIndex;
+
+			callablesInitialMatrix.add( new Callable<Double>() {
+				public Double call() {
+
+					// Out of core the block is copied into a buffer.
+					final double[] matrixBlock = getMatrixBlock(fixedBlockIndex);
+					final float[] singlePrecisionMatrixBlock = getSinglePrecisionMatrixBlock(fixedBlockIndex);
+
+					for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+						// The last column has no NPV column since no loss occurs. Therefore exp( penaltyFactor * 0 ) = 1.
+						double[] currentColumn = columnIndex < numberOfColumns - 1 ? discountedFlooredNPV[columnIndex] : null;
+						double currentDefaultProbability = defaultProbabilities[columnIndex];
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							double currentIndependentCommonDistributionWeight = pathProbabilities[rowIndex] * currentDefaultProbability;
+
+							double initialEntry = currentColumn != null ?
+									Math.exp( penaltyFactor * currentColumn[rowIndex] ) * currentIndependentCommonDistributionWeight : currentIndependentCommonDistributionWeight;
+
+							int index = ( rowIndex - fixedIndexFirstRowOfBlock ) * numberOfColumns + columnIndex;
+							if(singlePrecisionMatrixBlock != null) {
+								singlePrecisionMatrixBlock[index] = (float) initialEntry;
+							}
+							else {
+								matrixBlock[index] = initialEntry;
+							}
+
+						}
+					}
+
+					releaseMatrixBlock(fixedBlockIndex, matrixBlock, singlePrecisionMatrixBlock, true);
+
+					// Not used.
+					return 0.0;
+				}
+			});
+
+		}
+
+		// Waits until each thread executed the call code.
+		for(Future<Double> future : executor.invokeAll(callablesInitialMatrix)) {
+			future.get();
+		}
+
+	}
+
+
+	/**
+	 * Changes the penalty factor keeping the current iterate as starting point (warm start), i.e. the current matrix P is replaced by
+	 * <br> P<sub>i,j</sub> * exp( ( penaltyFactor - previousPenaltyFactor ) * discountedFlooredNPV[i][j] ).
+	 * <br> Since P has the form a<sub>i</sub> * exp( previousPenaltyFactor * discountedFlooredNPV[i][j] ) * b<sub>j</sub> the new matrix is the
+	 * matrix of the IPFP for the new penalty factor with the scaling of the previous solution. If the penalty factors are close the IPFP
+	 * requires considerably less iterations than from the initial matrix.
+	 * <br> In single precision the stored matrix is rebuilt as the initial matrix exp( penaltyFactor * discountedFlooredNPV[i][j] ) * F<sub>i,j</sub>
+	 * of the new penalty factor, the row factors and the column factors are kept. Thus the stored matrix is rounded to float only once
+	 * for each penalty factor and the rounding errors do not accumulate over a sequence of warm starts.
+	 * <br> If | penaltyFactor - previousPenaltyFactor | * max discountedFlooredNPV exceeds the bound of the linear domain, the rescaling
+	 * would overflow (or underflow) although both penalty factors are in the linear domain. Then the IPFP starts from the initial matrix
+	 * of the new penalty factor instead, see {@link #reset(ExecutorService)}.
+	 *
+	 * @param penaltyFactor The new penalty factor.
+	 * @param executor The executor service performing the block tasks.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public void setPenaltyFactor(double penaltyFactor, ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		final double fixedPenaltyFactor = penaltyFactor;
+		final double penaltyFactorIncrement = penaltyFactor - this.penaltyFactor;
+
+		if( Math.abs( penaltyFactorIncrement ) * getMaximalDiscountedFlooredNPV() > MAXIMAL_WARM_START_EXPONENT - Math.log(numberOfRows) ) {
+			this.penaltyFactor = penaltyFactor;
+			reset(executor);
+			return;
+		}
+
+		// The pending column renormalization is applied in the same pass. In single precision the column factors stay pending.
+		final double[] pendingColumnFactors = columnFactors.clone();
+		if(singlePrecision) {
+			Arrays.fill(pendingColumnFactors, 1.0);
+		}
+
+		List<Callable<Double>> callablesRescaling = new ArrayList<Callable<Double>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+			final int fixedBlockIndex = blockIndex;
+
+			callablesRescaling.add( new Callable<Double>() {
+				public Double call() {
+
+					// Out of core the block is copied into a buffer.
+					final double[] matrixBlock = getMatrixBlock(fixedBlockIndex);
+					final float[] singlePrecisionMatrixBlock = getSinglePrecisionMatrixBlock(fixedBlockIndex);
+
+					for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+						// The last column has no NPV column. Its kernel does not depend on the penalty factor.
+						double[] currentColumn = columnIndex < numberOfColumns - 1 ? discountedFlooredNPV[columnIndex] : null;
+						double currentColumnFactor = pendingColumnFactors[columnIndex];
+						double currentDefaultProbability = defaultProbabilities[columnIndex];
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							int index = ( rowIndex - fixedIndexFirstRowOfBlock ) * numberOfColumns + columnIndex;
+
+							if(singlePrecisionMatrixBlock != null) {
+								// The entry is rebuilt from the NPV instead of rescaled, otherwise each warm start would add a rounding error.
+								if(currentColumn != null) {
+									singlePrecisionMatrixBlock[index] = (float) ( Math.exp( fixedPenaltyFactor * currentColumn[rowIndex] ) * ( pathProbabilities[rowIndex] * currentDefaultProbability ) );
+								}
+							}
+							else {
+								matrixBlock[index] = currentColumn != null ? matrixBlock[index] * currentColumnFactor * Math.exp( penaltyFactorIncrement * currentColumn[rowIndex] )
+										: matrixBlock[index] * currentColumnFactor;
+							}
+
+						}
+					}
+
+					releaseMatrixBlock(fixedBlockIndex, matrixBlock, singlePrecisionMatrixBlock, true);
+
+					// Not used.
+					return 0.0;
+				}
+			});
+
+		}
+
+		for(Future<Double> future : executor.invokeAll(callablesRescaling)) {
+			future.get();
+		}
+
+		if( ! singlePrecision ) {
+			Arrays.fill(columnFactors, 1.0);
+		}
+
+		this.penaltyFactor = penaltyFactor;
+
+	}
+
+
+	/**
+	 * @return The maximum of the discounted and floored NPV over all rows and columns.
+	 */
+	private double getMaximalDiscountedFlooredNPV() {
+
+		if( Double.isNaN(maximalDiscountedFlooredNPV) ) {
+			double maximum = 0.0;
+			for(double[] column : discountedFlooredNPV) {
+				for(double value : column) {
+					maximum = Math.max( maximum, Math.abs( value ) );
+				}
+			}
+			maximalDiscountedFlooredNPV = maximum;
+		}
+
+		return maximalDiscountedFlooredNPV;
+
+	}
+
+
+	/**
+	 * The IPFP is performed until both termination criteria are satisfied or maxNumberOfIterations is reached.
+	 * The termination criteria are the same as in {@link main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ConstrainedWorstCaseCVA}.
+	 *
+	 * @param maxNumberOfIterations The maximal number of row and column renormalization steps.
+	 * @param terminationCriterionRows The error bound for the relative distance of the path probability and the sum of each row.
+	 * @param terminationCriterionColumns The error bound for the absolute distance of the default probability and the sum of each column (used for zero default probabilities).
+	 * @param terminationCriterionColumnsAbsolut The error bound for the relative distance of the default probability and the sum of each column.
+	 * @param executor The executor service performing the block tasks.
+	 * @return True if the termination criteria have been satisfied.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public boolean solve(int maxNumberOfIterations, double terminationCriterionRows, double terminationCriterionColumns, double terminationCriterionColumnsAbsolut, ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		numberOfIterations = 0;
+
+		OverRelaxationControl overRelaxationControl = new OverRelaxationControl(relaxationParameter, adaptiveRelaxation);
+		currentRelaxationParameter = overRelaxationControl.getRelaxationParameter();
+
+		boolean terminationCriteriaAreSatisfied = false;
+
+		for(int iterationIndex = 0; iterationIndex < maxNumberOfIterations; iterationIndex++) {
+
+			numberOfIterations++;
+
+			// Testing if both termination criterion are satisfied in this case the iteration is exited.
+			if( doIteration(terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor) ) {
+				terminationCriteriaAreSatisfied = true;
+				break;
+			}
+
+			// The relaxation parameter is adapted. In case of an invalid iterate the plain IPFP is restarted.
+			if( overRelaxationControl.update( Math.max( maximalRowDeviation, maximalColumnDeviation ) ) ) {
+				reset(executor);
+			}
+			currentRelaxationParameter = overRelaxationControl.getRelaxationParameter();
+
+		}
+
+		relaxationAbandoned = overRelaxationControl.isAbandoned();
+
+		return terminationCriteriaAreSatisfied;
+
+	}
+
+
+	/**
+	 * One iteration of the IPFP, i.e. a row renormalization step followed by a column renormalization step, performed in one pass over the matrix.
+	 * <br> Each block applies the pending column factors to its rows, divides each row by its sum, multiplies it with the path probability
+	 * and adds it to the partial column sums of the block. Afterwards the partial column sums are added in the order of the blocks
+	 * and the new column factors (default probability divided by the column sum) are stored. They are applied in the next pass.
+	 * <br> In single precision the stored matrix is only read. The row factors and the column factors are multiplied by the renormalizing factors instead.
+	 *
+	 * @param terminationCriterionRows The error bound for the relative distance of the path probability and the sum of each row.
+	 * @param terminationCriterionColumns The error bound for the absolute distance of the default probability and the sum of each column (used for zero default probabilities).
+	 * @param terminationCriterionColumnsAbsolut The error bound for the relative distance of the default probability and the sum of each column.
+	 * @param executor The executor service performing the block tasks.
+	 * @return True if the row sums before the row renormalization and the column sums before the column renormalization satisfied the termination criteria.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public boolean doIteration(final double terminationCriterionRows, double terminationCriterionColumns, double terminationCriterionColumnsAbsolut, ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		////
+		// Fused Row-wise Renormalization and Partial Column Sums
+		////
+
+		// The column factors are copied since they are overwritten after the pass.
+		final double[] pendingColumnFactors = columnFactors.clone();
+
+		final double fixedRelaxationParameter = currentRelaxationParameter;
+
+		List<Callable<Double>> callablesForRowSums = new ArrayList<Callable<Double>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+			final int fixedBlockIndex = blockIndex;
+			final double[] partialColumnSumsOfBlock = partialColumnSums[blockIndex];
+
+			callablesForRowSums.add(new Callable<Double>() {
+
+				public Double call() {
+
+					// Out of core the block is copied into a buffer.
+					final double[] matrixBlock = getMatrixBlock(fixedBlockIndex);
+					final float[] singlePrecisionMatrixBlock = getSinglePrecisionMatrixBlock(fixedBlockIndex);
+
+					// Variables for the Kahan summation of the partial column sums.
+					double helperNextSum = 0.0;
+					double nextToAdd = 0.0;
+					double[] negativLostDigitsStorageColumns = new double[numberOfColumns];
+					Arrays.fill(partialColumnSumsOfBlock, 0.0);
+
+					// At the end of the iteration over each row this variable is the maximal relative
+					// distance of the row sums to the desired path probabilities.
+					double maximalRowDeviationOfBlock = 0.0;
+
+					// In single precision each row is converted to double precision once.
+					double[] row = singlePrecisionMatrixBlock != null ? new double[numberOfColumns] : matrixBlock;
+
+					for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++ ) {
+
+						int offset = ( rowIndex - fixedIndexFirstRowOfBlock ) * numberOfColumns;
+
+						// Kahan summation of the current row with the pending column renormalization applied.
+						double currentRowSum;
+						if(singlePrecisionMatrixBlock != null) {
+							for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+								row[columnIndex] = singlePrecisionMatrixBlock[offset + columnIndex];
+							}
+							currentRowSum = rowFactors[rowIndex] * KahanSummation.getDotProduct(row, 0, pendingColumnFactors, 0, numberOfColumns);
+						}
+						else {
+							currentRowSum = KahanSummation.getDotProduct(matrixBlock, offset, pendingColumnFactors, 0, numberOfColumns);
+						}
+
+						double pathProbability = pathProbabilities[rowIndex];
+
+						maximalRowDeviationOfBlock = Math.max( maximalRowDeviationOfBlock, Math.abs( currentRowSum - pathProbability ) / pathProbability );
+
+						// The factor of the (over-relaxed) row renormalization. It is calculated once per row such that the loop over the columns
+						// consists of independent multiplications and additions only.
+						double rowFactor = fixedRelaxationParameter == 1.0 ? pathProbability / currentRowSum : Math.pow( pathProbability / currentRowSum, fixedRelaxationParameter );
+
+						// In single precision the row factor is accumulated and the stored row is not changed.
+						if(singlePrecisionMatrixBlock != null) {
+							rowFactors[rowIndex] *= rowFactor;
+							double accumulatedRowFactor = rowFactors[rowIndex];
+
+							for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+								nextToAdd = row[columnIndex] * pendingColumnFactors[columnIndex] * accumulatedRowFactor - negativLostDigitsStorageColumns[columnIndex];
+								helperNextSum = partialColumnSumsOfBlock[columnIndex] + nextToAdd;
+								negativLostDigitsStorageColumns[columnIndex] = ( helperNextSum - partialColumnSumsOfBlock[columnIndex] ) - nextToAdd;
+								partialColumnSumsOfBlock[columnIndex] = helperNextSum;
+
+							}
+
+							continue;
+						}
+
+						// Renormalizing the current row and adding it to the partial column sums.
+						// The row is still in the cache since it has just been read.
+						for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+							double renormalizedEntry = matrixBlock[offset + columnIndex] * pendingColumnFactors[columnIndex] * rowFactor;
+							matrixBlock[offset + columnIndex] = renormalizedEntry;
+
+							nextToAdd = renormalizedEntry - negativLostDigitsStorageColumns[columnIndex];
+							helperNextSum = partialColumnSumsOfBlock[columnIndex] + nextToAdd;
+							negativLostDigitsStorageColumns[columnIndex] = ( helperNextSum - partialColumnSumsOfBlock[columnIndex] ) - nextToAdd;
+							partialColumnSumsOfBlock[columnIndex] = helperNextSum;
+
+						}
+
+					}
+
+					// In single precision the stored matrix has not been changed.
+					releaseMatrixBlock(fixedBlockIndex, matrixBlock, singlePrecisionMatrixBlock, ! singlePrecision);
+
+					return maximalRowDeviationOfBlock;
+				}
+			});
+
+		}
+
+		maximalRowDeviation = 0.0;
+		for(Future<Double> partialRowDeviation : executor.invokeAll(callablesForRowSums)) {
+			maximalRowDeviation = Math.max( maximalRowDeviation, partialRowDeviation.get() );
+		}
+
+		// Only if all rows satisfy the termination criterion the rows are eligible for termination.
+		boolean rowsAreEligibleForTermination = maximalRowDeviation <= terminationCriterionRows;
+
+
+		////
+		// Column-wise Renormalization Step
+		// The partial column sums are added in the order of the blocks using Kahan summation.
+		// The resulting column factors are applied in the next pass.
+		////
+
+		double[] columnSums = new double[numberOfColumns];
+		double[] negativLostDigitsStorage = new double[numberOfColumns];
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+			for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+				double nextToAdd = partialColumnSums[blockIndex][columnIndex] - negativLostDigitsStorage[columnIndex];
+				double helperNextSum = columnSums[columnIndex] + nextToAdd;
+				negativLostDigitsStorage[columnIndex] = ( helperNextSum - columnSums[columnIndex] ) - nextToAdd;
+				columnSums[columnIndex] = helperNextSum;
+			}
+		}
+
+		// Only if all columns satisfy the termination criterion the termination variable stays true.
+		boolean columnsAreEligibleForTermination = true;
+
+		maximalColumnDeviation = 0.0;
+
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+			double currentDefaultProbability = defaultProbabilities[columnIndex];
+			double columnSumDeviation = Math.abs( columnSums[columnIndex] - currentDefaultProbability );
+
+			if(currentDefaultProbability > 0) {
+				maximalColumnDeviation = Math.max( maximalColumnDeviation, columnSumDeviation / currentDefaultProbability );
+				if( !( columnSumDeviation / currentDefaultProbability <= terminationCriterionColumnsAbsolut ) ) {
+					columnsAreEligibleForTermination = false;
+				}
+				// In single precision the column factor is multiplied by the renormalizing factor.
+				columnFactors[columnIndex] = ( singlePrecision ? columnFactors[columnIndex] : 1.0 ) * ( currentRelaxationParameter == 1.0 ? currentDefaultProbability / columnSums[columnIndex]
+						: Math.pow( currentDefaultProbability / columnSums[columnIndex], currentRelaxationParameter ) );
+			}
+			else {
+				if( columnSumDeviation > terminationCriterionColumns ) {
+					columnsAreEligibleForTermination = false;
+				}
+				// A column without default probability carries no weight.
+				columnFactors[columnIndex] = 0.0;
+			}
+
+		}
+
+		return rowsAreEligibleForTermination && columnsAreEligibleForTermination;
+
+	}
+
+
+	/**
+	 * @param executor The executor service performing the block tasks.
+	 * @return The CVA (loss given default equal to one) with respect to the current matrix, i.e. including the pending column renormalization.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public double getCVA(ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		List<Callable<Double>> callablesFinalSum = new ArrayList<Callable<Double>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+			final int fixedBlockIndex = blockIndex;
+
+			callablesFinalSum.add(new Callable<Double>() {
+				public Double call() {
+
+					// Out of core the block is copied into a buffer.
+					final double[] matrixBlock = getMatrixBlock(fixedBlockIndex);
+					final float[] singlePrecisionMatrixBlock = getSinglePrecisionMatrixBlock(fixedBlockIndex);
+
+					double runningSum = 0.0;
+					double helperNextSum = 0.0;
+					double nextToAdd = 0.0;
+					double negativLostDigitsStorage = 0.0;
+
+					// The last column is the zero column.
+					for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+
+						double[] currentColumn = discountedFlooredNPV[columnIndex];
+						double columnFactor = columnFactors[columnIndex];
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							nextToAdd = currentColumn[rowIndex] * ( getEntry(matrixBlock, singlePrecisionMatrixBlock, rowIndex, ( rowIndex - fixedIndexFirstRowOfBlock ) * numberOfColumns + columnIndex) * columnFactor ) - negativLostDigitsStorage;
+							helperNextSum = runningSum + nextToAdd;
+							negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+							runningSum = helperNextSum;
+
+						}
+					}
+
+					releaseMatrixBlock(fixedBlockIndex, matrixBlock, singlePrecisionMatrixBlock, false);
+
+					return runningSum;
+				}
+			});
+
+		}
+
+		////
+		// The partial sums are added together in the order of the blocks using Kahan summation.
+		////
+
+		double worstCaseCVAUnderConstraint = 0.0;
+		double helperNextSum = 0.0;
+		double nextToAdd = 0.0;
+		double negativLostDigitsStorage = 0.0;
+		for(Future<Double> partialSum : executor.invokeAll(callablesFinalSum)) {
+			nextToAdd = partialSum.get() - negativLostDigitsStorage;
+			helperNextSum = worstCaseCVAUnderConstraint + nextToAdd;
+			negativLostDigitsStorage = ( helperNextSum - worstCaseCVAUnderConstraint ) - nextToAdd;
+			worstCaseCVAUnderConstraint = helperNextSum;
+		}
+
+		return worstCaseCVAUnderConstraint;
+
+	}
+
+
+	/**
+	 * The decomposition of the CVA of {@link #getCVA(ExecutorService)} by default intervals, calculated in one pass over the matrix.
+	 *
+	 * @param jointDistribution If not null the current matrix entry P<sub>i,j</sub> is stored at jointDistribution[j][i]. It has to have numberOfColumns arrays of length numberOfRows.
+	 * @param executor The executor service performing the block tasks.
+	 * @return At index 0 the contributions sum<sub>i</sub> V<sub>i,j</sub> * P<sub>i,j</sub> of the default intervals j = 0, ... , numberOfColumns - 2 to the CVA
+	 * and at index 1 the column sums sum<sub>i</sub> P<sub>i,j</sub> of all columns.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public double[][] getColumnContributionsAndMasses(final double[][] jointDistribution, ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		List<Callable<double[]>> callablesFinalSum = new ArrayList<Callable<double[]>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+			final int fixedBlockIndex = blockIndex;
+
+			callablesFinalSum.add(new Callable<double[]>() {
+
+				/**
+				 * @return The partial contributions of the first numberOfColumns - 1 columns followed by the partial column sums of all columns.
+				 */
+				public double[] call() {
+
+					// Out of core the block is copied into a buffer.
+					final double[] matrixBlock = getMatrixBlock(fixedBlockIndex);
+					final float[] singlePrecisionMatrixBlock = getSinglePrecisionMatrixBlock(fixedBlockIndex);
+
+					double[] partialSums = new double[2 * numberOfColumns - 1];
+
+					for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+						// The last column is the zero column. It only contributes to the column sums.
+						final double[] currentColumn = columnIndex < numberOfColumns - 1 ? discountedFlooredNPV[columnIndex] : null;
+						final double[] jointDistributionColumn = jointDistribution != null ? jointDistribution[columnIndex] : null;
+						final double columnFactor = columnFactors[columnIndex];
+
+						// Variables for Kahan summation of the contribution and the column sum
+						double runningSum = 0.0;
+						double negativLostDigitsStorage = 0.0;
+						double runningMass = 0.0;
+						double negativLostDigitsStorageMass = 0.0;
+						double helperNextSum = 0.0;
+						double nextToAdd = 0.0;
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							double currentEntry = currentColumn != null ? currentColumn[rowIndex] : 0.0;
+							double currentProbability = getEntry(matrixBlock, singlePrecisionMatrixBlock, rowIndex, ( rowIndex - fixedIndexFirstRowOfBlock ) * numberOfColumns + columnIndex) * columnFactor;
+
+							if(jointDistributionColumn != null) {
+								jointDistributionColumn[rowIndex] = currentProbability;
+							}
+
+							nextToAdd = currentEntry * currentProbability - negativLostDigitsStorage;
+							helperNextSum = runningSum + nextToAdd;
+							negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+							runningSum = helperNextSum;
+
+							nextToAdd = currentProbability - negativLostDigitsStorageMass;
+							helperNextSum = runningMass + nextToAdd;
+							negativLostDigitsStorageMass = ( helperNextSum - runningMass ) - nextToAdd;
+							runningMass = helperNextSum;
+
+						}
+
+						if(currentColumn != null) {
+							partialSums[columnIndex] = runningSum;
+						}
+						partialSums[numberOfColumns - 1 + columnIndex] = runningMass;
+					}
+
+					releaseMatrixBlock(fixedBlockIndex, matrixBlock, singlePrecisionMatrixBlock, false);
+
+					return partialSums;
+				}
+			});
+
+		}
+
+		////
+		// The partial sums are added together in the order of the blocks.
+		////
+
+		double[] sums = sumBlockResults( executor.invokeAll(callablesFinalSum) );
+
+		double[] contributions = Arrays.copyOfRange(sums, 0, numberOfColumns - 1);
+		double[] columnMasses = Arrays.copyOfRange(sums, numberOfColumns - 1, 2 * numberOfColumns - 1);
+
+		return new double[][] { contributions, columnMasses };
+
+	}
+
+
+	/**
+	 * The block-wise partial results are added in the order of the blocks using Kahan summation.
+	 */
+	private static double[] sumBlockResults(List<Future<double[]>> partialResults) throws InterruptedException, ExecutionException {
+
+		double[] sums = null;
+		double[] negativLostDigitsStorage = null;
+
+		for(Future<double[]> partialResultFuture : partialResults) {
+
+			double[] partialResult = partialResultFuture.get();
+
+			if(sums == null) {
+				sums = new double[partialResult.length];
+				negativLostDigitsStorage = new double[partialResult.length];
+			}
+
+			for(int index = 0; index < partialResult.length; index++) {
+				double nextToAdd = partialResult[index] - negativLostDigitsStorage[index];
+				double helperNextSum = sums[index] + nextToAdd;
+				negativLostDigitsStorage[index] = ( helperNextSum - sums[index] ) - nextToAdd;
+				sums[index] = helperNextSum;
+			}
+
+		}
+
+		return sums;
+
+	}
+
+
+	/**
+	 * @param matrixBlock The double block of the row or null in single precision.
+	 * @param singlePrecisionMatrixBlock The float block of the row or null in double precision.
+	 * @param rowIndex The index of the row.
+	 * @param index The index of the entry in its block.
+	 * @return The entry of the matrix without the pending column renormalization, in single precision including the row factor.
+	 */
+	private double getEntry(double[] matrixBlock, float[] singlePrecisionMatrixBlock, int rowIndex, int index) {
+		return singlePrecisionMatrixBlock != null ? rowFactors[rowIndex] * singlePrecisionMatrixBlock[index] : matrixBlock[index];
+	}
+
+
+	/**
+	 * @param blockIndex The index of the block.
+	 * @return The double block or null in single precision. Out of core a buffer holding the block, which has to be returned by
+	 * {@link #releaseMatrixBlock(int, double[], float[], boolean)}.
+	 */
+	private double[] getMatrixBlock(int blockIndex) {
+		if(singlePrecision) {
+			return null;
+		}
+		return mappedMatrixBlocks != null ? mappedMatrixBlocks.getBlock(blockIndex) : matrixBlocks[blockIndex];
+	}
+
+
+	/**
+	 * @param blockIndex The index of the block.
+	 * @return The float block or null in double precision. Out of core a buffer holding the block, which has to be returned by
+	 * {@link #releaseMatrixBlock(int, double[], float[], boolean)}.
+	 */
+	private float[] getSinglePrecisionMatrixBlock(int blockIndex) {
+		if( ! singlePrecision ) {
+			return null;
+		}
+		return mappedMatrixBlocks != null ? mappedMatrixBlocks.getSinglePrecisionBlock(blockIndex) : singlePrecisionMatrixBlocks[blockIndex];
+	}
+
+
+	/**
+	 * Out of core the buffer of the block is written back if it has been modified and returned to the storage. Otherwise nothing is done.
+	 *
+	 * @param blockIndex The index of the block.
+	 * @param matrixBlock The double block or null in single precision.
+	 * @param singlePrecisionMatrixBlock The float block or null in double precision.
+	 * @param modified True if the block has been modified.
+	 */
+	private void releaseMatrixBlock(int blockIndex, double[] matrixBlock, float[] singlePrecisionMatrixBlock, boolean modified) {
+		if(mappedMatrixBlocks == null) {
+			return;
+		}
+		if(singlePrecision) {
+			mappedMatrixBlocks.releaseSinglePrecisionBlock(blockIndex, singlePrecisionMatrixBlock, modified);
+		}
+		else {
+			mappedMatrixBlocks.releaseBlock(blockIndex, matrixBlock, modified);
+		}
+	}
+
+
+	/**
+	 * @return The number of iterations performed by the last call of {@link #solve(int, double, double, double, ExecutorService)}.
+	 */
+	public int getNumberOfIterations() {
+		return numberOfIterations;
+	}
+
+	/**
+	 * @return The relaxation parameter w of the over-relaxed IPFP.
+	 */
+	public double getRelaxationParameter() {
+		return relaxationParameter;
+	}
+
+	/**
+	 * @param relaxationParameter The relaxation parameter w in (0,2) of the over-relaxed IPFP. For w = 1 the plain IPFP is performed.
+	 */
+	public void setRelaxationParameter(double relaxationParameter) {
+		if( !( relaxationParameter > 0.0 && relaxationParameter < 2.0 ) ) {
+			throw new IllegalArgumentException("The relaxation parameter has to be in (0,2).");
+		}
+		this.relaxationParameter = relaxationParameter;
+	}
+
+	/**
+	 * @return True if the relaxation parameter is estimated during each call of {@link #solve(int, double, double, double, ExecutorService)}.
+	 */
+	public boolean isAdaptiveRelaxation() {
+		return adaptiveRelaxation;
+	}
+
+	/**
+	 * @param adaptiveRelaxation If true the relaxation parameter is estimated during each call of {@link #solve(int, double, double, double, ExecutorService)}
+	 * and the fixed relaxation parameter is ignored.
+	 */
+	public void setAdaptiveRelaxation(boolean adaptiveRelaxation) {
+		this.adaptiveRelaxation = adaptiveRelaxation;
+	}
+
+	/**
+	 * @return True if the last call of {@link #solve(int, double, double, double, ExecutorService)} fell back from the over-relaxed IPFP to the plain IPFP.
+	 */
+	public boolean isRelaxationAbandoned() {
+		return relaxationAbandoned;
+	}
+
+	/**
+	 * @return True if the matrix is stored in single precision.
+	 */
+	public boolean isSinglePrecision() {
+		return singlePrecision;
+	}
+
+	/**
+	 * Releases the memory mapped file of an out of core matrix immediately, see {@link MappedMatrixBlocks#close()}.
+	 * Afterwards the IPFP is unusable if the matrix is stored out of core. For a matrix on the heap nothing is done.
+	 */
+	public void close() {
+		if(mappedMatrixBlocks != null) {
+			mappedMatrixBlocks.close();
+		}
+	}
+
+	/**
+	 * @return True if the matrix is stored in a memory mapped file instead of the heap.
+	 */
+	public boolean isOutOfCore() {
+		return mappedMatrixBlocks != null;
+	}
+
+	public int getNumberOfRows() {
+		return numberOfRows;
+	}
+
+	public int getNumberOfColumns() {
+		return numberOfColumns;
+	}
+
+	public double getPenaltyFactor() {
+		return penaltyFactor;
+	}
+
+
+	/**
+	 * Splits the rows into blocks of (almost) equal size.
+	 *
+	 * @param numberOfRows The number of rows of the matrix.
+	 * @param numberOfColumns The number of columns of the matrix.
+	 * @param numberOfBlocks The requested number of blocks. It is increased if a block would get too large.
+	 * @param maximalNumberOfEntriesPerBlock The maximal number of entries of one block.
+	 * @return The index of the first row of each block followed by the number of rows.
+	 */
+	private static int[] getBlockStartRow(int numberOfRows, int numberOfColumns, int numberOfBlocks, long maximalNumberOfEntriesPerBlock) {
+
+		long minimalNumberOfBlocks = ( (long) numberOfRows * numberOfColumns + maximalNumberOfEntriesPerBlock - 1 ) / maximalNumberOfEntriesPerBlock;
+
+		int boundedNumberOfBlocks = (int) Math.max( Math.min( Math.max( numberOfBlocks, minimalNumberOfBlocks ), numberOfRows ), 1 );
+
+		int[] blockStartRow = new int[boundedNumberOfBlocks + 1];
+		for(int blockIndex = 0; blockIndex <= boundedNumberOfBlocks; blockIndex++) {
+			blockStartRow[blockIndex] = (int) ( (long) blockIndex * numberOfRows / boundedNumberOfBlocks );
+		}
+
+		return blockStartRow;
+
+	}
+
+
+	private static double[] getUniformPathProbabilities(double[][] discountedFlooredNPV) {
+
+		if(discountedFlooredNPV.length == 0) {
+			throw new IllegalArgumentException("At least one NPV column is required.");
+		}
+
+		double[] pathProbabilities = new double[discountedFlooredNPV[0].length];
+		Arrays.fill(pathProbabilities, 1.0 / pathProbabilities.length);
+		return pathProbabilities;
+
+	}
+
+}
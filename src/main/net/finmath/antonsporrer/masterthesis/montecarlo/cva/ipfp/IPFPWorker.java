@@ -0,0 +1,216 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A worker of the {@link DistributedScalingVectorIPFP}. The worker owns a block of rows of the IPFP and performs the row renormalization
+ * and the partial column sums of its rows by a {@link ScalingVectorIPFP} on its own executor.
+ * <br> The worker serves one coordinator after the other until it is closed. It either runs in a thread of the JVM of the coordinator
+ * (loopback) or in a separate JVM, see {@link #main(String[])}. The rows of a coordinator are discarded when the coordinator closes the connection.
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class IPFPWorker implements Runnable, Closeable {
+
+	private final ServerSocket serverSocket;
+
+	private final ExecutorService executor;
+
+	// The number of row blocks of the IPFP of the worker.
+	private final int numberOfBlocks;
+
+
+	/**
+	 * @param port The port on which the worker listens for coordinators. Zero for an arbitrary free port, see {@link #getPort()}.
+	 * @param executor The executor service performing the block tasks of the worker. It is not shut down by the worker.
+	 * @param numberOfBlocks The number of row blocks into which the work of each pass of the worker is split.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public IPFPWorker(int port, ExecutorService executor, int numberOfBlocks) throws IOException {
+		this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		this.executor = executor;
+		this.numberOfBlocks = numberOfBlocks;
+	}
+
+
+	/**
+	 * Serves the coordinators until the worker is closed.
+	 */
+	public void run() {
+
+		while( ! serverSocket.isClosed() ) {
+
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			}
+			catch(IOException e) {
+				// The server socket has been closed.
+				return;
+			}
+
+			try {
+				serve(socket);
+			}
+			catch(IOException e) {
+				// The connection to the coordinator is lost. The worker waits for the next coordinator.
+			}
+			finally {
+				try {
+					socket.close();
+				}
+				catch(IOException e) {
+					// Closing a broken connection has no consequences.
+				}
+			}
+
+		}
+
+	}
+
+
+	/**
+	 * Processes the commands of one coordinator until it closes the connection.
+	 */
+	private void serve(Socket socket) throws IOException {
+
+		socket.setTcpNoDelay(true);
+
+		DataInputStream inputStream = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+		DataOutputStream outputStream = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+
+		// The IPFP of the rows of the worker.
+		ScalingVectorIPFP ipfp = null;
+
+		try {
+
+			while(true) {
+
+				int command = inputStream.readInt();
+
+				if( ipfp == null && ( command == DistributedScalingVectorIPFP.COMMAND_ITERATE || command == DistributedScalingVectorIPFP.COMMAND_CVA ) ) {
+					throw new IOException("No rows have been loaded.");
+				}
+
+				switch(command) {
+
+				case DistributedScalingVectorIPFP.COMMAND_LOAD:
+
+					// The previous rows are released before the new rows are read.
+					ipfp = null;
+
+					double penaltyFactor = inputStream.readDouble();
+					boolean logDomain = inputStream.readBoolean();
+					int numberOfRows = inputStream.readInt();
+					int numberOfColumns = inputStream.readInt();
+
+					double[] defaultProbabilities = DistributedScalingVectorIPFP.readDoubles(inputStream, numberOfColumns);
+					double[] pathProbabilities = DistributedScalingVectorIPFP.readDoubles(inputStream, numberOfRows);
+					double[][] discountedFlooredNPV = new double[numberOfColumns - 1][];
+					for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+						discountedFlooredNPV[columnIndex] = DistributedScalingVectorIPFP.readDoubles(inputStream, numberOfRows);
+					}
+
+					ipfp = new ScalingVectorIPFP(discountedFlooredNPV, pathProbabilities, defaultProbabilities, penaltyFactor, logDomain, numberOfBlocks);
+
+					outputStream.writeInt(numberOfRows);
+					break;
+
+				case DistributedScalingVectorIPFP.COMMAND_ITERATE:
+
+					double terminationCriterionRows = inputStream.readDouble();
+					ipfp.setColumnScaling( DistributedScalingVectorIPFP.readDoubles(inputStream, ipfp.getNumberOfColumns()) );
+
+					ipfp.doRowRenormalization(terminationCriterionRows, executor);
+
+					outputStream.writeDouble( ipfp.getMaximalRowDeviation() );
+					double[] partialColumnSums = ipfp.isLogDomain() ? ipfp.getLogKernelColumnSums(executor) : ipfp.getKernelColumnSums(executor);
+					DistributedScalingVectorIPFP.writeDoubles(outputStream, partialColumnSums, 0, partialColumnSums.length);
+					break;
+
+				case DistributedScalingVectorIPFP.COMMAND_CVA:
+
+					ipfp.setColumnScaling( DistributedScalingVectorIPFP.readDoubles(inputStream, ipfp.getNumberOfColumns()) );
+
+					outputStream.writeDouble( ipfp.getCVA(executor) );
+					break;
+
+				case DistributedScalingVectorIPFP.COMMAND_CLOSE:
+					return;
+
+				default:
+					throw new IOException("Unknown command " + command + ".");
+
+				}
+
+				outputStream.flush();
+
+			}
+
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("The worker has been interrupted.");
+		}
+		catch(ExecutionException e) {
+			throw new IOException("The calculation of the worker failed: " + e.getCause());
+		}
+
+	}
+
+
+	/**
+	 * Stops serving coordinators. A running connection is finished.
+	 */
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+
+
+	/**
+	 * @return The port on which the worker listens.
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+
+	/**
+	 * Starts a worker in a separate JVM listening on the loopback address.
+	 *
+	 * @param args The port and optionally the number of threads (default: the number of available processors).
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		int port = Integer.parseInt(args[0]);
+		int numberOfThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+
+		try {
+			new IPFPWorker(port, executor, 4 * numberOfThreads).run();
+		}
+		finally {
+			executor.shutdown();
+		}
+
+	}
+
+}
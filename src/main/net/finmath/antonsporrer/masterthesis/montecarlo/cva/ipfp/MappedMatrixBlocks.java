@@ -0,0 +1,348 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The out of core storage of the row blocks of the matrix of the {@link FullMatrixIPFP}. The blocks are stored one after the other
+ * in a temporary file which is mapped into memory, each block in row-major order as in the heap storage of {@link FullMatrixIPFP}.
+ * Thus the matrix occupies the address space and the page cache of the operating system but not the heap.
+ * If the matrix does not fit into the physical memory the operating system writes the blocks to the file and reads them again when they are needed,
+ * i.e. the IPFP becomes slower instead of failing.
+ * <br> A task of the IPFP copies its block into a buffer on the heap by {@link #getBlock(int)}, works on the buffer
+ * and copies the buffer back by {@link #releaseBlock(int, double[], boolean)} if it has changed the block. The buffers are reused,
+ * hence the heap only holds one buffer per concurrently running task. When a block is read, the next block is loaded
+ * into the page cache by a background thread (prefetching), since the blocks are usually treated in their order.
+ * <br> The file is deleted as soon as it is mapped (or at exit if the platform does not allow this). Its space and the address space
+ * are released by {@link #close()}, which unmaps the blocks as soon as no block is copied anymore. Afterwards the blocks are unusable.
+ * If the platform does not allow to unmap explicitly, the space is released when the mappings are garbage collected.
+ *
+ * @author Anton Sporrer
+ *
+ */
+final class MappedMatrixBlocks implements Closeable {
+
+	// The thread loading the blocks into the page cache. It is shared by all instances and does not prevent the exit of the JVM.
+	private static final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "IPFP block prefetch");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final int[] blockStartRow;
+	private final int numberOfColumns;
+
+	// The temporary file. It is usually deleted already.
+	private final File file;
+
+	// The mapping of each block. The mappings are removed by close().
+	private final MappedByteBuffer[] blocks;
+
+	// Each access of a mapping holds the read lock, close() holds the write lock. Hence no mapping is unmapped while it is accessed.
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// Guarded by the lock.
+	private boolean closed = false;
+
+	// The number of entries of the largest block, i.e. the length of the buffers.
+	private final int maximalBlockLength;
+
+	// The buffers which are currently not used by a task.
+	private final ConcurrentLinkedQueue<double[]> blockBuffers = new ConcurrentLinkedQueue<double[]>();
+	private final ConcurrentLinkedQueue<float[]> singlePrecisionBlockBuffers = new ConcurrentLinkedQueue<float[]>();
+
+	// The index of the block read last. A prefetch of a block which has already been read is skipped.
+	private volatile int lastReadBlockIndex = -1;
+
+
+	/**
+	 * @param blockStartRow The index of the first row of each block followed by the number of rows.
+	 * @param numberOfColumns The number of columns of the matrix.
+	 * @param singlePrecision If true the entries are stored as float.
+	 * @param directory The directory of the temporary file. If null the default temporary directory is used.
+	 * @throws IOException If the file cannot be created or mapped.
+	 */
+	MappedMatrixBlocks(int[] blockStartRow, int numberOfColumns, boolean singlePrecision, File directory) throws IOException {
+
+		this.blockStartRow = blockStartRow;
+		this.numberOfColumns = numberOfColumns;
+
+		int numberOfBlocks = blockStartRow.length - 1;
+		int bytesPerEntry = singlePrecision ? 4 : 8;
+
+		this.blocks = new MappedByteBuffer[numberOfBlocks];
+
+		int maximalBlockLength = 0;
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+			maximalBlockLength = Math.max( maximalBlockLength, getBlockLength(blockIndex) );
+		}
+		this.maximalBlockLength = maximalBlockLength;
+
+		this.file = File.createTempFile("ipfp", ".matrix", directory);
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+		try {
+
+			FileChannel channel = randomAccessFile.getChannel();
+
+			long position = 0;
+			for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+				long size = (long) getBlockLength(blockIndex) * bytesPerEntry;
+				blocks[blockIndex] = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+				position += size;
+			}
+
+		}
+		finally {
+			// The mappings stay valid after the file has been closed and deleted.
+			randomAccessFile.close();
+			if( ! file.delete() ) {
+				file.deleteOnExit();
+			}
+		}
+
+	}
+
+
+	/**
+	 * @param blockIndex The index of the block.
+	 * @return A buffer holding the entries of the block at the indices 0, ... , numberOfRowsOfBlock * numberOfColumns - 1.
+	 * It has to be returned by {@link #releaseBlock(int, double[], boolean)}.
+	 */
+	double[] getBlock(int blockIndex) {
+
+		double[] block = blockBuffers.poll();
+		if(block == null) {
+			block = new double[maximalBlockLength];
+		}
+
+		lock.readLock().lock();
+		try {
+			getView(blockIndex).asDoubleBuffer().get(block, 0, getBlockLength(blockIndex));
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+
+		prefetch(blockIndex);
+
+		return block;
+
+	}
+
+
+	/**
+	 * @param blockIndex The index of the block.
+	 * @param block The buffer of {@link #getBlock(int)}.
+	 * @param modified If true the buffer is written to the block.
+	 */
+	void releaseBlock(int blockIndex, double[] block, boolean modified) {
+
+		if(modified) {
+			lock.readLock().lock();
+			try {
+				getView(blockIndex).asDoubleBuffer().put(block, 0, getBlockLength(blockIndex));
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		blockBuffers.offer(block);
+
+	}
+
+
+	/**
+	 * @param blockIndex The index of the block.
+	 * @return A buffer holding the entries of the block, see {@link #getBlock(int)}. It has to be returned by {@link #releaseSinglePrecisionBlock(int, float[], boolean)}.
+	 */
+	float[] getSinglePrecisionBlock(int blockIndex) {
+
+		float[] block = singlePrecisionBlockBuffers.poll();
+		if(block == null) {
+			block = new float[maximalBlockLength];
+		}
+
+		lock.readLock().lock();
+		try {
+			getView(blockIndex).asFloatBuffer().get(block, 0, getBlockLength(blockIndex));
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+
+		prefetch(blockIndex);
+
+		return block;
+
+	}
+
+
+	/**
+	 * @param blockIndex The index of the block.
+	 * @param block The buffer of {@link #getSinglePrecisionBlock(int)}.
+	 * @param modified If true the buffer is written to the block.
+	 */
+	void releaseSinglePrecisionBlock(int blockIndex, float[] block, boolean modified) {
+
+		if(modified) {
+			lock.readLock().lock();
+			try {
+				getView(blockIndex).asFloatBuffer().put(block, 0, getBlockLength(blockIndex));
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		singlePrecisionBlockBuffers.offer(block);
+
+	}
+
+
+	/**
+	 * Loads the block following the block which has just been read into the page cache unless it has been read in the meantime.
+	 */
+	private void prefetch(int blockIndex) {
+
+		lastReadBlockIndex = blockIndex;
+
+		final int nextBlockIndex = blockIndex + 1;
+		if(nextBlockIndex >= blocks.length) {
+			return;
+		}
+
+		prefetchExecutor.execute(new Runnable() {
+			public void run() {
+				lock.readLock().lock();
+				try {
+					if( ! closed && lastReadBlockIndex < nextBlockIndex ) {
+						blocks[nextBlockIndex].load();
+					}
+				}
+				finally {
+					lock.readLock().unlock();
+				}
+			}
+		});
+
+	}
+
+
+	/**
+	 * The mappings are shared by the tasks, hence each access uses its own view. The caller has to hold the read lock.
+	 */
+	private ByteBuffer getView(int blockIndex) {
+
+		if(closed) {
+			throw new IllegalStateException("The out of core matrix blocks have been closed.");
+		}
+
+		return blocks[blockIndex].duplicate().order(ByteOrder.nativeOrder());
+
+	}
+
+
+	private int getBlockLength(int blockIndex) {
+		return ( blockStartRow[blockIndex + 1] - blockStartRow[blockIndex] ) * numberOfColumns;
+	}
+
+
+	/**
+	 * @return The index of the first row of each block followed by the number of rows.
+	 */
+	int[] getBlockStartRow() {
+		return blockStartRow;
+	}
+
+
+	/**
+	 * Unmaps the blocks, which releases the address space and the space of the temporary file immediately
+	 * instead of when the mappings are garbage collected. Copies of blocks which are still running, e.g. of tasks which have not been
+	 * stopped after an interrupt, are finished first. Afterwards the blocks are unusable, i.e. {@link #getBlock(int)},
+	 * {@link #getSinglePrecisionBlock(int)} and the release methods throw an IllegalStateException.
+	 */
+	public void close() {
+
+		lock.writeLock().lock();
+
+		try {
+
+			if(closed) {
+				return;
+			}
+			closed = true;
+
+			for(int blockIndex = 0; blockIndex < blocks.length; blockIndex++) {
+				MappedByteBuffer block = blocks[blockIndex];
+				blocks[blockIndex] = null;
+				unmap(block);
+			}
+
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+
+		// On some platforms a mapped file cannot be deleted.
+		if( file.exists() ) {
+			file.delete();
+		}
+
+	}
+
+
+	/**
+	 * Releases the mapping immediately. The JDK does not offer a public method for this. Therefore the cleaner of the mapping is invoked,
+	 * via sun.misc.Unsafe from Java 9 on and via the mapping itself before. If both fail the mapping is released by the garbage collection.
+	 */
+	private static void unmap(MappedByteBuffer block) {
+
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), block);
+			return;
+		}
+		catch(Exception e) {
+			// Java 8 and earlier.
+		}
+
+		try {
+			Method getCleaner = block.getClass().getMethod("cleaner");
+			getCleaner.setAccessible(true);
+			Object cleaner = getCleaner.invoke(block);
+			if(cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		}
+		catch(Exception e) {
+			// The mapping is released by the garbage collection.
+		}
+
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp;
+
+/**
+ * This class controls the relaxation parameter w of the over-relaxed IPFP during one call of solve of
+ * {@link ScalingVectorIPFP} or {@link FullMatrixIPFP}. In the over-relaxed IPFP each renormalization step
+ * multiplies the scaling of a row (column) by the renormalizing factor of the plain IPFP to the power w.
+ * <br> The relaxation parameter is either fixed or adaptive. In the adaptive case the plain IPFP (w = 1) is performed until
+ * the rate r by which the maximal relative deviation of the marginals decreases per iteration has stabilized.
+ * Then the relaxation parameter is set to the optimal value 2 / ( 1 + sqrt( 1 - r ) ) of a linear fixed point iteration
+ * with rate r (bounded by {@link #MAXIMAL_ADAPTIVE_RELAXATION_PARAMETER}).
+ * <br> The over-relaxed IPFP does not necessarily converge. Therefore the IPFP falls back to the plain IPFP if the maximal deviation
+ * has not decreased below its smallest value for {@link #MAXIMAL_NUMBER_OF_ITERATIONS_WITHOUT_IMPROVEMENT} iterations.
+ * Since each iterate of the over-relaxed IPFP is still a scaled kernel the plain IPFP converges from there to the same matrix.
+ * If the deviation is NaN the iterate is invalid and has to be reset before the fall back.
+ *
+ * @author Anton Sporrer
+ *
+ */
+class OverRelaxationControl {
+
+	// The number of iterations of the plain IPFP before the rate is estimated.
+	private static final int MINIMAL_NUMBER_OF_PLAIN_ITERATIONS = 3;
+
+	// Two successive rates have to differ by less than this value in order to be considered stable.
+	private static final double RATE_TOLERANCE = 0.01;
+
+	private static final double MAXIMAL_ADAPTIVE_RELAXATION_PARAMETER = 1.9;
+
+	private static final int MAXIMAL_NUMBER_OF_ITERATIONS_WITHOUT_IMPROVEMENT = 10;
+
+	private final boolean adaptive;
+
+	// The relaxation parameter of the current iteration.
+	private double relaxationParameter;
+
+	private boolean abandoned = false;
+
+	// Variables for the estimation of the rate.
+	private int numberOfPlainIterations = 0;
+	private double previousDeviation = Double.POSITIVE_INFINITY;
+	private double previousRate = Double.NaN;
+
+	// Variables for the fall back.
+	private double smallestDeviation = Double.POSITIVE_INFINITY;
+	private int numberOfIterationsWithoutImprovement = 0;
+
+
+	/**
+	 * @param relaxationParameter The fixed relaxation parameter. It is ignored in the adaptive case.
+	 * @param adaptive If true the relaxation parameter is estimated from the plain IPFP.
+	 */
+	OverRelaxationControl(double relaxationParameter, boolean adaptive) {
+		this.adaptive = adaptive;
+		this.relaxationParameter = adaptive ? 1.0 : relaxationParameter;
+	}
+
+
+	/**
+	 * Updates the relaxation parameter after an iteration.
+	 *
+	 * @param maximalDeviation The maximal relative deviation of the row sums and the column sums of the last iteration.
+	 * @return True if the iterate is invalid and has to be reset.
+	 */
+	boolean update(double maximalDeviation) {
+
+		if(abandoned) {
+			return false;
+		}
+
+		if(relaxationParameter == 1.0) {
+
+			if(adaptive && ! Double.isNaN(maximalDeviation)) {
+
+				numberOfPlainIterations++;
+
+				double rate = maximalDeviation / previousDeviation;
+
+				if( numberOfPlainIterations > MINIMAL_NUMBER_OF_PLAIN_ITERATIONS && rate < 1.0 && Math.abs( rate - previousRate ) < RATE_TOLERANCE ) {
+					relaxationParameter = Math.min( 2.0 / ( 1.0 + Math.sqrt( 1.0 - rate ) ), MAXIMAL_ADAPTIVE_RELAXATION_PARAMETER );
+					smallestDeviation = maximalDeviation;
+				}
+
+				previousRate = rate;
+				previousDeviation = maximalDeviation;
+			}
+
+			return false;
+		}
+
+		if( Double.isNaN(maximalDeviation) ) {
+			abandon();
+			return true;
+		}
+
+		if( maximalDeviation < smallestDeviation ) {
+			smallestDeviation = maximalDeviation;
+			numberOfIterationsWithoutImprovement = 0;
+		}
+		else if( ++numberOfIterationsWithoutImprovement >= MAXIMAL_NUMBER_OF_ITERATIONS_WITHOUT_IMPROVEMENT ) {
+			abandon();
+		}
+
+		return false;
+
+	}
+
+
+	private void abandon() {
+		relaxationParameter = 1.0;
+		abandoned = true;
+	}
+
+
+	/**
+	 * @return The relaxation parameter of the next iteration.
+	 */
+	double getRelaxationParameter() {
+		return relaxationParameter;
+	}
+
+	/**
+	 * @return True if the IPFP fell back from the over-relaxed IPFP to the plain IPFP.
+	 */
+	boolean isAbandoned() {
+		return abandoned;
+	}
+
+}
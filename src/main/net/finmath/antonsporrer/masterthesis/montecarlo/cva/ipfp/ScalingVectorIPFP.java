@@ -0,0 +1,1524 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * This class implements the iterative proportional fitting procedure (IPFP) used in
+ * {@link main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ConstrainedWorstCaseCVA} in its scaling vector (Sinkhorn) form.
+ * <br> The matrix of the IPFP is never stored. Every iterate of the IPFP has the form
+ * <br> P<sub>i,j</sub> = a<sub>i</sub> * exp( penaltyFactor * V<sub>i,j</sub> ) * b<sub>j</sub>
+ * <br> where V<sub>i,j</sub> is the discounted and floored net present value of path i at the default interval j (zero for the last interval),
+ * a is the row scaling vector of length numberOfRows and b is the column scaling vector of length numberOfColumns. Initially a<sub>i</sub>
+ * is the path probability and b<sub>j</sub> the default probability, i.e. P is the initial matrix exp( penaltyFactor * V ) * F of the IPFP.
+ * The row and column renormalization steps of the IPFP only change a and b respectively. The kernel exp( penaltyFactor * V<sub>i,j</sub> )
+ * is recomputed from the net present value columns whenever it is needed. Thus apart from the net present values only O(numberOfRows + numberOfColumns)
+ * doubles are stored.
+ * <br> For large penalty factors exp( penaltyFactor * V<sub>i,j</sub> ) overflows. In this case the log-domain variant can be used.
+ * Then the logarithms of the scaling vectors are stored and the row and column sums are calculated by the log-sum-exp trick, i.e.
+ * <br> log( sum<sub>j</sub> exp( x<sub>j</sub> ) ) = m + log( sum<sub>j</sub> exp( x<sub>j</sub> - m ) ) with m = max<sub>j</sub> x<sub>j</sub>.
+ * <br> Thereby each exponent is non-positive and all quantities stay finite for any penalty factor.
+ * <br> Optionally the IPFP is over-relaxed. For the relaxation parameter w in (0,2) the row step is
+ * <br> a<sub>i</sub> = a<sub>i</sub><sup>1-w</sup> * ( p<sub>i</sub> / sum<sub>j</sub> exp( penaltyFactor * V<sub>i,j</sub> ) * b<sub>j</sub> )<sup>w</sup>
+ * <br> and analogously for the column step. For w = 1 this is the IPFP. For w in (1,2) the convergence is usually much faster
+ * if the IPFP converges slowly (large penalty factors). The relaxation parameter is fixed or adaptive and the iteration falls back
+ * to the plain IPFP if the over-relaxed IPFP stalls, see {@link OverRelaxationControl}.
+ * <br> Optionally the NPV columns are stored in single precision (float), which halves the memory of the only data of size numberOfRows * numberOfColumns.
+ * Each block task converts the rows of its block of one column into a buffer in double precision. The kernel, the scaling vectors and all sums
+ * are calculated in double precision. Hence the IPFP is the one of the NPV rounded to about seven significant digits.
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class ScalingVectorIPFP {
+
+	// At array index j the realizations of the discounted and floored NPV associated with the default interval j are stored.
+	// The last default interval (no default in the observed time horizon) has no NPV column since the loss is zero.
+	// In single precision the NPV columns are stored as float and the double columns are null.
+	private final double[][] discountedFlooredNPV;
+	private final float[][] singlePrecisionDiscountedFlooredNPV;
+
+	// The target marginals of the rows (path probabilities) and the columns (default probabilities).
+	private final double[] pathProbabilities;
+	private final double[] defaultProbabilities;
+
+	private double penaltyFactor;
+
+	private final int numberOfRows;
+	private final int numberOfColumns;
+
+	// The scaling vectors a and b. In the log-domain variant log(a) and log(b) are stored.
+	private final double[] rowScaling;
+	private final double[] columnScaling;
+
+	// True if the log-domain variant is used.
+	private boolean logDomain;
+
+	// The rows are split into blocks. Each block is treated by one task.
+	private final int numberOfBlocks;
+	private final int[] blockStartRow;
+
+	// The relaxation parameter w of the over-relaxed IPFP. For w = 1 the plain IPFP is performed.
+	private double relaxationParameter = 1.0;
+
+	// If true the relaxation parameter is estimated during each call of solve, see OverRelaxationControl.
+	private boolean adaptiveRelaxation = false;
+
+	// The relaxation parameter of the current iteration of solve. It is set to one in case of a fall back.
+	private double currentRelaxationParameter = 1.0;
+
+	// True if the last call of solve fell back from the over-relaxed IPFP to the plain IPFP.
+	private boolean relaxationAbandoned = false;
+
+	// The maximal relative deviations of the row sums and the column sums (for positive default probabilities) of the last renormalization steps.
+	private double maximalRowDeviation = Double.POSITIVE_INFINITY;
+	private double maximalColumnDeviation = Double.POSITIVE_INFINITY;
+
+	// The number of performed iterations of the last call of solve.
+	private int numberOfIterations = 0;
+
+
+	/**
+	 * The path probabilities are assumed to be uniform.
+	 *
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity).
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution.
+	 * @param logDomain If true the log-domain variant of the IPFP is used.
+	 * @param numberOfBlocks The number of row blocks into which the work of each pass is split.
+	 */
+	public ScalingVectorIPFP(double[][] discountedFlooredNPV, double[] defaultProbabilities, double penaltyFactor, boolean logDomain, int numberOfBlocks) {
+		this(discountedFlooredNPV, getUniformPathProbabilities(discountedFlooredNPV), defaultProbabilities, penaltyFactor, logDomain, numberOfBlocks);
+	}
+
+
+	/**
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param pathProbabilities The probabilities of the rows, i.e. the path marginal.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity). They are copied.
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution.
+	 * @param logDomain If true the log-domain variant of the IPFP is used.
+	 * @param numberOfBlocks The number of row blocks into which the work of each pass is split.
+	 */
+	public ScalingVectorIPFP(double[][] discountedFlooredNPV, double[] pathProbabilities, double[] defaultProbabilities, double penaltyFactor, boolean logDomain, int numberOfBlocks) {
+		this(discountedFlooredNPV, null, pathProbabilities, defaultProbabilities, penaltyFactor, logDomain, numberOfBlocks);
+	}
+
+
+	/**
+	 * The NPV columns are stored in single precision. The kernel and the sums are calculated in double precision.
+	 *
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d] in single precision.
+	 * @param pathProbabilities The probabilities of the rows, i.e. the path marginal.
+	 * @param defaultProbabilities The probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity). They are copied.
+	 * @param penaltyFactor This factor determines how much the worst case distribution is allowed to differ from the independent distribution.
+	 * @param logDomain If true the log-domain variant of the IPFP is used.
+	 * @param numberOfBlocks The number of row blocks into which the work of each pass is split.
+	 */
+	public ScalingVectorIPFP(float[][] discountedFlooredNPV, double[] pathProbabilities, double[] defaultProbabilities, double penaltyFactor, boolean logDomain, int numberOfBlocks) {
+		this(null, discountedFlooredNPV, pathProbabilities, defaultProbabilities, penaltyFactor, logDomain, numberOfBlocks);
+	}
+
+
+	/**
+	 * Exactly one of the NPV arrays is not null.
+	 */
+	private ScalingVectorIPFP(double[][] discountedFlooredNPV, float[][] singlePrecisionDiscountedFlooredNPV, double[] pathProbabilities, double[] defaultProbabilities, double penaltyFactor, boolean logDomain, int numberOfBlocks) {
+
+		int numberOfNPVColumns = discountedFlooredNPV != null ? discountedFlooredNPV.length : singlePrecisionDiscountedFlooredNPV.length;
+		if( numberOfNPVColumns != defaultProbabilities.length - 1 ) {
+			throw new IllegalArgumentException("The number of NPV columns has to be the number of default probabilities minus one.");
+		}
+
+		this.discountedFlooredNPV = discountedFlooredNPV;
+		this.singlePrecisionDiscountedFlooredNPV = singlePrecisionDiscountedFlooredNPV;
+		this.pathProbabilities = pathProbabilities;
+		// The default probabilities are copied since they may be changed, see setDefaultProbabilities.
+		this.defaultProbabilities = defaultProbabilities.clone();
+		this.penaltyFactor = penaltyFactor;
+		this.logDomain = logDomain;
+
+		this.numberOfRows = pathProbabilities.length;
+		this.numberOfColumns = defaultProbabilities.length;
+
+		this.rowScaling = new double[numberOfRows];
+		this.columnScaling = new double[numberOfColumns];
+
+		////
+		// Splitting the rows into blocks of (almost) equal size.
+		////
+
+		this.numberOfBlocks = Math.max( Math.min( numberOfBlocks, numberOfRows ), 1 );
+		this.blockStartRow = new int[this.numberOfBlocks + 1];
+		for(int blockIndex = 0; blockIndex <= this.numberOfBlocks; blockIndex++) {
+			blockStartRow[blockIndex] = (int) ( (long) blockIndex * numberOfRows / this.numberOfBlocks );
+		}
+
+		reset();
+
+	}
+
+
+	/**
+	 * The scaling vectors are reset such that the current iterate is the initial matrix exp( penaltyFactor * V ) * F of the IPFP.
+	 */
+	public void reset() {
+
+		for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+			rowScaling[rowIndex] = logDomain ? Math.log( pathProbabilities[rowIndex] ) : pathProbabilities[rowIndex];
+		}
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+			columnScaling[columnIndex] = logDomain ? Math.log( defaultProbabilities[columnIndex] ) : defaultProbabilities[columnIndex];
+		}
+
+	}
+
+
+	/**
+	 * Changes the penalty factor keeping the current scaling vectors as starting point (warm start). Since every iterate has the form
+	 * a<sub>i</sub> * exp( penaltyFactor * V<sub>i,j</sub> ) * b<sub>j</sub> the solution of the previous penalty factor is a good starting point
+	 * if the penalty factors are close.
+	 *
+	 * @param penaltyFactor The new penalty factor.
+	 * @param logDomain If true the log-domain variant of the IPFP is used. The scaling vectors are converted if the variant changes.
+	 */
+	public void setPenaltyFactor(double penaltyFactor, boolean logDomain) {
+
+		this.penaltyFactor = penaltyFactor;
+
+		if(logDomain == this.logDomain) {
+			return;
+		}
+
+		this.logDomain = logDomain;
+
+		boolean scalingIsValid = true;
+
+		for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+			rowScaling[rowIndex] = logDomain ? Math.log( rowScaling[rowIndex] ) : Math.exp( rowScaling[rowIndex] );
+			scalingIsValid &= logDomain ? ! Double.isInfinite( rowScaling[rowIndex] ) : rowScaling[rowIndex] > 0.0 && ! Double.isInfinite( rowScaling[rowIndex] );
+		}
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+			columnScaling[columnIndex] = logDomain ? Math.log( columnScaling[columnIndex] ) : Math.exp( columnScaling[columnIndex] );
+			scalingIsValid &= defaultProbabilities[columnIndex] == 0.0
+					|| ( logDomain ? ! Double.isInfinite( columnScaling[columnIndex] ) : columnScaling[columnIndex] > 0.0 && ! Double.isInfinite( columnScaling[columnIndex] ) );
+		}
+
+		// The scaling vectors of the log-domain may not be representable in the linear domain. Then the IPFP starts from the initial matrix.
+		if( ! scalingIsValid ) {
+			reset();
+		}
+
+	}
+
+
+	/**
+	 * Changes the column marginal keeping the current scaling vectors as starting point (warm start), e.g. after an update of the default curve.
+	 * Each column scaling factor is multiplied by the ratio of the new and the old default probability. Hence the column sums of the current iterate
+	 * are the new default probabilities (if they were the old ones) and only the row sums deviate. If the marginal changes moderately
+	 * the IPFP then converges in a few iterations. A column whose default probability was zero starts from its new default probability as in {@link #reset()}.
+	 *
+	 * @param defaultProbabilities The new probabilities of default occurring in the time intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d], (t_d, infinity). They are copied.
+	 */
+	public void setDefaultProbabilities(double[] defaultProbabilities) {
+
+		if( defaultProbabilities.length != numberOfColumns ) {
+			throw new IllegalArgumentException("The number of default probabilities has to be the number of columns of the IPFP.");
+		}
+
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+			double oldDefaultProbability = this.defaultProbabilities[columnIndex];
+			double newDefaultProbability = defaultProbabilities[columnIndex];
+
+			if( newDefaultProbability <= 0.0 ) {
+				// A column without default probability carries no weight.
+				columnScaling[columnIndex] = logDomain ? Double.NEGATIVE_INFINITY : 0.0;
+			}
+			else if( oldDefaultProbability <= 0.0 ) {
+				columnScaling[columnIndex] = logDomain ? Math.log( newDefaultProbability ) : newDefaultProbability;
+			}
+			else {
+				columnScaling[columnIndex] = logDomain ? columnScaling[columnIndex] + Math.log( newDefaultProbability / oldDefaultProbability )
+						: columnScaling[columnIndex] * ( newDefaultProbability / oldDefaultProbability );
+			}
+
+			this.defaultProbabilities[columnIndex] = newDefaultProbability;
+
+		}
+
+	}
+
+
+	/**
+	 * The IPFP is performed until both termination criteria are satisfied or maxNumberOfIterations is reached.
+	 * The termination criteria are the same as in {@link main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ConstrainedWorstCaseCVA}.
+	 *
+	 * @param maxNumberOfIterations The maximal number of row and column renormalization steps.
+	 * @param terminationCriterionRows The error bound for the relative distance of the path probability and the sum of each row.
+	 * @param terminationCriterionColumns The error bound for the absolute distance of the default probability and the sum of each column (used for zero default probabilities).
+	 * @param terminationCriterionColumnsAbsolut The error bound for the relative distance of the default probability and the sum of each column.
+	 * @param executor The executor service performing the block tasks.
+	 * @return True if the termination criteria have been satisfied.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public boolean solve(int maxNumberOfIterations, double terminationCriterionRows, double terminationCriterionColumns, double terminationCriterionColumnsAbsolut, ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		numberOfIterations = 0;
+
+		OverRelaxationControl overRelaxationControl = new OverRelaxationControl(relaxationParameter, adaptiveRelaxation);
+		currentRelaxationParameter = overRelaxationControl.getRelaxationParameter();
+
+		boolean terminationCriteriaAreSatisfied = false;
+
+		for(int iterationIndex = 0; iterationIndex < maxNumberOfIterations; iterationIndex++) {
+
+			numberOfIterations++;
+
+			boolean rowsAreEligibleForTermination = doRowRenormalization(terminationCriterionRows, executor);
+
+			boolean columnsAreEligibleForTermination = doColumnRenormalization(terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+
+			// Testing if both termination criterion are satisfied in this case the iteration is exited.
+			if( rowsAreEligibleForTermination && columnsAreEligibleForTermination ) {
+				terminationCriteriaAreSatisfied = true;
+				break;
+			}
+
+			// The relaxation parameter is adapted. In case of an invalid iterate the plain IPFP is restarted.
+			if( overRelaxationControl.update( Math.max( maximalRowDeviation, maximalColumnDeviation ) ) ) {
+				reset();
+			}
+			currentRelaxationParameter = overRelaxationControl.getRelaxationParameter();
+
+		}
+
+		relaxationAbandoned = overRelaxationControl.isAbandoned();
+
+		return terminationCriteriaAreSatisfied;
+
+	}
+
+
+	/**
+	 * The row renormalization step of the IPFP. Each row scaling factor is replaced such that
+	 * the sum of the row is equal to the path probability.
+	 *
+	 * @param terminationCriterionRows The error bound for the relative distance of the path probability and the sum of each row.
+	 * @param executor The executor service performing the block tasks.
+	 * @return True if all row sums (before the renormalization) satisfied the termination criterion.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public boolean doRowRenormalization(final double terminationCriterionRows, ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		List<Callable<Double>> callablesForRowSums = new ArrayList<Callable<Double>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+
+			if(logDomain) {
+				callablesForRowSums.add( getLogDomainRowRenormalization(fixedIndexFirstRowOfBlock, fixedIndexLastRowOfBlockPlusOne) );
+				continue;
+			}
+
+			callablesForRowSums.add(new Callable<Double>() {
+
+				public Double call() {
+
+					// In single precision the NPV columns of the block are converted into a buffer indexed by rowIndex - columnOffset, see getColumn.
+					final double[] columnBuffer = singlePrecisionDiscountedFlooredNPV != null ? new double[fixedIndexLastRowOfBlockPlusOne - fixedIndexFirstRowOfBlock] : null;
+					final int columnOffset = columnBuffer != null ? fixedIndexFirstRowOfBlock : 0;
+
+					int numberOfRowsOfBlock = fixedIndexLastRowOfBlockPlusOne - fixedIndexFirstRowOfBlock;
+
+					// The row sums of the kernel weighted by the column scaling are summed column by column
+					// such that the NPV columns are read sequentially. Kahan summation is applied to each row.
+					double[] rowSums = new double[numberOfRowsOfBlock];
+					double[] negativLostDigitsStorage = new double[numberOfRowsOfBlock];
+
+					double nextToAdd = 0.0;
+					double helperNextSum = 0.0;
+
+					for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+
+						final double[] currentColumn = getColumn(columnIndex, fixedIndexFirstRowOfBlock, fixedIndexLastRowOfBlockPlusOne, columnBuffer);
+						final double currentColumnScaling = columnScaling[columnIndex];
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							int localIndex = rowIndex - fixedIndexFirstRowOfBlock;
+
+							nextToAdd = Math.exp( penaltyFactor * currentColumn[rowIndex - columnOffset] ) * currentColumnScaling - negativLostDigitsStorage[localIndex];
+							helperNextSum = rowSums[localIndex] + nextToAdd;
+							negativLostDigitsStorage[localIndex] = ( helperNextSum - rowSums[localIndex] ) - nextToAdd;
+							rowSums[localIndex] = helperNextSum;
+
+						}
+					}
+
+					// The last column has the kernel value exp(0) = 1.
+					final double lastColumnScaling = columnScaling[numberOfColumns - 1];
+
+					// At the end of the iteration over each row this variable is the maximal relative
+					// distance of the row sums to the desired path probabilities.
+					double maximalRowDeviationOfBlock = 0.0;
+
+					for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+						int localIndex = rowIndex - fixedIndexFirstRowOfBlock;
+
+						double kernelRowSum = rowSums[localIndex] + ( lastColumnScaling - negativLostDigitsStorage[localIndex] );
+						double pathProbability = pathProbabilities[rowIndex];
+
+						maximalRowDeviationOfBlock = Math.max( maximalRowDeviationOfBlock, Math.abs( rowScaling[rowIndex] * kernelRowSum - pathProbability ) / pathProbability );
+
+						// Renormalizing the current row.
+						rowScaling[rowIndex] = getRelaxedScaling( rowScaling[rowIndex], pathProbability / kernelRowSum );
+
+					}
+
+					return maximalRowDeviationOfBlock;
+				}
+			});
+
+		}
+
+		List<Future<Double>> partialRowDeviations = executor.invokeAll(callablesForRowSums);
+
+		maximalRowDeviation = 0.0;
+		for(Future<Double> partialRowDeviation : partialRowDeviations) {
+			maximalRowDeviation = Math.max( maximalRowDeviation, partialRowDeviation.get() );
+		}
+
+		// Only if all rows satisfy the termination criterion the rows are eligible for termination.
+		return maximalRowDeviation <= terminationCriterionRows;
+
+	}
+
+
+	/**
+	 * The row renormalization of the rows of one block in the log-domain.
+	 * <br> log(a<sub>i</sub>) = log(p<sub>i</sub>) - log( sum<sub>j</sub> exp( penaltyFactor * V<sub>i,j</sub> + log(b<sub>j</sub>) ) ).
+	 */
+	private Callable<Double> getLogDomainRowRenormalization(final int fixedIndexFirstRowOfBlock, final int fixedIndexLastRowOfBlockPlusOne) {
+
+		return new Callable<Double>() {
+
+			public Double call() {
+
+				// In single precision the NPV columns of the block are converted into a buffer indexed by rowIndex - columnOffset, see getColumn.
+				final double[] columnBuffer = singlePrecisionDiscountedFlooredNPV != null ? new double[fixedIndexLastRowOfBlockPlusOne - fixedIndexFirstRowOfBlock] : null;
+				final int columnOffset = columnBuffer != null ? fixedIndexFirstRowOfBlock : 0;
+
+				int numberOfRowsOfBlock = fixedIndexLastRowOfBlockPlusOne - fixedIndexFirstRowOfBlock;
+
+				// The last column has the exponent 0 + log(b_d).
+				final double lastColumnLogScaling = columnScaling[numberOfColumns - 1];
+
+				////
+				// First the maximal exponent of each row is calculated.
+				////
+
+				double[] rowMaxima = new double[numberOfRowsOfBlock];
+				Arrays.fill(rowMaxima, lastColumnLogScaling);
+
+				for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+
+					final double[] currentColumn = getColumn(columnIndex, fixedIndexFirstRowOfBlock, fixedIndexLastRowOfBlockPlusOne, columnBuffer);
+					final double currentColumnLogScaling = columnScaling[columnIndex];
+
+					// A column without weight does not contribute.
+					if(currentColumnLogScaling == Double.NEGATIVE_INFINITY) { continue; }
+
+					for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+						double exponent = penaltyFactor * currentColumn[rowIndex - columnOffset] + currentColumnLogScaling;
+						if(exponent > rowMaxima[rowIndex - fixedIndexFirstRowOfBlock]) { rowMaxima[rowIndex - fixedIndexFirstRowOfBlock] = exponent; }
+					}
+				}
+
+				////
+				// Second the exponentials of the shifted exponents are summed using Kahan summation.
+				// Each summand is in [0,1] and the maximal summand is one.
+				////
+
+				double[] rowSums = new double[numberOfRowsOfBlock];
+				double[] negativLostDigitsStorage = new double[numberOfRowsOfBlock];
+
+				double nextToAdd = 0.0;
+				double helperNextSum = 0.0;
+
+				for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+
+					final double[] currentColumn = getColumn(columnIndex, fixedIndexFirstRowOfBlock, fixedIndexLastRowOfBlockPlusOne, columnBuffer);
+					final double currentColumnLogScaling = columnScaling[columnIndex];
+
+					if(currentColumnLogScaling == Double.NEGATIVE_INFINITY) { continue; }
+
+					for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+						int localIndex = rowIndex - fixedIndexFirstRowOfBlock;
+
+						nextToAdd = Math.exp( penaltyFactor * currentColumn[rowIndex - columnOffset] + currentColumnLogScaling - rowMaxima[localIndex] ) - negativLostDigitsStorage[localIndex];
+						helperNextSum = rowSums[localIndex] + nextToAdd;
+						negativLostDigitsStorage[localIndex] = ( helperNextSum - rowSums[localIndex] ) - nextToAdd;
+						rowSums[localIndex] = helperNextSum;
+
+					}
+				}
+
+				double maximalRowDeviationOfBlock = 0.0;
+
+				for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+					int localIndex = rowIndex - fixedIndexFirstRowOfBlock;
+
+					double lastColumnSummand = lastColumnLogScaling == Double.NEGATIVE_INFINITY ? 0.0 : Math.exp( lastColumnLogScaling - rowMaxima[localIndex] );
+					double logKernelRowSum = rowMaxima[localIndex] + Math.log( rowSums[localIndex] + ( lastColumnSummand - negativLostDigitsStorage[localIndex] ) );
+					double logPathProbability = Math.log( pathProbabilities[rowIndex] );
+
+					// The row sum divided by the path probability is exp( log(a_i) + logKernelRowSum - log(p_i) ).
+					maximalRowDeviationOfBlock = Math.max( maximalRowDeviationOfBlock, Math.abs( Math.exp( rowScaling[rowIndex] + logKernelRowSum - logPathProbability ) - 1.0 ) );
+
+					// Renormalizing the current row.
+					rowScaling[rowIndex] = getRelaxedScaling( rowScaling[rowIndex], logPathProbability - logKernelRowSum );
+
+				}
+
+				return maximalRowDeviationOfBlock;
+			}
+		};
+
+	}
+
+
+	/**
+	 * The column renormalization step of the IPFP. Each column scaling factor is replaced such that
+	 * the sum of the column is equal to the default probability.
+	 *
+	 * @param terminationCriterionColumns The error bound for the absolute distance of the default probability and the sum of each column (used for zero default probabilities).
+	 * @param terminationCriterionColumnsAbsolut The error bound for the relative distance of the default probability and the sum of each column.
+	 * @param executor The executor service performing the block tasks.
+	 * @return True if all column sums (before the renormalization) satisfied the termination criterion.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public boolean doColumnRenormalization(double terminationCriterionColumns, double terminationCriterionColumnsAbsolut, ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		if(logDomain) {
+			return doLogDomainColumnRenormalization(terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor);
+		}
+
+		double[] kernelColumnSums = getKernelColumnSums(executor);
+
+		// Only if all columns satisfy the termination criterion the termination variable stays true.
+		boolean columnsAreEligibleForTermination = true;
+
+		maximalColumnDeviation = 0.0;
+
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+			double currentDefaultProbability = defaultProbabilities[columnIndex];
+			double columnSumDeviation = Math.abs( columnScaling[columnIndex] * kernelColumnSums[columnIndex] - currentDefaultProbability );
+
+			if(currentDefaultProbability > 0) {
+				maximalColumnDeviation = Math.max( maximalColumnDeviation, columnSumDeviation / currentDefaultProbability );
+				if( !( columnSumDeviation / currentDefaultProbability <= terminationCriterionColumnsAbsolut ) ) {
+					columnsAreEligibleForTermination = false;
+				}
+
+				// Renormalizing the current column.
+				columnScaling[columnIndex] = getRelaxedScaling( columnScaling[columnIndex], currentDefaultProbability / kernelColumnSums[columnIndex] );
+			}
+			else {
+				if( columnSumDeviation > terminationCriterionColumns ) {
+					columnsAreEligibleForTermination = false;
+				}
+
+				// A column without default probability carries no weight.
+				columnScaling[columnIndex] = 0.0;
+			}
+
+		}
+
+		return columnsAreEligibleForTermination;
+
+	}
+
+
+	/**
+	 * The column renormalization step of the IPFP in the log-domain.
+	 * <br> log(b<sub>j</sub>) = log(q<sub>j</sub>) - log( sum<sub>i</sub> exp( log(a<sub>i</sub>) + penaltyFactor * V<sub>i,j</sub> ) ).
+	 */
+	private boolean doLogDomainColumnRenormalization(double terminationCriterionColumns, double terminationCriterionColumnsAbsolut, ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		double[] logKernelColumnSums = getLogKernelColumnSums(executor);
+
+		boolean columnsAreEligibleForTermination = true;
+
+		maximalColumnDeviation = 0.0;
+
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+			double currentDefaultProbability = defaultProbabilities[columnIndex];
+
+			if(currentDefaultProbability > 0) {
+				double logDefaultProbability = Math.log( currentDefaultProbability );
+
+				// The column sum divided by the default probability is exp( log(b_j) + logKernelColumnSum - log(q_j) ).
+				double columnSumDeviation = Math.abs( Math.exp( columnScaling[columnIndex] + logKernelColumnSums[columnIndex] - logDefaultProbability ) - 1.0 );
+				maximalColumnDeviation = Math.max( maximalColumnDeviation, columnSumDeviation );
+				if( !( columnSumDeviation <= terminationCriterionColumnsAbsolut ) ) {
+					columnsAreEligibleForTermination = false;
+				}
+
+				// Renormalizing the current column.
+				columnScaling[columnIndex] = getRelaxedScaling( columnScaling[columnIndex], logDefaultProbability - logKernelColumnSums[columnIndex] );
+			}
+			else {
+				double columnSum = columnScaling[columnIndex] == Double.NEGATIVE_INFINITY ? 0.0 : Math.exp( columnScaling[columnIndex] + logKernelColumnSums[columnIndex] );
+				if( columnSum > terminationCriterionColumns ) {
+					columnsAreEligibleForTermination = false;
+				}
+
+				// A column without default probability carries no weight.
+				columnScaling[columnIndex] = Double.NEGATIVE_INFINITY;
+			}
+
+		}
+
+		return columnsAreEligibleForTermination;
+
+	}
+
+
+	/**
+	 * @param currentScaling The current entry of the scaling vector (its logarithm in the log-domain variant).
+	 * @param renormalizingScaling The entry of the scaling vector of the plain IPFP step (its logarithm in the log-domain variant).
+	 * @return The entry of the scaling vector of the over-relaxed IPFP step, i.e. current<sup>1-w</sup> * renormalizing<sup>w</sup>.
+	 */
+	private double getRelaxedScaling(double currentScaling, double renormalizingScaling) {
+
+		if(currentRelaxationParameter == 1.0) {
+			return renormalizingScaling;
+		}
+
+		return logDomain ? currentScaling + currentRelaxationParameter * ( renormalizingScaling - currentScaling )
+				: currentScaling * Math.pow( renormalizingScaling / currentScaling, currentRelaxationParameter );
+
+	}
+
+
+	/**
+	 * @param executor The executor service performing the block tasks.
+	 * @return At index j the logarithm of the sum over all rows i of exp( log(a<sub>i</sub>) + penaltyFactor * V<sub>i,j</sub> ).
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	double[] getLogKernelColumnSums(ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		List<Callable<double[][]>> callablesForColumnSums = new ArrayList<Callable<double[][]>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+
+			callablesForColumnSums.add(new Callable<double[][]>() {
+
+				/**
+				 * @return The partial column maxima of the exponents at index 0 and the partial sums of the shifted exponentials at index 1.
+				 */
+				public double[][] call() {
+
+					// In single precision the NPV columns of the block are converted into a buffer indexed by rowIndex - columnOffset, see getColumn.
+					final double[] columnBuffer = singlePrecisionDiscountedFlooredNPV != null ? new double[fixedIndexLastRowOfBlockPlusOne - fixedIndexFirstRowOfBlock] : null;
+					final int columnOffset = columnBuffer != null ? fixedIndexFirstRowOfBlock : 0;
+
+					double[] partialColumnMaxima = new double[numberOfColumns];
+					double[] partialColumnSums = new double[numberOfColumns];
+
+					for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+						final double[] currentColumn = columnIndex < numberOfColumns - 1 ? getColumn(columnIndex, fixedIndexFirstRowOfBlock, fixedIndexLastRowOfBlockPlusOne, columnBuffer) : null;
+
+						double currentMaximum = Double.NEGATIVE_INFINITY;
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+							double exponent = rowScaling[rowIndex] + ( currentColumn != null ? penaltyFactor * currentColumn[rowIndex - columnOffset] : 0.0 );
+							if(exponent > currentMaximum) { currentMaximum = exponent; }
+						}
+
+						// Variables for Kahan summation
+						double runningColumnSum = 0.0;
+						double helperNextSum = 0.0;
+						double nextToAdd = 0.0;
+						double negativLostDigitsStorage = 0.0;
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							double exponent = rowScaling[rowIndex] + ( currentColumn != null ? penaltyFactor * currentColumn[rowIndex - columnOffset] : 0.0 );
+
+							nextToAdd = Math.exp( exponent - currentMaximum ) - negativLostDigitsStorage;
+							helperNextSum = runningColumnSum + nextToAdd;
+							negativLostDigitsStorage = ( helperNextSum - runningColumnSum ) - nextToAdd;
+							runningColumnSum = helperNextSum;
+
+						}
+
+						partialColumnMaxima[columnIndex] = currentMaximum;
+						partialColumnSums[columnIndex] = runningColumnSum;
+					}
+
+					return new double[][] { partialColumnMaxima, partialColumnSums };
+				}
+			});
+
+		}
+
+		List<Future<double[][]>> partialResults = executor.invokeAll(callablesForColumnSums);
+
+		////
+		// The block results are combined: The sum of block b is rescaled by exp( maximum of block b - overall maximum ).
+		////
+
+		double[] columnMaxima = new double[numberOfColumns];
+		Arrays.fill(columnMaxima, Double.NEGATIVE_INFINITY);
+		for(Future<double[][]> partialResult : partialResults) {
+			double[] partialColumnMaxima = partialResult.get()[0];
+			for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+				if(partialColumnMaxima[columnIndex] > columnMaxima[columnIndex]) { columnMaxima[columnIndex] = partialColumnMaxima[columnIndex]; }
+			}
+		}
+
+		double[] columnSums = new double[numberOfColumns];
+		double[] negativLostDigitsStorage = new double[numberOfColumns];
+		for(Future<double[][]> partialResult : partialResults) {
+			double[] partialColumnMaxima = partialResult.get()[0];
+			double[] partialColumnSums = partialResult.get()[1];
+			for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+				double nextToAdd = partialColumnSums[columnIndex] * Math.exp( partialColumnMaxima[columnIndex] - columnMaxima[columnIndex] ) - negativLostDigitsStorage[columnIndex];
+				double helperNextSum = columnSums[columnIndex] + nextToAdd;
+				negativLostDigitsStorage[columnIndex] = ( helperNextSum - columnSums[columnIndex] ) - nextToAdd;
+				columnSums[columnIndex] = helperNextSum;
+			}
+		}
+
+		double[] logColumnSums = new double[numberOfColumns];
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+			logColumnSums[columnIndex] = columnMaxima[columnIndex] + Math.log( columnSums[columnIndex] );
+		}
+
+		return logColumnSums;
+
+	}
+
+
+	/**
+	 * @param executor The executor service performing the block tasks.
+	 * @return At index j the sum over all rows i of a<sub>i</sub> * exp( penaltyFactor * V<sub>i,j</sub> ).
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	double[] getKernelColumnSums(ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		List<Callable<double[]>> callablesForColumnSums = new ArrayList<Callable<double[]>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+
+			callablesForColumnSums.add(new Callable<double[]>() {
+
+				public double[] call() {
+
+					// In single precision the NPV columns of the block are converted into a buffer indexed by rowIndex - columnOffset, see getColumn.
+					final double[] columnBuffer = singlePrecisionDiscountedFlooredNPV != null ? new double[fixedIndexLastRowOfBlockPlusOne - fixedIndexFirstRowOfBlock] : null;
+					final int columnOffset = columnBuffer != null ? fixedIndexFirstRowOfBlock : 0;
+
+					// Each block calculates its partial column sums.
+					double[] partialColumnSums = new double[numberOfColumns];
+
+					for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+						final double[] currentColumn = columnIndex < numberOfColumns - 1 ? getColumn(columnIndex, fixedIndexFirstRowOfBlock, fixedIndexLastRowOfBlockPlusOne, columnBuffer) : null;
+
+						// Variables for Kahan summation
+						double runningColumnSum = 0.0;
+						double helperNextSum = 0.0;
+						double nextToAdd = 0.0;
+						double negativLostDigitsStorage = 0.0;
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							// The last column has the kernel value exp(0) = 1.
+							double kernelEntry = currentColumn != null ? Math.exp( penaltyFactor * currentColumn[rowIndex - columnOffset] ) : 1.0;
+
+							nextToAdd = rowScaling[rowIndex] * kernelEntry - negativLostDigitsStorage;
+							helperNextSum = runningColumnSum + nextToAdd;
+							negativLostDigitsStorage = ( helperNextSum - runningColumnSum ) - nextToAdd;
+							runningColumnSum = helperNextSum;
+
+						}
+
+						partialColumnSums[columnIndex] = runningColumnSum;
+					}
+
+					return partialColumnSums;
+				}
+			});
+
+		}
+
+		return sumBlockResults( executor.invokeAll(callablesForColumnSums) );
+
+	}
+
+
+	/**
+	 * @param executor The executor service performing the block tasks.
+	 * @return The CVA (loss given default equal to one) with respect to the current iterate of the IPFP.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public double getCVA(ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		List<Callable<double[]>> callablesFinalSum = new ArrayList<Callable<double[]>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+
+			callablesFinalSum.add(new Callable<double[]>() {
+
+				public double[] call() {
+
+					// In single precision the NPV columns of the block are converted into a buffer indexed by rowIndex - columnOffset, see getColumn.
+					final double[] columnBuffer = singlePrecisionDiscountedFlooredNPV != null ? new double[fixedIndexLastRowOfBlockPlusOne - fixedIndexFirstRowOfBlock] : null;
+					final int columnOffset = columnBuffer != null ? fixedIndexFirstRowOfBlock : 0;
+
+					// The last column is the zero column. Hence it does not contribute.
+					double[] partialSums = new double[numberOfColumns - 1];
+
+					for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+
+						final double[] currentColumn = getColumn(columnIndex, fixedIndexFirstRowOfBlock, fixedIndexLastRowOfBlockPlusOne, columnBuffer);
+
+						double runningSum = 0.0;
+						double helperNextSum = 0.0;
+						double nextToAdd = 0.0;
+						double negativLostDigitsStorage = 0.0;
+
+						final double currentColumnLogScaling = logDomain ? columnScaling[columnIndex] : 0.0;
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							double currentEntry = currentColumn[rowIndex - columnOffset];
+
+							// In the log-domain the probability exp( log(a_i) + penaltyFactor * V_ij + log(b_j) ) is at most one.
+							double currentWeight = logDomain ? Math.exp( rowScaling[rowIndex] + penaltyFactor * currentEntry + currentColumnLogScaling )
+									: rowScaling[rowIndex] * Math.exp( penaltyFactor * currentEntry );
+
+							nextToAdd = currentEntry * currentWeight - negativLostDigitsStorage;
+							helperNextSum = runningSum + nextToAdd;
+							negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+							runningSum = helperNextSum;
+
+						}
+
+						partialSums[columnIndex] = logDomain ? runningSum : runningSum * columnScaling[columnIndex];
+					}
+
+					return partialSums;
+				}
+			});
+
+		}
+
+		double[] columnContributions = sumBlockResults( executor.invokeAll(callablesFinalSum) );
+
+		double worstCaseCVAUnderConstraint = 0.0;
+		for(double columnContribution : columnContributions) {
+			worstCaseCVAUnderConstraint += columnContribution;
+		}
+
+		return worstCaseCVAUnderConstraint;
+
+	}
+
+
+	/**
+	 * The decomposition of the CVA of {@link #getCVA(ExecutorService)} by default intervals, calculated in one pass over the NPV columns.
+	 *
+	 * @param jointDistribution If not null the current iterate P<sub>i,j</sub> is stored at jointDistribution[j][i]. It has to have numberOfColumns arrays of length numberOfRows.
+	 * @param executor The executor service performing the block tasks.
+	 * @return At index 0 the contributions sum<sub>i</sub> V<sub>i,j</sub> * P<sub>i,j</sub> of the default intervals j = 0, ... , numberOfColumns - 2 to the CVA
+	 * and at index 1 the column sums sum<sub>i</sub> P<sub>i,j</sub> of all columns.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public double[][] getColumnContributionsAndMasses(final double[][] jointDistribution, ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		List<Callable<double[]>> callablesFinalSum = new ArrayList<Callable<double[]>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+
+			callablesFinalSum.add(new Callable<double[]>() {
+
+				/**
+				 * @return The partial contributions of the first numberOfColumns - 1 columns followed by the partial column sums of all columns.
+				 */
+				public double[] call() {
+
+					// In single precision the NPV columns of the block are converted into a buffer indexed by rowIndex - columnOffset, see getColumn.
+					final double[] columnBuffer = singlePrecisionDiscountedFlooredNPV != null ? new double[fixedIndexLastRowOfBlockPlusOne - fixedIndexFirstRowOfBlock] : null;
+					final int columnOffset = columnBuffer != null ? fixedIndexFirstRowOfBlock : 0;
+
+					double[] partialSums = new double[2 * numberOfColumns - 1];
+
+					for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+						// The last column is the zero column. It only contributes to the column sums.
+						final double[] currentColumn = columnIndex < numberOfColumns - 1 ? getColumn(columnIndex, fixedIndexFirstRowOfBlock, fixedIndexLastRowOfBlockPlusOne, columnBuffer) : null;
+						final double[] jointDistributionColumn = jointDistribution != null ? jointDistribution[columnIndex] : null;
+						final double currentColumnScaling = columnScaling[columnIndex];
+
+						// Variables for Kahan summation of the contribution and the column sum
+						double runningSum = 0.0;
+						double negativLostDigitsStorage = 0.0;
+						double runningMass = 0.0;
+						double negativLostDigitsStorageMass = 0.0;
+						double helperNextSum = 0.0;
+						double nextToAdd = 0.0;
+
+						for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+							double currentEntry = currentColumn != null ? currentColumn[rowIndex - columnOffset] : 0.0;
+
+							// In the log-domain the probability exp( log(a_i) + penaltyFactor * V_ij + log(b_j) ) is at most one.
+							double currentProbability = logDomain ? ( currentColumnScaling == Double.NEGATIVE_INFINITY ? 0.0 : Math.exp( rowScaling[rowIndex] + penaltyFactor * currentEntry + currentColumnScaling ) )
+									: rowScaling[rowIndex] * Math.exp( penaltyFactor * currentEntry ) * currentColumnScaling;
+
+							if(jointDistributionColumn != null) {
+								jointDistributionColumn[rowIndex] = currentProbability;
+							}
+
+							nextToAdd = currentEntry * currentProbability - negativLostDigitsStorage;
+							helperNextSum = runningSum + nextToAdd;
+							negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+							runningSum = helperNextSum;
+
+							nextToAdd = currentProbability - negativLostDigitsStorageMass;
+							helperNextSum = runningMass + nextToAdd;
+							negativLostDigitsStorageMass = ( helperNextSum - runningMass ) - nextToAdd;
+							runningMass = helperNextSum;
+
+						}
+
+						if(currentColumn != null) {
+							partialSums[columnIndex] = runningSum;
+						}
+						partialSums[numberOfColumns - 1 + columnIndex] = runningMass;
+					}
+
+					return partialSums;
+				}
+			});
+
+		}
+
+		double[] sums = sumBlockResults( executor.invokeAll(callablesFinalSum) );
+
+		return new double[][] { Arrays.copyOfRange(sums, 0, numberOfColumns - 1), Arrays.copyOfRange(sums, numberOfColumns - 1, 2 * numberOfColumns - 1) };
+
+	}
+
+
+	/**
+	 * The sensitivities of the value G of the penalized problem (see {@link #getPenalizedValue()}) and of the CVA of {@link #getCVA(ExecutorService)} 
+	 * with respect to the default probabilities, calculated from the solution of the IPFP without solving further IPFPs.
+	 * Since the default probabilities sum up to one, the default probability q<sub>j</sub> is increased and the default probability q<sub>r</sub> of the 
+	 * reference column r is decreased by the same amount. The reference column is the last column with positive default probability 
+	 * (the survival beyond the last time discretization point unless its probability is zero), its sensitivities are zero.
+	 * <br> Let S<sub>j</sub> = sum<sub>i</sub> a<sub>i</sub> * exp( penaltyFactor * V<sub>i,j</sub> ) be the kernel column sums. Then b<sub>j</sub> = q<sub>j</sub> / S<sub>j</sub>
+	 * and the column scaling vector is the dual variable of the default marginal, i.e. by the envelope theorem
+	 * <br> dG / dq<sub>j</sub> = log( S<sub>j</sub> ) - log( S<sub>r</sub> ).
+	 * <br> This also holds for zero default probabilities. Since the CVA is the derivative of G with respect to the penalty factor x, its sensitivity is
+	 * <br> dCVA / dq<sub>j</sub> = d/dx log( S<sub>j</sub> ) - d/dx log( S<sub>r</sub> ).
+	 * <br> The derivatives u' and v' of log(a) and log(b) with respect to x follow by differentiating the marginal conditions of the solution P:
+	 * <br> p<sub>i</sub> * u'<sub>i</sub> + sum<sub>j</sub> P<sub>i,j</sub> * v'<sub>j</sub> = - R<sub>i</sub> with R<sub>i</sub> = sum<sub>j</sub> P<sub>i,j</sub> * V<sub>i,j</sub>,
+	 * <br> sum<sub>i</sub> P<sub>i,j</sub> * u'<sub>i</sub> + q<sub>j</sub> * v'<sub>j</sub> = - C<sub>j</sub> with C<sub>j</sub> = sum<sub>i</sub> P<sub>i,j</sub> * V<sub>i,j</sub>.
+	 * <br> Eliminating u' yields the linear system
+	 * <br> q<sub>j</sub> * v'<sub>j</sub> - sum<sub>k</sub> M<sub>j,k</sub> * v'<sub>k</sub> = sum<sub>i</sub> P<sub>i,j</sub> * R<sub>i</sub> / p<sub>i</sub> - C<sub>j</sub> with M<sub>j,k</sub> = sum<sub>i</sub> P<sub>i,j</sub> * P<sub>i,k</sub> / p<sub>i</sub>
+	 * <br> of the columns with positive default probability. Its solution is unique up to a constant which is fixed by v'<sub>r</sub> = 0. 
+	 * For these columns dCVA / dq<sub>j</sub> = - v'<sub>j</sub>. For a column without default probability d/dx log( S<sub>j</sub> ) is the average of u'<sub>i</sub> + V<sub>i,j</sub> 
+	 * with the weights a<sub>i</sub> * exp( penaltyFactor * V<sub>i,j</sub> ) / S<sub>j</sub>, which requires a second pass over the rows.
+	 * <br> The matrix M requires O( numberOfRows * numberOfColumns<sup>2</sup> ) operations, which is about the cost of a few iterations of the IPFP 
+	 * compared to the numberOfColumns solves of the IPFP of bumped default probabilities. The sensitivities are only meaningful if the IPFP has converged.
+	 *
+	 * @param executor The executor service performing the block tasks.
+	 * @return At index 0 the sensitivities dG / dq<sub>j</sub> of the value of the penalized problem and at index 1 the sensitivities dCVA / dq<sub>j</sub> of the CVA
+	 * (loss given default equal to one) for all columns j.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public double[][] getDefaultProbabilitySensitivities(ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		int referenceColumnIndex = numberOfColumns - 1;
+		while( referenceColumnIndex > 0 && !( defaultProbabilities[referenceColumnIndex] > 0.0 ) ) {
+			referenceColumnIndex--;
+		}
+
+		////
+		// The sensitivities of the value of the penalized problem are the differences of the logarithms of the kernel column sums.
+		////
+
+		double[] logKernelColumnSums = logDomain ? getLogKernelColumnSums(executor) : getKernelColumnSums(executor);
+		if( ! logDomain ) {
+			for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+				logKernelColumnSums[columnIndex] = Math.log( logKernelColumnSums[columnIndex] );
+			}
+		}
+
+		double[] penalizedValueSensitivities = new double[numberOfColumns];
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+			penalizedValueSensitivities[columnIndex] = logKernelColumnSums[columnIndex] - logKernelColumnSums[referenceColumnIndex];
+		}
+
+		////
+		// The matrix M, the vector sum_i P_ij * R_i / p_i and the contributions C of the columns with positive default probability.
+		////
+
+		final boolean[] isPositiveColumn = new boolean[numberOfColumns];
+		boolean hasZeroColumn = false;
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+			isPositiveColumn[columnIndex] = defaultProbabilities[columnIndex] > 0.0;
+			hasZeroColumn |= ! isPositiveColumn[columnIndex];
+		}
+
+		List<Callable<double[]>> callablesSystem = new ArrayList<Callable<double[]>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+
+			callablesSystem.add(new Callable<double[]>() {
+
+				/**
+				 * @return The partial matrix M (row by row) followed by the partial sums of P_ij * R_i / p_i and the partial contributions.
+				 */
+				public double[] call() {
+
+					double[] partialSums = new double[numberOfColumns * ( numberOfColumns + 2 )];
+					double[] negativLostDigitsStorage = new double[partialSums.length];
+
+					double[] rowProbabilities = new double[numberOfColumns];
+
+					for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+						if( pathProbabilities[rowIndex] == 0.0 ) {
+							continue;
+						}
+
+						double rowContribution = getRowProbabilities(rowIndex, isPositiveColumn, rowProbabilities);
+
+						for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+							double currentProbability = rowProbabilities[columnIndex];
+							if( currentProbability == 0.0 ) {
+								continue;
+							}
+
+							double currentEntry = columnIndex < numberOfColumns - 1 ? getDiscountedFlooredNPV(columnIndex, rowIndex) : 0.0;
+							double currentWeight = currentProbability / pathProbabilities[rowIndex];
+
+							// M is symmetric. Only the upper triangle is summed up.
+							for(int otherColumnIndex = columnIndex; otherColumnIndex < numberOfColumns; otherColumnIndex++) {
+								addKahan(partialSums, negativLostDigitsStorage, columnIndex * numberOfColumns + otherColumnIndex, currentWeight * rowProbabilities[otherColumnIndex]);
+							}
+							addKahan(partialSums, negativLostDigitsStorage, numberOfColumns * numberOfColumns + columnIndex, currentWeight * rowContribution);
+							addKahan(partialSums, negativLostDigitsStorage, numberOfColumns * ( numberOfColumns + 1 ) + columnIndex, currentProbability * currentEntry);
+
+						}
+
+					}
+
+					return partialSums;
+				}
+			});
+
+		}
+
+		double[] systemSums = sumBlockResults( executor.invokeAll(callablesSystem) );
+
+		////
+		// Solving the linear system for v' of the positive columns except the reference column (v'_r = 0).
+		////
+
+		int[] systemIndexOfColumn = new int[numberOfColumns];
+		int numberOfUnknowns = 0;
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+			systemIndexOfColumn[columnIndex] = isPositiveColumn[columnIndex] && columnIndex != referenceColumnIndex ? numberOfUnknowns++ : -1;
+		}
+
+		double[][] systemMatrix = new double[numberOfUnknowns][numberOfUnknowns];
+		double[] systemVector = new double[numberOfUnknowns];
+
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+			int systemIndex = systemIndexOfColumn[columnIndex];
+			if( systemIndex < 0 ) {
+				continue;
+			}
+
+			for(int otherColumnIndex = 0; otherColumnIndex < numberOfColumns; otherColumnIndex++) {
+				int otherSystemIndex = systemIndexOfColumn[otherColumnIndex];
+				if( otherSystemIndex >= 0 ) {
+					systemMatrix[systemIndex][otherSystemIndex] = - systemSums[Math.min( columnIndex, otherColumnIndex ) * numberOfColumns + Math.max( columnIndex, otherColumnIndex )];
+				}
+			}
+			systemMatrix[systemIndex][systemIndex] += defaultProbabilities[columnIndex];
+
+			systemVector[systemIndex] = systemSums[numberOfColumns * numberOfColumns + columnIndex] - systemSums[numberOfColumns * ( numberOfColumns + 1 ) + columnIndex];
+
+		}
+
+		double[] systemSolution = solveLinearSystem(systemMatrix, systemVector);
+
+		// The derivatives v' of the logarithm of the column scaling vector.
+		final double[] logColumnScalingDerivatives = new double[numberOfColumns];
+		double[] cvaSensitivities = new double[numberOfColumns];
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+			if( systemIndexOfColumn[columnIndex] >= 0 ) {
+				logColumnScalingDerivatives[columnIndex] = systemSolution[systemIndexOfColumn[columnIndex]];
+				cvaSensitivities[columnIndex] = - logColumnScalingDerivatives[columnIndex];
+			}
+		}
+
+		if( ! hasZeroColumn ) {
+			return new double[][] { penalizedValueSensitivities, cvaSensitivities };
+		}
+
+		////
+		// For the columns without default probability the weighted average of u'_i + V_ij with u'_i = - ( R_i + sum_k P_ik * v'_k ) / p_i.
+		////
+
+		final double[] fixedLogKernelColumnSums = logKernelColumnSums;
+
+		List<Callable<double[]>> callablesZeroColumns = new ArrayList<Callable<double[]>>();
+
+		for(int blockIndex = 0; blockIndex < numberOfBlocks; blockIndex++) {
+
+			final int fixedIndexFirstRowOfBlock = blockStartRow[blockIndex];
+			final int fixedIndexLastRowOfBlockPlusOne = blockStartRow[blockIndex + 1];
+
+			callablesZeroColumns.add(new Callable<double[]>() {
+
+				public double[] call() {
+
+					double[] partialSums = new double[numberOfColumns];
+					double[] negativLostDigitsStorage = new double[numberOfColumns];
+
+					double[] rowProbabilities = new double[numberOfColumns];
+
+					for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+
+						if( pathProbabilities[rowIndex] == 0.0 ) {
+							continue;
+						}
+
+						double rowSum = getRowProbabilities(rowIndex, isPositiveColumn, rowProbabilities);
+						for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+							rowSum += rowProbabilities[columnIndex] * logColumnScalingDerivatives[columnIndex];
+						}
+						double logRowScalingDerivative = - rowSum / pathProbabilities[rowIndex];
+
+						double logRowScaling = logDomain ? rowScaling[rowIndex] : Math.log( rowScaling[rowIndex] );
+
+						for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+							if( isPositiveColumn[columnIndex] ) {
+								continue;
+							}
+
+							double currentEntry = columnIndex < numberOfColumns - 1 ? getDiscountedFlooredNPV(columnIndex, rowIndex) : 0.0;
+
+							// The weight a_i * exp( penaltyFactor * V_ij ) / S_j is at most one.
+							double currentWeight = Math.exp( logRowScaling + penaltyFactor * currentEntry - fixedLogKernelColumnSums[columnIndex] );
+
+							addKahan(partialSums, negativLostDigitsStorage, columnIndex, currentWeight * ( logRowScalingDerivative + currentEntry ));
+
+						}
+
+					}
+
+					return partialSums;
+				}
+			});
+
+		}
+
+		double[] zeroColumnSums = sumBlockResults( executor.invokeAll(callablesZeroColumns) );
+
+		// d/dx log( S_r ) = - v'_r = 0.
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+			if( ! isPositiveColumn[columnIndex] ) {
+				cvaSensitivities[columnIndex] = zeroColumnSums[columnIndex];
+			}
+		}
+
+		return new double[][] { penalizedValueSensitivities, cvaSensitivities };
+
+	}
+
+
+	/**
+	 * Calculates the probabilities P<sub>i,j</sub> of the current iterate of a row for the given columns (zero for the other columns).
+	 *
+	 * @param rowIndex The index of the row.
+	 * @param isColumn At index j true if the probability of column j is calculated.
+	 * @param rowProbabilities The array of length numberOfColumns receiving the probabilities.
+	 * @return The sum of P<sub>i,j</sub> * V<sub>i,j</sub> over the calculated columns.
+	 */
+	private double getRowProbabilities(int rowIndex, boolean[] isColumn, double[] rowProbabilities) {
+
+		double rowContribution = 0.0;
+
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+			if( ! isColumn[columnIndex] ) {
+				rowProbabilities[columnIndex] = 0.0;
+				continue;
+			}
+
+			double currentEntry = columnIndex < numberOfColumns - 1 ? getDiscountedFlooredNPV(columnIndex, rowIndex) : 0.0;
+
+			rowProbabilities[columnIndex] = logDomain ? ( columnScaling[columnIndex] == Double.NEGATIVE_INFINITY ? 0.0 : Math.exp( rowScaling[rowIndex] + penaltyFactor * currentEntry + columnScaling[columnIndex] ) )
+					: rowScaling[rowIndex] * Math.exp( penaltyFactor * currentEntry ) * columnScaling[columnIndex];
+
+			rowContribution += rowProbabilities[columnIndex] * currentEntry;
+
+		}
+
+		return rowContribution;
+
+	}
+
+
+	/**
+	 * Adds a summand to a component of the sums using Kahan summation.
+	 */
+	private static void addKahan(double[] sums, double[] negativLostDigitsStorage, int index, double summand) {
+		double nextToAdd = summand - negativLostDigitsStorage[index];
+		double helperNextSum = sums[index] + nextToAdd;
+		negativLostDigitsStorage[index] = ( helperNextSum - sums[index] ) - nextToAdd;
+		sums[index] = helperNextSum;
+	}
+
+
+	/**
+	 * Solves the linear system by Gaussian elimination with partial pivoting. The system is small (at most numberOfColumns unknowns).
+	 *
+	 * @param matrix The matrix of the system. It is overwritten.
+	 * @param vector The right hand side of the system. It is overwritten.
+	 * @return The solution of the system.
+	 */
+	private static double[] solveLinearSystem(double[][] matrix, double[] vector) {
+
+		int dimension = vector.length;
+
+		for(int pivotIndex = 0; pivotIndex < dimension; pivotIndex++) {
+
+			int maximalRowIndex = pivotIndex;
+			for(int rowIndex = pivotIndex + 1; rowIndex < dimension; rowIndex++) {
+				if( Math.abs( matrix[rowIndex][pivotIndex] ) > Math.abs( matrix[maximalRowIndex][pivotIndex] ) ) {
+					maximalRowIndex = rowIndex;
+				}
+			}
+
+			double[] helperRow = matrix[pivotIndex];
+			matrix[pivotIndex] = matrix[maximalRowIndex];
+			matrix[maximalRowIndex] = helperRow;
+			double helperEntry = vector[pivotIndex];
+			vector[pivotIndex] = vector[maximalRowIndex];
+			vector[maximalRowIndex] = helperEntry;
+
+			for(int rowIndex = pivotIndex + 1; rowIndex < dimension; rowIndex++) {
+				double factor = matrix[rowIndex][pivotIndex] / matrix[pivotIndex][pivotIndex];
+				for(int columnIndex = pivotIndex; columnIndex < dimension; columnIndex++) {
+					matrix[rowIndex][columnIndex] -= factor * matrix[pivotIndex][columnIndex];
+				}
+				vector[rowIndex] -= factor * vector[pivotIndex];
+			}
+
+		}
+
+		double[] solution = new double[dimension];
+		for(int rowIndex = dimension - 1; rowIndex >= 0; rowIndex--) {
+			double sum = vector[rowIndex];
+			for(int columnIndex = rowIndex + 1; columnIndex < dimension; columnIndex++) {
+				sum -= matrix[rowIndex][columnIndex] * solution[columnIndex];
+			}
+			solution[rowIndex] = sum / matrix[rowIndex][rowIndex];
+		}
+
+		return solution;
+
+	}
+
+
+	/**
+	 * The value of the penalized problem max<sub>P</sub> penaltyFactor * E<sub>P</sub>[ V ] - KL( P | F ) over the distributions P with the
+	 * path and default marginals, where F is the independent distribution of the marginals and KL the relative entropy.
+	 * For the solution P<sub>i,j</sub> = a<sub>i</sub> * exp( penaltyFactor * V<sub>i,j</sub> ) * b<sub>j</sub> of the IPFP the value is
+	 * <br> - sum<sub>i</sub> p<sub>i</sub> * log( a<sub>i</sub> / p<sub>i</sub> ) - sum<sub>j</sub> q<sub>j</sub> * log( b<sub>j</sub> / q<sub>j</sub> )
+	 * <br> where p are the path probabilities and q the default probabilities (rows and columns with zero probability do not contribute).
+	 * As a function of the penalty factor the value is convex and its derivative is the CVA of {@link #getCVA(ExecutorService)}.
+	 * <br> The value is only meaningful if the IPFP has converged.
+	 *
+	 * @return The value of the penalized problem with respect to the current scaling vectors.
+	 */
+	public double getPenalizedValue() {
+
+		double runningSum = 0.0;
+		double helperNextSum = 0.0;
+		double nextToAdd = 0.0;
+		double negativLostDigitsStorage = 0.0;
+
+		for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+
+			if( pathProbabilities[rowIndex] == 0.0 ) {
+				continue;
+			}
+
+			double logRowScaling = logDomain ? rowScaling[rowIndex] : Math.log( rowScaling[rowIndex] );
+
+			nextToAdd = - pathProbabilities[rowIndex] * ( logRowScaling - Math.log( pathProbabilities[rowIndex] ) ) - negativLostDigitsStorage;
+			helperNextSum = runningSum + nextToAdd;
+			negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+			runningSum = helperNextSum;
+
+		}
+
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+			if( defaultProbabilities[columnIndex] == 0.0 ) {
+				continue;
+			}
+
+			double logColumnScaling = logDomain ? columnScaling[columnIndex] : Math.log( columnScaling[columnIndex] );
+
+			nextToAdd = - defaultProbabilities[columnIndex] * ( logColumnScaling - Math.log( defaultProbabilities[columnIndex] ) ) - negativLostDigitsStorage;
+			helperNextSum = runningSum + nextToAdd;
+			negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+			runningSum = helperNextSum;
+
+		}
+
+		return runningSum;
+
+	}
+
+
+	/**
+	 * The block-wise partial results are added in the order of the blocks using Kahan summation.
+	 * Thus the result does not depend on the order in which the tasks finished.
+	 *
+	 * @param partialResults The futures of the block tasks each returning an array of the same length.
+	 * @return The component-wise sum of the partial results.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	private static double[] sumBlockResults(List<Future<double[]>> partialResults) throws InterruptedException, ExecutionException {
+
+		double[] sums = null;
+		double[] negativLostDigitsStorage = null;
+
+		for(Future<double[]> partialResultFuture : partialResults) {
+
+			double[] partialResult = partialResultFuture.get();
+
+			if(sums == null) {
+				sums = new double[partialResult.length];
+				negativLostDigitsStorage = new double[partialResult.length];
+			}
+
+			for(int index = 0; index < partialResult.length; index++) {
+				double nextToAdd = partialResult[index] - negativLostDigitsStorage[index];
+				double helperNextSum = sums[index] + nextToAdd;
+				negativLostDigitsStorage[index] = ( helperNextSum - sums[index] ) - nextToAdd;
+				sums[index] = helperNextSum;
+			}
+
+		}
+
+		return sums;
+
+	}
+
+
+	/**
+	 * @param columnIndex The index of the NPV column.
+	 * @param fixedIndexFirstRowOfBlock The first row of the block.
+	 * @param fixedIndexLastRowOfBlockPlusOne The last row of the block plus one.
+	 * @param columnBuffer Null in double precision. In single precision an array of the length of the block.
+	 * @return In double precision the NPV column. In single precision the buffer containing the rows of the block of the NPV column,
+	 * i.e. the NPV of row i is stored at index i - fixedIndexFirstRowOfBlock.
+	 */
+	private double[] getColumn(int columnIndex, int fixedIndexFirstRowOfBlock, int fixedIndexLastRowOfBlockPlusOne, double[] columnBuffer) {
+
+		if(columnBuffer == null) {
+			return discountedFlooredNPV[columnIndex];
+		}
+
+		final float[] singlePrecisionColumn = singlePrecisionDiscountedFlooredNPV[columnIndex];
+		for(int rowIndex = fixedIndexFirstRowOfBlock; rowIndex < fixedIndexLastRowOfBlockPlusOne; rowIndex++) {
+			columnBuffer[rowIndex - fixedIndexFirstRowOfBlock] = singlePrecisionColumn[rowIndex];
+		}
+
+		return columnBuffer;
+
+	}
+
+
+	/**
+	 * @return The discounted and floored NPV of the row at the default interval of the column.
+	 */
+	private double getDiscountedFlooredNPV(int columnIndex, int rowIndex) {
+		return discountedFlooredNPV != null ? discountedFlooredNPV[columnIndex][rowIndex] : singlePrecisionDiscountedFlooredNPV[columnIndex][rowIndex];
+	}
+
+
+	private static double[] getUniformPathProbabilities(double[][] discountedFlooredNPV) {
+
+		if(discountedFlooredNPV.length == 0) {
+			throw new IllegalArgumentException("At least one NPV column is required.");
+		}
+
+		double[] pathProbabilities = new double[discountedFlooredNPV[0].length];
+		Arrays.fill(pathProbabilities, 1.0 / pathProbabilities.length);
+		return pathProbabilities;
+
+	}
+
+
+	/**
+	 * @return The row scaling vector a. In the log-domain variant log(a) is returned.
+	 */
+	public double[] getRowScaling() {
+		return rowScaling;
+	}
+
+	/**
+	 * @return The column scaling vector b. In the log-domain variant log(b) is returned.
+	 */
+	public double[] getColumnScaling() {
+		return columnScaling;
+	}
+
+	/**
+	 * Replaces the column scaling vector, e.g. by the column scaling calculated by the coordinator of {@link DistributedScalingVectorIPFP}.
+	 *
+	 * @param columnScaling The column scaling vector b (log(b) in the log-domain variant).
+	 */
+	void setColumnScaling(double[] columnScaling) {
+		System.arraycopy(columnScaling, 0, this.columnScaling, 0, numberOfColumns);
+	}
+
+	/**
+	 * @return The maximal relative deviation of the row sums from the path probabilities before the last row renormalization.
+	 */
+	double getMaximalRowDeviation() {
+		return maximalRowDeviation;
+	}
+
+	/**
+	 * @return The relaxation parameter w of the over-relaxed IPFP.
+	 */
+	public double getRelaxationParameter() {
+		return relaxationParameter;
+	}
+
+	/**
+	 * @param relaxationParameter The relaxation parameter w in (0,2) of the over-relaxed IPFP. For w = 1 the plain IPFP is performed.
+	 */
+	public void setRelaxationParameter(double relaxationParameter) {
+		if( !( relaxationParameter > 0.0 && relaxationParameter < 2.0 ) ) {
+			throw new IllegalArgumentException("The relaxation parameter has to be in (0,2).");
+		}
+		this.relaxationParameter = relaxationParameter;
+	}
+
+	/**
+	 * @return True if the relaxation parameter is estimated during each call of {@link #solve(int, double, double, double, ExecutorService)}.
+	 */
+	public boolean isAdaptiveRelaxation() {
+		return adaptiveRelaxation;
+	}
+
+	/**
+	 * @param adaptiveRelaxation If true the relaxation parameter is estimated during each call of {@link #solve(int, double, double, double, ExecutorService)}
+	 * and the fixed relaxation parameter is ignored.
+	 */
+	public void setAdaptiveRelaxation(boolean adaptiveRelaxation) {
+		this.adaptiveRelaxation = adaptiveRelaxation;
+	}
+
+	/**
+	 * @return True if the last call of {@link #solve(int, double, double, double, ExecutorService)} fell back from the over-relaxed IPFP to the plain IPFP.
+	 */
+	public boolean isRelaxationAbandoned() {
+		return relaxationAbandoned;
+	}
+
+	/**
+	 * @return True if the NPV columns are stored in single precision.
+	 */
+	public boolean isSinglePrecision() {
+		return singlePrecisionDiscountedFlooredNPV != null;
+	}
+
+	/**
+	 * @return True if the log-domain variant of the IPFP is used.
+	 */
+	public boolean isLogDomain() {
+		return logDomain;
+	}
+
+	/**
+	 * @return The number of iterations performed by the last call of {@link #solve(int, double, double, double, ExecutorService)}.
+	 */
+	public int getNumberOfIterations() {
+		return numberOfIterations;
+	}
+
+	public int getNumberOfRows() {
+		return numberOfRows;
+	}
+
+	public int getNumberOfColumns() {
+		return numberOfColumns;
+	}
+
+	public double getPenaltyFactor() {
+		return penaltyFactor;
+	}
+
+}
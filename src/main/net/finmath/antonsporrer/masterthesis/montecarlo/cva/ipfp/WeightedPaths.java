@@ -0,0 +1,361 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp;
+
+/**
+ * This class stores the rows of the IPFP, i.e. the realizations of the discounted and floored NPV of the paths, together with the
+ * probability of each row. It is used to reduce the number of rows of the IPFP before the IPFP is performed.
+ * <br> For example after flooring the NPV at zero many paths of an out of the money product are zero at every exposure date.
+ * The rows of such paths are identical. Since the IPFP treats identical rows with the same probability identically
+ * (they are multiplied by the same factors in each iteration) these rows can be merged into one row
+ * whose probability is the sum of the probabilities of the merged rows, i.e. multiplicity / numberOfPaths.
+ * The IPFP on the reduced rows yields the same CVA, see {@link #getDeduplicatedPaths(double[][])}.
+ * <br> Beyond identical rows, rows can be merged approximately by quantizing the NPV, see {@link #getQuantizedPaths(double[][], double)}.
+ * Then each merged row is the mean of the rows of its paths and the maximal absolute deviation of the NPV of a path from its merged row
+ * is stored, see {@link #getMaximalDeviation()}.
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class WeightedPaths {
+
+	// The maximal size of the hash table of getDistinctRows. The next power of two would overflow.
+	private static final int MAXIMAL_TABLE_SIZE = 1 << 30;
+
+	// At array index j the realizations of the discounted and floored NPV associated with the default interval j are stored.
+	private final double[][] discountedFlooredNPV;
+
+	// The probabilities of the rows.
+	private final double[] pathProbabilities;
+
+	// The number of paths before the reduction.
+	private final int numberOfOriginalPaths;
+
+	// The maximal absolute deviation of the NPV of a path from the NPV of its row.
+	private final double maximalDeviation;
+
+	// At array index i the index of the row of path i. Null if the rows are the paths.
+	private final int[] rowIndexOfPath;
+
+
+	/**
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param pathProbabilities The probabilities of the rows.
+	 * @param numberOfOriginalPaths The number of paths before the reduction.
+	 */
+	public WeightedPaths(double[][] discountedFlooredNPV, double[] pathProbabilities, int numberOfOriginalPaths) {
+		this(discountedFlooredNPV, pathProbabilities, numberOfOriginalPaths, 0.0);
+	}
+
+
+	/**
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV at the default intervals  (t_0, t_{1}], ... , (t_{d-1}, t_d].
+	 * @param pathProbabilities The probabilities of the rows.
+	 * @param numberOfOriginalPaths The number of paths before the reduction.
+	 * @param maximalDeviation The maximal absolute deviation of the NPV of a path from the NPV of its row.
+	 */
+	public WeightedPaths(double[][] discountedFlooredNPV, double[] pathProbabilities, int numberOfOriginalPaths, double maximalDeviation) {
+		this(discountedFlooredNPV, pathProbabilities, numberOfOriginalPaths, maximalDeviation, null);
+	}
+
+
+	private WeightedPaths(double[][] discountedFlooredNPV, double[] pathProbabilities, int numberOfOriginalPaths, double maximalDeviation, int[] rowIndexOfPath) {
+
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			if( discountedFlooredNPV[columnIndex].length != pathProbabilities.length ) {
+				throw new IllegalArgumentException("Each NPV column has to have one realization per path probability.");
+			}
+		}
+
+		this.discountedFlooredNPV = discountedFlooredNPV;
+		this.pathProbabilities = pathProbabilities;
+		this.numberOfOriginalPaths = numberOfOriginalPaths;
+		this.maximalDeviation = maximalDeviation;
+		this.rowIndexOfPath = rowIndexOfPath;
+
+	}
+
+
+	/**
+	 * Merges identical rows into one row. The probability of a merged row is its multiplicity divided by the number of paths.
+	 * Rows are identical if all their realizations are equal (compared bitwise as by {@link Double#equals(Object)}).
+	 * The merged rows are stored in the order of their first occurrence.
+	 * <br> The rows are hashed into an open addressing hash table. Hence the effort is linear in the number of matrix entries.
+	 *
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV of equally likely paths.
+	 * At array index j the realizations associated with the default interval j are stored.
+	 * @return The weighted distinct rows.
+	 */
+	public static WeightedPaths getDeduplicatedPaths(double[][] discountedFlooredNPV) {
+
+		int numberOfColumns = discountedFlooredNPV.length;
+		int numberOfPaths = getNumberOfPaths(discountedFlooredNPV);
+
+		int[] distinctRowIndexOfPath = new int[numberOfPaths];
+		int[] firstPathOfDistinctRow = new int[numberOfPaths];
+		int[] multiplicities = new int[numberOfPaths];
+
+		int numberOfDistinctRows = getDistinctRows(discountedFlooredNPV, 0.0, distinctRowIndexOfPath, firstPathOfDistinctRow, multiplicities);
+
+		double[] pathProbabilities = getPathProbabilities(multiplicities, numberOfDistinctRows, numberOfPaths);
+
+		// Without identical rows the realizations are not copied.
+		if( numberOfDistinctRows == numberOfPaths ) {
+			return new WeightedPaths(discountedFlooredNPV, pathProbabilities, numberOfPaths);
+		}
+
+		double[][] distinctDiscountedFlooredNPV = new double[numberOfColumns][numberOfDistinctRows];
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+			double[] column = discountedFlooredNPV[columnIndex];
+			double[] distinctColumn = distinctDiscountedFlooredNPV[columnIndex];
+			for(int distinctRowIndex = 0; distinctRowIndex < numberOfDistinctRows; distinctRowIndex++) {
+				distinctColumn[distinctRowIndex] = column[firstPathOfDistinctRow[distinctRowIndex]];
+			}
+		}
+
+		return new WeightedPaths(distinctDiscountedFlooredNPV, pathProbabilities, numberOfPaths, 0.0, distinctRowIndexOfPath);
+
+	}
+
+
+	/**
+	 * Merges rows which are identical after quantization, i.e. after rounding each NPV to the nearest multiple of the quantization step.
+	 * The row of the merged paths is the mean of their rows and its probability is the number of merged paths divided by the number of paths.
+	 * Hence the absolute deviation of the NPV of a path from the NPV of its row is less than the quantization step.
+	 * The exact maximal deviation is returned by {@link #getMaximalDeviation()}.
+	 * <br> Since each row is the mean of its paths, the IPFP on the merged rows solves the problem of the paths restricted to distributions
+	 * which are uniform on the paths of each row. The error of this restriction is bounded by the maximal deviation, see
+	 * {@link main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ConstrainedWorstCaseCVA#getApproximateWorstCaseCVANotToFarFromIndependence(double, net.finmath.stochastic.RandomVariableInterface[], int, double[], double, double, double)}.
+	 *
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV of equally likely paths.
+	 * At array index j the realizations associated with the default interval j are stored.
+	 * @param quantizationStep The quantization step. It has to be positive.
+	 * @return The weighted merged rows.
+	 */
+	public static WeightedPaths getQuantizedPaths(double[][] discountedFlooredNPV, double quantizationStep) {
+
+		if( ! ( quantizationStep > 0.0 ) ) {
+			throw new IllegalArgumentException("The quantization step has to be positive.");
+		}
+
+		int numberOfColumns = discountedFlooredNPV.length;
+		int numberOfPaths = getNumberOfPaths(discountedFlooredNPV);
+
+		int[] distinctRowIndexOfPath = new int[numberOfPaths];
+		int[] firstPathOfDistinctRow = new int[numberOfPaths];
+		int[] multiplicities = new int[numberOfPaths];
+
+		int numberOfDistinctRows = getDistinctRows(discountedFlooredNPV, quantizationStep, distinctRowIndexOfPath, firstPathOfDistinctRow, multiplicities);
+
+		double[] pathProbabilities = getPathProbabilities(multiplicities, numberOfDistinctRows, numberOfPaths);
+
+		////
+		// Each merged row is the mean of the rows of its paths.
+		////
+
+		double[][] meanDiscountedFlooredNPV = new double[numberOfColumns][numberOfDistinctRows];
+		double maximalDeviation = 0.0;
+
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+
+			double[] column = discountedFlooredNPV[columnIndex];
+			double[] meanColumn = meanDiscountedFlooredNPV[columnIndex];
+
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				meanColumn[distinctRowIndexOfPath[pathIndex]] += column[pathIndex];
+			}
+			for(int distinctRowIndex = 0; distinctRowIndex < numberOfDistinctRows; distinctRowIndex++) {
+				meanColumn[distinctRowIndex] /= multiplicities[distinctRowIndex];
+			}
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				maximalDeviation = Math.max( maximalDeviation, Math.abs( column[pathIndex] - meanColumn[distinctRowIndexOfPath[pathIndex]] ) );
+			}
+
+		}
+
+		return new WeightedPaths(meanDiscountedFlooredNPV, pathProbabilities, numberOfPaths, maximalDeviation, distinctRowIndexOfPath);
+
+	}
+
+
+	/**
+	 * Assigns each path to a distinct row. The rows are hashed into an open addressing hash table.
+	 * Hence the effort is linear in the number of matrix entries.
+	 *
+	 * @param discountedFlooredNPV The realizations of the discounted and floored NPV.
+	 * @param quantizationStep If positive the rows are compared after quantization, otherwise the rows are compared bitwise.
+	 * @param distinctRowIndexOfPath Output: At array index i the index of the distinct row of path i.
+	 * @param firstPathOfDistinctRow Output: At array index k the index of the first path of the distinct row k.
+	 * @param multiplicities Output: At array index k the number of paths of the distinct row k.
+	 * @return The number of distinct rows.
+	 */
+	private static int getDistinctRows(double[][] discountedFlooredNPV, double quantizationStep, int[] distinctRowIndexOfPath, int[] firstPathOfDistinctRow, int[] multiplicities) {
+
+		int numberOfColumns = discountedFlooredNPV.length;
+		int numberOfPaths = discountedFlooredNPV[0].length;
+
+		// The hash table stores the index of the first path of a row plus one. Zero marks an empty slot.
+		// Its size is a power of two of at least twice the number of paths, but at most MAXIMAL_TABLE_SIZE, which is at least the number of paths.
+		int tableSize = (int) Math.min( Long.highestOneBit( Math.max( numberOfPaths, 1 ) ) << 2, MAXIMAL_TABLE_SIZE );
+		int tableMask = tableSize - 1;
+		int[] table = new int[tableSize];
+
+		// At array index k the index of the distinct row stored in the slot k of the hash table.
+		int[] distinctRowIndexOfSlot = new int[tableSize];
+		int numberOfDistinctRows = 0;
+
+		for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+
+			// Hashing the row of the path.
+			long hash = 0L;
+			for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+				hash = ( hash ^ getKey( discountedFlooredNPV[columnIndex][pathIndex], quantizationStep ) ) * 0x9E3779B97F4A7C15L;
+			}
+			int slot = (int) ( hash ^ ( hash >>> 32 ) ) & tableMask;
+
+			// Linear probing until an identical row or an empty slot is found.
+			while( true ) {
+
+				if( table[slot] == 0 ) {
+					table[slot] = pathIndex + 1;
+					distinctRowIndexOfSlot[slot] = numberOfDistinctRows;
+					firstPathOfDistinctRow[numberOfDistinctRows] = pathIndex;
+					distinctRowIndexOfPath[pathIndex] = numberOfDistinctRows;
+					numberOfDistinctRows++;
+					break;
+				}
+
+				if( isRowEqual(discountedFlooredNPV, quantizationStep, table[slot] - 1, pathIndex) ) {
+					distinctRowIndexOfPath[pathIndex] = distinctRowIndexOfSlot[slot];
+					break;
+				}
+
+				slot = ( slot + 1 ) & tableMask;
+
+			}
+
+			multiplicities[distinctRowIndexOfPath[pathIndex]]++;
+
+		}
+
+		return numberOfDistinctRows;
+
+	}
+
+
+	/**
+	 * @return The number of paths. The hash table has to have a slot for each path.
+	 */
+	private static int getNumberOfPaths(double[][] discountedFlooredNPV) {
+
+		if( discountedFlooredNPV.length == 0 ) {
+			throw new IllegalArgumentException("The paths can only be merged if there is at least one NPV column.");
+		}
+
+		int numberOfPaths = discountedFlooredNPV[0].length;
+		if( numberOfPaths > MAXIMAL_TABLE_SIZE ) {
+			throw new IllegalArgumentException("At most " + MAXIMAL_TABLE_SIZE + " paths can be merged.");
+		}
+
+		return numberOfPaths;
+
+	}
+
+
+	private static double[] getPathProbabilities(int[] multiplicities, int numberOfDistinctRows, int numberOfPaths) {
+
+		double[] pathProbabilities = new double[numberOfDistinctRows];
+		for(int distinctRowIndex = 0; distinctRowIndex < numberOfDistinctRows; distinctRowIndex++) {
+			pathProbabilities[distinctRowIndex] = (double) multiplicities[distinctRowIndex] / numberOfPaths;
+		}
+
+		return pathProbabilities;
+
+	}
+
+
+	/**
+	 * @return The index of the multiple of the quantization step nearest to the value or the bits of the value if the quantization step is not positive.
+	 */
+	private static long getKey(double value, double quantizationStep) {
+		return quantizationStep > 0.0 ? Math.round( value / quantizationStep ) : Double.doubleToLongBits( value );
+	}
+
+
+	private static boolean isRowEqual(double[][] discountedFlooredNPV, double quantizationStep, int firstPathIndex, int secondPathIndex) {
+
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			if( getKey( discountedFlooredNPV[columnIndex][firstPathIndex], quantizationStep ) != getKey( discountedFlooredNPV[columnIndex][secondPathIndex], quantizationStep ) ) {
+				return false;
+			}
+		}
+
+		return true;
+
+	}
+
+
+	/**
+	 * @return At array index j the realizations of the discounted and floored NPV of the rows associated with the default interval j.
+	 */
+	public double[][] getDiscountedFlooredNPV() {
+		return discountedFlooredNPV;
+	}
+
+	/**
+	 * @return At array index j the realizations of the discounted and floored NPV of the rows associated with the default interval j rounded to single precision.
+	 * The array is created by each call.
+	 */
+	public float[][] getSinglePrecisionDiscountedFlooredNPV() {
+
+		float[][] singlePrecisionDiscountedFlooredNPV = new float[discountedFlooredNPV.length][];
+
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			singlePrecisionDiscountedFlooredNPV[columnIndex] = new float[discountedFlooredNPV[columnIndex].length];
+			for(int rowIndex = 0; rowIndex < discountedFlooredNPV[columnIndex].length; rowIndex++) {
+				singlePrecisionDiscountedFlooredNPV[columnIndex][rowIndex] = (float) discountedFlooredNPV[columnIndex][rowIndex];
+			}
+		}
+
+		return singlePrecisionDiscountedFlooredNPV;
+
+	}
+
+	/**
+	 * @return The probabilities of the rows.
+	 */
+	public double[] getPathProbabilities() {
+		return pathProbabilities;
+	}
+
+	/**
+	 * @return The number of rows.
+	 */
+	public int getNumberOfPaths() {
+		return pathProbabilities.length;
+	}
+
+	/**
+	 * @return The number of paths before the reduction.
+	 */
+	public int getNumberOfOriginalPaths() {
+		return numberOfOriginalPaths;
+	}
+
+	/**
+	 * @return The maximal absolute deviation of the NPV of a path from the NPV of its row. It is zero if only identical rows have been merged.
+	 */
+	public double getMaximalDeviation() {
+		return maximalDeviation;
+	}
+
+	/**
+	 * @return At array index i the index of the row of path i. Null if the rows are the paths.
+	 */
+	public int[] getRowIndexOfPath() {
+		return rowIndexOfPath;
+	}
+
+}
@@ -32,5 +32,77 @@ public class KahanSummationTest {
 		Assert.assertEquals(5.2, KahanSummation.getValue(summands), 1E-7);
 	}
 	
+	@Test
+	public void testDotProductAgainstPlainKahanSummation() {
+		
+		// Lengths below, at and above the threshold of the lanes, the last two with a remainder which is added to the first lane.
+		int[] lengths = new int[] {15, 16, 17, 41};
+		int offset = 3;
+		
+		java.util.Random random = new java.util.Random(3141);
+		
+		for(int length : lengths) {
+			double[] firstFactors = new double[offset + length];
+			double[] secondFactors = new double[length];
+			for(int index = 0; index < length; index++) {
+				firstFactors[offset + index] = random.nextDouble() - 0.5;
+				secondFactors[index] = random.nextDouble();
+			}
+			
+			double expectedValue = getPlainKahanDotProduct(firstFactors, offset, secondFactors, 0, length);
+			Assert.assertEquals(expectedValue, KahanSummation.getDotProduct(firstFactors, offset, secondFactors, 0, length), 1E-14);
+		}
+		
+	}
+	
+	@Test
+	public void testDotProductIllConditioned() {
+		
+		int[] lengths = new int[] {15, 16, 17, 41};
+		
+		for(int length : lengths) {
+			// The tiny summands are lost by the naive summation since they are added to one and the one is cancelled by the last summand.
+			double[] firstFactors = new double[length];
+			double[] secondFactors = new double[length];
+			java.math.BigDecimal exactValue = java.math.BigDecimal.ZERO;
+			double naiveValue = 0.0;
+			for(int index = 0; index < length; index++) {
+				firstFactors[index] = index == 0 ? 1.0 : ( index == length - 1 ? -1.0 : 3E-17 * (1 + index % 3) );
+				secondFactors[index] = index % 2 == 1 && index != length - 1 ? 0.5 : 1.0;
+				exactValue = exactValue.add(new java.math.BigDecimal(firstFactors[index]).multiply(new java.math.BigDecimal(secondFactors[index])));
+				naiveValue += firstFactors[index] * secondFactors[index];
+			}
+			
+			// The error bound of the Kahan summation, i.e. twice the machine precision times the sum of the absolute values of the summands (which is about two).
+			double tolerance = 2.0 * Math.ulp(1.0);
+			
+			double plainValue = getPlainKahanDotProduct(firstFactors, 0, secondFactors, 0, length);
+			double value = KahanSummation.getDotProduct(firstFactors, 0, secondFactors, 0, length);
+			
+			Assert.assertEquals(0.0, naiveValue, 0.0);
+			Assert.assertEquals(exactValue.doubleValue(), plainValue, tolerance);
+			Assert.assertEquals(exactValue.doubleValue(), value, tolerance);
+		}
+		
+	}
+	
+	/**
+	 * The reference of the dot product, i.e. the Kahan summation of the products in their order without lanes.
+	 */
+	private static double getPlainKahanDotProduct(double[] firstFactors, int firstOffset, double[] secondFactors, int secondOffset, int length) {
+		
+		double runningSum = 0.0;
+		double negativLostDigitsStorage = 0.0;
+		
+		for(int index = 0; index < length; index++) {
+			double nextToAdd = firstFactors[firstOffset + index] * secondFactors[secondOffset + index] - negativLostDigitsStorage;
+			double helperNextSum = runningSum + nextToAdd;
+			negativLostDigitsStorage = ( helperNextSum - runningSum ) - nextToAdd;
+			runningSum = helperNextSum;
+		}
+		
+		return runningSum;
+	}
+	
 	
 }
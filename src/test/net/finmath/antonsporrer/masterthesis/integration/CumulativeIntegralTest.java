@@ -0,0 +1,96 @@
+package test.net.finmath.antonsporrer.masterthesis.integration;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import main.net.finmath.antonsporrer.masterthesis.integration.Integration;
+import main.net.finmath.antonsporrer.masterthesis.integration.Integration.IntegrationMethod;
+import net.finmath.montecarlo.RandomVariable;
+import net.finmath.stochastic.RandomVariableInterface;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationInterface;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CumulativeIntegralTest {
+
+	/**
+	 * The cumulative integral at each time point agrees exactly with the integral up to the time point,
+	 * for the double and the random variable version, each integration method and a non-uniform time discretization.
+	 */
+	@Test
+	public void testCumulativeIntegralAgreesWithIntegral() {
+
+		int numberOfPaths = 50;
+		double[] times = new double[] { 0.0, 0.1, 0.5, 0.75, 2.0, 3.0, 7.5, 8.0 };
+		TimeDiscretizationInterface timeDiscretization = new TimeDiscretization(times);
+		int numberOfTimes = timeDiscretization.getNumberOfTimes();
+
+		Random randomNumberGenerator = new Random(11);
+
+		// The first function value is deterministic.
+		RandomVariableInterface[] functionValues = new RandomVariableInterface[numberOfTimes];
+		double[][] functionValuesOfPaths = new double[numberOfPaths][numberOfTimes];
+		functionValues[0] = new RandomVariable(0.3);
+		for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+			functionValuesOfPaths[pathIndex][0] = 0.3;
+		}
+		for(int timeIndex = 1; timeIndex < numberOfTimes; timeIndex++) {
+			double[] realizations = new double[numberOfPaths];
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				realizations[pathIndex] = randomNumberGenerator.nextGaussian();
+				functionValuesOfPaths[pathIndex][timeIndex] = realizations[pathIndex];
+			}
+			functionValues[timeIndex] = new RandomVariable(times[timeIndex], realizations);
+		}
+
+		for(IntegrationMethod integrationMethod : IntegrationMethod.values()) {
+
+			RandomVariableInterface[] cumulativeIntegral = Integration.getCumulativeIntegral(functionValues, timeDiscretization, integrationMethod);
+			double[][] cumulativeIntegralOfPaths = new double[numberOfPaths][];
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				cumulativeIntegralOfPaths[pathIndex] = Integration.getCumulativeIntegral(functionValuesOfPaths[pathIndex], timeDiscretization, integrationMethod);
+			}
+
+			Assert.assertEquals( numberOfTimes, cumulativeIntegral.length );
+
+			for(int timeIndex = 0; timeIndex < numberOfTimes; timeIndex++) {
+
+				TimeDiscretizationInterface partialTimeDiscretization = new TimeDiscretization( Arrays.copyOf(times, timeIndex + 1) );
+				RandomVariableInterface expectedIntegral = Integration.getIntegral(Arrays.copyOf(functionValues, timeIndex + 1), partialTimeDiscretization, integrationMethod);
+
+				Assert.assertEquals( times[timeIndex], cumulativeIntegral[timeIndex].getFiltrationTime(), 0.0 );
+
+				for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+					Assert.assertEquals( expectedIntegral.get(pathIndex), cumulativeIntegral[timeIndex].get(pathIndex), 0.0 );
+					Assert.assertEquals( Integration.getIntegral(Arrays.copyOf(functionValuesOfPaths[pathIndex], timeIndex + 1), partialTimeDiscretization, integrationMethod),
+							cumulativeIntegralOfPaths[pathIndex][timeIndex], 0.0 );
+				}
+
+			}
+
+		}
+
+	}
+
+
+	/**
+	 * The cumulative integral of deterministic function values is deterministic.
+	 */
+	@Test
+	public void testCumulativeIntegralOfDeterministicFunctionValues() {
+
+		TimeDiscretizationInterface timeDiscretization = new TimeDiscretization(new double[] { 0.0, 1.0, 3.0 });
+		RandomVariableInterface[] functionValues = new RandomVariableInterface[] { new RandomVariable(1.0), new RandomVariable(2.0), new RandomVariable(4.0) };
+
+		RandomVariableInterface[] cumulativeIntegral = Integration.getCumulativeIntegral(functionValues, timeDiscretization, IntegrationMethod.Trapezoidal);
+
+		Assert.assertTrue( cumulativeIntegral[2].isDeterministic() );
+		Assert.assertEquals( 0.0, cumulativeIntegral[0].get(0), 0.0 );
+		Assert.assertEquals( 1.5, cumulativeIntegral[1].get(0), 0.0 );
+		Assert.assertEquals( 7.5, cumulativeIntegral[2].get(0), 0.0 );
+
+	}
+
+}
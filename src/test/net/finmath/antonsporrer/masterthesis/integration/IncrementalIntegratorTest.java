@@ -0,0 +1,81 @@
+package test.net.finmath.antonsporrer.masterthesis.integration;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import main.net.finmath.antonsporrer.masterthesis.integration.IncrementalIntegrator;
+import main.net.finmath.antonsporrer.masterthesis.integration.Integration;
+import main.net.finmath.antonsporrer.masterthesis.integration.Integration.IntegrationMethod;
+import net.finmath.montecarlo.RandomVariable;
+import net.finmath.stochastic.RandomVariableInterface;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationInterface;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IncrementalIntegratorTest {
+
+	/**
+	 * The integrals of the incremental integrator agree exactly with the ones of {@link Integration} 
+	 * for the double and the random variable version, each integration method and a non-uniform time discretization.
+	 */
+	@Test
+	public void testIncrementalIntegralAgreesWithIntegral() {
+		
+		int numberOfPaths = 100;
+		TimeDiscretizationInterface timeDiscretization = new TimeDiscretization(new double[] { 0.0, 0.1, 0.5, 0.75, 2.0, 3.0, 7.5 });
+		int numberOfTimes = timeDiscretization.getNumberOfTimes();
+		
+		Random randomNumberGenerator = new Random(7);
+		
+		RandomVariableInterface[] functionValues = new RandomVariableInterface[numberOfTimes];
+		double[][] functionValuesOfPaths = new double[numberOfPaths][numberOfTimes];
+		for(int timeIndex = 0; timeIndex < numberOfTimes; timeIndex++) {
+			double[] realizations = new double[numberOfPaths];
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				realizations[pathIndex] = randomNumberGenerator.nextGaussian();
+				functionValuesOfPaths[pathIndex][timeIndex] = realizations[pathIndex];
+			}
+			functionValues[timeIndex] = new RandomVariable(timeDiscretization.getTime(timeIndex), realizations);
+		}
+		
+		for(IntegrationMethod integrationMethod : IntegrationMethod.values()) {
+			
+			IncrementalIntegrator integrator = new IncrementalIntegrator(integrationMethod, numberOfPaths);
+			for(int timeIndex = 0; timeIndex < numberOfTimes; timeIndex++) {
+				integrator.addTimePoint( timeDiscretization.getTime(timeIndex) );
+				integrator.addFunctionValues( functionValues[timeIndex] );
+				
+				// The integral up to each time point, i.e. with incomplete panels of Simpson and GaussLobatto.
+				TimeDiscretizationInterface partialTimeDiscretization = new TimeDiscretization( Arrays.copyOf(timeDiscretization.getAsDoubleArray(), timeIndex + 1) );
+				for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+					Assert.assertEquals( Integration.getIntegral(Arrays.copyOf(functionValuesOfPaths[pathIndex], timeIndex + 1), partialTimeDiscretization, integrationMethod), integrator.getIntegral(pathIndex), 0.0 );
+				}
+			}
+			
+			RandomVariableInterface expectedIntegral = Integration.getIntegral(functionValues, timeDiscretization, integrationMethod);
+			RandomVariableInterface integral = integrator.getIntegral();
+			
+			Assert.assertEquals( numberOfTimes, integrator.getNumberOfTimePoints() );
+			Assert.assertEquals( timeDiscretization.getTime(numberOfTimes - 1), integral.getFiltrationTime(), 0.0 );
+			
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				Assert.assertEquals( expectedIntegral.get(pathIndex), integral.get(pathIndex), 0.0 );
+				Assert.assertEquals( Integration.getIntegral(functionValuesOfPaths[pathIndex], timeDiscretization, integrationMethod), integrator.getIntegral(pathIndex), 0.0 );
+			}
+			
+		}
+		
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecreasingTimePoints() {
+		
+		IncrementalIntegrator integrator = new IncrementalIntegrator(IntegrationMethod.Trapezoidal, 1);
+		integrator.addTimePoint(1.0);
+		integrator.addTimePoint(0.5);
+		
+	}
+	
+}
@@ -56,6 +56,11 @@ public class IntegrationDoubleArrayTest {
 				{ new double[] {1.0,1.0,1.0}, new TimeDiscretization(new Double[] {0.0, 1.0, 2.0}), IntegrationMethod.Trapezoidal, 2.0},
 				{ new double[] {1.0, 2.0, 3.0, 4.0, 5.0 }, new TimeDiscretization(new Double[] {0.0, 1.0, 2.0, 3.0, 4.0}), IntegrationMethod.Trapezoidal, 12.0 },
 				{ new double[] {2.0, 4.0, 6.0}, new TimeDiscretization(new Double[] {0.0, 1.0, 4.0}), IntegrationMethod.Trapezoidal, 18.0},  
+				{ new double[] {1.0, 2.0, 3.0, 4.0, 5.0 }, new TimeDiscretization(new Double[] {0.0, 1.0, 2.0, 3.0, 4.0}), IntegrationMethod.Simpson, 12.0 },
+				{ new double[] {0.0, 1.0, 16.0}, new TimeDiscretization(new Double[] {0.0, 1.0, 4.0}), IntegrationMethod.Simpson, 64.0 / 3.0},
+				{ new double[] {0.0, 1.0, 16.0, 25.0}, new TimeDiscretization(new Double[] {0.0, 1.0, 4.0, 5.0}), IntegrationMethod.Simpson, 125.0 / 3.0},
+				{ new double[] {0.0, 1.0, 8.0, 27.0, 64.0}, new TimeDiscretization(new Double[] {0.0, 1.0, 2.0, 3.0, 4.0}), IntegrationMethod.GaussLobatto, 64.0},
+				{ new double[] {0.0, 1.0, 64.0, 125.0}, new TimeDiscretization(new Double[] {0.0, 1.0, 4.0, 5.0}), IntegrationMethod.GaussLobatto, 625.0 / 4.0},
 		});
 	}
 	
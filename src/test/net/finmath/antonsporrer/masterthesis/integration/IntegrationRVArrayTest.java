@@ -58,7 +58,10 @@ public class IntegrationRVArrayTest {
 				{ new RandomVariableInterface[] {new RandomVariable(2.0),new RandomVariable(4.0),new RandomVariable(6.0)}, new TimeDiscretization(new Double[] {0.0, 1.0, 4.0}), IntegrationMethod.RightPoints, new RandomVariable(22.0)}, 
 				{ new RandomVariableInterface[] {new RandomVariable(1.0),new RandomVariable(1.0),new RandomVariable(1.0)},  new TimeDiscretization(new Double[] {0.0, 1.0, 2.0}), IntegrationMethod.Trapezoidal, new RandomVariable(2.0)},
 				{ new RandomVariableInterface[] {new RandomVariable(1.0),new RandomVariable(2.0),new RandomVariable(3.0),new RandomVariable(4.0),new RandomVariable(5.0) }, new TimeDiscretization(new Double[] {0.0, 1.0, 2.0, 3.0, 4.0}), IntegrationMethod.Trapezoidal, new RandomVariable(12.0) },
-				{ new RandomVariableInterface[] {new RandomVariable(2.0),new RandomVariable(4.0),new RandomVariable(6.0)}, new TimeDiscretization(new Double[] {0.0, 1.0, 4.0}), IntegrationMethod.Trapezoidal, new RandomVariable(18.0)}, 
+				{ new RandomVariableInterface[] {new RandomVariable(2.0),new RandomVariable(4.0),new RandomVariable(6.0)}, new TimeDiscretization(new Double[] {0.0, 1.0, 4.0}), IntegrationMethod.Trapezoidal, new RandomVariable(18.0)},
+				{ new RandomVariableInterface[] {new RandomVariable(1.0),new RandomVariable(2.0),new RandomVariable(3.0),new RandomVariable(4.0),new RandomVariable(5.0) }, new TimeDiscretization(new Double[] {0.0, 1.0, 2.0, 3.0, 4.0}), IntegrationMethod.Simpson, new RandomVariable(12.0) },
+				{ new RandomVariableInterface[] {new RandomVariable(0.0),new RandomVariable(1.0),new RandomVariable(16.0),new RandomVariable(25.0)}, new TimeDiscretization(new Double[] {0.0, 1.0, 4.0, 5.0}), IntegrationMethod.Simpson, new RandomVariable(125.0 / 3.0)},
+				{ new RandomVariableInterface[] {new RandomVariable(0.0),new RandomVariable(1.0),new RandomVariable(64.0),new RandomVariable(125.0)}, new TimeDiscretization(new Double[] {0.0, 1.0, 4.0, 5.0}), IntegrationMethod.GaussLobatto, new RandomVariable(625.0 / 4.0)},
 		});
 	}
 	
@@ -0,0 +1,116 @@
+package test.net.finmath.antonsporrer.masterthesis.integration;
+
+import main.net.finmath.antonsporrer.masterthesis.integration.Integration;
+import main.net.finmath.antonsporrer.masterthesis.integration.Integration.IntegrationMethod;
+import net.finmath.montecarlo.RandomVariable;
+import net.finmath.stochastic.RandomVariableInterface;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationInterface;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InterpolatoryIntegrationTest {
+
+	// The integral of exp(-t) * sin(3t) from 0 to 5.
+	private static final double EXPONENTIAL_SINE_INTEGRAL = ( 3.0 - Math.exp(-5.0) * ( Math.sin(15.0) + 3.0 * Math.cos(15.0) ) ) / 10.0;
+
+
+	/**
+	 * GaussLobatto on the time discretization of Integration.getGaussLobattoTimeDiscretization is exact for polynomials of degree five,
+	 * also for panels of different length.
+	 */
+	@Test
+	public void testGaussLobattoIsExactForPolynomialsOfDegreeFive() {
+
+		TimeDiscretizationInterface timeDiscretization = Integration.getGaussLobattoTimeDiscretization(new double[] { 0.0, 0.5, 2.0, 2.25, 5.0 });
+		Assert.assertEquals( 13, timeDiscretization.getNumberOfTimes() );
+
+		double[] functionValues = new double[timeDiscretization.getNumberOfTimes()];
+		for(int timeIndex = 0; timeIndex < functionValues.length; timeIndex++) {
+			double time = timeDiscretization.getTime(timeIndex);
+			functionValues[timeIndex] = 1.0 - 2.0 * time + 0.5 * Math.pow(time, 3) - 0.1 * Math.pow(time, 4) + 0.02 * Math.pow(time, 5);
+		}
+
+		// The antiderivative t - t^2 + t^4 / 8 - t^5 / 50 + t^6 / 300 at 5.
+		double expectedIntegral = 5.0 - 25.0 + 625.0 / 8.0 - 3125.0 / 50.0 + 15625.0 / 300.0;
+
+		Assert.assertEquals( expectedIntegral, Integration.getIntegral(functionValues, timeDiscretization, IntegrationMethod.GaussLobatto), 1E-12 * Math.abs(expectedIntegral) );
+
+	}
+
+
+	/**
+	 * On a non-uniform time discretization Simpson and GaussLobatto are more accurate than the trapezoidal rule and their error estimates bound the error.
+	 * On the Gauss-Lobatto time discretization a fourth of the time points suffices to be more accurate than the trapezoidal rule.
+	 */
+	@Test
+	public void testAccuracyAndErrorEstimate() {
+
+		int numberOfIntervals = 48;
+		double[] times = new double[numberOfIntervals + 1];
+		for(int timeIndex = 0; timeIndex <= numberOfIntervals; timeIndex++) {
+			times[timeIndex] = 5.0 * Math.pow( (double) timeIndex / numberOfIntervals, 1.5 );
+		}
+		TimeDiscretizationInterface timeDiscretization = new TimeDiscretization(times);
+		double[] functionValues = getExponentialSine(timeDiscretization);
+
+		double trapezoidalError = Math.abs( Integration.getIntegral(functionValues, timeDiscretization, IntegrationMethod.Trapezoidal) - EXPONENTIAL_SINE_INTEGRAL );
+
+		for(IntegrationMethod integrationMethod : new IntegrationMethod[] { IntegrationMethod.Simpson, IntegrationMethod.GaussLobatto }) {
+
+			double error = Math.abs( Integration.getIntegral(functionValues, timeDiscretization, integrationMethod) - EXPONENTIAL_SINE_INTEGRAL );
+			double errorEstimate = Integration.getIntegralErrorEstimate(functionValues, timeDiscretization, integrationMethod);
+
+			Assert.assertTrue( error < 0.1 * trapezoidalError );
+			Assert.assertTrue( error <= errorEstimate );
+			Assert.assertTrue( errorEstimate < trapezoidalError );
+
+		}
+
+		// Twelve panels, i.e. 37 time points.
+		double[] panelBounds = new double[numberOfIntervals / 4 + 1];
+		for(int panelIndex = 0; panelIndex < panelBounds.length; panelIndex++) {
+			panelBounds[panelIndex] = 5.0 * Math.pow( (double) panelIndex / ( panelBounds.length - 1 ), 1.5 );
+		}
+		TimeDiscretizationInterface gaussLobattoTimeDiscretization = Integration.getGaussLobattoTimeDiscretization(panelBounds);
+		double[] gaussLobattoFunctionValues = getExponentialSine(gaussLobattoTimeDiscretization);
+
+		double gaussLobattoError = Math.abs( Integration.getIntegral(gaussLobattoFunctionValues, gaussLobattoTimeDiscretization, IntegrationMethod.GaussLobatto) - EXPONENTIAL_SINE_INTEGRAL );
+		double gaussLobattoErrorEstimate = Integration.getIntegralErrorEstimate(gaussLobattoFunctionValues, gaussLobattoTimeDiscretization, IntegrationMethod.GaussLobatto);
+
+		Assert.assertTrue( gaussLobattoError < 1E-3 * trapezoidalError );
+		Assert.assertTrue( gaussLobattoError <= gaussLobattoErrorEstimate );
+
+		// The random variable version of the error estimate agrees with the double version.
+		RandomVariableInterface[] functionValuesRV = new RandomVariableInterface[functionValues.length];
+		for(int timeIndex = 0; timeIndex < functionValues.length; timeIndex++) {
+			functionValuesRV[timeIndex] = new RandomVariable(times[timeIndex], new double[] { functionValues[timeIndex], 2.0 * functionValues[timeIndex] });
+		}
+		RandomVariableInterface errorEstimateRV = Integration.getIntegralErrorEstimate(functionValuesRV, timeDiscretization, IntegrationMethod.Simpson);
+		double errorEstimate = Integration.getIntegralErrorEstimate(functionValues, timeDiscretization, IntegrationMethod.Simpson);
+		Assert.assertEquals( errorEstimate, errorEstimateRV.get(0), 1E-15 );
+		Assert.assertEquals( 2.0 * errorEstimate, errorEstimateRV.get(1), 1E-15 );
+
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecreasingPanelBounds() {
+		Integration.getGaussLobattoTimeDiscretization(new double[] { 0.0, 1.0, 1.0 });
+	}
+
+
+	private static double[] getExponentialSine(TimeDiscretizationInterface timeDiscretization) {
+
+		double[] functionValues = new double[timeDiscretization.getNumberOfTimes()];
+		for(int timeIndex = 0; timeIndex < functionValues.length; timeIndex++) {
+			double time = timeDiscretization.getTime(timeIndex);
+			functionValues[timeIndex] = Math.exp(-time) * Math.sin(3.0 * time);
+		}
+
+		return functionValues;
+
+	}
+
+}
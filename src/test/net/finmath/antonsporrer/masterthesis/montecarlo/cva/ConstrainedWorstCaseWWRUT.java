@@ -4,15 +4,35 @@
 
 package test.net.finmath.antonsporrer.masterthesis.montecarlo.cva;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ApproximateWorstCaseCVA;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.CalibratedWorstCaseCVA;
 import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ConstrainedWorstCaseCVA;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.IncrementalWorstCaseCVA;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.WorstCaseCVA;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.WorstCaseCVAProfile;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.WorstCaseCVASensitivities;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.DistributedScalingVectorIPFP;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.FullMatrixIPFP;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.IPFPWorker;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.ScalingVectorIPFP;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.WeightedPaths;
 import net.finmath.montecarlo.RandomVariable;
 import net.finmath.stochastic.RandomVariableInterface;
 
@@ -37,6 +57,9 @@ public class ConstrainedWorstCaseWWRUT {
 	private double penaltyFactor;
 	private ConstrainedWorstCaseCVA constrainedWorstCaseCVA = new ConstrainedWorstCaseCVA(1.0);
 	
+	// The modes not requiring workers.
+	private ConstrainedWorstCaseCVA.IPFPMode[] localIPFPModes = new ConstrainedWorstCaseCVA.IPFPMode[] { ConstrainedWorstCaseCVA.IPFPMode.FullMatrix, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors };
+	
 	
 	@Rule
 	public ExpectedException exception = ExpectedException.none();
@@ -209,6 +232,1084 @@ public class ConstrainedWorstCaseWWRUT {
 
 		
 	}
-
+	
+	/**
+	 * The scaling vector mode of the IPFP has to reproduce the full matrix mode.
+	 */
+	@Test
+	public void testScalingVectorsAgreeWithFullMatrix() throws InterruptedException, ExecutionException {
+		
+		numberOfSimulationPaths = 5000;
+		
+		int numberOfDefaultProbabilities = 12;
+		
+		defaultProbabilities = new double[numberOfDefaultProbabilities];
+		discountedFlooredNPV = new RandomVariable[numberOfDefaultProbabilities - 1];
+		
+		Random randomNumberGenerator = new Random(3141);
+		
+		double sumOfDefaultProbabilities = 0.0;
+		for(int defaultIndex = 0; defaultIndex < numberOfDefaultProbabilities - 1; defaultIndex++) {
+			
+			defaultProbabilities[defaultIndex] = 0.01 + 0.02 * randomNumberGenerator.nextDouble();
+			sumOfDefaultProbabilities += defaultProbabilities[defaultIndex];
+			
+			double[] realisations = new double[numberOfSimulationPaths];
+			for(int pathIndex = 0; pathIndex < numberOfSimulationPaths; pathIndex++) {
+				realisations[pathIndex] = Math.max( randomNumberGenerator.nextGaussian() * 3.0, 0.0 );
+			}
+			
+			discountedFlooredNPV[defaultIndex] = new RandomVariable(defaultIndex + 1, realisations);
+		}
+		defaultProbabilities[numberOfDefaultProbabilities - 1] = 1.0 - sumOfDefaultProbabilities;
+		
+		terminationCriterionRows = 1.0E-10;
+		terminationCriterionColumns = 1.0E-10;
+		terminationCriterionColumnsAbsolut = 1.0E-10;
+		
+		ConstrainedWorstCaseCVA scalingVectorCVA = new ConstrainedWorstCaseCVA(1.0, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors);
+		
+		for(double penaltyFactor : new double[] { 0.0001, 0.5, 3.0 }) {
+			
+			double fullMatrixResult = constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfSimulationPaths, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+			double scalingVectorResult = scalingVectorCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfSimulationPaths, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+			
+			System.out.println("Penalty factor " + penaltyFactor + ": full matrix " + fullMatrixResult + ", scaling vectors " + scalingVectorResult);
+			Assert.assertEquals(fullMatrixResult, scalingVectorResult, 1.0E-8 * fullMatrixResult);
+		}
+		
+		// The known solutions of example 1.
+		discountedFlooredNPV = new RandomVariable[] { new RandomVariable(0.0, new double[] {10, 0}) , new RandomVariable(0.0, new double[] {0, 10}) };
+		defaultProbabilities = new double[] {0.5, 0.48, 0.02};
+		Assert.assertEquals(9.8, scalingVectorCVA.getWorstCaseCVANotToFarFromIndependence(10, discountedFlooredNPV, 2, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut), 0.001);
+		
+	}
+	
+	/**
+	 * For large penalty factors exp( penaltyFactor * NPV ) overflows. The log-domain IPFP has to stay finite
+	 * and has to approach the worst case joint distribution.
+	 */
+	@Test
+	public void testLargePenaltyFactorUsesLogDomain() throws InterruptedException, ExecutionException {
+		
+		discountedFlooredNPV = new RandomVariable[] { new RandomVariable(0.0, new double[] {10, 0}) , new RandomVariable(0.0, new double[] {5, 10}) };
+		defaultProbabilities = new double[] {0.2, 0.76, 0.04};
+		
+		terminationCriterionRows = 1.0E-10;
+		terminationCriterionColumns = 1.0E-10;
+		terminationCriterionColumnsAbsolut = 1.0E-10;
+		
+		// The exponent penaltyFactor * NPV is 10000.
+		penaltyFactor = 1000;
+		
+		double fullMatrixResult = constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, 2, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+		double scalingVectorResult = new ConstrainedWorstCaseCVA(1.0, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors).getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, 2, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+		
+		System.out.println("CWCWWR for the penalty factor " + penaltyFactor + " is: " + fullMatrixResult + " (full matrix mode), " + scalingVectorResult + " (scaling vector mode)");
+		Assert.assertFalse( Double.isNaN(fullMatrixResult) || Double.isInfinite(fullMatrixResult) );
+		Assert.assertFalse( Double.isNaN(scalingVectorResult) || Double.isInfinite(scalingVectorResult) );
+		
+		// For such a large penalty factor the IPFP needs more than the default number of iterations to converge.
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		ScalingVectorIPFP ipfp = new ScalingVectorIPFP(new double[][] { {10, 0}, {5, 10} }, defaultProbabilities, penaltyFactor, true, 1);
+		Assert.assertTrue( ipfp.solve(10000, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor) );
+		Assert.assertEquals(8.3, ipfp.getCVA(executor), 0.001);
+		executor.shutdown();
+		
+	}
+	
+	
+	/**
+	 * For moderate penalty factors the log-domain IPFP and the linear IPFP coincide.
+	 */
+	@Test
+	public void testLogDomainAgreesWithLinearDomain() throws InterruptedException, ExecutionException {
+		
+		int numberOfPaths = 2000;
+		double[][] realizations = new double[5][numberOfPaths];
+		
+		Random randomNumberGenerator = new Random(2718);
+		for(int columnIndex = 0; columnIndex < realizations.length; columnIndex++) {
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				realizations[columnIndex][pathIndex] = Math.max( randomNumberGenerator.nextGaussian(), 0.0 );
+			}
+		}
+		defaultProbabilities = new double[] {0.05, 0.1, 0.0, 0.1, 0.05, 0.7};
+		
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		
+		for(double penaltyFactor : new double[] { -4.0, 0.5, 8.0 }) {
+			
+			ScalingVectorIPFP linearIPFP = new ScalingVectorIPFP(realizations, defaultProbabilities, penaltyFactor, false, 3);
+			ScalingVectorIPFP logDomainIPFP = new ScalingVectorIPFP(realizations, defaultProbabilities, penaltyFactor, true, 3);
+			
+			Assert.assertTrue( linearIPFP.solve(100, 1.0E-10, 1.0E-10, 1.0E-10, executor) );
+			Assert.assertTrue( logDomainIPFP.solve(100, 1.0E-10, 1.0E-10, 1.0E-10, executor) );
+			
+			Assert.assertEquals(linearIPFP.getNumberOfIterations(), logDomainIPFP.getNumberOfIterations());
+			Assert.assertEquals(linearIPFP.getCVA(executor), logDomainIPFP.getCVA(executor), 1.0E-10);
+		}
+		
+		executor.shutdown();
+		
+	}
+	
+	/**
+	 * An injected executor is used instead of the shared default executor and it is not shut down.
+	 */
+	@Test
+	public void testInjectedExecutor() throws InterruptedException, ExecutionException {
+		
+		discountedFlooredNPV = new RandomVariable[] { new RandomVariable(0.0, new double[] {10, 0}) , new RandomVariable(0.0, new double[] {0, 10}) };
+		defaultProbabilities = new double[] {0.5, 0.48, 0.02};
+		
+		ForkJoinPool forkJoinPool = new ForkJoinPool(3);
+		
+		for(ConstrainedWorstCaseCVA.IPFPMode ipfpMode : localIPFPModes) {
+			
+			ConstrainedWorstCaseCVA forkJoinCVA = new ConstrainedWorstCaseCVA(1.0, 1.0E-10, 1.0E-10, 1.0E-10, ipfpMode, forkJoinPool);
+			
+			Assert.assertSame(forkJoinPool, forkJoinCVA.getExecutor());
+			Assert.assertEquals(9.8, forkJoinCVA.getWorstCaseCVANotToFarFromIndependence(10, discountedFlooredNPV, 2, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), 0.001);
+			Assert.assertFalse(forkJoinPool.isShutdown());
+		}
+		
+		forkJoinPool.shutdown();
+		
+		// Instances without an injected executor share the default executor.
+		Assert.assertSame(ConstrainedWorstCaseCVA.getDefaultExecutor(), constrainedWorstCaseCVA.getExecutor());
+		Assert.assertFalse(ConstrainedWorstCaseCVA.getDefaultExecutor().isShutdown());
+		
+	}
+	
+	/**
+	 * The maximum pool size of a cached thread pool is unbounded. The rows of an injected cached thread pool still have to be split into several blocks.
+	 */
+	@Test
+	public void testInjectedCachedThreadPool() {
+		
+		ExecutorService cachedThreadPool = Executors.newCachedThreadPool();
+		
+		try {
+			ConstrainedWorstCaseCVA cachedThreadPoolCVA = new ConstrainedWorstCaseCVA(1.0, 1.0E-10, 1.0E-10, 1.0E-10, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors, cachedThreadPool);
+			
+			int numberOfRowBlocks = cachedThreadPoolCVA.getNumberOfRowBlocks(100000, 41);
+			
+			Assert.assertTrue( numberOfRowBlocks > 1 );
+			Assert.assertTrue( numberOfRowBlocks <= 4 * Runtime.getRuntime().availableProcessors() );
+		}
+		finally {
+			cachedThreadPool.shutdown();
+		}
+		
+	}
+	
+	/**
+	 * The accelerated (over-relaxed) IPFP has to reach the same termination criteria as the plain IPFP in less iterations.
+	 * If it stalls it has to fall back to the plain IPFP and still converge.
+	 */
+	@Test
+	public void testAcceleratedIPFP() throws InterruptedException, ExecutionException {
+		
+		int numberOfPaths = 5000;
+		double[][] realizations = new double[11][numberOfPaths];
+		
+		Random randomNumberGenerator = new Random(7);
+		for(int columnIndex = 0; columnIndex < realizations.length; columnIndex++) {
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				realizations[columnIndex][pathIndex] = Math.max( randomNumberGenerator.nextGaussian() * ( 1.0 + 0.1 * columnIndex ), 0.0 );
+			}
+		}
+		defaultProbabilities = new double[12];
+		Arrays.fill(defaultProbabilities, 0.02);
+		defaultProbabilities[11] = 1.0 - 0.02 * 11;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		
+		for(double penaltyFactor : new double[] { 3.0, 10.0 }) {
+			
+			ScalingVectorIPFP plainIPFP = new ScalingVectorIPFP(realizations, defaultProbabilities, penaltyFactor, false, 3);
+			ScalingVectorIPFP acceleratedIPFP = new ScalingVectorIPFP(realizations, defaultProbabilities, penaltyFactor, false, 3);
+			acceleratedIPFP.setAdaptiveRelaxation(true);
+			
+			FullMatrixIPFP acceleratedFullMatrixIPFP = new FullMatrixIPFP(realizations, defaultProbabilities, penaltyFactor, 3);
+			acceleratedFullMatrixIPFP.setAdaptiveRelaxation(true);
+			acceleratedFullMatrixIPFP.reset(executor);
+			
+			Assert.assertTrue( plainIPFP.solve(1000, 1.0E-10, 1.0E-10, 1.0E-10, executor) );
+			Assert.assertTrue( acceleratedIPFP.solve(1000, 1.0E-10, 1.0E-10, 1.0E-10, executor) );
+			Assert.assertTrue( acceleratedFullMatrixIPFP.solve(1000, 1.0E-10, 1.0E-10, 1.0E-10, executor) );
+			
+			System.out.println("Penalty factor " + penaltyFactor + ": " + plainIPFP.getNumberOfIterations() + " iterations (plain), " 
+					+ acceleratedIPFP.getNumberOfIterations() + " iterations (accelerated), " + acceleratedFullMatrixIPFP.getNumberOfIterations() + " iterations (accelerated full matrix)");
+			
+			Assert.assertTrue( acceleratedIPFP.getNumberOfIterations() < plainIPFP.getNumberOfIterations() );
+			Assert.assertEquals(plainIPFP.getCVA(executor), acceleratedIPFP.getCVA(executor), 1.0E-8);
+			Assert.assertEquals(plainIPFP.getCVA(executor), acceleratedFullMatrixIPFP.getCVA(executor), 1.0E-8);
+		}
+		
+		// A relaxation parameter close to two stalls for this example. The fall back to the plain IPFP still converges.
+		ScalingVectorIPFP stallingIPFP = new ScalingVectorIPFP(new double[][] { {10, 0}, {5, 10} }, new double[] {0.2, 0.76, 0.04}, 100.0, true, 1);
+		stallingIPFP.setRelaxationParameter(1.99);
+		Assert.assertTrue( stallingIPFP.solve(10000, 1.0E-10, 1.0E-10, 1.0E-10, executor) );
+		Assert.assertTrue( stallingIPFP.isRelaxationAbandoned() );
+		Assert.assertEquals(8.3, stallingIPFP.getCVA(executor), 0.001);
+		
+		executor.shutdown();
+		
+		// The maximal number of iterations is configurable. For the penalty factor 1000 the default of 100 iterations is not sufficient.
+		discountedFlooredNPV = new RandomVariable[] { new RandomVariable(0.0, new double[] {10, 0}) , new RandomVariable(0.0, new double[] {5, 10}) };
+		
+		ConstrainedWorstCaseCVA acceleratedCVA = new ConstrainedWorstCaseCVA(1.0, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors);
+		acceleratedCVA.setMaximalNumberOfIterations(10000);
+		acceleratedCVA.setAccelerated(true);
+		
+		Assert.assertEquals(8.3, acceleratedCVA.getWorstCaseCVANotToFarFromIndependence(1000, discountedFlooredNPV, 2, new double[] {0.2, 0.76, 0.04}, 1.0E-10, 1.0E-10, 1.0E-10), 0.001);
+		
+	}
+	
+	@Test
+	public void testPenaltyFactorSweep() throws InterruptedException, ExecutionException {
+		
+		int numberOfPaths = 2000;
+		discountedFlooredNPV = getRandomDiscountedFlooredNPV(11, numberOfPaths, 5);
+		defaultProbabilities = new double[] {0.05, 0.05, 0.05, 0.05, 0.05, 0.75};
+		
+		double[] penaltyFactors = new double[] { 0.0, 0.5, 1.0, 2.0, 5.0, 10.0, 20.0, 120.0 };
+		
+		for(ConstrainedWorstCaseCVA.IPFPMode ipfpMode : localIPFPModes) {
+			
+			ConstrainedWorstCaseCVA constrainedWorstCaseCVA = new ConstrainedWorstCaseCVA(1.0, ipfpMode);
+			constrainedWorstCaseCVA.setMaximalNumberOfIterations(10000);
+			
+			double[] worstCaseCVAs = constrainedWorstCaseCVA.getWorstCaseCVAsNotToFarFromIndependence(penaltyFactors, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10);
+			
+			for(int penaltyFactorIndex = 0; penaltyFactorIndex < penaltyFactors.length; penaltyFactorIndex++) {
+				Assert.assertEquals( constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactors[penaltyFactorIndex], discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), worstCaseCVAs[penaltyFactorIndex], 1.0E-8 );
+			}
+			
+		}
+		
+		// Starting from the solution of a nearby penalty factor requires less iterations than starting from the independent distribution.
+		double[][] realizations = new double[discountedFlooredNPV.length][];
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			realizations[columnIndex] = discountedFlooredNPV[columnIndex].getRealizations();
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		
+		ScalingVectorIPFP warmStartedIPFP = new ScalingVectorIPFP(realizations, defaultProbabilities, 9.0, false, 2);
+		Assert.assertTrue( warmStartedIPFP.solve(10000, 1.0E-10, 1.0E-10, 1.0E-10, executor) );
+		warmStartedIPFP.setPenaltyFactor(10.0, false);
+		Assert.assertTrue( warmStartedIPFP.solve(10000, 1.0E-10, 1.0E-10, 1.0E-10, executor) );
+		
+		ScalingVectorIPFP coldStartedIPFP = new ScalingVectorIPFP(realizations, defaultProbabilities, 10.0, false, 2);
+		Assert.assertTrue( coldStartedIPFP.solve(10000, 1.0E-10, 1.0E-10, 1.0E-10, executor) );
+		
+		System.out.println("Penalty factor 10: " + warmStartedIPFP.getNumberOfIterations() + " iterations (warm start), " + coldStartedIPFP.getNumberOfIterations() + " iterations (cold start)");
+		
+		Assert.assertTrue( warmStartedIPFP.getNumberOfIterations() < coldStartedIPFP.getNumberOfIterations() );
+		Assert.assertEquals( coldStartedIPFP.getCVA(executor), warmStartedIPFP.getCVA(executor), 1.0E-8 );
+		
+		executor.shutdown();
+		
+	}
+	
+	/**
+	 * A sweep from a negative to a positive penalty factor agrees with the solves of the single penalty factors, although 
+	 * exp( ( penaltyFactor - previousPenaltyFactor ) * NPV ) of the warm start would overflow.
+	 */
+	@Test
+	public void testPenaltyFactorSweepWithSignChange() throws InterruptedException, ExecutionException {
+		
+		int numberOfPaths = 1000;
+		discountedFlooredNPV = new RandomVariableInterface[5];
+		
+		// The NPV is capped at 2, hence both penalty factors are in the linear domain.
+		Random randomNumberGenerator = new Random(47);
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			double[] realizations = new double[numberOfPaths];
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				realizations[pathIndex] = Math.min( Math.max( randomNumberGenerator.nextGaussian(), 0.0 ), 2.0 );
+			}
+			discountedFlooredNPV[columnIndex] = new RandomVariable(0.0, realizations);
+		}
+		defaultProbabilities = new double[] {0.05, 0.05, 0.05, 0.05, 0.05, 0.75};
+		
+		double[] penaltyFactors = new double[] { -300.0, 300.0 };
+		
+		for(ConstrainedWorstCaseCVA.IPFPMode ipfpMode : localIPFPModes) {
+			
+			ConstrainedWorstCaseCVA constrainedWorstCaseCVA = new ConstrainedWorstCaseCVA(1.0, ipfpMode);
+			constrainedWorstCaseCVA.setMaximalNumberOfIterations(10000);
+			
+			double[] worstCaseCVAs = constrainedWorstCaseCVA.getWorstCaseCVAsNotToFarFromIndependence(penaltyFactors, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10);
+			
+			for(int penaltyFactorIndex = 0; penaltyFactorIndex < penaltyFactors.length; penaltyFactorIndex++) {
+				Assert.assertEquals( constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactors[penaltyFactorIndex], discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), worstCaseCVAs[penaltyFactorIndex], 1.0E-8 );
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Storing the matrix of the full matrix IPFP or the NPV columns of the scaling vector IPFP in single precision changes the constrained worst case CVA 
+	 * at most by the termination criteria.
+	 */
+	@Test
+	public void testSinglePrecisionIPFP() throws InterruptedException, ExecutionException {
+		
+		int numberOfPaths = 5000;
+		discountedFlooredNPV = new RandomVariableInterface[11];
+		
+		Random randomNumberGenerator = new Random(17);
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			double[] realizations = new double[numberOfPaths];
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				realizations[pathIndex] = Math.max( randomNumberGenerator.nextGaussian() * ( 1.0 + 0.1 * columnIndex ), 0.0 );
+			}
+			discountedFlooredNPV[columnIndex] = new RandomVariable(0.0, realizations);
+		}
+		defaultProbabilities = new double[12];
+		Arrays.fill(defaultProbabilities, 0.02);
+		defaultProbabilities[11] = 1.0 - 0.02 * 11;
+		
+		double terminationCriterionRows = 1.0E-7;
+		double terminationCriterionColumns = 1.0E-7;
+		double terminationCriterionColumnsAbsolut = 1.0E-11;
+		double tolerance = Math.max( terminationCriterionRows, terminationCriterionColumns );
+		
+		// For the penalty factors 10 and 20 exp( penaltyFactor * NPV ) comes too close to the range limits of the float numbers. 
+		// Then the full matrix is stored in double precision. The NPV columns of the scaling vector IPFP are stored as float for all penalty factors.
+		double[] penaltyFactors = new double[] { -5.0, 0.0, 3.0, 10.0, 20.0 };
+		
+		for(ConstrainedWorstCaseCVA.IPFPMode ipfpMode : localIPFPModes) {
+			
+			ConstrainedWorstCaseCVA doublePrecisionCVA = new ConstrainedWorstCaseCVA(1.0, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, ipfpMode);
+			ConstrainedWorstCaseCVA singlePrecisionCVA = new ConstrainedWorstCaseCVA(1.0, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, ipfpMode);
+			singlePrecisionCVA.setSinglePrecision(true);
+			doublePrecisionCVA.setMaximalNumberOfIterations(10000);
+			singlePrecisionCVA.setMaximalNumberOfIterations(10000);
+			
+			Assert.assertFalse( doublePrecisionCVA.isSinglePrecision() );
+			
+			for(double penaltyFactor : penaltyFactors) {
+				
+				double doublePrecisionWorstCaseCVA = doublePrecisionCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+				double singlePrecisionWorstCaseCVA = singlePrecisionCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+				
+				System.out.println(ipfpMode + ", penalty factor " + penaltyFactor + ": " + doublePrecisionWorstCaseCVA + " (double precision), " + singlePrecisionWorstCaseCVA + " (single precision)");
+				
+				Assert.assertEquals( doublePrecisionWorstCaseCVA, singlePrecisionWorstCaseCVA, tolerance * doublePrecisionWorstCaseCVA );
+				
+			}
+			
+			double[] doublePrecisionWorstCaseCVAs = doublePrecisionCVA.getWorstCaseCVAsNotToFarFromIndependence(new double[] { 3.0, 4.0, 5.0 }, discountedFlooredNPV, numberOfPaths, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+			double[] singlePrecisionWorstCaseCVAs = singlePrecisionCVA.getWorstCaseCVAsNotToFarFromIndependence(new double[] { 3.0, 4.0, 5.0 }, discountedFlooredNPV, numberOfPaths, defaultProbabilities, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut);
+			for(int penaltyFactorIndex = 0; penaltyFactorIndex < doublePrecisionWorstCaseCVAs.length; penaltyFactorIndex++) {
+				Assert.assertEquals( doublePrecisionWorstCaseCVAs[penaltyFactorIndex], singlePrecisionWorstCaseCVAs[penaltyFactorIndex], tolerance * doublePrecisionWorstCaseCVAs[penaltyFactorIndex] );
+			}
+			
+		}
+		
+		// The single precision IPFP reaches the termination criteria of the double precision IPFP.
+		double[][] realizations = new double[discountedFlooredNPV.length][];
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			realizations[columnIndex] = discountedFlooredNPV[columnIndex].getRealizations();
+		}
+		double[] pathProbabilities = new double[numberOfPaths];
+		Arrays.fill(pathProbabilities, 1.0 / numberOfPaths);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		
+		FullMatrixIPFP singlePrecisionIPFP = new FullMatrixIPFP(realizations, pathProbabilities, defaultProbabilities, 3.0, 4, true);
+		singlePrecisionIPFP.reset(executor);
+		
+		Assert.assertTrue( singlePrecisionIPFP.isSinglePrecision() );
+		Assert.assertTrue( singlePrecisionIPFP.solve(10000, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor) );
+		
+		// Also in the log-domain the scaling vector IPFP of the NPV in single precision agrees with the one in double precision.
+		float[][] singlePrecisionRealizations = new float[realizations.length][numberOfPaths];
+		for(int columnIndex = 0; columnIndex < realizations.length; columnIndex++) {
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				singlePrecisionRealizations[columnIndex][pathIndex] = (float) realizations[columnIndex][pathIndex];
+			}
+		}
+		
+		ScalingVectorIPFP doublePrecisionScalingVectorIPFP = new ScalingVectorIPFP(realizations, pathProbabilities, defaultProbabilities, 50.0, true, 4);
+		ScalingVectorIPFP singlePrecisionScalingVectorIPFP = new ScalingVectorIPFP(singlePrecisionRealizations, pathProbabilities, defaultProbabilities, 50.0, true, 4);
+		
+		Assert.assertTrue( singlePrecisionScalingVectorIPFP.isSinglePrecision() );
+		Assert.assertTrue( doublePrecisionScalingVectorIPFP.solve(10000, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor) );
+		Assert.assertTrue( singlePrecisionScalingVectorIPFP.solve(10000, terminationCriterionRows, terminationCriterionColumns, terminationCriterionColumnsAbsolut, executor) );
+		Assert.assertEquals( doublePrecisionScalingVectorIPFP.getCVA(executor), singlePrecisionScalingVectorIPFP.getCVA(executor), tolerance * doublePrecisionScalingVectorIPFP.getCVA(executor) );
+		
+		executor.shutdown();
+		
+	}
+	
+	/**
+	 * In single precision a sequence of warm starts of the full matrix IPFP stores the same matrix as a cold start at the last penalty factor. 
+	 * Thus both CVAs agree up to the termination criteria and differ from the CVA in double precision by about the rounding of the initial matrix to float, 
+	 * i.e. the rounding errors do not accumulate over the warm starts.
+	 */
+	@Test
+	public void testSinglePrecisionPenaltyFactorSweep() throws InterruptedException, ExecutionException {
+		
+		int numberOfPaths = 2000;
+		double[][] realizations = getRandomDiscountedFlooredNPVRealizations(43, numberOfPaths, 5);
+		double[] pathProbabilities = new double[numberOfPaths];
+		Arrays.fill(pathProbabilities, 1.0 / numberOfPaths);
+		double[] defaultProbabilities = new double[] {0.05, 0.05, 0.05, 0.05, 0.05, 0.75};
+		
+		double terminationCriterion = 1.0E-12;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		
+		// Up to the penalty factor 5 and back to 3, i.e. 30 warm starts.
+		FullMatrixIPFP warmStartedIPFP = new FullMatrixIPFP(realizations, pathProbabilities, defaultProbabilities, 0.0, 4, true);
+		warmStartedIPFP.reset(executor);
+		Assert.assertTrue( warmStartedIPFP.solve(10000, terminationCriterion, terminationCriterion, 1.0E-15, executor) );
+		for(int penaltyFactorIndex = 1; penaltyFactorIndex <= 30; penaltyFactorIndex++) {
+			double penaltyFactor = penaltyFactorIndex <= 20 ? 0.25 * penaltyFactorIndex : 5.0 - 0.2 * ( penaltyFactorIndex - 20 );
+			warmStartedIPFP.setPenaltyFactor(penaltyFactor, executor);
+			Assert.assertTrue( warmStartedIPFP.solve(10000, terminationCriterion, terminationCriterion, 1.0E-15, executor) );
+		}
+		
+		FullMatrixIPFP coldStartedIPFP = new FullMatrixIPFP(realizations, pathProbabilities, defaultProbabilities, 3.0, 4, true);
+		coldStartedIPFP.reset(executor);
+		Assert.assertTrue( coldStartedIPFP.solve(10000, terminationCriterion, terminationCriterion, 1.0E-15, executor) );
+		
+		FullMatrixIPFP doublePrecisionIPFP = new FullMatrixIPFP(realizations, pathProbabilities, defaultProbabilities, 3.0, 4, false);
+		doublePrecisionIPFP.reset(executor);
+		Assert.assertTrue( doublePrecisionIPFP.solve(10000, terminationCriterion, terminationCriterion, 1.0E-15, executor) );
+		
+		double coldStartedCVA = coldStartedIPFP.getCVA(executor);
+		double warmStartedCVA = warmStartedIPFP.getCVA(executor);
+		double doublePrecisionCVA = doublePrecisionIPFP.getCVA(executor);
+		
+		System.out.println("Single precision, penalty factor 3: " + warmStartedCVA + " (warm start), " + coldStartedCVA + " (cold start), " + doublePrecisionCVA + " (double precision)");
+		
+		Assert.assertEquals( coldStartedCVA, warmStartedCVA, 10.0 * terminationCriterion * coldStartedCVA );
+		Assert.assertEquals( doublePrecisionCVA, warmStartedCVA, ( 10.0 * terminationCriterion + Math.pow(2.0, -24) ) * doublePrecisionCVA );
+		
+		executor.shutdown();
+		
+	}
+	
+	/**
+	 * The full matrix IPFP whose matrix is stored in a memory mapped file yields the same results as the one whose matrix is stored on the heap, 
+	 * in double and in single precision, also after a change of the penalty factor. After close() the out of core matrix is unusable.
+	 */
+	@Test
+	public void testOutOfCoreIPFP() throws InterruptedException, ExecutionException, IOException {
+		
+		// The matrix has more entries than one out of core block.
+		int numberOfPaths = 300000;
+		double[][] realizations = new double[4][numberOfPaths];
+		
+		Random randomNumberGenerator = new Random(19);
+		for(int columnIndex = 0; columnIndex < realizations.length; columnIndex++) {
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				realizations[columnIndex][pathIndex] = Math.max( randomNumberGenerator.nextGaussian(), 0.0 );
+			}
+		}
+		double[] pathProbabilities = new double[numberOfPaths];
+		Arrays.fill(pathProbabilities, 1.0 / numberOfPaths);
+		defaultProbabilities = new double[] {0.05, 0.05, 0.05, 0.05, 0.8};
+		
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		
+		for(boolean singlePrecision : new boolean[] { false, true }) {
+			
+			FullMatrixIPFP heapIPFP = new FullMatrixIPFP(realizations, pathProbabilities, defaultProbabilities, 3.0, 4, singlePrecision);
+			FullMatrixIPFP outOfCoreIPFP = new FullMatrixIPFP(realizations, pathProbabilities, defaultProbabilities, 3.0, 4, singlePrecision, null);
+			
+			Assert.assertFalse( heapIPFP.isOutOfCore() );
+			Assert.assertTrue( outOfCoreIPFP.isOutOfCore() );
+			
+			for(double penaltyFactor : new double[] { 3.0, 4.0 }) {
+				
+				if( penaltyFactor == 3.0 ) {
+					heapIPFP.reset(executor);
+					outOfCoreIPFP.reset(executor);
+				}
+				else {
+					heapIPFP.setPenaltyFactor(penaltyFactor, executor);
+					outOfCoreIPFP.setPenaltyFactor(penaltyFactor, executor);
+				}
+				
+				Assert.assertTrue( heapIPFP.solve(1000, 1.0E-7, 1.0E-7, 1.0E-11, executor) );
+				Assert.assertTrue( outOfCoreIPFP.solve(1000, 1.0E-7, 1.0E-7, 1.0E-11, executor) );
+				
+				// The blocks are the same, hence the results agree exactly.
+				Assert.assertEquals( heapIPFP.getNumberOfIterations(), outOfCoreIPFP.getNumberOfIterations() );
+				Assert.assertEquals( heapIPFP.getCVA(executor), outOfCoreIPFP.getCVA(executor), 0.0 );
+				Assert.assertArrayEquals( heapIPFP.getColumnContributionsAndMasses(null, executor)[1], outOfCoreIPFP.getColumnContributionsAndMasses(null, executor)[1], 0.0 );
+				
+			}
+			
+			heapIPFP.close();
+			outOfCoreIPFP.close();
+			
+			try {
+				outOfCoreIPFP.getCVA(executor);
+				Assert.fail();
+			}
+			catch(ExecutionException e) {
+				Assert.assertTrue( e.getCause() instanceof IllegalStateException );
+			}
+			
+		}
+		
+		executor.shutdown();
+		
+	}
+	
+	@Test
+	public void testDeduplicatedPaths() throws InterruptedException, ExecutionException {
+		
+		// An out of the money product. The floored NPV of most paths is zero at every exposure date.
+		int numberOfPaths = 20000;
+		discountedFlooredNPV = new RandomVariableInterface[6];
+		double[][] realizations = new double[discountedFlooredNPV.length][numberOfPaths];
+		
+		Random randomNumberGenerator = new Random(13);
+		for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+			double npv = -1.0;
+			for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+				npv += 0.3 * randomNumberGenerator.nextGaussian();
+				realizations[columnIndex][pathIndex] = Math.max( npv, 0.0 );
+			}
+		}
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			discountedFlooredNPV[columnIndex] = new RandomVariable(0.0, realizations[columnIndex]);
+		}
+		defaultProbabilities = new double[] {0.05, 0.05, 0.05, 0.05, 0.05, 0.05, 0.7};
+		
+		WeightedPaths deduplicatedPaths = WeightedPaths.getDeduplicatedPaths(realizations);
+		
+		System.out.println("Number of rows: " + deduplicatedPaths.getNumberOfPaths() + " of " + deduplicatedPaths.getNumberOfOriginalPaths() + " paths");
+		
+		Assert.assertTrue( deduplicatedPaths.getNumberOfPaths() < numberOfPaths / 2 );
+		
+		double sumOfPathProbabilities = 0.0;
+		for(double pathProbability : deduplicatedPaths.getPathProbabilities()) {
+			sumOfPathProbabilities += pathProbability;
+		}
+		Assert.assertEquals(1.0, sumOfPathProbabilities, 1.0E-12);
+		
+		// Merging identical rows does not change the constrained worst case CVA.
+		for(ConstrainedWorstCaseCVA.IPFPMode ipfpMode : localIPFPModes) {
+			
+			ConstrainedWorstCaseCVA deduplicatingCVA = new ConstrainedWorstCaseCVA(1.0, ipfpMode);
+			ConstrainedWorstCaseCVA plainCVA = new ConstrainedWorstCaseCVA(1.0, ipfpMode);
+			deduplicatingCVA.setDeduplicatingPaths(true);
+			
+			Assert.assertFalse( plainCVA.isDeduplicatingPaths() );
+			Assert.assertTrue( deduplicatingCVA.isDeduplicatingPaths() );
+			
+			for(double penaltyFactor : new double[] { -5.0, 0.0, 5.0, 200.0 }) {
+				Assert.assertEquals( plainCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), 
+						deduplicatingCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), 1.0E-10 );
+			}
+			
+		}
+		
+		// Without NPV columns the paths cannot be merged.
+		try {
+			WeightedPaths.getDeduplicatedPaths(new double[0][]);
+			Assert.fail();
+		}
+		catch(IllegalArgumentException e) {
+		}
+		
+		// Without identical rows nothing is merged.
+		WeightedPaths distinctPaths = WeightedPaths.getDeduplicatedPaths(new double[][] { {10, 0, 3}, {5, 10, 3} });
+		Assert.assertEquals(3, distinctPaths.getNumberOfPaths());
+		Assert.assertEquals(1.0 / 3.0, distinctPaths.getPathProbabilities()[2], 1.0E-15);
+		
+	}
+	
+	@Test
+	public void testApproximateWorstCaseCVA() throws InterruptedException, ExecutionException {
+		
+		int numberOfPaths = 50000;
+		discountedFlooredNPV = new RandomVariableInterface[5];
+		double[][] realizations = new double[discountedFlooredNPV.length][numberOfPaths];
+		
+		Random randomNumberGenerator = new Random(17);
+		for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+			double npv = -0.5;
+			for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+				npv += 0.3 * randomNumberGenerator.nextGaussian();
+				realizations[columnIndex][pathIndex] = Math.max( npv, 0.0 );
+			}
+		}
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			discountedFlooredNPV[columnIndex] = new RandomVariable(0.0, realizations[columnIndex]);
+		}
+		defaultProbabilities = new double[] {0.05, 0.05, 0.05, 0.05, 0.05, 0.75};
+		
+		ConstrainedWorstCaseCVA exactCVA = new ConstrainedWorstCaseCVA(1.0, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors);
+		exactCVA.setMaximalNumberOfIterations(10000);
+		
+		ConstrainedWorstCaseCVA quantizedCVA = new ConstrainedWorstCaseCVA(1.0, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors);
+		quantizedCVA.setMaximalNumberOfIterations(10000);
+		quantizedCVA.setPathQuantizationStep(0.02);
+		
+		for(double penaltyFactor : new double[] { -5.0, 0.0, 2.0, 10.0 }) {
+			
+			double worstCaseCVA = exactCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10);
+			
+			ApproximateWorstCaseCVA approximateWorstCaseCVA = quantizedCVA.getApproximateWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10);
+			
+			System.out.println("Penalty factor " + penaltyFactor + ": " + worstCaseCVA + " (" + numberOfPaths + " paths), " + approximateWorstCaseCVA.getCVA() + " in [" + approximateWorstCaseCVA.getLowerBound() + ", " 
+					+ approximateWorstCaseCVA.getUpperBound() + "] (" + approximateWorstCaseCVA.getNumberOfRows() + " quantized rows)");
+			
+			Assert.assertTrue( approximateWorstCaseCVA.getNumberOfRows() < numberOfPaths / 2 );
+			Assert.assertTrue( approximateWorstCaseCVA.getMaximalDeviation() < 0.02 );
+			
+			// The bounds contain the worst case CVA of the original paths.
+			Assert.assertTrue( approximateWorstCaseCVA.getLowerBound() <= worstCaseCVA && worstCaseCVA <= approximateWorstCaseCVA.getUpperBound() );
+			Assert.assertTrue( approximateWorstCaseCVA.getErrorBound() < 0.05 * worstCaseCVA );
+			
+			Assert.assertEquals( quantizedCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), approximateWorstCaseCVA.getCVA(), 1.0E-12 );
+			
+			// Without quantization the worst case CVA is exact.
+			ApproximateWorstCaseCVA exactWorstCaseCVA = exactCVA.getApproximateWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10);
+			Assert.assertEquals( worstCaseCVA, exactWorstCaseCVA.getCVA(), 1.0E-12 );
+			Assert.assertEquals( 0.0, exactWorstCaseCVA.getErrorBound(), 0.0 );
+			
+		}
+		
+	}
+	
+	@Test
+	public void testWorstCaseCVA() throws InterruptedException, ExecutionException {
+		
+		WorstCaseCVA worstCaseCVA = new WorstCaseCVA(1.0);
+		
+		// The worst case distributions of the examples 1 and 2.
+		discountedFlooredNPV = new RandomVariable[] { new RandomVariable(0.0, new double[] {10, 0}) , new RandomVariable(0.0, new double[] {0, 10}) };
+		Assert.assertEquals(9.8, worstCaseCVA.getWorstCaseCVA(discountedFlooredNPV, 2, new double[] {0.5, 0.48, 0.02}), 1.0E-12);
+		
+		discountedFlooredNPV = new RandomVariable[] { new RandomVariable(0.0, new double[] {10, 0}) , new RandomVariable(0.0, new double[] {5, 10}) };
+		Assert.assertEquals(8.3, worstCaseCVA.getWorstCaseCVA(discountedFlooredNPV, 2, new double[] {0.2, 0.76, 0.04}), 1.0E-12);
+		
+		// The constrained worst case CVA increases to the worst case CVA for increasing penalty factors.
+		int numberOfPaths = 200;
+		discountedFlooredNPV = new RandomVariableInterface[4];
+		
+		Random randomNumberGenerator = new Random(19);
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			double[] realizations = new double[numberOfPaths];
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				realizations[pathIndex] = Math.max( 3.0 * randomNumberGenerator.nextGaussian(), 0.0 );
+			}
+			discountedFlooredNPV[columnIndex] = new RandomVariable(0.0, realizations);
+		}
+		defaultProbabilities = new double[] {0.1, 0.2, 0.05, 0.15, 0.5};
+		
+		double unconstrainedWorstCaseCVA = worstCaseCVA.getWorstCaseCVA(discountedFlooredNPV, numberOfPaths, defaultProbabilities);
+		
+		ConstrainedWorstCaseCVA constrainedCVA = new ConstrainedWorstCaseCVA(1.0, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors);
+		constrainedCVA.setMaximalNumberOfIterations(100000);
+		constrainedCVA.setAccelerated(true);
+		
+		double[] constrainedWorstCaseCVAs = constrainedCVA.getWorstCaseCVAsNotToFarFromIndependence(new double[] { 1.0, 10.0, 30.0 }, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-12, 1.0E-12, 1.0E-12);
+		
+		for(int penaltyFactorIndex = 0; penaltyFactorIndex < constrainedWorstCaseCVAs.length; penaltyFactorIndex++) {
+			Assert.assertTrue( constrainedWorstCaseCVAs[penaltyFactorIndex] <= unconstrainedWorstCaseCVA + 1.0E-10 );
+			if( penaltyFactorIndex > 0 ) {
+				Assert.assertTrue( constrainedWorstCaseCVAs[penaltyFactorIndex] > constrainedWorstCaseCVAs[penaltyFactorIndex - 1] );
+			}
+		}
+		Assert.assertEquals(unconstrainedWorstCaseCVA, constrainedWorstCaseCVAs[constrainedWorstCaseCVAs.length - 1], 1.0E-3);
+		
+		// A large problem.
+		numberOfPaths = 200000;
+		double[][] realizations = new double[20][numberOfPaths];
+		for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+			double npv = 0.0;
+			for(int columnIndex = 0; columnIndex < realizations.length; columnIndex++) {
+				npv += 0.2 * randomNumberGenerator.nextGaussian();
+				realizations[columnIndex][pathIndex] = Math.max( npv, 0.0 );
+			}
+		}
+		double[] pathProbabilities = new double[numberOfPaths];
+		Arrays.fill(pathProbabilities, 1.0 / numberOfPaths);
+		defaultProbabilities = new double[21];
+		Arrays.fill(defaultProbabilities, 0.02);
+		defaultProbabilities[20] = 0.6;
+		
+		long startTime = System.currentTimeMillis();
+		double largeWorstCaseCVA = WorstCaseCVA.getWorstCaseCVA(realizations, pathProbabilities, defaultProbabilities);
+		System.out.println("Worst case CVA of " + numberOfPaths + " paths: " + largeWorstCaseCVA + " (" + ( System.currentTimeMillis() - startTime ) + " ms)");
+		
+		// The worst case CVA is at most the expectation of the largest NPV in the default intervals.
+		double[] sortedMaximalNPV = new double[numberOfPaths];
+		for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+			for(int columnIndex = 0; columnIndex < realizations.length; columnIndex++) {
+				sortedMaximalNPV[pathIndex] = Math.max( sortedMaximalNPV[pathIndex], realizations[columnIndex][pathIndex] );
+			}
+		}
+		Arrays.sort(sortedMaximalNPV);
+		double sumOfLargestMaximalNPV = 0.0;
+		for(int pathIndex = numberOfPaths - 1; pathIndex >= numberOfPaths - 0.4 * numberOfPaths; pathIndex--) {
+			sumOfLargestMaximalNPV += sortedMaximalNPV[pathIndex] / numberOfPaths;
+		}
+		
+		Assert.assertTrue( largeWorstCaseCVA > 0.0 && largeWorstCaseCVA <= sumOfLargestMaximalNPV + 1.0E-12 );
+		
+	}
+	
+	@Test
+	public void testWorstCaseCVABounds() throws InterruptedException, ExecutionException {
+		
+		int numberOfPaths = 2000;
+		discountedFlooredNPV = getRandomDiscountedFlooredNPV(23, numberOfPaths, 5);
+		defaultProbabilities = new double[] {0.05, 0.1, 0.05, 0.1, 0.05, 0.65};
+		
+		ConstrainedWorstCaseCVA constrainedWorstCaseCVA = new ConstrainedWorstCaseCVA(1.0, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors);
+		constrainedWorstCaseCVA.setMaximalNumberOfIterations(10000);
+		
+		double independentCVA = constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(0.0, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10);
+		
+		// Both bounds agree with the separate calculation. The penalty factor 150 requires the log-domain.
+		for(double penaltyFactor : new double[] { 0.5, 3.0, 150.0 }) {
+			
+			for(boolean accelerated : new boolean[] { false, true }) {
+				
+				constrainedWorstCaseCVA.setAccelerated(accelerated);
+				
+				double[] worstCaseCVABounds = constrainedWorstCaseCVA.getWorstCaseCVABoundsNotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10);
+				
+				Assert.assertEquals( constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(- penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), worstCaseCVABounds[0], 1.0E-8 );
+				Assert.assertEquals( constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), worstCaseCVABounds[1], 1.0E-8 );
+				
+				Assert.assertTrue( worstCaseCVABounds[0] < independentCVA && independentCVA < worstCaseCVABounds[1] );
+				
+			}
+			
+		}
+		
+		// The sign of the penalty factor does not matter.
+		Assert.assertArrayEquals( constrainedWorstCaseCVA.getWorstCaseCVABoundsNotToFarFromIndependence(3.0, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), 
+				constrainedWorstCaseCVA.getWorstCaseCVABoundsNotToFarFromIndependence(-3.0, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), 0.0 );
+		
+	}
+	
+	@Test
+	public void testIncrementalWorstCaseCVA() throws InterruptedException, ExecutionException {
+		
+		int numberOfPaths = 2000;
+		discountedFlooredNPV = getRandomDiscountedFlooredNPV(29, numberOfPaths, 5);
+		defaultProbabilities = new double[] {0.05, 0.1, 0.05, 0.1, 0.05, 0.65};
+		
+		// Small moves of the default curve, a default interval losing and regaining its probability.
+		double[][] updatedDefaultProbabilities = new double[][] {
+			{0.051, 0.102, 0.05, 0.099, 0.051, 0.647},
+			{0.06, 0.11, 0.06, 0.11, 0.06, 0.6},
+			{0.06, 0.11, 0.0, 0.11, 0.06, 0.66},
+			{0.05, 0.1, 0.05, 0.1, 0.05, 0.65}
+		};
+		
+		ConstrainedWorstCaseCVA constrainedWorstCaseCVA = new ConstrainedWorstCaseCVA(1.0, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors);
+		constrainedWorstCaseCVA.setMaximalNumberOfIterations(10000);
+		
+		for(double penaltyFactor : new double[] { 0.5, 3.0, 20.0 }) {
+			
+			IncrementalWorstCaseCVA incrementalWorstCaseCVA = constrainedWorstCaseCVA.getIncrementalWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10);
+			
+			Assert.assertEquals( constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), incrementalWorstCaseCVA.getCVA(), 1.0E-8 );
+			int numberOfIterationsFromIndependence = incrementalWorstCaseCVA.getNumberOfIterations();
+			
+			for(int updateIndex = 0; updateIndex < updatedDefaultProbabilities.length; updateIndex++) {
+				
+				double updatedCVA = incrementalWorstCaseCVA.update(updatedDefaultProbabilities[updateIndex]);
+				
+				Assert.assertTrue( incrementalWorstCaseCVA.isConverged() );
+				Assert.assertEquals( constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, updatedDefaultProbabilities[updateIndex], 1.0E-10, 1.0E-10, 1.0E-10), updatedCVA, 1.0E-8 );
+				Assert.assertArrayEquals( updatedDefaultProbabilities[updateIndex], incrementalWorstCaseCVA.getDefaultProbabilities(), 0.0 );
+				
+				// A small move of the default curve requires fewer iterations than the start from the independent distribution.
+				if(updateIndex == 0) {
+					Assert.assertTrue( incrementalWorstCaseCVA.getNumberOfIterations() < numberOfIterationsFromIndependence );
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+	
+	@Test
+	public void testCalibratedWorstCaseCVA() throws InterruptedException, ExecutionException {
+		
+		int numberOfPaths = 2000;
+		discountedFlooredNPV = getRandomDiscountedFlooredNPV(37, numberOfPaths, 5);
+		defaultProbabilities = new double[] {0.05, 0.1, 0.05, 0.1, 0.05, 0.65};
+		
+		ConstrainedWorstCaseCVA constrainedWorstCaseCVA = new ConstrainedWorstCaseCVA(1.0, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors);
+		constrainedWorstCaseCVA.setMaximalNumberOfIterations(10000);
+		
+		// A zero budget is the independent distribution.
+		CalibratedWorstCaseCVA independentCVA = constrainedWorstCaseCVA.getCalibratedWorstCaseCVANotToFarFromIndependence(0.0, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10);
+		Assert.assertEquals( 0.0, independentCVA.getPenaltyFactor(), 0.0 );
+		Assert.assertEquals( constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(0.0, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), independentCVA.getCVA(), 1.0E-12 );
+		
+		double previousCVA = independentCVA.getCVA();
+		
+		for(double relativeEntropyBudget : new double[] { 0.001, 0.1, 1.0 }) {
+			
+			CalibratedWorstCaseCVA calibratedCVA = constrainedWorstCaseCVA.getCalibratedWorstCaseCVANotToFarFromIndependence(relativeEntropyBudget, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10);
+			
+			// The budget is attained and the CVA is the one of the calibrated penalty factor.
+			Assert.assertEquals( relativeEntropyBudget, calibratedCVA.getRelativeEntropy(), 1.0E-6 * relativeEntropyBudget );
+			Assert.assertEquals( constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(calibratedCVA.getPenaltyFactor(), discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), calibratedCVA.getCVA(), 1.0E-8 );
+			
+			// A larger budget allows a larger CVA.
+			Assert.assertTrue( calibratedCVA.getPenaltyFactor() > 0.0 && calibratedCVA.getCVA() > previousCVA );
+			previousCVA = calibratedCVA.getCVA();
+			
+		}
+		
+		// The relative entropy is smaller than - log( 0.05 ) since the smallest default probability is 0.05.
+		exception.expect(IllegalArgumentException.class);
+		constrainedWorstCaseCVA.getCalibratedWorstCaseCVANotToFarFromIndependence(- Math.log( 0.05 ), discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10);
+		
+	}
+	
+	
+	@Test
+	public void testWorstCaseCVASensitivities() throws InterruptedException, ExecutionException {
+		
+		int numberOfPaths = 2000;
+		discountedFlooredNPV = getRandomDiscountedFlooredNPV(41, numberOfPaths, 5);
+		// The third default interval has zero probability.
+		defaultProbabilities = new double[] {0.05, 0.1, 0.0, 0.1, 0.05, 0.7};
+		
+		ConstrainedWorstCaseCVA constrainedWorstCaseCVA = new ConstrainedWorstCaseCVA(1.0, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors);
+		constrainedWorstCaseCVA.setMaximalNumberOfIterations(100000);
+		
+		double shift = 1.0E-5;
+		
+		for(double penaltyFactor : new double[] { 2.0, -1.5 }) {
+			
+			WorstCaseCVASensitivities worstCaseCVASensitivities = constrainedWorstCaseCVA.getWorstCaseCVASensitivitiesNotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-13, 1.0E-13, 1.0E-13);
+			
+			double worstCaseCVA = constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-13, 1.0E-13, 1.0E-13);
+			Assert.assertEquals( worstCaseCVA, worstCaseCVASensitivities.getCVA(), 1.0E-10 );
+			
+			// The reference interval is the last one.
+			Assert.assertEquals( 0.0, worstCaseCVASensitivities.getSensitivities()[defaultProbabilities.length - 1], 0.0 );
+			
+			// The sensitivities agree with the difference quotients of bumped default probabilities (the probability is taken from the last interval).
+			for(int intervalIndex = 0; intervalIndex < defaultProbabilities.length - 1; intervalIndex++) {
+				
+				double[] upDefaultProbabilities = defaultProbabilities.clone();
+				upDefaultProbabilities[intervalIndex] += shift;
+				upDefaultProbabilities[defaultProbabilities.length - 1] -= shift;
+				double upCVA = constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, upDefaultProbabilities, 1.0E-13, 1.0E-13, 1.0E-13);
+				
+				if( defaultProbabilities[intervalIndex] == 0.0 ) {
+					// A one-sided difference quotient.
+					Assert.assertEquals( ( upCVA - worstCaseCVA ) / shift, worstCaseCVASensitivities.getSensitivities()[intervalIndex], 1.0E-3 );
+					continue;
+				}
+				
+				double[] downDefaultProbabilities = defaultProbabilities.clone();
+				downDefaultProbabilities[intervalIndex] -= shift;
+				downDefaultProbabilities[defaultProbabilities.length - 1] += shift;
+				double downCVA = constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, downDefaultProbabilities, 1.0E-13, 1.0E-13, 1.0E-13);
+				
+				Assert.assertEquals( ( upCVA - downCVA ) / ( 2.0 * shift ), worstCaseCVASensitivities.getSensitivities()[intervalIndex], 1.0E-5 );
+				
+			}
+			
+			// The LGD scales the CVA and its sensitivities.
+			WorstCaseCVASensitivities scaledSensitivities = worstCaseCVASensitivities.getScaled(0.6);
+			Assert.assertEquals( 0.6 * worstCaseCVASensitivities.getSensitivities()[0], scaledSensitivities.getSensitivities()[0], 1.0E-15 );
+			Assert.assertArrayEquals( worstCaseCVASensitivities.getPenalizedValueSensitivities(), scaledSensitivities.getPenalizedValueSensitivities(), 0.0 );
+			
+		}
+		
+	}
+	
+	
+	@Test
+	public void testWorstCaseCVAProfile() throws InterruptedException, ExecutionException {
+		
+		int numberOfPaths = 2000;
+		discountedFlooredNPV = new RandomVariableInterface[5];
+		
+		// Every second path is a copy of its predecessor such that the paths are merged.
+		Random randomNumberGenerator = new Random(29);
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			double[] realizations = new double[numberOfPaths];
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				realizations[pathIndex] = pathIndex % 2 == 1 ? realizations[pathIndex - 1] : Math.max( randomNumberGenerator.nextGaussian() * ( 1.0 + 0.2 * columnIndex ), 0.0 );
+			}
+			discountedFlooredNPV[columnIndex] = new RandomVariable(0.0, realizations);
+		}
+		defaultProbabilities = new double[] {0.05, 0.1, 0.0, 0.1, 0.05, 0.7};
+		
+		for(double penaltyFactor : new double[] { 0.0, 2.0, -2.0 }) {
+			
+			for(ConstrainedWorstCaseCVA.IPFPMode ipfpMode : localIPFPModes) {
+				
+				ConstrainedWorstCaseCVA constrainedWorstCaseCVA = new ConstrainedWorstCaseCVA(1.0, ipfpMode);
+				constrainedWorstCaseCVA.setMaximalNumberOfIterations(10000);
+				constrainedWorstCaseCVA.setExportingJointDistribution(true);
+				
+				WorstCaseCVAProfile profile = constrainedWorstCaseCVA.getWorstCaseCVAProfileNotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10);
+				
+				Assert.assertEquals( constrainedWorstCaseCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), profile.getCVA(), 1.0E-10 );
+				
+				Assert.assertArrayEquals( defaultProbabilities, profile.getDefaultProbabilities(), 1.0E-8 );
+				
+				double cva = 0.0;
+				for(int intervalIndex = 0; intervalIndex < defaultProbabilities.length - 1; intervalIndex++) {
+					cva += profile.getConditionalExpectedExposures()[intervalIndex] * profile.getDefaultProbabilities()[intervalIndex];
+					
+					// Under the independent distribution the conditional expected exposure is the expected exposure.
+					if( penaltyFactor == 0.0 && defaultProbabilities[intervalIndex] > 0.0 ) {
+						Assert.assertEquals( discountedFlooredNPV[intervalIndex].getAverage(), profile.getConditionalExpectedExposures()[intervalIndex], 1.0E-10 );
+					}
+				}
+				Assert.assertEquals( profile.getCVA(), cva, 1.0E-12 );
+				
+				// The joint distribution of the paths has the path and default marginals.
+				double[] pathSums = new double[numberOfPaths];
+				for(int intervalIndex = 0; intervalIndex < defaultProbabilities.length; intervalIndex++) {
+					double intervalSum = 0.0;
+					for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+						intervalSum += profile.getJointProbability(pathIndex, intervalIndex);
+						pathSums[pathIndex] += profile.getJointProbability(pathIndex, intervalIndex);
+					}
+					Assert.assertEquals( defaultProbabilities[intervalIndex], intervalSum, 1.0E-8 );
+				}
+				for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+					Assert.assertEquals( 1.0, pathSums[pathIndex] * numberOfPaths, 1.0E-8 );
+				}
+				
+				// The loss given default only scales the contributions.
+				Assert.assertEquals( 0.6 * profile.getCVA(), profile.getScaled(0.6).getCVA(), 1.0E-14 );
+				Assert.assertArrayEquals( profile.getConditionalExpectedExposures(), profile.getScaled(0.6).getConditionalExpectedExposures(), 1.0E-14 );
+				
+			}
+			
+		}
+		
+	}
+	
+	@Test
+	public void testDistributedIPFP() throws InterruptedException, ExecutionException, IOException {
+		
+		int numberOfPaths = 3001;
+		discountedFlooredNPV = getRandomDiscountedFlooredNPV(31, numberOfPaths, 5);
+		defaultProbabilities = new double[] {0.05, 0.1, 0.0, 0.1, 0.05, 0.7};
+		
+		// Three workers listening on the loopback address, each with its own thread.
+		ExecutorService workerExecutor = Executors.newFixedThreadPool(2);
+		List<IPFPWorker> workers = new ArrayList<IPFPWorker>();
+		List<InetSocketAddress> workerAddresses = new ArrayList<InetSocketAddress>();
+		for(int workerIndex = 0; workerIndex < 3; workerIndex++) {
+			IPFPWorker worker = new IPFPWorker(0, workerExecutor, 2);
+			new Thread(worker).start();
+			workers.add(worker);
+			workerAddresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), worker.getPort()));
+		}
+		
+		ConstrainedWorstCaseCVA distributedCVA = new ConstrainedWorstCaseCVA(1.0, ConstrainedWorstCaseCVA.IPFPMode.Distributed);
+		distributedCVA.setWorkerAddresses(workerAddresses);
+		distributedCVA.setMaximalNumberOfIterations(2000);
+		
+		ConstrainedWorstCaseCVA localCVA = new ConstrainedWorstCaseCVA(1.0, ConstrainedWorstCaseCVA.IPFPMode.ScalingVectors);
+		localCVA.setMaximalNumberOfIterations(2000);
+		
+		// The distributed IPFP only differs by the order of the summation of the column sums. The penalty factor 150 requires the log-domain.
+		for(double penaltyFactor : new double[] { 0.0, 1.0, -4.0, 150.0 }) {
+			Assert.assertEquals( localCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), 
+					distributedCVA.getWorstCaseCVANotToFarFromIndependence(penaltyFactor, discountedFlooredNPV, numberOfPaths, defaultProbabilities, 1.0E-10, 1.0E-10, 1.0E-10), 1.0E-10 );
+		}
+		
+		// The rows of each worker can be loaded separately, e.g. if they are simulated block by block.
+		double[][] realizations = new double[discountedFlooredNPV.length][];
+		for(int columnIndex = 0; columnIndex < discountedFlooredNPV.length; columnIndex++) {
+			realizations[columnIndex] = discountedFlooredNPV[columnIndex].getRealizations();
+		}
+		
+		DistributedScalingVectorIPFP distributedIPFP = new DistributedScalingVectorIPFP(workerAddresses.subList(0, 2), defaultProbabilities, 2.0, false);
+		
+		for(int workerIndex = 0; workerIndex < 2; workerIndex++) {
+			double[][] realizationsOfWorker = new double[realizations.length][];
+			for(int columnIndex = 0; columnIndex < realizations.length; columnIndex++) {
+				realizationsOfWorker[columnIndex] = Arrays.copyOfRange(realizations[columnIndex], workerIndex * 1500, workerIndex == 0 ? 1500 : numberOfPaths);
+			}
+			double[] pathProbabilitiesOfWorker = new double[realizationsOfWorker[0].length];
+			Arrays.fill(pathProbabilitiesOfWorker, 1.0 / numberOfPaths);
+			
+			distributedIPFP.loadRows(workerIndex, realizationsOfWorker, pathProbabilitiesOfWorker);
+		}
+		
+		Assert.assertTrue( distributedIPFP.solve(2000, 1.0E-10, 1.0E-10, 1.0E-10) );
+		Assert.assertArrayEquals( new int[] { 1500, 1501 }, distributedIPFP.getNumberOfRowsOfWorkers() );
+		
+		ScalingVectorIPFP localIPFP = new ScalingVectorIPFP(realizations, defaultProbabilities, 2.0, false, 4);
+		Assert.assertTrue( localIPFP.solve(2000, 1.0E-10, 1.0E-10, 1.0E-10, workerExecutor) );
+		
+		Assert.assertEquals( localIPFP.getNumberOfIterations(), distributedIPFP.getNumberOfIterations() );
+		Assert.assertEquals( localIPFP.getCVA(workerExecutor), distributedIPFP.getCVA(), 1.0E-12 );
+		
+		distributedIPFP.close();
+		
+		for(IPFPWorker worker : workers) {
+			worker.close();
+		}
+		workerExecutor.shutdown();
+		
+	}
+	
+	/**
+	 * @param seed The seed of the random number generator.
+	 * @param numberOfPaths The number of paths.
+	 * @param numberOfColumns The number of NPV columns.
+	 * @return The discounted and floored NPV max( Z<sub>i,j</sub> * ( 1 + 0.2 * j ), 0 ) of independent standard normal Z<sub>i,j</sub>, 
+	 * i.e. the exposure grows with the default interval j.
+	 */
+	private static RandomVariableInterface[] getRandomDiscountedFlooredNPV(long seed, int numberOfPaths, int numberOfColumns) {
+		
+		double[][] realizations = getRandomDiscountedFlooredNPVRealizations(seed, numberOfPaths, numberOfColumns);
+		
+		RandomVariableInterface[] discountedFlooredNPV = new RandomVariableInterface[numberOfColumns];
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+			discountedFlooredNPV[columnIndex] = new RandomVariable(0.0, realizations[columnIndex]);
+		}
+		
+		return discountedFlooredNPV;
+		
+	}
+	
+	/**
+	 * @return The realizations of {@link #getRandomDiscountedFlooredNPV(long, int, int)}, at array index j those of the default interval j.
+	 */
+	private static double[][] getRandomDiscountedFlooredNPVRealizations(long seed, int numberOfPaths, int numberOfColumns) {
+		
+		double[][] realizations = new double[numberOfColumns][numberOfPaths];
+		
+		Random randomNumberGenerator = new Random(seed);
+		for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				realizations[columnIndex][pathIndex] = Math.max( randomNumberGenerator.nextGaussian() * ( 1.0 + 0.2 * columnIndex ), 0.0 );
+			}
+		}
+		
+		return realizations;
+		
+	}
 	
 }
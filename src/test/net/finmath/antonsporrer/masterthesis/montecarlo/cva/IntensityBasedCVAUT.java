@@ -0,0 +1,262 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package test.net.finmath.antonsporrer.masterthesis.montecarlo.cva;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import main.net.finmath.antonsporrer.masterthesis.integration.Integration;
+import main.net.finmath.antonsporrer.masterthesis.integration.Integration.IntegrationMethod;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.IntensityBasedCVA;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.NPVAndDefaultsimulation.NPVAndDefaultIntensitySimulationInterface;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.product.ProductConditionalFairValueProcessInterface;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.RandomVariable;
+import net.finmath.stochastic.RandomVariableInterface;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationInterface;
+
+public class IntensityBasedCVAUT {
+
+	/**
+	 * The CVA of each path calculated in one pass over the realizations agrees exactly with the integral 
+	 * of the random variables of the integrand, for each integration method and a non-uniform time discretization.
+	 */
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void testCVAAgreesWithIntegralOfIntegrand() throws CalculationException {
+		
+		double lossGivenDefault = 0.6;
+		IntensityBasedCVA intensityBasedCVA = new IntensityBasedCVA(lossGivenDefault);
+		
+		int numberOfPaths = 2000;
+		TimeDiscretizationInterface timeDiscretization = new TimeDiscretization(new double[] { 0.0, 0.25, 0.5, 1.0, 2.0, 3.5, 5.0 });
+		int numberOfFunctionValues = timeDiscretization.getNumberOfTimes();
+		
+		NPVAndDefaultIntensitySimulationInterface npvAndDefaultIntensitySimulation = getSimulation(timeDiscretization, numberOfPaths, 3142);
+		
+		RandomVariableInterface[] functionValues = new RandomVariableInterface[numberOfFunctionValues];
+		for(int timeIndex = 0; timeIndex < numberOfFunctionValues ; timeIndex++) {
+			functionValues[timeIndex] = (npvAndDefaultIntensitySimulation.getDiscountedNPV(timeIndex, 0).floor(0.0))
+					.mult( npvAndDefaultIntensitySimulation.getIntensity(timeIndex) )
+					.div( npvAndDefaultIntensitySimulation.getExpOfIntegratedIntensity(timeIndex) );
+		}
+		
+		for(IntegrationMethod integrationMethod : IntegrationMethod.values()) {
+			
+			RandomVariableInterface expectedCVA = Integration.getIntegral(functionValues, timeDiscretization, integrationMethod).mult(lossGivenDefault);
+			RandomVariableInterface cva = intensityBasedCVA.getCVA(npvAndDefaultIntensitySimulation, integrationMethod);
+			
+			Assert.assertTrue( expectedCVA.getAverage() > 0.0 );
+			Assert.assertEquals( numberOfPaths, cva.size() );
+			
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				Assert.assertEquals( expectedCVA.get(pathIndex), cva.get(pathIndex), 0.0 );
+			}
+			
+		}
+		
+	}
+
+
+	/**
+	 * The CVA calculated in parallel is the same for each number of threads and agrees with the serial calculation up to rounding errors.
+	 * The time discretization is non-uniform and its number of intervals is not a multiple of the size of the parts.
+	 */
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void testParallelCVAIsIndependentOfNumberOfThreads() throws CalculationException, InterruptedException, ExecutionException {
+		
+		double lossGivenDefault = 0.6;
+		IntensityBasedCVA intensityBasedCVA = new IntensityBasedCVA(lossGivenDefault);
+		
+		int numberOfPaths = 500;
+		int numberOfFunctionValues = 1203;
+		double[] times = new double[numberOfFunctionValues];
+		for(int timeIndex = 1; timeIndex < numberOfFunctionValues; timeIndex++) {
+			times[timeIndex] = times[timeIndex - 1] + ( timeIndex % 3 == 0 ? 0.002 : 0.005 );
+		}
+		TimeDiscretizationInterface timeDiscretization = new TimeDiscretization(times);
+		
+		NPVAndDefaultIntensitySimulationInterface npvAndDefaultIntensitySimulation = getSimulation(timeDiscretization, numberOfPaths, 2718);
+		
+		for(IntegrationMethod integrationMethod : IntegrationMethod.values()) {
+			
+			RandomVariableInterface serialCVA = intensityBasedCVA.getCVA(npvAndDefaultIntensitySimulation, integrationMethod);
+			
+			RandomVariableInterface referenceCVA = null;
+			for(int numberOfThreads : new int[] { 1, 3, 8 }) {
+				
+				ForkJoinPool executor = new ForkJoinPool(numberOfThreads);
+				RandomVariableInterface cva;
+				try {
+					cva = intensityBasedCVA.getCVA(npvAndDefaultIntensitySimulation, integrationMethod, executor);
+				}
+				finally {
+					executor.shutdown();
+				}
+				
+				Assert.assertEquals( numberOfPaths, cva.size() );
+				
+				if(referenceCVA == null) {
+					referenceCVA = cva;
+				}
+				
+				for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+					Assert.assertEquals( referenceCVA.get(pathIndex), cva.get(pathIndex), 0.0 );
+					Assert.assertEquals( serialCVA.get(pathIndex), cva.get(pathIndex), 1E-14 * Math.abs( serialCVA.get(pathIndex) ) );
+				}
+				
+			}
+			
+		}
+		
+	}
+
+
+	/**
+	 * The CVA term structure agrees exactly with the integral of the integrand up to each time point and its last element with the CVA.
+	 */
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void testCVATermStructure() throws CalculationException {
+		
+		double lossGivenDefault = 0.6;
+		IntensityBasedCVA intensityBasedCVA = new IntensityBasedCVA(lossGivenDefault);
+		
+		int numberOfPaths = 200;
+		double[] times = new double[] { 0.0, 0.25, 0.5, 1.0, 2.0, 3.5, 5.0, 5.5 };
+		TimeDiscretizationInterface timeDiscretization = new TimeDiscretization(times);
+		int numberOfFunctionValues = timeDiscretization.getNumberOfTimes();
+		
+		NPVAndDefaultIntensitySimulationInterface npvAndDefaultIntensitySimulation = getSimulation(timeDiscretization, numberOfPaths, 1618);
+		
+		RandomVariableInterface[] functionValues = new RandomVariableInterface[numberOfFunctionValues];
+		for(int timeIndex = 0; timeIndex < numberOfFunctionValues ; timeIndex++) {
+			functionValues[timeIndex] = (npvAndDefaultIntensitySimulation.getDiscountedNPV(timeIndex, 0).floor(0.0))
+					.mult( npvAndDefaultIntensitySimulation.getIntensity(timeIndex) )
+					.div( npvAndDefaultIntensitySimulation.getExpOfIntegratedIntensity(timeIndex) ); 
+		}
+		
+		for(IntegrationMethod integrationMethod : IntegrationMethod.values()) {
+			
+			RandomVariableInterface[] cvaTermStructure = intensityBasedCVA.getCVATermStructure(npvAndDefaultIntensitySimulation, integrationMethod);
+			RandomVariableInterface cva = intensityBasedCVA.getCVA(npvAndDefaultIntensitySimulation, integrationMethod);
+			
+			Assert.assertEquals( numberOfFunctionValues, cvaTermStructure.length );
+			
+			for(int timeIndex = 0; timeIndex < numberOfFunctionValues; timeIndex++) {
+				RandomVariableInterface expectedCVA = Integration.getIntegral(Arrays.copyOf(functionValues, timeIndex + 1), new TimeDiscretization(Arrays.copyOf(times, timeIndex + 1)), integrationMethod).mult(lossGivenDefault);
+				for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+					Assert.assertEquals( expectedCVA.get(pathIndex), cvaTermStructure[timeIndex].get(pathIndex), 0.0 );
+				}
+			}
+			
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				Assert.assertEquals( cva.get(pathIndex), cvaTermStructure[numberOfFunctionValues - 1].get(pathIndex), 0.0 );
+			}
+			
+		}
+		
+	}
+	
+	
+	/**
+	 * @return A simulation providing random realizations on the time discretization. At time zero the NPV and the integrated intensity are deterministic.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static NPVAndDefaultIntensitySimulationInterface getSimulation(TimeDiscretizationInterface timeDiscretization, int numberOfPaths, long seed) {
+		
+		int numberOfFunctionValues = timeDiscretization.getNumberOfTimes();
+		
+		RandomVariableInterface[] discountedNPV = new RandomVariableInterface[numberOfFunctionValues];
+		RandomVariableInterface[] intensity = new RandomVariableInterface[numberOfFunctionValues];
+		RandomVariableInterface[] expOfIntegratedIntensity = new RandomVariableInterface[numberOfFunctionValues];
+		
+		Random randomNumberGenerator = new Random(seed);
+		double[] integratedIntensity = new double[numberOfPaths];
+		for(int timeIndex = 0; timeIndex < numberOfFunctionValues; timeIndex++) {
+			
+			double time = timeDiscretization.getTime(timeIndex);
+			double[] npvRealizations = new double[numberOfPaths];
+			double[] intensityRealizations = new double[numberOfPaths];
+			double[] expOfIntegratedIntensityRealizations = new double[numberOfPaths];
+			
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				npvRealizations[pathIndex] = 0.1 + randomNumberGenerator.nextGaussian();
+				intensityRealizations[pathIndex] = 0.03 * Math.exp( 0.5 * randomNumberGenerator.nextGaussian() );
+				if(timeIndex > 0) {
+					integratedIntensity[pathIndex] += intensityRealizations[pathIndex] * ( time - timeDiscretization.getTime(timeIndex - 1) );
+				}
+				expOfIntegratedIntensityRealizations[pathIndex] = Math.exp( integratedIntensity[pathIndex] );
+			}
+			
+			discountedNPV[timeIndex] = timeIndex > 0 ? new RandomVariable(time, npvRealizations) : new RandomVariable(0.1);
+			intensity[timeIndex] = new RandomVariable(time, intensityRealizations);
+			expOfIntegratedIntensity[timeIndex] = timeIndex > 0 ? new RandomVariable(time, expOfIntegratedIntensityRealizations) : new RandomVariable(1.0);
+			
+		}
+		
+		return getSimulation(timeDiscretization, numberOfPaths, discountedNPV, intensity, expOfIntegratedIntensity);
+		
+	}
+
+
+	/**
+	 * @return A simulation providing the given random variables. Only the methods used by {@link IntensityBasedCVA} are supported.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static NPVAndDefaultIntensitySimulationInterface getSimulation(final TimeDiscretizationInterface timeDiscretization, final int numberOfPaths, 
+			final RandomVariableInterface[] discountedNPV, final RandomVariableInterface[] intensity, final RandomVariableInterface[] expOfIntegratedIntensity) {
+		
+		final ProductConditionalFairValueProcessInterface productProcess = (ProductConditionalFairValueProcessInterface) Proxy.newProxyInstance(IntensityBasedCVAUT.class.getClassLoader(), 
+				new Class[] { ProductConditionalFairValueProcessInterface.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] arguments) {
+				if( method.getName().equals("getTimeDiscretization") ) {
+					return timeDiscretization;
+				}
+				if( method.getName().equals("getNumberOfPaths") ) {
+					return numberOfPaths;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+		
+		return (NPVAndDefaultIntensitySimulationInterface) Proxy.newProxyInstance(IntensityBasedCVAUT.class.getClassLoader(), 
+				new Class[] { NPVAndDefaultIntensitySimulationInterface.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] arguments) {
+				if( method.getName().equals("getDiscountedNPV") ) {
+					return discountedNPV[(Integer) arguments[0]];
+				}
+				if( method.getName().equals("getIntensity") ) {
+					return intensity[(Integer) arguments[0]];
+				}
+				if( method.getName().equals("getExpOfIntegratedIntensity") ) {
+					return expOfIntegratedIntensity[(Integer) arguments[0]];
+				}
+				if( method.getName().equals("getProductProcess") ) {
+					return productProcess;
+				}
+				if( method.getName().equals("getTimeDiscretization") ) {
+					return timeDiscretization;
+				}
+				if( method.getName().equals("getNumberOfPaths") ) {
+					return numberOfPaths;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+		
+	}
+
+}
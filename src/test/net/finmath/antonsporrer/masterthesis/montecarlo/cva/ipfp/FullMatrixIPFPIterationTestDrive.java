@@ -0,0 +1,137 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package test.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.FullMatrixIPFP;
+
+/**
+ * Compares the throughput of the iterations of the IPFP for the matrix stored as an array of rows 
+ * (a row pass A to B followed by a column pass B to A traversing each column across the row arrays) and for the matrix stored in 
+ * contiguous row blocks as in {@link FullMatrixIPFP} (one fused pass with lazily applied column factors).
+ * <br> This test drive replaces FullMatrixIPFPColumnPassTestDrive, which timed the separate column pass of the row blocks. Since the column pass
+ * is fused into the row pass it cannot be timed on its own anymore. The column passes of the array of rows are still timed separately,
+ * which is the baseline of the former measurement.
+ * 
+ * @author Anton Sporrer
+ *
+ */
+public class FullMatrixIPFPIterationTestDrive {
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		
+		int numberOfRows = 200000;
+		int numberOfColumns = 41;
+		int numberOfIterations = 20;
+		double penaltyFactor = 0.5;
+		
+		Random random = new Random(3141);
+		
+		double[][] discountedFlooredNPV = new double[numberOfColumns - 1][numberOfRows];
+		for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+			for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+				discountedFlooredNPV[columnIndex][rowIndex] = Math.max( random.nextGaussian(), 0.0 );
+			}
+		}
+		
+		double[] defaultProbabilities = new double[numberOfColumns];
+		for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+			defaultProbabilities[columnIndex] = 0.01;
+		}
+		defaultProbabilities[numberOfColumns - 1] = 1.0 - 0.01 * ( numberOfColumns - 1 );
+		
+		double numberOfEntries = (double) numberOfRows * numberOfColumns * numberOfIterations;
+		
+		
+		////
+		// Array of rows. A row pass from A to B followed by a column pass from B to A.
+		////
+		
+		double[][] matrixA = new double[numberOfRows][numberOfColumns];
+		double[][] matrixB = new double[numberOfRows][numberOfColumns];
+		for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+			for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+				double exponent = columnIndex < numberOfColumns - 1 ? penaltyFactor * discountedFlooredNPV[columnIndex][rowIndex] : 0.0;
+				matrixA[rowIndex][columnIndex] = Math.exp( exponent ) * defaultProbabilities[columnIndex] / numberOfRows;
+			}
+		}
+		
+		long startTime = System.nanoTime();
+		long nanosColumnPassesArrayOfRows = 0;
+		
+		for(int iterationIndex = 0; iterationIndex < numberOfIterations; iterationIndex++) {
+			
+			for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+				
+				double rowSum = 0.0;
+				for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+					rowSum += matrixA[rowIndex][columnIndex];
+				}
+				
+				for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+					matrixB[rowIndex][columnIndex] = matrixA[rowIndex][columnIndex] / rowSum / numberOfRows;
+				}
+				
+			}
+			
+			long startTimeColumnPass = System.nanoTime();
+			
+			for(int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+				
+				double columnSum = 0.0;
+				for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+					columnSum += matrixB[rowIndex][columnIndex];
+				}
+				
+				double columnFactor = defaultProbabilities[columnIndex] / columnSum;
+				for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+					matrixA[rowIndex][columnIndex] = matrixB[rowIndex][columnIndex] * columnFactor;
+				}
+				
+			}
+			
+			nanosColumnPassesArrayOfRows += System.nanoTime() - startTimeColumnPass;
+			
+		}
+		
+		double secondsArrayOfRows = ( System.nanoTime() - startTime ) / 1E9;
+		double secondsColumnPassesArrayOfRows = nanosColumnPassesArrayOfRows / 1E9;
+		
+		matrixA = null;
+		matrixB = null;
+		
+		
+		////
+		// Contiguous row blocks. One fused pass per iteration.
+		////
+		
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		
+		FullMatrixIPFP ipfp = new FullMatrixIPFP(discountedFlooredNPV, defaultProbabilities, penaltyFactor, 1);
+		ipfp.reset(executor);
+		
+		startTime = System.nanoTime();
+		
+		for(int iterationIndex = 0; iterationIndex < numberOfIterations; iterationIndex++) {
+			ipfp.doIteration(0.0, 0.0, 0.0, executor);
+		}
+		
+		double secondsRowBlocks = ( System.nanoTime() - startTime ) / 1E9;
+		
+		executor.shutdown();
+		
+		
+		System.out.println("Matrix with " + numberOfRows + " rows and " + numberOfColumns + " columns, " + numberOfIterations + " iterations (single thread).");
+		System.out.println("Array of rows:            " + secondsArrayOfRows + " s, " + numberOfEntries / secondsArrayOfRows / 1E6 + " million entries per second.");
+		System.out.println("  thereof column passes:  " + secondsColumnPassesArrayOfRows + " s, " + numberOfEntries / secondsColumnPassesArrayOfRows / 1E6 + " million entries per second.");
+		System.out.println("Fused row blocks:         " + secondsRowBlocks + " s, " + numberOfEntries / secondsRowBlocks / 1E6 + " million entries per second.");
+		
+	}
+
+}
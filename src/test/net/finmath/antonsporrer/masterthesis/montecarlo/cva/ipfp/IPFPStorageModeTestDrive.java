@@ -0,0 +1,117 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package test.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.FullMatrixIPFP;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.ipfp.ScalingVectorIPFP;
+
+/**
+ * Compares the throughput and the memory of the storage modes of the IPFP: the materialized matrix of {@link FullMatrixIPFP} in double and in single precision
+ * and the scaling vector form of {@link ScalingVectorIPFP}, which recomputes the kernel exp( penaltyFactor * NPV ) in each pass, with the NPV columns in double and in single precision.
+ * <br> The memory is the memory of the data of size numberOfRows * numberOfColumns, which is stored by the IPFP in addition to the NPV columns of the simulation.
+ * For the scaling vector form these are the NPV columns themselves, hence in double precision no additional memory is required if the simulation provides them.
+ * 
+ * @author Anton Sporrer
+ *
+ */
+public class IPFPStorageModeTestDrive {
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		
+		int numberOfRows = 200000;
+		int numberOfColumns = 41;
+		int numberOfIterations = 20;
+		double penaltyFactor = 0.5;
+		
+		Random random = new Random(3141);
+		
+		double[][] discountedFlooredNPV = new double[numberOfColumns - 1][numberOfRows];
+		float[][] singlePrecisionDiscountedFlooredNPV = new float[numberOfColumns - 1][numberOfRows];
+		for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+			for(int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+				discountedFlooredNPV[columnIndex][rowIndex] = Math.max( random.nextGaussian(), 0.0 );
+				singlePrecisionDiscountedFlooredNPV[columnIndex][rowIndex] = (float) discountedFlooredNPV[columnIndex][rowIndex];
+			}
+		}
+		
+		double[] pathProbabilities = new double[numberOfRows];
+		Arrays.fill(pathProbabilities, 1.0 / numberOfRows);
+		
+		double[] defaultProbabilities = new double[numberOfColumns];
+		for(int columnIndex = 0; columnIndex < numberOfColumns - 1; columnIndex++) {
+			defaultProbabilities[columnIndex] = 0.01;
+		}
+		defaultProbabilities[numberOfColumns - 1] = 1.0 - 0.01 * ( numberOfColumns - 1 );
+		
+		double numberOfEntries = (double) numberOfRows * numberOfColumns * numberOfIterations;
+		
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		
+		System.out.println("Matrix with " + numberOfRows + " rows and " + numberOfColumns + " columns, " + numberOfIterations + " iterations (single thread).");
+		
+		
+		////
+		// The materialized matrix in double and in single precision. The initial matrix is calculated once.
+		////
+		
+		for(boolean singlePrecision : new boolean[] { false, true }) {
+			
+			FullMatrixIPFP ipfp = new FullMatrixIPFP(discountedFlooredNPV, pathProbabilities, defaultProbabilities, penaltyFactor, 1, singlePrecision);
+			
+			long startTime = System.nanoTime();
+			
+			ipfp.reset(executor);
+			
+			double secondsInitialMatrix = ( System.nanoTime() - startTime ) / 1E9;
+			
+			startTime = System.nanoTime();
+			
+			ipfp.solve(numberOfIterations, 0.0, 0.0, 0.0, executor);
+			
+			double seconds = ( System.nanoTime() - startTime ) / 1E9;
+			
+			// In single precision the row factors are stored in addition to the float matrix.
+			double megabytes = ( (double) numberOfRows * numberOfColumns * ( singlePrecision ? 4 : 8 ) + ( singlePrecision ? 8.0 * numberOfRows : 0.0 ) ) / 1E6;
+			
+			System.out.println("Full matrix (" + ( singlePrecision ? "single" : "double" ) + " precision):    " + seconds + " s (initial matrix " + secondsInitialMatrix + " s), " 
+					+ numberOfEntries / seconds / 1E6 + " million entries per second, " + megabytes + " MB, CVA " + ipfp.getCVA(executor));
+			
+		}
+		
+		
+		////
+		// The scaling vector form with the NPV columns in double and in single precision. The kernel is recomputed in each pass.
+		////
+		
+		for(boolean singlePrecision : new boolean[] { false, true }) {
+			
+			ScalingVectorIPFP ipfp = singlePrecision ? new ScalingVectorIPFP(singlePrecisionDiscountedFlooredNPV, pathProbabilities, defaultProbabilities, penaltyFactor, false, 1)
+					: new ScalingVectorIPFP(discountedFlooredNPV, pathProbabilities, defaultProbabilities, penaltyFactor, false, 1);
+			
+			long startTime = System.nanoTime();
+			
+			ipfp.solve(numberOfIterations, 0.0, 0.0, 0.0, executor);
+			
+			double seconds = ( System.nanoTime() - startTime ) / 1E9;
+			
+			// The NPV columns and the scaling vectors.
+			double megabytes = ( (double) numberOfRows * ( numberOfColumns - 1 ) * ( singlePrecision ? 4 : 8 ) + 8.0 * ( numberOfRows + numberOfColumns ) ) / 1E6;
+			
+			System.out.println("Scaling vectors (" + ( singlePrecision ? "single" : "double" ) + " precision NPV): " + seconds + " s, " 
+					+ numberOfEntries / seconds / 1E6 + " million entries per second, " + megabytes + " MB, CVA " + ipfp.getCVA(executor));
+			
+		}
+		
+		executor.shutdown();
+		
+	}
+
+}
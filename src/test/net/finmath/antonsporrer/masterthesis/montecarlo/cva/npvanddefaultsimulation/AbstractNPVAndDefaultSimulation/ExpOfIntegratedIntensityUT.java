@@ -0,0 +1,95 @@
+/*
+ * Contact: anton.sporrer@yahoo.com
+ */
+
+package test.net.finmath.antonsporrer.masterthesis.montecarlo.cva.npvanddefaultsimulation.AbstractNPVAndDefaultSimulation;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.ProductConditionalFairValue_ModelInterface;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.NPVAndDefaultsimulation.AbstractNPVAndDefaultIntensitySimulation;
+import main.net.finmath.antonsporrer.masterthesis.montecarlo.product.ProductConditionalFairValueProcessInterface;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.RandomVariable;
+import net.finmath.stochastic.RandomVariableInterface;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationInterface;
+
+
+/**
+ *
+ * Unit test for {@link main.net.finmath.antonsporrer.masterthesis.montecarlo.cva.NPVAndDefaultsimulation.AbstractNPVAndDefaultIntensitySimulation#getExpOfIntegratedIntensity(int)}
+ *
+ * @author Anton Sporrer
+ *
+ */
+public class ExpOfIntegratedIntensityUT {
+
+	/**
+	 * The exponential of the integrated intensity agrees with the exponential of the path-wise trapezoidal sum of the intensity
+	 * and the default probability with its average.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Test
+	public void testExpOfIntegratedIntensity() throws CalculationException {
+
+		final int numberOfPaths = 1000;
+		final TimeDiscretizationInterface timeDiscretization = new TimeDiscretization(0.0, 400, 0.025);
+		int numberOfTimes = timeDiscretization.getNumberOfTimes();
+
+		final RandomVariableInterface[] intensities = new RandomVariableInterface[numberOfTimes];
+		Random randomNumberGenerator = new Random(42);
+		for(int timeIndex = 0; timeIndex < numberOfTimes; timeIndex++) {
+			double[] realizations = new double[numberOfPaths];
+			for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				realizations[pathIndex] = 0.02 * Math.exp( 0.3 * randomNumberGenerator.nextGaussian() );
+			}
+			intensities[timeIndex] = new RandomVariable(timeDiscretization.getTime(timeIndex), realizations);
+		}
+
+		ProductConditionalFairValueProcessInterface productProcess = (ProductConditionalFairValueProcessInterface) Proxy.newProxyInstance(ExpOfIntegratedIntensityUT.class.getClassLoader(),
+				new Class[] { ProductConditionalFairValueProcessInterface.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] arguments) {
+				if( method.getName().equals("setUnderlyingModel") ) {
+					return null;
+				}
+				if( method.getName().equals("getTimeDiscretization") ) {
+					return timeDiscretization;
+				}
+				if( method.getName().equals("getNumberOfPaths") ) {
+					return numberOfPaths;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+
+		AbstractNPVAndDefaultIntensitySimulation simulation = new AbstractNPVAndDefaultIntensitySimulation<ProductConditionalFairValue_ModelInterface>(null, productProcess) {
+			public RandomVariableInterface getIntensity(int timeIndex) {
+				return intensities[timeIndex];
+			}
+		};
+
+		Assert.assertEquals( 1.0, simulation.getExpOfIntegratedIntensity(0).get(0), 0.0 );
+
+		for(int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+
+			double integratedIntensity = 0.0;
+			for(int timeIndex = 1; timeIndex < numberOfTimes; timeIndex++) {
+				integratedIntensity += 0.5 * ( intensities[timeIndex - 1].get(pathIndex) + intensities[timeIndex].get(pathIndex) ) * ( timeDiscretization.getTime(timeIndex) - timeDiscretization.getTime(timeIndex - 1) );
+				Assert.assertEquals( Math.exp(integratedIntensity), simulation.getExpOfIntegratedIntensity(timeIndex).get(pathIndex), 1E-13 );
+			}
+
+		}
+
+		int lastTimeIndex = numberOfTimes - 1;
+		Assert.assertEquals( 1.0 - new RandomVariable(1.0).div( simulation.getExpOfIntegratedIntensity(lastTimeIndex) ).getAverage(), simulation.getDefaultProbability(lastTimeIndex), 1E-15 );
+
+	}
+
+}